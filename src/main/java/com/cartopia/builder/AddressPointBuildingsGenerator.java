@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -44,11 +45,13 @@ public class AddressPointBuildingsGenerator {
     private enum RoofType { FLAT, HIP, GABLE }
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public AddressPointBuildingsGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -332,8 +335,8 @@ public class AddressPointBuildingsGenerator {
                     .setValue(DoorBlock.HALF, DoubleBlockHalf.LOWER);
             BlockState upper = lower.setValue(DoorBlock.HALF, DoubleBlockHalf.UPPER);
 
-            level.setBlock(new BlockPos(x, yBase + 1, z), lower, 3);
-            level.setBlock(new BlockPos(x, yBase + 2, z), upper, 3);
+            world.setBlock(new BlockPos(x, yBase + 1, z), lower, 3);
+            world.setBlock(new BlockPos(x, yBase + 2, z), upper, 3);
         } catch (Throwable t) {
             setAir(x, yBase + 1, z);
             setAir(x, yBase + 2, z);
@@ -410,7 +413,7 @@ public class AddressPointBuildingsGenerator {
         return (ls != null && !ls.isAir()) || (rs != null && !rs.isAir());
     }
     private BlockState safeState(int x, int y, int z){
-        try { return level.getBlockState(new BlockPos(x,y,z)); } catch (Throwable t){ return null; }
+        try { return world.getBlockState(new BlockPos(x,y,z)); } catch (Throwable t){ return null; }
     }
 
     // ---- Крыши ----
@@ -521,10 +524,10 @@ public class AddressPointBuildingsGenerator {
 
     // ---- Примитивы ----
     private void setBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 3);
     }
     private void setAir(int x, int y, int z) {
-        try { level.setBlock(new BlockPos(x,y,z), Blocks.AIR.defaultBlockState(), 3); } catch (Throwable ignore) {}
+        try { world.setBlock(new BlockPos(x,y,z), Blocks.AIR.defaultBlockState(), 3); } catch (Throwable ignore) {}
     }
 
     // ---- Рельеф ----
@@ -553,7 +556,7 @@ public class AddressPointBuildingsGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ---- Утилиты/парсинг ----
@@ -653,7 +656,7 @@ public class AddressPointBuildingsGenerator {
     // Проверка: блок свободен? (считаем коллизией любой НЕ-воздух)
     private boolean isFree(int x, int y, int z) {
         try {
-            BlockState st = level.getBlockState(new BlockPos(x,y,z));
+            BlockState st = world.getBlockState(new BlockPos(x,y,z));
             return st == null || st.isAir();
         } catch (Throwable t) { return false; }
     }
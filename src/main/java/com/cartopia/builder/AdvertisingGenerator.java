@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -44,12 +45,14 @@ public class AdvertisingGenerator {
     private static final int WALL_SEARCH_R = 50;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
     private final RandomSource rng;
 
     public AdvertisingGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
         this.rng    = level.getRandom();
@@ -263,8 +266,8 @@ public class AdvertisingGenerator {
                 int y = gy + 3;
                 BlockPos wall = new BlockPos(x, y, z);
                 BlockPos front = wall.relative(face);
-                BlockState wallState = level.getBlockState(wall);
-                if (!wallState.isAir() && wallState.isFaceSturdy(level, wall, face) && level.isEmptyBlock(front))
+                BlockState wallState = world.getBlockState(wall);
+                if (!wallState.isAir() && wallState.isFaceSturdy(level, wall, face) && world.isEmptyBlock(front))
                     return new WallSpot(wall, front, face);
             }
         }
@@ -382,7 +385,7 @@ public class AdvertisingGenerator {
 
     // ===== Блоки / рельеф =====
     private void set(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 3);
     }
 
     private int groundY(int x, int z) {
@@ -410,7 +413,7 @@ public class AdvertisingGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== Утилиты =====
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -33,11 +34,13 @@ public class AerialwayGenerator {
 
     // ===== Инфраструктура =====
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public AerialwayGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -414,7 +417,7 @@ public class AerialwayGenerator {
 
     // ===== Низкоуровневые сеттеры и рельеф =====
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
     }
 
     private int groundY(int x, int z) {
@@ -442,7 +445,7 @@ public class AerialwayGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== Геометрические утилиты =====
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -25,11 +26,13 @@ public class ApiaryBeehivesGenerator {
     private static final Direction HIVE_FACING = Direction.SOUTH; // ориентация улья (не принципиально)
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public ApiaryBeehivesGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -340,7 +343,7 @@ public class ApiaryBeehivesGenerator {
                 st = st.setValue(HorizontalDirectionalBlock.FACING, HIVE_FACING);
             }
         } catch (Throwable ignore) {}
-        level.setBlock(new BlockPos(x, yBase + 1, z), st, 3);
+        world.setBlock(new BlockPos(x, yBase + 1, z), st, 3);
     }
 
     // --- рельеф ---
@@ -370,7 +373,7 @@ public class ApiaryBeehivesGenerator {
         } catch (Throwable ignore) {}
 
         // fallback по миру: верх блока рельефа
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // --- утилиты ---
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -44,11 +45,13 @@ public class BeachResortGenerator {
     private static final int PILLAR_U = 1, PILLAR_V = 1;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public BeachResortGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -365,7 +368,7 @@ public class BeachResortGenerator {
                 st = st.setValue(SlabBlock.TYPE, SlabType.BOTTOM); // нижняя половина
             }
         } catch (Throwable ignore) {}
-        level.setBlock(new BlockPos(x,y,z), st, 3);
+        world.setBlock(new BlockPos(x,y,z), st, 3);
     }
 
     private void placeStairBottomFacing(int x, int y, int z, Direction facing) {
@@ -376,11 +379,11 @@ public class BeachResortGenerator {
                 st = st.setValue(StairBlock.HALF,   Half.BOTTOM); // нижняя половина
             }
         } catch (Throwable ignore) {}
-        level.setBlock(new BlockPos(x,y,z), st, 3);
+        world.setBlock(new BlockPos(x,y,z), st, 3);
     }
 
     private void placeBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
     }
 
     // ---- Рельеф ----
@@ -409,7 +412,7 @@ public class BeachResortGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ---- Утилиты ----
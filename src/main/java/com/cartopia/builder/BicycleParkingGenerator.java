@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -21,11 +22,13 @@ import java.util.*;
 public class BicycleParkingGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public BicycleParkingGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
     }
@@ -251,7 +254,7 @@ public class BicycleParkingGenerator {
             if (y == Integer.MIN_VALUE) continue;
 
             // если грунт — вода, ставим в этот же блок (заменим воду), иначе на y+1
-            boolean groundIsWater = level.getBlockState(new BlockPos(x, y, z)).getBlock() == Blocks.WATER;
+            boolean groundIsWater = world.getBlockState(new BlockPos(x, y, z)).getBlock() == Blocks.WATER;
 
             // расчистка воздуха над предполагаемым местом
             clearAir(x, (groundIsWater ? y : y + 1), z, groundIsWater ? 1 : 2);
@@ -267,12 +270,12 @@ public class BicycleParkingGenerator {
             // LightningRodBlock наследует RodBlock с FACING — ставим вертикально вверх
             st = st.setValue(LightningRodBlock.FACING, Direction.UP);
         } catch (Throwable ignore) { /* на всякий */ }
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private void clearAir(int x, int yStart, int z, int h) {
         for (int i = 0; i < h; i++) {
-            level.setBlock(new BlockPos(x, yStart + i, z), Blocks.AIR.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, yStart + i, z), Blocks.AIR.defaultBlockState(), 3);
         }
     }
 
@@ -330,7 +333,7 @@ public class BicycleParkingGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ---- утилиты ----
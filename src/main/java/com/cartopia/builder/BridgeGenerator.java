@@ -3,6 +3,8 @@ package com.cartopia.builder;
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
 import com.cartopia.store.TerrainGridStore;
+import com.cartopia.write.BlockAccess;
+import com.cartopia.write.BlockPalette;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -23,6 +25,7 @@ import java.util.*;
 public class BridgeGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;       // может быть null
     private final TerrainGridStore grid;       // может быть null
@@ -39,6 +42,7 @@ public class BridgeGenerator {
 
     public BridgeGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
         this.grid = (store != null) ? store.grid : null;
@@ -60,9 +64,11 @@ public class BridgeGenerator {
     // === Материалы (как в дорогах) ===
     private static final class RoadStyle {
         final String blockId;
+        final int code;     // код в BlockPalette
         final int width;
         RoadStyle(String vanillaName, int width) {
             this.blockId = "minecraft:" + vanillaName;
+            this.code = BlockPalette.code(this.blockId);
             this.width = Math.max(1, width);
         }
     }
@@ -235,7 +241,7 @@ public class BridgeGenerator {
                         int lengthBlocks = approxPathLengthBlocks(pts);
                         int mainOffset   = computeMainOffset(tags, lengthBlocks);
 
-                        Block deckBlock = resolveBlock(style.blockId);
+                        Block deckBlock = BlockPalette.block(style.code, Blocks.STONE);
                         deckBlock = pickDeckBlockForBridge(tags, deckBlock);
                         if (mainOffset >= DEFAULT_OFFSET) {
                             int[] first = pts.get(0);
@@ -384,7 +390,7 @@ public class BridgeGenerator {
             int lengthBlocks = approxPathLengthBlocks(pts);
             int mainOffset = computeMainOffset(tags, lengthBlocks);
 
-            Block deckBlock = resolveBlock(style.blockId);
+            Block deckBlock = BlockPalette.block(style.code, Blocks.STONE);
             deckBlock = pickDeckBlockForBridge(tags, deckBlock);
             if (mainOffset >= DEFAULT_OFFSET) {
                 int[] first = pts.get(0);
@@ -1006,7 +1012,7 @@ public class BridgeGenerator {
             int ySurf = surfaceY(ex, ez, yHint);
             if (ySurf == Integer.MIN_VALUE) continue;
 
-            Block surfBlock = level.getBlockState(mpos.set(ex, ySurf, ez)).getBlock();
+            Block surfBlock = world.getBlockState(mpos.set(ex, ySurf, ez)).getBlock();
             if (isRoadLikeBlock(surfBlock)) continue;
 
             int yTop = ySurf + offset;
@@ -1041,7 +1047,7 @@ public class BridgeGenerator {
             while (y >= to) {
                 y = skipOurColumnIfInside(x, z, y);
                 if (y < to) break;
-                if (!level.getBlockState(mpos.set(x, y, z)).isAir()) return y;
+                if (!world.getBlockState(mpos.set(x, y, z)).isAir()) return y;
                 y--;
             }
         }
@@ -1049,7 +1055,7 @@ public class BridgeGenerator {
         while (y >= worldMin) {
             y = skipOurColumnIfInside(x, z, y);
             if (y < worldMin) break;
-            if (!level.getBlockState(mpos.set(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(mpos.set(x, y, z)).isAir()) return y;
             y--;
         }
         return Integer.MIN_VALUE;
@@ -1061,15 +1067,14 @@ public class BridgeGenerator {
     }
 
     private void setBridgeBlock(int x, int y, int z, Block block) {
-        level.setBlock(mpos.set(x, y, z), block.defaultBlockState(), 3);
+        world.setBlock(mpos.set(x, y, z), block.defaultBlockState(), 3);
         registerPlaced(x, y, z);
     }
 
     // ====== УТИЛИТЫ ======
 
     private static Block resolveBlock(String id) {
-        Block b = ForgeRegistries.BLOCKS.getValue(ResourceLocation.tryParse(id));
-        return (b != null ? b : Blocks.STONE);
+        return BlockPalette.block(id, Blocks.STONE);
     }
     private static String optString(JsonObject o, String k) {
         try { return o.has(k) && !o.get(k).isJsonNull() ? o.get(k).getAsString() : null; }
@@ -1158,7 +1163,7 @@ public class BridgeGenerator {
     private void placeBottomSlab(int x, int y, int z, Block slabBlock) {
         BlockState st = slabBlock.defaultBlockState();
         if (st.hasProperty(SlabBlock.TYPE)) st = st.setValue(SlabBlock.TYPE, SlabType.BOTTOM);
-        level.setBlock(mpos.set(x, y, z), st, 3);
+        world.setBlock(mpos.set(x, y, z), st, 3);
         registerPlaced(x, y, z);
     }
 
@@ -1329,7 +1334,7 @@ public class BridgeGenerator {
         final int worldMax = level.getMaxBuildHeight() - 1;
         final int scanMaxY = Math.min(worldMax, yDeck + 12); // достаточно небольшого окна
         for (int y = yDeck; y <= scanMaxY; y++) {
-            var st = level.getBlockState(mpos.set(x, y, z));
+            var st = world.getBlockState(mpos.set(x, y, z));
             if (st.isAir()) continue;
             Block b = st.getBlock();
             // настилы/дорожные блоки + стенки/рельсы/плиты — считаем маркерами моста
@@ -1519,7 +1524,7 @@ public class BridgeGenerator {
         final int scanTop = Math.min(worldMax, ySurf + 16);
 
         for (int y = ySurf + 1; y <= scanTop; y++) {
-            var st = level.getBlockState(mpos.set(x, y, z));
+            var st = world.getBlockState(mpos.set(x, y, z));
             if (st.isAir()) continue;
             Block b = st.getBlock();
 
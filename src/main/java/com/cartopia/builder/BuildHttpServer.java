@@ -1,5 +1,7 @@
 package com.cartopia.builder;
 
+import com.cartopia.store.RasterTileCache;
+import com.cartopia.write.SectionJournal;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
@@ -11,6 +13,7 @@ import net.minecraft.network.chat.Component;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.storage.LevelResource;
 import net.minecraftforge.fml.loading.FMLPaths;
 import net.minecraftforge.server.ServerLifecycleHooks;
 
@@ -33,6 +36,12 @@ public class BuildHttpServer {
 
     private static final int PORT = 4567;               // как в Node
     private static final int MAX_PACKS = getEnvInt("CARTOPIA_MAX_PACKS", 10);
+    private static final int RASTER_CACHE_MB = getEnvInt("CARTOPIA_RASTER_CACHE_MB", 2048);
+
+    // источники растров; переопределяются для подставного сервера
+    private static final String GMRT_URL = System.getenv().getOrDefault("CARTOPIA_GMRT_URL", "https://www.gmrt.org/services/GridServer");
+    private static final String OLM_COG = System.getenv().getOrDefault("CARTOPIA_OLM_COG",
+            "https://s3.openlandmap.org/arco/lc_glc.fcs30d_c_30m_s_20220101_20221231_go_epsg.4326_v20231026.tif");
 
     private static volatile JsonObject lastPlayerCoords = null;
     private static volatile boolean welcomeSent = false;
@@ -63,6 +72,18 @@ public class BuildHttpServer {
 
             httpServer.createContext("/realtime", BuildHttpServer::handleRealtime);
 
+            // /estimate — dry-run: сколько будет стоить область (мир не трогаем)
+            httpServer.createContext("/estimate", BuildHttpServer::handleEstimate);
+
+            // /build-offline — генерация прямо в region-файлы другого (закрытого) мира
+            httpServer.createContext("/build-offline", BuildHttpServer::handleBuildOffline);
+
+            // /rollback — вернуть секции, которые тронула последняя генерация пакета
+            httpServer.createContext("/rollback", BuildHttpServer::handleRollback);
+
+            // /events — поток прогресса генерации (Server-Sent Events)
+            httpServer.createContext("/events", BuildHttpServer::handleEvents);
+
             httpServer.setExecutor(Executors.newCachedThreadPool());
             httpServer.start();
             System.out.println("[Cartopia] Web server started on 127.0.0.1:" + PORT);
@@ -95,6 +116,7 @@ public class BuildHttpServer {
 
     public static void stop() {
         if (httpServer != null) {
+            GenerationProgress.shutdown();
             httpServer.stop(0);
             httpServer = null;
             System.out.println("[Cartopia] Web server stopped");
@@ -245,22 +267,19 @@ public class BuildHttpServer {
         System.out.println("💾 coords.json записан: " + coordsPath);
 
         // качаем DEM (с повторами)
+        GenerationProgress.message("Downloading DEM...");
         try {
-            downloadGmrtDemWithRetry(west, east, south, north, demPath, 10, 60_000);
+            fetchDem(west, east, south, north, demPath, 10, 60_000);
         } catch (Exception e) {
             e.printStackTrace();
             sendText(ex, 500, "Ошибка при скачивании DEM", "text/plain"); return;
         }
 
         // режем OLM COG через GDAL (если есть)
+        GenerationProgress.message("Clipping landcover...");
         boolean landcoverOk = false;
         try {
-            if (hasGdal()) {
-                clipOlmCogWithGdal(west, east, south, north, olmPath);
-                landcoverOk = Files.size(olmPath) > 0;
-            } else {
-                System.out.println("⚠️ GDAL не найден в PATH — пропускаю клип OLM.");
-            }
+            landcoverOk = fetchLandcover(west, east, south, north, olmPath) && Files.size(olmPath) > 0;
         } catch (Exception e) {
             System.out.println("⚠️ Не удалось вырезать OLM COG: " + e.getMessage());
         }
@@ -292,6 +311,170 @@ public class BuildHttpServer {
         sendText(ex, 200, "OK", "text/plain");
     }
 
+    // ------------------------------------------------------------------------------------------------
+    // 4b) /build-offline — как /build, плюс worldPath: пишем .mca напрямую (AnvilRegionWriter),
+    //     только этапы с offline()==true (рельеф, дороги, здания). Открытый сейчас мир трогать нельзя.
+    // ------------------------------------------------------------------------------------------------
+    private static void handleBuildOffline(HttpExchange ex) throws IOException {
+        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            ex.sendResponseHeaders(405, -1); ex.close(); return;
+        }
+        String json = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Path coordsPath, demPath, worldPath, landcoverPath = null;
+        int minY = -64, maxY = 320;
+        try {
+            JsonObject root = JsonParser.parseString(json).getAsJsonObject();
+            coordsPath = Path.of(root.get("coordsPath").getAsString());
+            demPath    = Path.of(root.get("demPath").getAsString());
+            worldPath  = Path.of(root.get("worldPath").getAsString()).toAbsolutePath().normalize();
+            if (root.has("landcoverPath") && !root.get("landcoverPath").isJsonNull()) {
+                landcoverPath = Path.of(root.get("landcoverPath").getAsString());
+            }
+            if (root.has("minY")) minY = root.get("minY").getAsInt();
+            if (root.has("maxY")) maxY = root.get("maxY").getAsInt();
+        } catch (Exception e) {
+            sendText(ex, 400, "Bad JSON", "text/plain"); return;
+        }
+        if (!Files.isRegularFile(worldPath.resolve("level.dat"))) {
+            sendText(ex, 400, "Not a world folder (no level.dat): " + worldPath, "text/plain"); return;
+        }
+        MinecraftServer s = ServerLifecycleHooks.getCurrentServer();
+        if (s != null && s.getWorldPath(LevelResource.ROOT).toAbsolutePath().normalize().equals(worldPath)) {
+            sendText(ex, 409, "World is open on the running server", "text/plain"); return;
+        }
+        if (GenerationProgress.running()) {
+            sendText(ex, 409, "Generation is running", "text/plain"); return;
+        }
+
+        final Path lc = landcoverPath;
+        final int fMinY = minY, fMaxY = maxY;
+        Thread t = new Thread(() -> {
+            try {
+                CartopiaPipeline.runOffline(worldPath.toFile(), coordsPath.toFile(), demPath.toFile(),
+                        lc != null ? lc.toFile() : null, fMinY, fMaxY);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "CartopiaOffline");
+        t.setDaemon(true);
+        t.start();
+
+        sendText(ex, 202, "Started", "text/plain");
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // 4c) /rollback — {coordsPath} или {packPath}: rollback.bin пакета -> секции обратно в мир,
+    //     в то измерение, где журнал снят. Во время генерации — 409.
+    // ------------------------------------------------------------------------------------------------
+    private static void handleRollback(HttpExchange ex) throws IOException {
+        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            ex.sendResponseHeaders(405, -1); ex.close(); return;
+        }
+        String json = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Path packDir;
+        try {
+            JsonObject root = JsonParser.parseString(json).getAsJsonObject();
+            packDir = root.has("packPath")
+                    ? Path.of(root.get("packPath").getAsString())
+                    : Path.of(root.get("coordsPath").getAsString()).toAbsolutePath().getParent();
+        } catch (Exception e) {
+            sendText(ex, 400, "Bad JSON", "text/plain"); return;
+        }
+        Path journal = packDir.resolve(SectionJournal.FILE_NAME);
+        if (!Files.isRegularFile(journal)) {
+            sendText(ex, 404, "No rollback journal: " + journal, "text/plain"); return;
+        }
+        MinecraftServer s = ServerLifecycleHooks.getCurrentServer();
+        if (s == null) {
+            sendText(ex, 503, "Server not ready", "text/plain"); return;
+        }
+        if (GenerationProgress.running()) {
+            sendText(ex, 409, "Generation is running", "text/plain"); return;
+        }
+
+        s.execute(() -> {
+            try {
+                // генерация могла начаться уже после ответа (или ждёт чанки и крутит задачи сервера)
+                if (GenerationProgress.running()) {
+                    broadcast(s, "Rollback skipped: generation is running.");
+                    return;
+                }
+                broadcast(s, "Rollback started...");
+                long n = SectionJournal.restore(s, journal.toFile());
+                broadcast(s, "Rollback finished: " + n + " sections restored.");
+            } catch (Exception e) {
+                e.printStackTrace();
+                broadcast(s, "Rollback error: " + e.getMessage());
+            }
+        });
+
+        sendText(ex, 202, "Started", "text/plain");
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // 5) /estimate — тот же payload, что и /save-coords, но только split + DEM + планирование.
+    //    DEM качаем лишь по ?dem=1 (одна попытка), иначе оценка без перепада высот.
+    // ------------------------------------------------------------------------------------------------
+    private static void handleEstimate(HttpExchange ex) throws IOException {
+        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            ex.sendResponseHeaders(405, -1); ex.close(); return;
+        }
+        String json = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        boolean withDem = String.valueOf(ex.getRequestURI().getQuery()).contains("dem=1");
+
+        JsonObject data;
+        double west, east, south, north;
+        try {
+            data = JsonParser.parseString(json).getAsJsonObject();
+            JsonObject bbox = data.getAsJsonObject("bbox");
+            west = bbox.get("west").getAsDouble();
+            east = bbox.get("east").getAsDouble();
+            south = bbox.get("south").getAsDouble();
+            north = bbox.get("north").getAsDouble();
+        } catch (Exception e) {
+            sendText(ex, 400, "Bad JSON", "text/plain"); return;
+        }
+
+        MinecraftServer s = ServerLifecycleHooks.getCurrentServer();
+        int minY = -64, maxY = 320;
+        if (s != null) {
+            ServerLevel lvl = s.overworld();
+            minY = lvl.getMinBuildHeight();
+            maxY = lvl.getMaxBuildHeight();
+        }
+
+        Path dir = null;
+        try {
+            Path base = packsBaseDir();
+            Files.createDirectories(base);
+            dir = Files.createDirectories(base.resolve("estimate_" + isoStamp() + "_" + Long.toHexString(System.nanoTime())));
+            Path coordsPath = dir.resolve("coords.json");
+            Path demPath = dir.resolve("dem.tif");
+            if (lastPlayerCoords != null) data.add("player", lastPlayerCoords.deepCopy());
+            Files.writeString(coordsPath, GSON.toJson(data), StandardCharsets.UTF_8);
+
+            File dem = null;
+            if (withDem) {
+                try {
+                    fetchDem(west, east, south, north, demPath, 1, 0);
+                    dem = demPath.toFile();
+                } catch (Exception e) {
+                    System.out.println("⚠️ estimate: DEM недоступен: " + e.getMessage());
+                }
+            }
+
+            JsonObject out = CartopiaPipeline.estimate(coordsPath.toFile(), dem, null, minY, maxY);
+            sendText(ex, 200, GSON.toJson(out), "application/json; charset=utf-8");
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendText(ex, 500, "Estimate failed: " + e.getMessage(), "text/plain");
+        } finally {
+            if (dir != null) {
+                try { deleteRecursively(dir); } catch (Exception ignore) {}
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------------------------------
     // ВСПОМОГАТЕЛЬНОЕ
     // ------------------------------------------------------------------------------------------------
@@ -363,9 +546,50 @@ public class BuildHttpServer {
         }
     }
 
+    // ---- растры через общий кэш тайлов: повторная/соседняя область — без сети ----
+    private static RasterTileCache rasterCache;
+
+    private static synchronized RasterTileCache rasterCache() {
+        if (rasterCache == null) {
+            String seed = System.getenv("CARTOPIA_RASTER_SEED_DIR"); // заполнение из локальной папки
+            rasterCache = new RasterTileCache(gameDir().resolve("cartopia").resolve("raster-cache"),
+                    (seed == null || seed.isBlank()) ? null : Paths.get(seed),
+                    RASTER_CACHE_MB * 1024L * 1024L);
+        }
+        return rasterCache;
+    }
+
+    /** DEM под bbox: склейка кэшированных тайлов; очень большой bbox — одним запросом, как раньше. */
+    private static void fetchDem(double west, double east, double south, double north,
+                                 Path outFile, int maxRetries, long delayMs) throws Exception {
+        if (RasterTileCache.tileCount(west, east, south, north) > RasterTileCache.MAX_TILES) {
+            downloadGmrtDemWithRetry(west, east, south, north, outFile, maxRetries, delayMs);
+            return;
+        }
+        rasterCache().mosaic("dem", GMRT_URL + "|topo", west, east, south, north, outFile,
+                (w, e, s, n, out) -> downloadGmrtDemWithRetry(w, e, s, n, out, maxRetries, delayMs));
+    }
+
+    /** OLM под bbox; GDAL нужен только для тайлов, которых ещё нет в кэше. false — landcover пропускаем. */
+    private static boolean fetchLandcover(double west, double east, double south, double north, Path outFile) throws Exception {
+        if (RasterTileCache.tileCount(west, east, south, north) > RasterTileCache.MAX_TILES) {
+            if (!hasGdal()) {
+                System.out.println("⚠️ GDAL не найден в PATH — пропускаю клип OLM.");
+                return false;
+            }
+            clipOlmCogWithGdal(west, east, south, north, outFile);
+            return true;
+        }
+        rasterCache().mosaic("olm", OLM_COG, west, east, south, north, outFile, (w, e, s, n, out) -> {
+            if (!hasGdal()) throw new IOException("GDAL не найден в PATH, а тайла OLM нет в кэше");
+            clipOlmCogWithGdal(w, e, s, n, out);
+        });
+        return true;
+    }
+
     /** Вырезаем OpenLandMap COG локально через gdal_translate (если он установлен). */
     private static void clipOlmCogWithGdal(double west, double east, double south, double north, Path outFile) throws Exception {
-        String src = "https://s3.openlandmap.org/arco/lc_glc.fcs30d_c_30m_s_20220101_20221231_go_epsg.4326_v20231026.tif";
+        String src = OLM_COG;
         List<String> args = List.of(
                 "gdal_translate",
                 "-q",
@@ -392,8 +616,8 @@ public class BuildHttpServer {
         HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
 
         String url = String.format(Locale.US,
-                "https://www.gmrt.org/services/GridServer?minlatitude=%f&maxlatitude=%f&minlongitude=%f&maxlongitude=%f&format=geotiff&layer=topo",
-                south, north, west, east);
+                "%s?minlatitude=%f&maxlatitude=%f&minlongitude=%f&maxlongitude=%f&format=geotiff&layer=topo",
+                GMRT_URL, south, north, west, east);
         System.out.println("⬇️ GMRT DEM URL: " + url);
 
         int attempt = 0;
@@ -477,6 +701,20 @@ public class BuildHttpServer {
         return Instant.now().toString().replace("-", "").replace(":", "").replace("T", "_").replaceAll("\\..+", "");
     }
 
+    // ---- /events: text/event-stream с прогрессом генерации ----
+    // Соединение не закрываем — в него пишет GenerationProgress, пока клиент не отвалится.
+    private static void handleEvents(HttpExchange ex) throws IOException {
+        if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) {
+            ex.sendResponseHeaders(405, -1); ex.close(); return;
+        }
+        Headers h = ex.getResponseHeaders();
+        h.add("Content-Type", "text/event-stream; charset=utf-8");
+        h.add("Cache-Control", "no-cache");
+        h.add("Connection", "keep-alive");
+        ex.sendResponseHeaders(200, 0); // chunked, без длины
+        GenerationProgress.subscribe(ex);
+    }
+
     // ---- Новый эндпоинт /realtime ----
     // GET  -> {"enabled":true|false}
     // POST -> body: {"enabled":true|false}
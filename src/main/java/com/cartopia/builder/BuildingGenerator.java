@@ -1,5 +1,8 @@
 package com.cartopia.builder;
 
+import com.cartopia.write.BlockAccess;
+import com.cartopia.write.BlockPalette;
+import com.cartopia.write.BlockWriter;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -576,6 +579,7 @@ public class BuildingGenerator {
                 {"darkslategray",       "minecraft:gray_stained_glass"},
                 {"darkslategrey",       "minecraft:gray_stained_glass"}
         });
+        BlockPalette.compile(FACADE_MATERIAL.values());
 
         // ----- RGB палитра для ближайшего HEX-матчинга (Concrete/ Terracotta/ Wool) -----
         putConcretePaletteRGB();
@@ -816,7 +820,7 @@ public class BuildingGenerator {
     private static final boolean FORCE_GROUND_ANCHOR = true;
 
     private int worldTopCap() {
-        return IGNORE_WORLD_LIMIT ? SOFT_MAX_Y : (level.getMaxBuildHeight() - 1);
+        return IGNORE_WORLD_LIMIT ? SOFT_MAX_Y : (maxBuildY - 1);
     }
 
     // ====== ОПОРНЫЕ СТОЛБЫ ДЛЯ ПАРЯЩИХ ЧАСТЕЙ ======
@@ -826,18 +830,18 @@ public class BuildingGenerator {
         Integer gy = groundSnapshot.get(BlockPos.asLong(x, 0, z));
         if (gy != null) return gy;
         try {
-            return level.getHeight(Heightmap.Types.WORLD_SURFACE, x, z) - 1;
+            return world.getHeight(Heightmap.Types.WORLD_SURFACE, x, z) - 1;
         } catch (Throwable ignore) {
-            return level.getMinBuildHeight();
+            return minBuildY;
         }
     }
 
     /** Первый снизу-вверх НЕ-воздух под fromYInclusive (включительно). Если не найден — возвращает (minY-1). */
     private int firstSolidBelow(int x, int z, int fromYInclusive) {
-        final int minY = level.getMinBuildHeight();
+        final int minY = minBuildY;
         final int top = Math.min(fromYInclusive, worldTopCap());
         for (int y = top; y >= minY; y--) {
-            if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
         }
         return minY - 1;
     }
@@ -908,9 +912,9 @@ public class BuildingGenerator {
 
             // Иначе тянем опору от основания до клетки над препятствием (обычно gy+1)
             int yStart = baseY - 1;
-            int yEnd   = Math.max(gy + 1, level.getMinBuildHeight());
+            int yEnd   = Math.max(gy + 1, minBuildY);
             for (int y = yStart; y >= yEnd; y--) {
-                level.setBlock(new BlockPos(x, y, z), pillar.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, y, z), pillar.defaultBlockState(), 3);
             }
         }
     }
@@ -918,6 +922,8 @@ public class BuildingGenerator {
     // ====== ДАЛЬШЕ — ВСЯ ЛОГИКА ГЕНЕРАЦИИ ======
 
     private final ServerLevel level;
+    private final BlockAccess world;
+    private final int minBuildY, maxBuildY; // maxBuildY — исключительно
     private final JsonObject coords;
 
     // Снимок высоты поверхности ДО начала строительства (по XZ)
@@ -930,6 +936,19 @@ public class BuildingGenerator {
 
     public BuildingGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
+        this.minBuildY = level.getMinBuildHeight();
+        this.maxBuildY = level.getMaxBuildHeight();
+        this.coords = coords;
+        this.store = store;
+    }
+
+    // level == null — offline-режим (AnvilRegionWriter): блоки и высоты мира — через writer, чата нет
+    public BuildingGenerator(ServerLevel level, JsonObject coords, GenerationStore store, BlockWriter writer) {
+        this.level = level;
+        this.world = (level != null) ? BlockAccess.of(level) : BlockAccess.of(writer);
+        this.minBuildY = writer.minBuildHeight();
+        this.maxBuildY = writer.maxBuildHeight();
         this.coords = coords;
         this.store = store;
     }
@@ -1119,7 +1138,7 @@ public class BuildingGenerator {
     // --- широковещалка
     private static void broadcast(ServerLevel level, String msg) {
         try {
-            if (level.getServer() != null) {
+            if (level != null && level.getServer() != null) {
                 level.getServer().getPlayerList().getPlayers()
                         .forEach(p -> p.sendSystemMessage(Component.literal("[Cartopia] " + msg)));
             }
@@ -2123,7 +2142,7 @@ public class BuildingGenerator {
             if (ySurf == Integer.MIN_VALUE) continue;
 
             int yRoof = ySurf + 1 + CANOPY_OFFSET_BLOCKS;
-            level.setBlock(new BlockPos(x, yRoof, z), roof.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, yRoof, z), roof.defaultBlockState(), 3);
         }
 
         // 2) Опоры: по периметру каждые 5 блоков — от земли до низа крыши
@@ -2141,7 +2160,7 @@ public class BuildingGenerator {
 
             int yRoof = ySurf + 1 + CANOPY_OFFSET_BLOCKS;
             for (int y = ySurf + 1; y < yRoof; y++) {
-                level.setBlock(new BlockPos(x, y, z), pillar.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, y, z), pillar.defaultBlockState(), 3);
             }
             placed++;
         }
@@ -2154,7 +2173,7 @@ public class BuildingGenerator {
                 if (ySurf == Integer.MIN_VALUE) continue;
                 int yRoof = ySurf + 1 + CANOPY_OFFSET_BLOCKS;
                 for (int y = ySurf + 1; y < yRoof; y++) {
-                    level.setBlock(new BlockPos(cx, y, cz), pillar.defaultBlockState(), 3);
+                    world.setBlock(new BlockPos(cx, y, cz), pillar.defaultBlockState(), 3);
                 }
             }
         }
@@ -2198,7 +2217,7 @@ public class BuildingGenerator {
                         int y0 = ySurf + 1;
                         int y1 = Math.min(worldMax, y0 + H - 1);
                         for (int y = y0; y <= y1; y++) {
-                            level.setBlock(new BlockPos(xx, y, zz), Blocks.AIR.defaultBlockState(), 3);
+                            world.setBlock(new BlockPos(xx, y, zz), Blocks.AIR.defaultBlockState(), 3);
                         }
                     }
                 }
@@ -2260,7 +2279,7 @@ public class BuildingGenerator {
             // Потолок: верхняя полоса рукава; каждые 5 блоков — свет
             BlockPos ceil = new BlockPos(x, yTop, z);
             boolean lamp = (Math.floorMod(x + z, 5) == 0);
-            level.setBlock(ceil, (lamp ? glow : brick).defaultBlockState(), 3);
+            world.setBlock(ceil, (lamp ? glow : brick).defaultBlockState(), 3);
 
             // Стены: один блок толщины по границе тоннеля
             for (int[] d : dirs) {
@@ -2270,7 +2289,7 @@ public class BuildingGenerator {
                 if (tunnel.contains(nkey)) continue; // внутри — не стена
 
                 for (int y = y0; y <= yTop - 1; y++) {
-                    level.setBlock(new BlockPos(sx, y, sz), brick.defaultBlockState(), 3);
+                    world.setBlock(new BlockPos(sx, y, sz), brick.defaultBlockState(), 3);
                 }
             }
         }
@@ -2459,8 +2478,8 @@ public class BuildingGenerator {
             int yBase = localWallBaseYAt(x, z, minOffset, fallbackSurfY);
 
             // проём
-            level.setBlock(new BlockPos(x, yBase + 1, z), Blocks.AIR.defaultBlockState(), 3);
-            level.setBlock(new BlockPos(x, yBase + 2, z), Blocks.AIR.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, yBase + 1, z), Blocks.AIR.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, yBase + 2, z), Blocks.AIR.defaultBlockState(), 3);
 
             // дверь + принудительно ЗАКРЫТА
             placeDoorDarkOak(x, yBase, z, facing);
@@ -2474,15 +2493,15 @@ public class BuildingGenerator {
     private void forceDoorClosed(int x, int yBase, int z) {
         BlockPos lower = new BlockPos(x, yBase + 1, z);
         BlockPos upper = new BlockPos(x, yBase + 2, z);
-        BlockState s1 = level.getBlockState(lower);
-        BlockState s2 = level.getBlockState(upper);
+        BlockState s1 = world.getBlockState(lower);
+        BlockState s2 = world.getBlockState(upper);
         if (s1.getBlock() instanceof DoorBlock && s1.hasProperty(DoorBlock.OPEN)) {
             s1 = s1.setValue(DoorBlock.OPEN, false);
-            level.setBlock(lower, s1, 3);
+            world.setBlock(lower, s1, 3);
         }
         if (s2.getBlock() instanceof DoorBlock && s2.hasProperty(DoorBlock.OPEN)) {
             s2 = s2.setValue(DoorBlock.OPEN, false);
-            level.setBlock(upper, s2, 3);
+            world.setBlock(upper, s2, 3);
         }
     }
 
@@ -2500,7 +2519,7 @@ public class BuildingGenerator {
         if (stairs.hasProperty(StairBlock.FACING)) stairs = stairs.setValue(StairBlock.FACING, facing);
         int y = outSurf + 1;
         for (int i = 0; i < Math.min(2, need); i++) {
-            level.setBlock(new BlockPos(ox, y + i, oz), (i==need-1 ? stairs : Blocks.COBBLESTONE.defaultBlockState()), 3);
+            world.setBlock(new BlockPos(ox, y + i, oz), (i==need-1 ? stairs : Blocks.COBBLESTONE.defaultBlockState()), 3);
         }
     }
 
@@ -2535,8 +2554,8 @@ public class BuildingGenerator {
             stTop = stTop.setValue(DoorBlock.HINGE, DoorHingeSide.LEFT);
         }
 
-        level.setBlock(new BlockPos(x, yBase + 1, z), stBottom, 3);
-        level.setBlock(new BlockPos(x, yBase + 2, z), stTop, 3);
+        world.setBlock(new BlockPos(x, yBase + 1, z), stBottom, 3);
+        world.setBlock(new BlockPos(x, yBase + 2, z), stTop, 3);
     }
 
 
@@ -2556,7 +2575,7 @@ public class BuildingGenerator {
             int y0 = Math.min(worldMax, yBaseTop + 1);
             int y1 = Math.min(worldMax, y0 + thickness - 1);
             for (int y = y0; y <= y1; y++) {
-                level.setBlock(new BlockPos(x, y, z), roof.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, y, z), roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2588,7 +2607,7 @@ public class BuildingGenerator {
             int dh = Math.max(1, (int)Math.round((1.0 - t) * roofBlocks)); // ← гарантия ≥1
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
-                level.setBlock(new BlockPos(x, yBaseTop + dy, z), roof.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, yBaseTop + dy, z), roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2624,7 +2643,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= hh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2651,7 +2670,7 @@ public class BuildingGenerator {
             int dh = Math.max(1, (int)Math.round((1.0 - r) * roofBlocks));   // ← гарантия ≥1
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
-                level.setBlock(new BlockPos(x, yBaseTop + dy, z), roof.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, yBaseTop + dy, z), roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2719,7 +2738,7 @@ public class BuildingGenerator {
             int dh = Math.max(1, (int)Math.round((1.0 - tAcross) * roofBlocks * hipFactor)); // ← гарантия ≥1
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
-                level.setBlock(new BlockPos(x, yBaseTop + dy, z), roof.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, yBaseTop + dy, z), roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2755,7 +2774,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2787,7 +2806,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2808,7 +2827,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2827,7 +2846,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2849,7 +2868,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2867,7 +2886,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2893,7 +2912,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2921,7 +2940,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2950,7 +2969,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -2985,7 +3004,7 @@ public class BuildingGenerator {
             for (int dy = 1; dy <= dh; dy++) {
                 int yBaseTop = localWallTopYAt(x, z, minOffset, facadeBlocks, fallbackSurfY);
                 BlockPos pos = new BlockPos(x, yBaseTop + dy, z);
-                level.setBlock(pos, roof.defaultBlockState(), 3);
+                world.setBlock(pos, roof.defaultBlockState(), 3);
             }
         }
     }
@@ -3034,7 +3053,7 @@ public class BuildingGenerator {
 
                 // Ставим блок чаши
                 net.minecraft.core.BlockPos pos = new net.minecraft.core.BlockPos(x, y, z);
-                level.setBlock(pos, material.defaultBlockState(), 3);
+                world.setBlock(pos, material.defaultBlockState(), 3);
 
                 // Кандидат в «дно» — минимальная высота (обычно h==0)
                 // Если хотите чуть шире «дно» (не 1 блок), замените сравнение на (h <= hMin + 1)
@@ -3059,7 +3078,7 @@ public class BuildingGenerator {
 
             int yObstacle = Integer.MIN_VALUE;
             for (int yy = yTopToFill; yy >= ySurf + 1; yy--) {
-                if (!level.getBlockState(new net.minecraft.core.BlockPos(x, yy, z)).isAir()) {
+                if (!world.getBlockState(new net.minecraft.core.BlockPos(x, yy, z)).isAir()) {
                     yObstacle = yy;
                     break;
                 }
@@ -3068,8 +3087,8 @@ public class BuildingGenerator {
 
             for (int yy = yObstacle + 1; yy <= yTopToFill; yy++) {
                 net.minecraft.core.BlockPos p2 = new net.minecraft.core.BlockPos(x, yy, z);
-                if (level.getBlockState(p2).isAir()) {
-                    level.setBlock(p2, material.defaultBlockState(), 3);
+                if (world.getBlockState(p2).isAir()) {
+                    world.setBlock(p2, material.defaultBlockState(), 3);
                 }
             }
         }
@@ -3104,7 +3123,7 @@ public class BuildingGenerator {
             int yTop = Math.min(worldMax, yBaseTop + dh);
 
             for (int y = yBaseTop + 1; y <= yTop; y++) {
-                level.setBlock(new BlockPos(x, y, z), Blocks.SMOOTH_QUARTZ.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, y, z), Blocks.SMOOTH_QUARTZ.defaultBlockState(), 3);
             }
 
             if (edge.contains(k)) {
@@ -3125,14 +3144,14 @@ public class BuildingGenerator {
 
             int yObstacle = Integer.MIN_VALUE;
             for (int yy = yTopToFill; yy >= ySurf + 1; yy--) {
-                if (!level.getBlockState(new BlockPos(x, yy, z)).isAir()) { yObstacle = yy; break; }
+                if (!world.getBlockState(new BlockPos(x, yy, z)).isAir()) { yObstacle = yy; break; }
             }
             if (yObstacle == Integer.MIN_VALUE) yObstacle = ySurf;
 
             for (int yy = yObstacle + 1; yy <= yTopToFill; yy++) {
                 BlockPos p = new BlockPos(x, yy, z);
-                if (level.getBlockState(p).isAir()) {
-                    level.setBlock(p, Blocks.SMOOTH_QUARTZ.defaultBlockState(), 3);
+                if (world.getBlockState(p).isAir()) {
+                    world.setBlock(p, Blocks.SMOOTH_QUARTZ.defaultBlockState(), 3);
                 }
             }
         }
@@ -4440,7 +4459,7 @@ public class BuildingGenerator {
                     for (int x = minX; x <= maxX; x++) {
                         int gy = store.grid.inBounds(x, z) ? store.grid.groundY(x, z) : Integer.MIN_VALUE;
                         if (gy == Integer.MIN_VALUE) {
-                            gy = level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+                            gy = world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
                         }
                         groundSnapshot.put(BlockPos.asLong(x, 0, z), gy);
                     }
@@ -4470,7 +4489,7 @@ public class BuildingGenerator {
                             y = data.get(iz * w + ix).getAsInt();
                         }
                         if (y == Integer.MIN_VALUE) {
-                            y = level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+                            y = world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
                         }
                         groundSnapshot.put(BlockPos.asLong(x, 0, z), y);
                     }
@@ -4485,7 +4504,7 @@ public class BuildingGenerator {
         // 2) чистый heightmap
         for (int z = minZ; z <= maxZ; z++) {
             for (int x = minX; x <= maxX; x++) {
-                int y = level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+                int y = world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
                 groundSnapshot.put(BlockPos.asLong(x, 0, z), y);
             }
         }
@@ -4527,7 +4546,7 @@ public class BuildingGenerator {
         }
 
         // 4) нестрого: корректный heightmap
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
 
@@ -4573,8 +4592,7 @@ public class BuildingGenerator {
         }
     }
     private static Block resolveBlock(String id) {
-        Block b = ForgeRegistries.BLOCKS.getValue(ResourceLocation.tryParse(id));
-        return (b != null ? b : Blocks.STONE);
+        return BlockPalette.block(id, Blocks.STONE);
     }
 
     private static int[] latlngToBlock(double lat, double lng,
@@ -4843,7 +4861,7 @@ public class BuildingGenerator {
             int y1 = Math.min(worldMax, y0 + Math.max(1, facadeBlocks) - 1);
             for (int y = y0; y <= y1; y++) {
                 BlockPos pos = new BlockPos(x, y, z);
-                level.setBlock(pos, facade.defaultBlockState(), 3);
+                world.setBlock(pos, facade.defaultBlockState(), 3);
             }
         }
 
@@ -4994,7 +5012,7 @@ public class BuildingGenerator {
             int y1 = Math.min(worldMax, yTopLocal + Math.max(1, roofBlocks) + 1);
 
             for (int y = y0; y <= y1; y++) {
-                level.setBlock(new BlockPos(x, y, z), Blocks.AIR.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, y, z), Blocks.AIR.defaultBlockState(), 3);
             }
         }
     }
@@ -5147,7 +5165,7 @@ public class BuildingGenerator {
         // ищем первое НЕ-воздух препятствие сверху-вниз
         int yObstacle = Integer.MIN_VALUE;
         for (int yy = yTopToFill; yy >= ySurf + 1; yy--) {
-            if (!level.getBlockState(new BlockPos(x, yy, z)).isAir()) {
+            if (!world.getBlockState(new BlockPos(x, yy, z)).isAir()) {
                 yObstacle = yy;
                 break;
             }
@@ -5158,8 +5176,8 @@ public class BuildingGenerator {
         // заполняем воздух между препятствием и низом части
         for (int yy = yObstacle + 1; yy <= yTopToFill; yy++) {
             BlockPos p = new BlockPos(x, yy, z);
-            if (level.getBlockState(p).isAir()) {
-                level.setBlock(p, material.defaultBlockState(), 3);
+            if (world.getBlockState(p).isAir()) {
+                world.setBlock(p, material.defaultBlockState(), 3);
             }
         }
     }
@@ -5180,7 +5198,7 @@ public class BuildingGenerator {
             int y0 = ySurf + 1;
             int y1 = Math.min(worldMax, y0 + FOUNDATION_THICKNESS - 1);
             for (int y = y0; y <= y1; y++) {
-                level.setBlock(new BlockPos(x, y, z), foundation.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, y, z), foundation.defaultBlockState(), 3);
             }
         }
     }
@@ -5228,10 +5246,10 @@ public class BuildingGenerator {
                 for (int y = y0; y <= y1; y++) {
                     BlockPos pos = new BlockPos(x, y, z);
                     // === NEW: на стыке (k==0 и minOffset>0) не трогаем уже существующий потолок нижней части
-                    if (k == 0 && minOffset > 0 && !level.getBlockState(pos).isAir()) {
+                    if (k == 0 && minOffset > 0 && !world.getBlockState(pos).isAir()) {
                         continue;
                     }
-                    level.setBlock(pos, floorBlock.defaultBlockState(), 3);
+                    world.setBlock(pos, floorBlock.defaultBlockState(), 3);
                 }
             }
 
@@ -5325,8 +5343,8 @@ public class BuildingGenerator {
 
                 BlockPos pos = new BlockPos(x, y, z);
                 // === NEW: на стыке первого пола верхней части не заменяем чужой блок светом
-                if (!(minOffset > 0 && floorIndex == 0 && !level.getBlockState(pos).isAir())) {
-                    level.setBlock(pos, light.defaultBlockState(), 3);
+                if (!(minOffset > 0 && floorIndex == 0 && !world.getBlockState(pos).isAir())) {
+                    world.setBlock(pos, light.defaultBlockState(), 3);
                 }
                 placed.add(new int[]{x, z});
             }
@@ -5384,7 +5402,7 @@ public class BuildingGenerator {
                 int y1 = Math.min(worldMax, Math.min(yTop, y0 + Math.max(1, PRIVACY_WALL_HEIGHT_BLOCKS) - 1));
 
                 for (int y = y0; y <= y1; y++) {
-                    level.setBlock(new BlockPos(x, y, z), wall.defaultBlockState(), 3);
+                    world.setBlock(new BlockPos(x, y, z), wall.defaultBlockState(), 3);
                 }
             }
         }
@@ -5462,15 +5480,15 @@ public class BuildingGenerator {
                         BlockPos lanternPos = bracketPos.below();
 
                         // стена должна быть не-стекло
-                        if (isGlassLikeBlock(level.getBlockState(wallPos).getBlock())) continue;
+                        if (isGlassLikeBlock(world.getBlockState(wallPos).getBlock())) continue;
 
                         // снаружи должно быть куда поставить кронштейн и фонарь
-                        if (!level.getBlockState(bracketPos).isAir()) continue;
-                        if (!level.getBlockState(lanternPos).isAir()) continue;
+                        if (!world.getBlockState(bracketPos).isAir()) continue;
+                        if (!world.getBlockState(lanternPos).isAir()) continue;
 
                         // ставим
-                        level.setBlock(bracketPos, bracketState, 3);
-                        level.setBlock(lanternPos, lanternState, 3);
+                        world.setBlock(bracketPos, bracketState, 3);
+                        world.setBlock(lanternPos, lanternState, 3);
 
                         usedEdgeSpots.add(ek);
                         placed = true;
@@ -5714,7 +5732,7 @@ public class BuildingGenerator {
             for (int yStart = yBase + vStart; yStart + winH - 1 <= yTop; yStart += vStep) {
                 for (int dy = 0; dy < winH; dy++) {
                     int y = yStart + dy;
-                    level.setBlock(new BlockPos(x, y, z), glass.defaultBlockState(), 3);
+                    world.setBlock(new BlockPos(x, y, z), glass.defaultBlockState(), 3);
                 }
             }
         }
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -46,6 +47,7 @@ public class CameraGenerator {
 
     // -------- Контекст --------
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
@@ -54,6 +56,7 @@ public class CameraGenerator {
 
     public CameraGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
     }
@@ -501,7 +504,7 @@ public class CameraGenerator {
 
     private void placeSideButtonIfAir(int x, int y, int z, Direction faceTowardBlock) {
         BlockPos pos = new BlockPos(x,y,z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = SIDE_BUTTON.defaultBlockState();
         try {
             if (st.hasProperty(BlockStateProperties.ATTACH_FACE))
@@ -509,14 +512,14 @@ public class CameraGenerator {
             if (st.hasProperty(BlockStateProperties.HORIZONTAL_FACING))
                 st = st.setValue(BlockStateProperties.HORIZONTAL_FACING, faceTowardBlock.getOpposite());
         } catch (Throwable ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     // -------- Дорожное покрытие / рельеф / клип --------
     private boolean isRoadSurfaceAt(int x, int z) {
         int y = groundY(x, z);
         if (y == Integer.MIN_VALUE) return false;
-        Block b = level.getBlockState(new BlockPos(x, y, z)).getBlock();
+        Block b = world.getBlockState(new BlockPos(x, y, z)).getBlock();
         return ROAD_SURFACE_BLOCKS.contains(b);
     }
 
@@ -543,7 +546,7 @@ public class CameraGenerator {
                 }
             }
         } catch (Throwable ignore) {}
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     private boolean inBounds(int x, int z) {
@@ -551,7 +554,7 @@ public class CameraGenerator {
     }
 
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
     }
 
     // -------- Геометрия/проекции --------
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -32,11 +33,13 @@ public class CarWashGenerator {
     private static final int EDGE_MARGIN = 2;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public CarWashGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -478,7 +481,7 @@ public class CarWashGenerator {
     // ===== навесные/напольные блоки =====
     private void placeWallSign(int x, int y, int z, Direction facingOutward) {
         BlockPos pos = new BlockPos(x,y,z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = Blocks.OAK_WALL_SIGN.defaultBlockState();
         try {
             st = st.setValue(WallSignBlock.FACING, facingOutward);
@@ -486,50 +489,50 @@ public class CarWashGenerator {
                 st = st.setValue(BlockStateProperties.WATERLOGGED, Boolean.FALSE);
             }
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private void placeWallButton(int x, int y, int z, Direction facingOutward) {
         BlockPos pos = new BlockPos(x,y,z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = Blocks.POLISHED_BLACKSTONE_BUTTON.defaultBlockState();
         try {
             st = st.setValue(ButtonBlock.FACE, AttachFace.WALL)
                    .setValue(ButtonBlock.POWERED, Boolean.FALSE)
                    .setValue(BlockStateProperties.HORIZONTAL_FACING, facingOutward);
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     @SuppressWarnings("unused")
     private void placeWallLever(int x, int y, int z, Direction facingOutward, boolean powered) {
         BlockPos pos = new BlockPos(x,y,z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = Blocks.LEVER.defaultBlockState();
         try {
             st = st.setValue(LeverBlock.FACE, AttachFace.WALL)
                    .setValue(LeverBlock.FACING, facingOutward)
                    .setValue(LeverBlock.POWERED, powered);
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private void placeFloorLever(int x, int y, int z, Direction facing, boolean powered) {
         // Напольный рычаг на верхней поверхности блока (AttachFace.FLOOR)
         BlockPos pos = new BlockPos(x,y,z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = Blocks.LEVER.defaultBlockState();
         try {
             st = st.setValue(LeverBlock.FACE, AttachFace.FLOOR)
                    .setValue(LeverBlock.FACING, facing)
                    .setValue(LeverBlock.POWERED, powered);
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private void placeLanternIfAir(int x, int y, int z) {
         BlockPos pos = new BlockPos(x,y,z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = Blocks.LANTERN.defaultBlockState();
         try {
             if (st.hasProperty(BlockStateProperties.HANGING)) {
@@ -539,11 +542,11 @@ public class CarWashGenerator {
                 st = st.setValue(BlockStateProperties.WATERLOGGED, Boolean.FALSE);
             }
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private void setBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
     }
 
     // ===== высота рельефа =====
@@ -570,7 +573,7 @@ public class CarWashGenerator {
                 }
             }
         } catch (Throwable ignore) {}
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== утилиты =====
@@ -0,0 +1,46 @@
+package com.cartopia.builder;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Один этап генерации (генератор) в реестре {@link GeneratorRegistry}.
+ *
+ * Встроенные этапы регистрируются в самом реестре; сторонние можно подключить через
+ * ServiceLoader: META-INF/services/com.cartopia.builder.CartopiaStage.
+ * Этап с id встроенного заменяет его на том же месте в порядке выполнения.
+ */
+public interface CartopiaStage {
+
+    /** Грубая стоимость этапа — для профилей/фильтра maxCost и оценок. */
+    enum Cost { LIGHT, MEDIUM, HEAVY }
+
+    String id();
+
+    Cost cost();
+
+    /** id этапов, которые должны отработать раньше (подтягиваются автоматически). */
+    default List<String> dependsOn() { return List.of(); }
+
+    /** Профили, в которые этап входит; "full" подразумевается всегда. */
+    default Set<String> profiles() { return Set.of(); }
+
+    /**
+     * Этап умеет работать с ctx.level == null, читая и записывая блоки только через ctx.writer, —
+     * его можно запускать без сервера, прямо в region-файлы (CartopiaPipeline.runOffline).
+     */
+    default boolean offline() { return false; }
+
+    /**
+     * Этап читает и пишет блоки только через BlockAccess/ctx.writer, поэтому его записи можно
+     * копить в общем оверлее до конца пайплайна. Для остальных (сторонних) этапов оверлей
+     * сбрасывается в мир перед запуском, и они работают с миром напрямую.
+     */
+    default boolean buffered() { return false; }
+
+    default String startMessage() { return "Starting " + id() + "..."; }
+
+    default String doneMessage() { return id() + " ready."; }
+
+    void run(StageContext ctx) throws Exception;
+}
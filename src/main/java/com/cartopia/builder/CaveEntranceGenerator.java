@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -23,11 +24,13 @@ public class CaveEntranceGenerator {
 
     // ===== Инфраструктура =====
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public CaveEntranceGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -186,7 +189,7 @@ public class CaveEntranceGenerator {
 
     // ===== Низкоуровневые сеттеры/рельеф =====
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
     }
 
     private int groundY(int x, int z) {
@@ -215,7 +218,7 @@ public class CaveEntranceGenerator {
         } catch (Throwable ignore) {}
 
         // fallback: по миру
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     private static boolean inWorld(int x, int z, int minX, int maxX, int minZ, int maxZ) {
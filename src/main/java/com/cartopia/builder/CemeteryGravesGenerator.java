@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -57,11 +58,13 @@ public class CemeteryGravesGenerator {
 
     // ---- Контекст ----
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public CemeteryGravesGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -471,7 +474,7 @@ public class CemeteryGravesGenerator {
     private boolean allowedFoundationAt(int x, int z) {
         int y = terrainY(x, z);
         if (y == Integer.MIN_VALUE) return false;
-        Block b = level.getBlockState(new BlockPos(x, y, z)).getBlock();
+        Block b = world.getBlockState(new BlockPos(x, y, z)).getBlock();
         if (b == Blocks.WATER) return false;
         if (ROAD_SURFACE_BLOCKS.contains(b)) return false;
         return ALLOWED_FOUNDATIONS.contains(b);
@@ -480,7 +483,7 @@ public class CemeteryGravesGenerator {
     private boolean isRoadSurfaceAt(int x, int z) {
         int y = terrainY(x, z);
         if (y == Integer.MIN_VALUE) return false;
-        Block b = level.getBlockState(new BlockPos(x, y, z)).getBlock();
+        Block b = world.getBlockState(new BlockPos(x, y, z)).getBlock();
         return ROAD_SURFACE_BLOCKS.contains(b);
     }
 
@@ -496,7 +499,7 @@ public class CemeteryGravesGenerator {
     private boolean isWaterAt(int x, int z) {
         int y = terrainY(x, z);
         if (y == Integer.MIN_VALUE) return false;
-        Block b = level.getBlockState(new BlockPos(x, y, z)).getBlock();
+        Block b = world.getBlockState(new BlockPos(x, y, z)).getBlock();
         return b == Blocks.WATER;
     }
 
@@ -508,21 +511,21 @@ public class CemeteryGravesGenerator {
                 st = st.setValue(SlabBlock.TYPE, SlabType.BOTTOM);
             }
         } catch (Throwable ignore) {}
-        level.setBlock(new BlockPos(x,y,z), st, 3);
+        world.setBlock(new BlockPos(x,y,z), st, 3);
     }
 
     private void clearColumnAir(int x, int yStart, int z, int height) {
         for (int h=0; h<height; h++) {
-            level.setBlock(new BlockPos(x, yStart + h, z), Blocks.AIR.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, yStart + h, z), Blocks.AIR.defaultBlockState(), 3);
         }
     }
 
     private void setBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
     }
 
     private void setBlockState(int x, int y, int z, BlockState state) {
-        level.setBlock(new BlockPos(x,y,z), state, 3);
+        world.setBlock(new BlockPos(x,y,z), state, 3);
     }
 
     // ---- Рельеф ----
@@ -551,7 +554,7 @@ public class CemeteryGravesGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ---- Гео-утилиты ----
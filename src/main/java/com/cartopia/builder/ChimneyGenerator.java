@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -25,11 +26,13 @@ public class ChimneyGenerator {
     private static final Block MATERIAL       = Blocks.BRICKS;   // материал — кирпич
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public ChimneyGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -340,7 +343,7 @@ public class ChimneyGenerator {
 
     // ===== низкоуровневые set'ы =====
     private void setBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
     }
 
     // ===== высота рельефа =====
@@ -369,7 +372,7 @@ public class ChimneyGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== утилиты =====
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -39,11 +40,13 @@ public class ClassicWindmillGenerator {
     private static final int FENCE_SKIP_NEAR_HUB_V = 0;  // пропуск у оси для вертикальных заборов
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public ClassicWindmillGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -317,7 +320,7 @@ public class ClassicWindmillGenerator {
     }
     // ---- Блоки/рельеф ----
     private void set(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 3);
     }
 
     private int groundY(int x, int z) {
@@ -345,7 +348,7 @@ public class ClassicWindmillGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ---- Парсинг/утилиты ----
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -48,11 +49,13 @@ public class ConstructionSiteDecorator {
     private static final int   MAX_TRIES_RECT   = 200;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject  coords;
     private final GenerationStore store;
 
     public ConstructionSiteDecorator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -467,7 +470,7 @@ public class ConstructionSiteDecorator {
 
     private boolean isAirAt(int x, int y, int z) {
         try {
-            BlockState st = level.getBlockState(new BlockPos(x, y, z));
+            BlockState st = world.getBlockState(new BlockPos(x, y, z));
             return st.isAir();
         } catch (Throwable t) {
             return true; // безопасно считать пустым, чтобы не фейлить генерацию
@@ -475,7 +478,7 @@ public class ConstructionSiteDecorator {
     }
 
     private void setBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), block.defaultBlockState(), 3);
     }
 
     // ---- Рельеф ----
@@ -504,7 +507,7 @@ public class ConstructionSiteDecorator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ---- Утилиты ----
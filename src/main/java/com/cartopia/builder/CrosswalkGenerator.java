@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.*;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
@@ -14,6 +15,7 @@ import java.util.*;
 
 public class CrosswalkGenerator {
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
@@ -25,6 +27,7 @@ public class CrosswalkGenerator {
 
     public CrosswalkGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
     }
@@ -210,7 +213,7 @@ public class CrosswalkGenerator {
                 BlockPos pos = BlockPos.of(key);
                 // доп.клиппинг по XZ (Y уже найден)
                 if (pos.getX() < minX || pos.getX() > maxX || pos.getZ() < minZ || pos.getZ() > maxZ) continue;
-                level.setBlock(pos, Blocks.WHITE_CONCRETE.defaultBlockState(), 3);
+                world.setBlock(pos, Blocks.WHITE_CONCRETE.defaultBlockState(), 3);
             }
 
             if (!curStripe.isEmpty()) lastStripe = curStripe;
@@ -390,7 +393,7 @@ public class CrosswalkGenerator {
         final int max = level.getMaxBuildHeight() - 1;
         final int min = level.getMinBuildHeight();
         for (int y = max; y >= min; y--) {
-            if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
         }
         return null;
     }
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -27,11 +28,13 @@ public class ElectricChargerGenerator {
     private static final int SEARCH_RADIUS_BLOCKS = 120;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public ElectricChargerGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -322,7 +325,7 @@ public class ElectricChargerGenerator {
     // ===== навесные блоки =====
     private void placeWallSignIfAir(int x, int y, int z, Direction facingOutward) {
         BlockPos pos = new BlockPos(x,y,z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = Blocks.OAK_WALL_SIGN.defaultBlockState();
         try {
             st = st.setValue(WallSignBlock.FACING, facingOutward);
@@ -330,36 +333,36 @@ public class ElectricChargerGenerator {
                 st = st.setValue(BlockStateProperties.WATERLOGGED, Boolean.FALSE);
             }
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private void placeWallButton(int x, int y, int z, Direction facingOutward) {
         BlockPos pos = new BlockPos(x,y,z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = Blocks.POLISHED_BLACKSTONE_BUTTON.defaultBlockState();
         try {
             st = st.setValue(ButtonBlock.FACE, AttachFace.WALL)
                    .setValue(ButtonBlock.POWERED, Boolean.FALSE)
                    .setValue(BlockStateProperties.HORIZONTAL_FACING, facingOutward);
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private void placeWallLever(int x, int y, int z, Direction facingOutward, boolean powered) {
         BlockPos pos = new BlockPos(x,y,z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = Blocks.LEVER.defaultBlockState();
         try {
             st = st.setValue(LeverBlock.FACE, AttachFace.WALL)
                    .setValue(LeverBlock.FACING, facingOutward)
                    .setValue(LeverBlock.POWERED, powered);
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private void placeLanternIfAir(int x, int y, int z) {
         BlockPos pos = new BlockPos(x, y, z);
-        if (!level.getBlockState(pos).isAir()) return;
+        if (!world.getBlockState(pos).isAir()) return;
         BlockState st = Blocks.LANTERN.defaultBlockState();
         try {
             if (st.hasProperty(BlockStateProperties.HANGING)) {
@@ -369,12 +372,12 @@ public class ElectricChargerGenerator {
                 st = st.setValue(BlockStateProperties.WATERLOGGED, Boolean.FALSE);
             }
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     // ===== низкоуровневые set'ы =====
     private void setBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
     }
 
     // ===== высота рельефа =====
@@ -403,7 +406,7 @@ public class ElectricChargerGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== утилиты =====
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -76,11 +77,13 @@ public class FenceAndBarrierGenerator {
 
     // ===== Инфраструктура =====
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public FenceAndBarrierGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -492,7 +495,7 @@ public class FenceAndBarrierGenerator {
             if (st.hasProperty(BlockStateProperties.DISTANCE)) {
                 st = st.setValue(BlockStateProperties.DISTANCE, 1);
             }
-            level.setBlock(new BlockPos(x, yBase + h, z), st, 3);
+            world.setBlock(new BlockPos(x, yBase + h, z), st, 3);
         }
     }
 
@@ -503,7 +506,7 @@ public class FenceAndBarrierGenerator {
         if (st.hasProperty(BlockStateProperties.HORIZONTAL_FACING)) {
             st = st.setValue(BlockStateProperties.HORIZONTAL_FACING, facing);
         }
-        level.setBlock(new BlockPos(x, yBase + 1, z), st, 3);
+        world.setBlock(new BlockPos(x, yBase + 1, z), st, 3);
     }
 
     // ======== ЛИНЕЙНЫЕ БАРЬЕРЫ (barrier=*) ========
@@ -805,7 +808,7 @@ private boolean isBridgeOrTunnel(JsonObject t){
     @SuppressWarnings("unused")
     // ======== Низкоуровневые сеттеры и рельеф ========
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
     }
 
     private int groundY(int x, int z) {
@@ -831,7 +834,7 @@ private boolean isBridgeOrTunnel(JsonObject t){
                 }
             }
         } catch (Throwable ignore) {}
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ======== Утилиты гео/OSM ========
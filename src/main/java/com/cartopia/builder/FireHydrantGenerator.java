@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -22,11 +23,13 @@ public class FireHydrantGenerator {
     private static final Block HYDRANT_BLOCK = Blocks.RED_NETHER_BRICK_WALL;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject  coords;
     private final GenerationStore store;
 
     public FireHydrantGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -204,12 +207,12 @@ public class FireHydrantGenerator {
 
     private void clearAir(int x, int yStart, int z, int height) {
         for (int dy = 0; dy < height; dy++) {
-            level.setBlock(new BlockPos(x, yStart + dy, z), Blocks.AIR.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, yStart + dy, z), Blocks.AIR.defaultBlockState(), 3);
         }
     }
 
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
     }
 
     // ---- Рельеф ----
@@ -238,7 +241,7 @@ public class FireHydrantGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ---- Утилиты ----
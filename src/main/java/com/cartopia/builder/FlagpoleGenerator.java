@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -25,11 +26,13 @@ public class FlagpoleGenerator {
     private static final int   DEFAULT_HEIGHT = 15;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public FlagpoleGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -261,7 +264,7 @@ public class FlagpoleGenerator {
                 int yBase = terrainY(bx, bz);
                 if (yBase == Integer.MIN_VALUE) continue;
                 for (int y = yBase + 1; y <= yBase + height; y++) {
-                    level.setBlock(new BlockPos(bx, y, bz), material.defaultBlockState(), 3);
+                    world.setBlock(new BlockPos(bx, y, bz), material.defaultBlockState(), 3);
                 }
             }
         }
@@ -276,7 +279,7 @@ public class FlagpoleGenerator {
                 int yBase = terrainY(bx, bz);
                 if (yBase == Integer.MIN_VALUE) continue;
                 for (int y = yBase + 1; y <= yBase + height; y++) {
-                    level.setBlock(new BlockPos(bx, y, bz), material.defaultBlockState(), 3);
+                    world.setBlock(new BlockPos(bx, y, bz), material.defaultBlockState(), 3);
                 }
             }
         }
@@ -293,7 +296,7 @@ public class FlagpoleGenerator {
                     int yBase = terrainY(bx, bz);
                     if (yBase == Integer.MIN_VALUE) continue;
                     for (int y = yBase + 1; y <= yBase + height; y++) {
-                        level.setBlock(new BlockPos(bx, y, bz), material.defaultBlockState(), 3);
+                        world.setBlock(new BlockPos(bx, y, bz), material.defaultBlockState(), 3);
                     }
                 }
             }
@@ -326,7 +329,7 @@ public class FlagpoleGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== утилиты =====
@@ -0,0 +1,445 @@
+package com.cartopia.builder;
+
+import com.cartopia.store.FeatureStream;
+import com.cartopia.store.GenerationStore;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.FileInputStream;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Dry-run планирование: сколько фич съест каждый этап, сколько блоков/чанков он тронет,
+ * пик кучи и длительность. Мир не трогаем. Коэффициенты калибруются по metrics.json прошлых запусков.
+ */
+public final class GenerationEstimator {
+
+    private GenerationEstimator() {}
+
+    // ---- модель по умолчанию (до первой калибровки) ----
+    private static final double SCAN_MS_PER_FEATURE = 0.004; // каждый этап один раз читает NDJSON
+    private static final long   BYTES_PER_CELL      = 280;   // плотные массивы SurfaceGenerator + финальный terrainGrid JSON
+    private static final long   JSON_EXPANSION      = 8;     // coords.json в памяти (JsonObject) против байтов на диске
+    private static final long   RASTER_EXPANSION    = 8;     // float/int-растр + копия ридера
+    private static final double SAVE_MS_PER_CHUNK   = 1.5;
+
+    private static final double WARN_DURATION_MS = 45 * 60_000.0;
+    private static final double WARN_HEAP_SHARE  = 0.85;
+    private static final long   WARN_CHUNKS      = 40_000;
+
+    /** Описание этапа для планировщика: какие теги он потребляет и сколько в среднем стоит единица. */
+    static final class StageSpec {
+        final String id, label;
+        final boolean perCell;       // единица — клетка сетки (рельеф), иначе — OSM-фича
+        final double msPerUnit;      // по умолчанию, до калибровки
+        final double blocksPerUnit;  // эвристика; для рельефа считается от высоты мира
+        private final Map<String, Set<String>> selectors = new LinkedHashMap<>(); // key -> значения (пусто = любое)
+
+        StageSpec(String id, String label, boolean perCell, double msPerUnit, double blocksPerUnit, String... selectors) {
+            this.id = id; this.label = label; this.perCell = perCell;
+            this.msPerUnit = msPerUnit; this.blocksPerUnit = blocksPerUnit;
+            for (String s : selectors) {
+                int eq = s.indexOf('=');
+                String k = eq < 0 ? s : s.substring(0, eq);
+                Set<String> vals = this.selectors.computeIfAbsent(k, kk -> new HashSet<>());
+                if (eq >= 0) vals.addAll(Arrays.asList(s.substring(eq + 1).split("\\|")));
+            }
+        }
+
+        boolean matches(JsonObject tags) {
+            for (Map.Entry<String, Set<String>> e : selectors.entrySet()) {
+                JsonElement v = tags.get(e.getKey());
+                if (v == null || v.isJsonNull()) continue;
+                if (e.getValue().isEmpty()) return true;
+                try { if (e.getValue().contains(v.getAsString())) return true; } catch (Exception ignore) {}
+            }
+            return false;
+        }
+    }
+
+    /** Модель этапа по id — задаётся прямо в GeneratorRegistry (BuiltinStage.model / cellModel). */
+    static StageSpec spec(String id) {
+        for (StageSpec s : GeneratorRegistry.models()) if (s.id.equals(id)) return s;
+        return null;
+    }
+
+    // =====================================================================================
+    // Планирование (DEM + split уже сделаны вызывающим)
+    // =====================================================================================
+
+    public static final class Plan {
+        int minX, maxX, minZ, maxZ;
+        long cells, chunks;
+        long coordsBytes;
+        long totalFeatures;
+        boolean featuresCounted;     // false — NDJSON не читали, знаем только сетку
+        final Map<String, Long> featureCounts = new LinkedHashMap<>();
+        boolean demSampled;
+        int demWidth, demHeight;
+        double demMin = Double.NaN, demMax = Double.NaN;
+        long landcoverPixels;
+    }
+
+    // счётчики фич последних /estimate по пакетам: настоящий запуск берёт их, а не читает NDJSON ещё раз
+    private static final int COUNTED_KEEP = 8;
+    private static final Map<String, Plan> COUNTED = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) { return size() > COUNTED_KEEP; }
+    };
+
+    /** Dry-run: полный план — DEM целиком ради перепада высот и проход по фичам. */
+    public static Plan plan(JsonObject coords, GenerationStore store, File coordsFile,
+                            File demOrNull, File landcoverOrNull) {
+        Plan p = plan(coords, coordsFile, demOrNull, landcoverOrNull, true);
+        countFeatures(p, coords, store);
+        synchronized (COUNTED) { COUNTED.put(countedKey(coords), p); }
+        return p;
+    }
+
+    /**
+     * План для metrics.json настоящего запуска: только сетка и размеры растров из заголовков.
+     * Счётчики фич — из /estimate той же области, если он был; иначе калибруются лишь
+     * поклеточные этапы и куча.
+     */
+    public static Plan planForRun(JsonObject coords, File coordsFile, File demOrNull, File landcoverOrNull) {
+        Plan p = plan(coords, coordsFile, demOrNull, landcoverOrNull, false);
+        Plan counted;
+        synchronized (COUNTED) { counted = COUNTED.get(countedKey(coords)); }
+        if (counted != null) {
+            p.totalFeatures = counted.totalFeatures;
+            p.featureCounts.putAll(counted.featureCounts);
+            p.featuresCounted = true;
+        }
+        return p;
+    }
+
+    // /estimate пишет coords.json во временную папку, поэтому ключ — сама область: bbox + число элементов
+    private static String countedKey(JsonObject coords) {
+        StringBuilder k = new StringBuilder();
+        JsonObject bbox = coords.getAsJsonObject("bbox");
+        for (String side : new String[]{"south", "west", "north", "east"}) k.append(bbox.get(side).getAsDouble()).append(',');
+        JsonElement f = coords.get("features");
+        if (f != null && f.isJsonObject() && f.getAsJsonObject().has("elements")
+                && f.getAsJsonObject().get("elements").isJsonArray()) {
+            k.append(f.getAsJsonObject().getAsJsonArray("elements").size());
+        }
+        return k.toString();
+    }
+
+    private static Plan plan(JsonObject coords, File coordsFile, File demOrNull, File landcoverOrNull,
+                             boolean sampleRelief) {
+        Plan p = new Plan();
+        p.coordsBytes = coordsFile != null ? coordsFile.length() : 0;
+
+        // ---- сетка: та же математика, что и в SurfaceGenerator.generate()
+        JsonObject center = coords.getAsJsonObject("center");
+        JsonObject bbox = coords.getAsJsonObject("bbox");
+        double centerLat = center.get("lat").getAsDouble(), centerLng = center.get("lng").getAsDouble();
+        int sizeMeters = coords.get("sizeMeters").getAsInt();
+        double south = bbox.get("south").getAsDouble(), north = bbox.get("north").getAsDouble();
+        double west = bbox.get("west").getAsDouble(), east = bbox.get("east").getAsDouble();
+        int centerX = coords.has("player") ? (int)Math.round(coords.getAsJsonObject("player").get("x").getAsDouble()) : 0;
+        int centerZ = coords.has("player") ? (int)Math.round(coords.getAsJsonObject("player").get("z").getAsDouble()) : 0;
+
+        int[] a = latlngToBlock(south, west, centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ);
+        int[] b = latlngToBlock(north, east, centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ);
+        p.minX = Math.min(a[0], b[0]); p.maxX = Math.max(a[0], b[0]);
+        p.minZ = Math.min(a[1], b[1]); p.maxZ = Math.max(a[1], b[1]);
+        p.cells = (long)(p.maxX - p.minX + 1) * (p.maxZ - p.minZ + 1);
+        p.chunks = (long)((p.maxX >> 4) - (p.minX >> 4) + 1) * ((p.maxZ >> 4) - (p.minZ >> 4) + 1);
+
+        // ---- DEM: размер (заголовок) и, в dry-run, перепад высот
+        if (demOrNull != null && demOrNull.isFile() && demOrNull.length() > 0) {
+            try {
+                if (sampleRelief) {
+                    Raster r = readRaster(demOrNull);
+                    p.demWidth = r.getWidth(); p.demHeight = r.getHeight();
+                    float[] vals = r.getSamples(0, 0, p.demWidth, p.demHeight, 0, (float[]) null);
+                    double mn = Double.POSITIVE_INFINITY, mx = Double.NEGATIVE_INFINITY;
+                    for (float v : vals) {
+                        if (Float.isNaN(v)) continue;
+                        if (v < mn) mn = v;
+                        if (v > mx) mx = v;
+                    }
+                    if (mn <= mx) { p.demMin = mn; p.demMax = mx; }
+                } else {
+                    int[] wh = readSize(demOrNull);
+                    p.demWidth = wh[0]; p.demHeight = wh[1];
+                }
+                p.demSampled = true;
+            } catch (Exception e) {
+                System.out.println("[Cartopia] estimate: DEM unreadable: " + e.getMessage());
+            }
+        }
+        if (landcoverOrNull != null && landcoverOrNull.isFile()) {
+            try {
+                int[] wh = readSize(landcoverOrNull);
+                p.landcoverPixels = (long) wh[0] * wh[1];
+            } catch (Exception ignore) {}
+        }
+
+        return p;
+    }
+
+    /** Один проход по NDJSON (или по coords.features как fallback). */
+    private static void countFeatures(Plan p, JsonObject coords, GenerationStore store) {
+        List<StageSpec> specs = GeneratorRegistry.models();
+        for (StageSpec s : specs) p.featureCounts.put(s.id, 0L);
+        if (store != null) {
+            try (FeatureStream fs = store.featureStream()) {
+                for (JsonObject e : fs) countFeature(p, specs, e);
+            } catch (Exception e) {
+                System.out.println("[Cartopia] estimate: feature stream failed: " + e.getMessage());
+            }
+        } else if (coords.has("features") && coords.get("features").isJsonObject()) {
+            JsonObject f = coords.getAsJsonObject("features");
+            JsonArray els = f.has("elements") && f.get("elements").isJsonArray() ? f.getAsJsonArray("elements") : new JsonArray();
+            for (JsonElement el : els) if (el.isJsonObject()) countFeature(p, specs, el.getAsJsonObject());
+        }
+        p.featuresCounted = true;
+    }
+
+    private static void countFeature(Plan p, List<StageSpec> specs, JsonObject e) {
+        JsonElement t = e.get("tags");
+        if (t == null || !t.isJsonObject()) return;
+        JsonObject tags = t.getAsJsonObject();
+        p.totalFeatures++;
+        for (StageSpec s : specs) {
+            if (s.matches(tags)) p.featureCounts.merge(s.id, 1L, Long::sum);
+        }
+    }
+
+    // =====================================================================================
+    // Оценка
+    // =====================================================================================
+
+    /** selectedStages — id этапов из GeneratorRegistry.select(); null = все известные планировщику. */
+    public static JsonObject estimate(Plan p, Collection<String> selectedStages, List<JsonObject> history,
+                                      int minBuildY, int maxBuildY) {
+        int columnHeight = Math.max(1, maxBuildY - minBuildY);
+        double heapFactor = medianRatio(history, "heapPeakBytes", "heapModelBytes", 1.0);
+        double surfaceBlocksPerCell = medianStageRatio(history, "surface", "blocks", columnHeight);
+
+        JsonArray stages = new JsonArray();
+        double totalMs = 0;
+        long totalBlocks = 0;
+        List<StageSpec> selected = new ArrayList<>();
+        if (selectedStages == null) {
+            selected.addAll(GeneratorRegistry.models());
+        } else {
+            // этап без описания (плагин) — только стоимость прохода по NDJSON
+            for (String id : selectedStages) {
+                StageSpec s = spec(id);
+                selected.add(s != null ? s : new StageSpec(id, id, false, 0, 0));
+            }
+        }
+        for (StageSpec s : selected) {
+            long features = p.featureCounts.getOrDefault(s.id, 0L);
+            long units = s.perCell ? p.cells : features;
+            double rate = medianStageRatio(history, s.id, "ms", s.msPerUnit);
+            double ms = p.totalFeatures * SCAN_MS_PER_FEATURE + units * rate;
+            long blocks = Math.round(units * (s.perCell ? surfaceBlocksPerCell : s.blocksPerUnit));
+
+            JsonObject o = new JsonObject();
+            o.addProperty("id", s.id);
+            o.addProperty("label", s.label);
+            o.addProperty("features", features);
+            o.addProperty("units", units);
+            o.addProperty("unit", s.perCell ? "cells" : "features");
+            o.addProperty("blocks", blocks);
+            o.addProperty("ms", Math.round(ms));
+            o.addProperty("calibrated", hasStageSamples(history, s.id));
+            stages.add(o);
+            totalMs += ms;
+            totalBlocks += blocks;
+        }
+        totalMs += p.chunks * SAVE_MS_PER_CHUNK;
+
+        long heapModel = heapModelBytes(p);
+        long heapPeak = Math.round(heapModel * heapFactor);
+        long heapMax = Runtime.getRuntime().maxMemory();
+
+        JsonObject area = new JsonObject();
+        area.addProperty("width", p.maxX - p.minX + 1);
+        area.addProperty("height", p.maxZ - p.minZ + 1);
+        area.addProperty("cells", p.cells);
+        area.addProperty("chunks", p.chunks);
+
+        JsonObject dem = new JsonObject();
+        dem.addProperty("sampled", p.demSampled);
+        if (p.demSampled) {
+            dem.addProperty("width", p.demWidth);
+            dem.addProperty("height", p.demHeight);
+            if (!Double.isNaN(p.demMin)) {
+                dem.addProperty("minElevation", p.demMin);
+                dem.addProperty("maxElevation", p.demMax);
+                dem.addProperty("reliefBlocks", Math.round(p.demMax - p.demMin));
+            }
+        }
+
+        JsonObject totals = new JsonObject();
+        totals.addProperty("features", p.totalFeatures);
+        totals.addProperty("blocks", totalBlocks);
+        totals.addProperty("durationMs", Math.round(totalMs));
+        totals.addProperty("heapPeakMb", heapPeak >> 20);
+        totals.addProperty("heapMaxMb", heapMax >> 20);
+
+        JsonArray warnings = new JsonArray();
+        if (totalMs > WARN_DURATION_MS) {
+            warnings.add(String.format(Locale.US, "Predicted duration %.0f min", totalMs / 60_000.0));
+        }
+        if (heapPeak > heapMax * WARN_HEAP_SHARE) {
+            warnings.add(String.format(Locale.US, "Predicted heap peak %d MB of %d MB available", heapPeak >> 20, heapMax >> 20));
+        }
+        if (p.chunks > WARN_CHUNKS) {
+            warnings.add("Touches " + p.chunks + " chunks");
+        }
+        if (!Double.isNaN(p.demMin) && (p.demMax - p.demMin) > columnHeight - 8) {
+            warnings.add("Relief " + Math.round(p.demMax - p.demMin) + " m exceeds world height and will be clamped");
+        }
+
+        JsonObject out = new JsonObject();
+        out.addProperty("dryRun", true);
+        out.add("area", area);
+        out.add("dem", dem);
+        out.add("stages", stages);
+        out.add("totals", totals);
+        out.addProperty("calibrationRuns", history.size());
+        out.add("warnings", warnings);
+        return out;
+    }
+
+    /** Запись для metrics.json после настоящего запуска. */
+    public static JsonObject runRecord(Plan p, Map<String, long[]> stageStats, long durationMs, long heapPeakBytes) {
+        JsonObject stages = new JsonObject();
+        for (Map.Entry<String, long[]> e : stageStats.entrySet()) {
+            StageSpec s = spec(e.getKey());
+            if (s == null || (!s.perCell && !p.featuresCounted)) continue;
+            long units = s.perCell ? p.cells : p.featureCounts.getOrDefault(s.id, 0L);
+            JsonObject o = new JsonObject();
+            o.addProperty("units", units);
+            // без счётчиков вычесть проход по NDJSON нечем — поклеточный этап пишем как есть
+            long scanMs = p.featuresCounted ? Math.round(p.totalFeatures * SCAN_MS_PER_FEATURE) : 0;
+            o.addProperty("ms", Math.max(0, e.getValue()[0] - scanMs));
+            o.addProperty("blocks", e.getValue()[1]);
+            stages.add(s.id, o);
+        }
+        JsonObject r = new JsonObject();
+        r.addProperty("at", Instant.now().toString());
+        r.addProperty("cells", p.cells);
+        r.addProperty("chunks", p.chunks);
+        if (p.featuresCounted) r.addProperty("features", p.totalFeatures);
+        r.addProperty("durationMs", durationMs);
+        r.addProperty("heapPeakBytes", heapPeakBytes);
+        r.addProperty("heapModelBytes", heapModelBytes(p));
+        r.add("stages", stages);
+        return r;
+    }
+
+    private static long heapModelBytes(Plan p) {
+        long demPixels = p.demSampled ? (long) p.demWidth * p.demHeight : p.cells;
+        return p.cells * BYTES_PER_CELL
+                + p.coordsBytes * JSON_EXPANSION
+                + demPixels * RASTER_EXPANSION
+                + p.landcoverPixels * RASTER_EXPANSION;
+    }
+
+    // ---- калибровка: медиана отношений по истории ----
+
+    private static double medianRatio(List<JsonObject> history, String num, String den, double def) {
+        List<Double> xs = new ArrayList<>();
+        for (JsonObject r : history) {
+            try {
+                double n = r.get(num).getAsDouble(), d = r.get(den).getAsDouble();
+                if (d > 0 && n > 0) xs.add(n / d);
+            } catch (Exception ignore) {}
+        }
+        return median(xs, def);
+    }
+
+    /** ms или blocks на единицу этапа. */
+    private static double medianStageRatio(List<JsonObject> history, String stageId, String field, double def) {
+        List<Double> xs = new ArrayList<>();
+        for (JsonObject r : history) {
+            try {
+                JsonObject s = r.getAsJsonObject("stages").getAsJsonObject(stageId);
+                if (s == null) continue;
+                double units = s.get("units").getAsDouble(), v = s.get(field).getAsDouble();
+                if (units > 0 && v > 0) xs.add(v / units);
+            } catch (Exception ignore) {}
+        }
+        return median(xs, def);
+    }
+
+    private static boolean hasStageSamples(List<JsonObject> history, String stageId) {
+        for (JsonObject r : history) {
+            try {
+                JsonObject s = r.getAsJsonObject("stages").getAsJsonObject(stageId);
+                if (s != null && s.get("units").getAsLong() > 0) return true;
+            } catch (Exception ignore) {}
+        }
+        return false;
+    }
+
+    private static double median(List<Double> xs, double def) {
+        if (xs.isEmpty()) return def;
+        Collections.sort(xs);
+        int n = xs.size();
+        return (n % 2 == 1) ? xs.get(n / 2) : (xs.get(n / 2 - 1) + xs.get(n / 2)) / 2.0;
+    }
+
+    // ---- утилиты ----
+
+    private static int[] readSize(File tif) throws Exception {
+        ImageIO.scanForPlugins();
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new FileInputStream(tif))) {
+            if (iis == null) throw new IllegalStateException("Cannot open " + tif);
+            Iterator<ImageReader> it = ImageIO.getImageReaders(iis);
+            if (!it.hasNext()) throw new IllegalStateException("No ImageIO reader for " + tif.getName());
+            ImageReader reader = it.next();
+            try {
+                reader.setInput(iis, true, true);
+                return new int[]{ reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static Raster readRaster(File tif) throws Exception {
+        ImageIO.scanForPlugins();
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new FileInputStream(tif))) {
+            if (iis == null) throw new IllegalStateException("Cannot open " + tif);
+            Iterator<ImageReader> it = ImageIO.getImageReaders(iis);
+            if (!it.hasNext()) throw new IllegalStateException("No ImageIO reader for " + tif.getName());
+            ImageReader reader = it.next();
+            try {
+                reader.setInput(iis, true, true);
+                try {
+                    return reader.readRaster(0, null);
+                } catch (UnsupportedOperationException uoe) {
+                    return reader.read(0).getRaster();
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static int[] latlngToBlock(double lat, double lng,
+                                       double centerLat, double centerLng,
+                                       double east, double west, double north, double south,
+                                       int sizeMeters, int centerX, int centerZ) {
+        double dx = (lng - centerLng) / (east - west) * sizeMeters;
+        double dz = (lat - centerLat) / (south - north) * sizeMeters;
+        int x = (int)Math.round(centerX + dx);
+        int z = (int)Math.round(centerZ + dz);
+        return new int[]{x, z};
+    }
+}
@@ -0,0 +1,296 @@
+package com.cartopia.builder;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Прогресс текущей генерации для веб-интерфейса (Server-Sent Events, /events).
+ *
+ * Горячий путь только дёргает счётчики (volatile/LongAdder) — никаких строк и чата.
+ * Отдельный поток раз в PUBLISH_MS собирает снимок (этап, %, ETA, блоков/с, память)
+ * и рассылает его подписчикам, только если что-то изменилось.
+ */
+public final class GenerationProgress {
+
+    private GenerationProgress() {}
+
+    private static final long PUBLISH_MS   = 250;    // не чаще 4 событий в секунду
+    private static final long KEEPALIVE_MS = 15_000; // комментарий-пинг, чтобы прокси не рвали соединение
+
+    // запись в поток подписчика — под замком самого обмена: снимок при подписке и рассылка
+    // не перемешивают кадры, а зависший клиент держит только свой обмен
+    private static final List<HttpExchange> SUBSCRIBERS = new CopyOnWriteArrayList<>();
+    private static final AtomicLong VERSION = new AtomicLong();
+    private static final LongAdder BLOCKS = new LongAdder();
+
+    private static volatile boolean active = false;
+    private static volatile String  state = "idle";      // idle | running | done | error
+    private static volatile String  stage = "";
+    private static volatile String  message = "";
+    private static volatile int     stageIndex = 0;
+    private static volatile int     stageCount = 1;
+    private static volatile long    stageDone = 0;
+    private static volatile long    stageTotal = 0;
+    private static volatile long    startedAt = 0;
+    private static volatile long    heapPeak = 0;
+
+    // длительность и записанные блоки по этапам (id -> {ms, blocks}) — для metrics.json
+    private static final Map<String, long[]> STAGE_STATS = new LinkedHashMap<>();
+    private static String stageId = null;
+    private static long stageStartedAt = 0;
+    private static long stageBlocksAtStart = 0;
+
+    // только поток публикации
+    private static long lastVersion = -1;
+    private static long lastPublishAt = 0;
+    private static long lastBlocks = 0;
+    private static double blocksPerSec = 0;
+
+    private static ScheduledExecutorService publisher;
+
+    // ---------------------------------------------------------------------------------------
+    // API генерации
+    // ---------------------------------------------------------------------------------------
+
+    /** Начало новой генерации: сбрасываем счётчики. */
+    public static synchronized void begin(int totalStages) {
+        stageCount = Math.max(1, totalStages);
+        stageIndex = 0;
+        stage = "";
+        message = "";
+        stageDone = 0;
+        stageTotal = 0;
+        BLOCKS.reset();
+        startedAt = System.currentTimeMillis();
+        heapPeak = 0;
+        synchronized (STAGE_STATS) {
+            STAGE_STATS.clear();
+            stageId = null;
+        }
+        state = "running";
+        active = true;
+        VERSION.incrementAndGet();
+        ensurePublisher(); // заодно снимает пик кучи
+    }
+
+    /** Как begin, но только если сейчас ничего не идёт (офлайн-генерация в своём потоке). */
+    public static synchronized boolean tryBegin(int totalStages) {
+        if (active) return false;
+        begin(totalStages);
+        return true;
+    }
+
+    /** Переход к следующему этапу. */
+    public static void stage(String id, String name) {
+        if (!active) return;
+        closeStage();
+        synchronized (STAGE_STATS) {
+            stageId = id;
+            stageStartedAt = System.currentTimeMillis();
+            stageBlocksAtStart = BLOCKS.sum();
+        }
+        stageIndex = Math.min(stageIndex + 1, stageCount);
+        stage = name;
+        stageDone = 0;
+        stageTotal = 0;
+        VERSION.incrementAndGet();
+    }
+
+    /** Прогресс внутри этапа. Дёшево: можно звать хоть на каждую колонку. */
+    public static void progress(long done, long total) {
+        stageDone = done;
+        stageTotal = total;
+        VERSION.incrementAndGet();
+    }
+
+    /** Счётчик записанных блоков (для блоков/сек). */
+    public static void addBlocks(long n) {
+        BLOCKS.add(n);
+    }
+
+    /** Короткое текстовое сообщение (дублирует то, что ушло в чат). */
+    public static void message(String msg) {
+        message = msg;
+        VERSION.incrementAndGet();
+    }
+
+    public static void finish(boolean ok, String msg) {
+        if (!active) return;
+        closeStage();
+        state = ok ? "done" : "error";
+        if (ok) stageIndex = stageCount;
+        message = msg;
+        active = false;
+        VERSION.incrementAndGet();
+    }
+
+    /** Идёт генерация (между begin и finish). */
+    public static boolean running() {
+        return active;
+    }
+
+    /** Снимок статистики этапов текущего/последнего запуска. */
+    public static Map<String, long[]> stageStats() {
+        synchronized (STAGE_STATS) {
+            Map<String, long[]> copy = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> e : STAGE_STATS.entrySet()) copy.put(e.getKey(), e.getValue().clone());
+            return copy;
+        }
+    }
+
+    public static long heapPeakBytes() {
+        sampleHeap();
+        return heapPeak;
+    }
+
+    private static void closeStage() {
+        synchronized (STAGE_STATS) {
+            if (stageId == null) return;
+            long ms = System.currentTimeMillis() - stageStartedAt;
+            long blocks = BLOCKS.sum() - stageBlocksAtStart;
+            long[] acc = STAGE_STATS.computeIfAbsent(stageId, k -> new long[2]);
+            acc[0] += ms;
+            acc[1] += blocks;
+            stageId = null;
+        }
+    }
+
+    private static void sampleHeap() {
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+        if (used > heapPeak) heapPeak = used;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // SSE
+    // ---------------------------------------------------------------------------------------
+
+    /** Подписываем открытый text/event-stream; обмен закрывается при первой ошибке записи. */
+    public static void subscribe(HttpExchange ex) {
+        ensurePublisher();
+        synchronized (ex) {
+            // в списке до записи снимка: рассылка дождётся замка и уйдёт следом за ним
+            SUBSCRIBERS.add(ex);
+            String snapshot = snapshot(System.currentTimeMillis()).toString();
+            if (!write(ex, "retry: 3000\n" + "data: " + snapshot + "\n\n")) SUBSCRIBERS.remove(ex);
+        }
+    }
+
+    public static synchronized void shutdown() {
+        if (publisher != null) {
+            publisher.shutdownNow();
+            publisher = null;
+        }
+        for (HttpExchange ex : SUBSCRIBERS) {
+            try { ex.close(); } catch (Throwable ignore) {}
+        }
+        SUBSCRIBERS.clear();
+    }
+
+    private static synchronized void ensurePublisher() {
+        if (publisher != null) return;
+        publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CartopiaProgress");
+            t.setDaemon(true);
+            return t;
+        });
+        publisher.scheduleAtFixedRate(GenerationProgress::publish, PUBLISH_MS, PUBLISH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void publish() {
+        try {
+            long now = System.currentTimeMillis();
+            if (active) sampleHeap();
+
+            long blocks = BLOCKS.sum();
+            if (lastPublishAt > 0 && now > lastPublishAt) {
+                double inst = (blocks - lastBlocks) * 1000.0 / (now - lastPublishAt);
+                blocksPerSec = blocksPerSec * 0.7 + Math.max(0, inst) * 0.3; // сглаживание
+            }
+            lastBlocks = blocks;
+
+            if (SUBSCRIBERS.isEmpty()) { lastPublishAt = now; return; }
+
+            long v = VERSION.get();
+            String payload;
+            if (v != lastVersion || (active && blocksPerSec > 0.5)) {
+                lastVersion = v;
+                payload = "data: " + snapshot(now) + "\n\n";
+            } else if (now - lastPublishAt >= KEEPALIVE_MS) {
+                payload = ": ping\n\n";
+            } else {
+                return;
+            }
+            lastPublishAt = now;
+
+            for (HttpExchange ex : SUBSCRIBERS) { // снимок списка (copy-on-write)
+                boolean ok;
+                synchronized (ex) { ok = write(ex, payload); }
+                if (!ok) SUBSCRIBERS.remove(ex);
+            }
+        } catch (Throwable t) {
+            System.err.println("[Cartopia] progress publish failed: " + t);
+        }
+    }
+
+    private static boolean write(HttpExchange ex, String payload) {
+        try {
+            OutputStream os = ex.getResponseBody();
+            os.write(payload.getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            return true;
+        } catch (IOException e) {
+            try { ex.close(); } catch (Throwable ignore) {}
+            return false;
+        }
+    }
+
+    private static JsonObject snapshot(long now) {
+        int count = stageCount;
+        int index = stageIndex;
+        long done = stageDone;
+        long total = stageTotal;
+
+        double stageFrac = (total > 0) ? Math.min(1.0, (double) done / total) : 0.0;
+        double overall = (index <= 0) ? 0.0 : Math.min(1.0, ((index - 1) + stageFrac) / count);
+        if ("done".equals(state)) overall = 1.0;
+
+        long elapsed = (startedAt > 0) ? now - startedAt : 0;
+        long eta = -1;
+        if (active && overall > 0.01) {
+            eta = Math.max(0, Math.round(elapsed / overall) - elapsed);
+        }
+
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+
+        JsonObject o = new JsonObject();
+        o.addProperty("state", state);
+        o.addProperty("stage", stage);
+        o.addProperty("stageIndex", index);
+        o.addProperty("stageCount", count);
+        o.addProperty("stagePercent", Math.round(stageFrac * 1000) / 10.0);
+        o.addProperty("percent", Math.round(overall * 1000) / 10.0);
+        o.addProperty("elapsedMs", elapsed);
+        o.addProperty("etaMs", eta);
+        o.addProperty("blocks", BLOCKS.sum());
+        o.addProperty("blocksPerSec", Math.round(blocksPerSec));
+        o.addProperty("heapUsedMb", used >> 20);
+        o.addProperty("heapMaxMb", rt.maxMemory() >> 20);
+        o.addProperty("message", message);
+        return o;
+    }
+}
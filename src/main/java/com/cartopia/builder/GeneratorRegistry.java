@@ -0,0 +1,490 @@
+package com.cartopia.builder;
+
+import com.cartopia.builder.CartopiaStage.Cost;
+import com.cartopia.spawn.CartopiaSurfaceSpawn;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.*;
+
+/**
+ * Реестр этапов генерации: встроенные генераторы + сторонние через ServiceLoader.
+ *
+ * Набор этапов на запуск выбирается в coords.json:
+ * <pre>
+ *   "stages": { "profile": "transport", "include": ["vegetation"], "exclude": ["road_lamps"], "maxCost": "MEDIUM" }
+ * </pre>
+ * или просто "stages": "terrain-only". Без секции — профиль full (как раньше).
+ * Зависимости включённых этапов подтягиваются автоматически.
+ */
+public final class GeneratorRegistry {
+
+    public static final String PROFILE_TERRAIN_ONLY = "terrain-only";
+    public static final String PROFILE_TRANSPORT    = "transport";
+    public static final String PROFILE_FULL         = "full";
+
+    private static final Set<String> NONE = Set.of();
+    // transport: рельеф + дороги/ЖД с разметкой и мостами + здания
+    private static final Set<String> TRANSPORT = Set.of(PROFILE_TRANSPORT);
+    private static final Set<String> TERRAIN = Set.of(PROFILE_TERRAIN_ONLY, PROFILE_TRANSPORT);
+
+    private static final List<CartopiaStage> BUILTIN = new ArrayList<>();
+    private static volatile List<CartopiaStage> all; // builtin + плагины, лениво
+
+    private GeneratorRegistry() {}
+
+    private static void add(CartopiaStage s) { BUILTIN.add(s); }
+
+    /** Встроенный этап: генератор с конструктором (level, coords, store). Порядок — порядок выполнения. */
+    private static final class BuiltinStage implements CartopiaStage {
+        interface Runner { void run(StageContext ctx) throws Exception; }
+
+        private final String id, start, done;
+        private final Cost cost;
+        private final Set<String> profiles;
+        private final List<String> deps;
+        private final Runner runner;
+        private boolean offline = false;
+        private boolean buffered = true;
+        private GenerationEstimator.StageSpec model; // для /estimate
+
+        BuiltinStage(String id, Cost cost, Set<String> profiles, List<String> deps,
+                     String start, String done, Runner runner) {
+            this.id = id; this.cost = cost; this.profiles = profiles; this.deps = deps;
+            this.start = start; this.done = done; this.runner = runner;
+        }
+
+        BuiltinStage offlineCapable() { this.offline = true; return this; }
+        // спавнит сущности, которым нужны уже стоящие в мире блоки
+        BuiltinStage direct() { this.buffered = false; return this; }
+
+        /** Модель стоимости для планировщика: мс и блоков на OSM-фичу, теги, которые этап потребляет. */
+        BuiltinStage model(String label, double msPerFeature, double blocksPerFeature, String... selectors) {
+            this.model = new GenerationEstimator.StageSpec(id, label, false, msPerFeature, blocksPerFeature, selectors);
+            return this;
+        }
+
+        /** То же для рельефа: единица — клетка сетки, блоки считаются от высоты мира. */
+        BuiltinStage cellModel(String label, double msPerCell, String... selectors) {
+            this.model = new GenerationEstimator.StageSpec(id, label, true, msPerCell, 0, selectors);
+            return this;
+        }
+
+        @Override public String id() { return id; }
+        @Override public Cost cost() { return cost; }
+        @Override public List<String> dependsOn() { return deps; }
+        @Override public Set<String> profiles() { return profiles; }
+        @Override public boolean offline() { return offline; }
+        @Override public boolean buffered() { return buffered; }
+        @Override public String startMessage() { return start; }
+        @Override public String doneMessage() { return done; }
+        @Override public void run(StageContext ctx) throws Exception { runner.run(ctx); }
+    }
+
+    static {
+        // ===== РЕЛЬЕФ И ЕГО РАСКРАСКА =====
+        add(new BuiltinStage("surface", Cost.HEAVY, TERRAIN, List.of(),
+                "Starting surface generation (DEM + painting) ...", "Surface ready.",
+                ctx -> {
+                    new SurfaceGenerator(ctx.level, ctx.coords, ctx.demFile, ctx.landcoverFileOrNull, ctx.store, ctx.writer).generate();
+                    // Сразу поднимаем всех игроков этого мира на безопасную поверхность
+                    if (ctx.level != null) CartopiaSurfaceSpawn.adjustAllPlayersAsync(ctx.level);
+                }).offlineCapable()
+                .cellModel("Surface", 0.30,
+                        "natural", "landuse", "water", "waterway", "leisure", "landcover", "wetland", "place=island|islet"));
+        // ===== ДОРОГИ, ЖД, РАЗМЕТКА, МОСТЫ, ЗДАНИЯ, ИНФРАСТРУКТУРА, РАСТИТЕЛЬНОСТЬ =====
+        add(new BuiltinStage("roads", Cost.MEDIUM, TRANSPORT, List.of("surface"),
+                "Starting road generation...", "Roads ready.",
+                ctx -> new RoadGenerator(ctx.level, ctx.coords, ctx.store, ctx.writer).generate()).offlineCapable()
+                .model("Roads", 6, 400, "highway", "aeroway=runway|taxiway|apron"));
+        add(new BuiltinStage("rails", Cost.MEDIUM, TRANSPORT, List.of("surface"),
+                "Starting rail generation...", "Rails ready.",
+                ctx -> new RailGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Rails", 6, 300, "railway"));
+        add(new BuiltinStage("piers", Cost.MEDIUM, TRANSPORT, List.of("surface"),
+                "Starting pier generation...", "Piers ready.",
+                ctx -> new PierGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Piers", 10, 300, "man_made=pier|quay", "quay"));
+        add(new BuiltinStage("crosswalks", Cost.MEDIUM, TRANSPORT, List.of("surface", "roads"),
+                "Starting crosswalk marking...", "Crosswalks ready.",
+                ctx -> new CrosswalkGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Crosswalks", 2, 40, "highway=crossing", "footway=crossing", "crossing"));
+        add(new BuiltinStage("stop_markings", Cost.MEDIUM, TRANSPORT, List.of("surface", "roads"),
+                "Starting stop markings...", "Stop markings ready.",
+                ctx -> new StopMarkingGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Stop markings", 2, 40, "highway=bus_stop", "public_transport=platform|stop_position"));
+        add(new BuiltinStage("rail_stop_lines", Cost.LIGHT, TRANSPORT, List.of("surface", "roads", "rails"),
+                "Starting stop lines at railway crossings...", "Stop lines at railway crossings ready.",
+                ctx -> new RailStopLineGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Rail stop lines", 2, 30, "railway=level_crossing|crossing"));
+        add(new BuiltinStage("helipads", Cost.LIGHT, TRANSPORT, List.of("surface"),
+                "Starting helipad generation...", "Helipads ready.",
+                ctx -> new HelipadGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Helipads", 5, 200, "aeroway=helipad"));
+        add(new BuiltinStage("parking_stalls", Cost.MEDIUM, TRANSPORT, List.of("surface", "roads"),
+                "Starting parking stall marking...", "Parking stalls ready.",
+                ctx -> new ParkingStallGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Parking stalls", 8, 300, "amenity=parking", "parking"));
+        add(new BuiltinStage("bridges", Cost.HEAVY, TRANSPORT, List.of("surface", "roads", "rails"),
+                "Starting bridge/overpass generation...", "Bridges/overpasses ready.",
+                ctx -> new BridgeGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Bridges", 25, 1500, "bridge", "man_made=bridge"));
+        add(new BuiltinStage("tunnels", Cost.HEAVY, TRANSPORT, List.of("surface", "roads", "rails"),
+                "Starting tunnel/underpass generation...", "Tunnels/underpasses ready.",
+                ctx -> new TunnelGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Tunnels", 25, 2500, "tunnel", "covered"));
+        add(new BuiltinStage("road_buttons", Cost.MEDIUM, TRANSPORT, List.of("surface", "roads"),
+                "Starting road button markings...", "Road button markings ready.",
+                ctx -> new RoadButtonMarkingGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Road button markings", 2, 20, "highway"));
+        add(new BuiltinStage("buildings", Cost.HEAVY, TRANSPORT, List.of("surface"),
+                "Starting building generation...", "Buildings ready.",
+                ctx -> new BuildingGenerator(ctx.level, ctx.coords, ctx.store, ctx.writer).generate()).offlineCapable()
+                .model("Buildings", 40, 2500, "building", "building:part"));
+        add(new BuiltinStage("road_lamps", Cost.MEDIUM, TRANSPORT, List.of("surface", "roads"),
+                "Starting placement of road lamps...", "Road lamps ready.",
+                ctx -> new RoadLampGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Road lamps", 2, 15, "highway", "highway=street_lamp"));
+        add(new BuiltinStage("rail_lamps", Cost.MEDIUM, TRANSPORT, List.of("surface", "rails"),
+                "Starting placement of lamps along rails...", "Lamps along rails ready.",
+                ctx -> new RailLampGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Rail lamps", 2, 15, "railway"));
+        add(new BuiltinStage("utility_boxes", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting utility box generation...", "Utility boxes ready.",
+                ctx -> new UtilityBoxGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Utility boxes", 1, 6, "man_made=street_cabinet", "telecom", "emergency=phone"));
+        add(new BuiltinStage("lighthouses", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting lighthouse generation...", "Lighthouses ready.",
+                ctx -> new LighthouseGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Lighthouses", 20, 2000, "man_made=lighthouse", "seamark:type=light_major|light_minor"));
+        add(new BuiltinStage("wind_turbines", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting wind turbine generation...", "Wind turbines ready.",
+                ctx -> new WindTurbineGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Wind turbines", 20, 800, "generator:source=wind", "power=generator"));
+        add(new BuiltinStage("windmills", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting windmill generation...", "Windmills ready.",
+                ctx -> new ClassicWindmillGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Windmills", 20, 800, "man_made=windmill"));
+        add(new BuiltinStage("watchtowers", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting watchtower generation...", "Towers ready.",
+                ctx -> new WatchtowerGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Watchtowers", 15, 500, "man_made=tower|watchtower", "tower:type=observation|watchtower"));
+        add(new BuiltinStage("chimneys", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting chimney generation...", "Chimneys ready.",
+                ctx -> new ChimneyGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Chimneys", 15, 600, "man_made=chimney", "tower:type=chimney"));
+        add(new BuiltinStage("towers_masts", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting tower/mast generation...", "Towers ready.",
+                ctx -> new TowerMastGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Towers/masts", 15, 800, "man_made=mast|tower|communications_tower", "tower:type"));
+        add(new BuiltinStage("tank_towers", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting utility tank tower generation...", "Utility tank towers ready.",
+                ctx -> new UtilityTankTowerGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Tank towers", 15, 1000, "man_made=water_tower|storage_tank|silo"));
+        add(new BuiltinStage("solar", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting solar array generation...", "Solar arrays ready.",
+                ctx -> new SolarPanelGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Solar arrays", 10, 400, "generator:source=solar", "plant:source=solar"));
+        add(new BuiltinStage("substations", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting substation generation...", "Substations ready.",
+                ctx -> new SubstationGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Substations", 15, 600, "power=substation|transformer"));
+        add(new BuiltinStage("power_lines", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting power lines (poles/towers/wires) generation...", "Power lines ready.",
+                ctx -> new PowerLinesGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Power lines", 6, 200, "power=line|minor_line|cable|tower|pole"));
+        add(new BuiltinStage("fuel_pumps", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting fuel pump generation...", "Fuel pumps ready.",
+                ctx -> new FuelPumpGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Fuel pumps", 10, 300, "amenity=fuel"));
+        add(new BuiltinStage("car_wash", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting car wash generation...", "Car washes ready.",
+                ctx -> new CarWashGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Car wash", 10, 300, "amenity=car_wash"));
+        add(new BuiltinStage("ev_chargers", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting EV charger generation...", "EV chargers ready.",
+                ctx -> new ElectricChargerGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("EV chargers", 3, 20, "amenity=charging_station"));
+        add(new BuiltinStage("leisure_rest", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting rest area generation...", "Rest areas ready.",
+                ctx -> new LeisureRestGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Rest areas", 2, 20,
+                        "amenity=bench|shelter|bbq", "leisure=picnic_table|firepit", "tourism=picnic_site"));
+        add(new BuiltinStage("beach", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting beach area generation...", "Beach areas ready.",
+                ctx -> new BeachResortGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Beach areas", 8, 200, "leisure=beach_resort", "natural=beach"));
+        add(new BuiltinStage("sports", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting sports facility generation...", "Sports facilities ready.",
+                ctx -> new SportsFacilitiesGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Sports facilities", 15, 800, "leisure=pitch|sports_centre|track|stadium|playground"));
+        add(new BuiltinStage("waste", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting waste infrastructure generation...", "Waste infrastructure ready.",
+                ctx -> new WasteGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Waste infrastructure", 2, 10, "amenity=waste_basket|recycling|waste_disposal"));
+        add(new BuiltinStage("pipelines", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting overground pipeline generation...", "Overground pipelines ready.",
+                ctx -> new OvergroundPipelinesGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Overground pipelines", 6, 300, "man_made=pipeline"));
+        add(new BuiltinStage("shelters", Cost.MEDIUM, TRANSPORT, List.of("surface", "roads"),
+                "Starting stop shelter generation...", "Shelters ready.",
+                ctx -> new PublicTransportShelterGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Stop shelters", 4, 60, "highway=bus_stop", "public_transport=platform", "shelter"));
+        add(new BuiltinStage("traffic_lights", Cost.LIGHT, TRANSPORT, List.of("surface", "roads"),
+                "Starting traffic light generation", "Traffic lights ready.",
+                ctx -> new TrafficLightGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Traffic lights", 2, 20, "highway=traffic_signals", "crossing=traffic_signals"));
+        add(new BuiltinStage("flagpoles", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting flagpole generation", "Flagpoles ready.",
+                ctx -> new FlagpoleGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Flagpoles", 2, 15, "man_made=flagpole"));
+        add(new BuiltinStage("address_points", Cost.HEAVY, NONE, List.of("surface", "buildings"),
+                "Starting address house generation...", "Address houses built.",
+                ctx -> new AddressPointBuildingsGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Address houses", 10, 400, "addr:housenumber"));
+        add(new BuiltinStage("fences", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting fences/barriers/guardrails generation...", "Fences/barriers/guardrails ready.",
+                ctx -> new FenceAndBarrierGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Fences/barriers", 4, 120, "barrier"));
+        add(new BuiltinStage("cemeteries", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting cemetery generation.", "Cemeteries ready.",
+                ctx -> new CemeteryGravesGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Cemeteries", 20, 600, "landuse=cemetery", "amenity=grave_yard"));
+        add(new BuiltinStage("water_sources", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting water source generation...", "Water sources ready.",
+                ctx -> new WaterSourcesGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Water sources", 2, 10,
+                        "amenity=drinking_water|water_point", "man_made=water_well", "natural=spring"));
+        add(new BuiltinStage("traffic_calming", Cost.LIGHT, TRANSPORT, List.of("surface", "roads"),
+                "Starting traffic calming generation...", "Traffic calming ready.",
+                ctx -> new TrafficCalmingGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Traffic calming", 2, 10, "traffic_calming"));
+        add(new BuiltinStage("hydrants", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting fire hydrant generation...", "Fire hydrants ready.",
+                ctx -> new FireHydrantGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Fire hydrants", 1, 3, "emergency=fire_hydrant"));
+        add(new BuiltinStage("parking_meters", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting parking meter generation...", "Parking meters ready.",
+                ctx -> new ParkingMetersGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Parking meters", 1, 3, "vending=parking_tickets", "amenity=parking_meter"));
+        add(new BuiltinStage("bicycle_parking", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting bicycle parking generation...", "Bicycle parking ready.",
+                ctx -> new BicycleParkingGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Bicycle parking", 2, 10, "amenity=bicycle_parking"));
+        add(new BuiltinStage("postboxes", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting postbox generation", "Postboxes ready.",
+                ctx -> new PostBoxGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Postboxes", 1, 3, "amenity=post_box"));
+        add(new BuiltinStage("cameras", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting camera generation...", "Cameras ready.",
+                ctx -> new CameraGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Cameras", 1, 4, "man_made=surveillance", "surveillance"));
+        add(new BuiltinStage("info_boards", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting information board generation...", "Information boards ready.",
+                ctx -> new InfoBoardsGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Information boards", 1, 6, "tourism=information"));
+        add(new BuiltinStage("beehives", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting beehive generation...", "Beehives ready.",
+                ctx -> new ApiaryBeehivesGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Beehives", 3, 20, "man_made=beehive", "craft=beekeeper"));
+        add(new BuiltinStage("ores", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting mineral generation...", "Minerals ready.",
+                ctx -> new MiningOresScatterGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Mineral scatter", 20, 400, "landuse=quarry", "industrial=mine"));
+        add(new BuiltinStage("windsocks", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting windsock generation", "Windsocks ready.",
+                ctx -> new WindsockFlagsGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Windsocks", 1, 8, "aeroway=windsock"));
+        add(new BuiltinStage("construction", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting construction site landscaping...", "Construction sites decorated.",
+                ctx -> new ConstructionSiteDecorator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Construction sites", 15, 600, "landuse=construction"));
+        add(new BuiltinStage("cranes", Cost.MEDIUM, NONE, List.of("surface"),
+                "Starting crane generation ...", "Cranes ready.",
+                ctx -> new CraneGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Cranes", 10, 500, "man_made=crane"));
+        add(new BuiltinStage("advertising", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting advertising generation...", "Advertising ready.",
+                ctx -> new AdvertisingGenerator(ctx.level, ctx.coords, ctx.store).generate()).direct()
+                .model("Advertising", 2, 20, "advertising"));
+        add(new BuiltinStage("fountains", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting fountain generation...", "Fountains ready.",
+                ctx -> new FountainGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Fountains", 4, 60, "amenity=fountain"));
+        add(new BuiltinStage("monuments", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting monument generation...", "Monuments ready.",
+                ctx -> new MonumentGenerator(ctx.level, ctx.coords, ctx.store).generate()).direct()
+                .model("Monuments", 5, 80, "historic=monument|memorial", "tourism=artwork"));
+        add(new BuiltinStage("aerialways", Cost.MEDIUM, TRANSPORT, List.of("surface"),
+                "Starting lift generation...", "Lifts ready.",
+                ctx -> new AerialwayGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Aerialways", 10, 300, "aerialway"));
+        add(new BuiltinStage("caves", Cost.LIGHT, NONE, List.of("surface"),
+                "Starting cave entrance generation...", "Cave entrances ready.",
+                ctx -> new CaveEntranceGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Cave entrances", 5, 200, "natural=cave_entrance"));
+        add(new BuiltinStage("vegetation", Cost.HEAVY, NONE, List.of("surface"),
+                "Starting vegetation generation...", "Vegetation ready.",
+                ctx -> new VegetationScatterGenerator(ctx.level, ctx.coords, ctx.store).generate())
+                .model("Vegetation", 30, 1500,
+                        "natural=tree|tree_row|wood|scrub|heath", "landuse=forest|orchard|meadow|grass", "leisure=park|garden"));
+    }
+
+    /** Все этапы в порядке выполнения: встроенные, затем сторонние (после своих зависимостей). */
+    public static List<CartopiaStage> all() {
+        List<CartopiaStage> cur = all;
+        if (cur != null) return cur;
+        synchronized (GeneratorRegistry.class) {
+            if (all != null) return all;
+            List<CartopiaStage> list = new ArrayList<>(BUILTIN);
+            List<CartopiaStage> extra = new ArrayList<>();
+            try {
+                for (CartopiaStage s : ServiceLoader.load(CartopiaStage.class, GeneratorRegistry.class.getClassLoader())) {
+                    int at = indexOf(list, s.id());
+                    if (at >= 0) list.set(at, s); // переопределение встроенного
+                    else extra.add(s);
+                }
+            } catch (ServiceConfigurationError e) {
+                System.err.println("[Cartopia] stage plugins failed to load: " + e.getMessage());
+            }
+            // сторонние: простая топологическая вставка — каждый после всех своих зависимостей
+            boolean progressed = true;
+            while (!extra.isEmpty() && progressed) {
+                progressed = false;
+                for (Iterator<CartopiaStage> it = extra.iterator(); it.hasNext(); ) {
+                    CartopiaStage s = it.next();
+                    boolean ready = true;
+                    for (String d : s.dependsOn()) if (indexOf(list, d) < 0) { ready = false; break; }
+                    if (ready) { list.add(s); it.remove(); progressed = true; }
+                }
+            }
+            for (CartopiaStage s : extra) {
+                System.err.println("[Cartopia] stage '" + s.id() + "' skipped: unresolved dependencies " + s.dependsOn());
+            }
+            all = Collections.unmodifiableList(list);
+            return all;
+        }
+    }
+
+    /** Модели стоимости встроенных этапов в порядке выполнения (этапы плагинов модели не имеют). */
+    static List<GenerationEstimator.StageSpec> models() {
+        List<GenerationEstimator.StageSpec> out = new ArrayList<>();
+        for (CartopiaStage s : all()) {
+            if (s instanceof BuiltinStage && ((BuiltinStage) s).model != null) out.add(((BuiltinStage) s).model);
+        }
+        return out;
+    }
+
+    public static CartopiaStage get(String id) {
+        List<CartopiaStage> list = all();
+        int i = indexOf(list, id);
+        return i < 0 ? null : list.get(i);
+    }
+
+    /** Выбранные на запуск этапы (в порядке выполнения) и предупреждения для чата. */
+    public static final class Selection {
+        public final List<CartopiaStage> stages;
+        public final List<String> warnings;
+        public final String profile;
+
+        Selection(List<CartopiaStage> stages, List<String> warnings, String profile) {
+            this.stages = stages; this.warnings = warnings; this.profile = profile;
+        }
+
+        public Set<String> ids() {
+            Set<String> out = new LinkedHashSet<>();
+            for (CartopiaStage s : stages) out.add(s.id());
+            return out;
+        }
+    }
+
+    public static Selection select(JsonObject coords) {
+        List<CartopiaStage> list = all();
+        List<String> warnings = new ArrayList<>();
+
+        String profile = PROFILE_FULL;
+        Set<String> include = new LinkedHashSet<>();
+        Set<String> exclude = new LinkedHashSet<>();
+        Cost maxCost = Cost.HEAVY;
+
+        JsonElement cfg = coords != null ? coords.get("stages") : null;
+        if (cfg != null && cfg.isJsonPrimitive()) {
+            profile = cfg.getAsString();
+        } else if (cfg != null && cfg.isJsonArray()) {
+            profile = null; // явный список
+            readIds(cfg.getAsJsonArray(), include);
+        } else if (cfg != null && cfg.isJsonObject()) {
+            JsonObject o = cfg.getAsJsonObject();
+            if (o.has("profile")) profile = o.get("profile").getAsString();
+            else if (o.has("include")) profile = null;
+            if (o.has("include") && o.get("include").isJsonArray()) readIds(o.getAsJsonArray("include"), include);
+            if (o.has("exclude") && o.get("exclude").isJsonArray()) readIds(o.getAsJsonArray("exclude"), exclude);
+            if (o.has("maxCost")) {
+                try { maxCost = Cost.valueOf(o.get("maxCost").getAsString().toUpperCase(Locale.ROOT)); }
+                catch (Exception e) { warnings.add("Unknown maxCost '" + o.get("maxCost").getAsString() + "', ignored."); }
+            }
+        }
+        if (profile != null && !PROFILE_FULL.equals(profile)
+                && !PROFILE_TRANSPORT.equals(profile) && !PROFILE_TERRAIN_ONLY.equals(profile)) {
+            warnings.add("Unknown profile '" + profile + "', using full.");
+            profile = PROFILE_FULL;
+        }
+
+        // 1) затравка: профиль (с фильтром по стоимости) + include
+        Set<String> wanted = new LinkedHashSet<>();
+        if (profile != null) {
+            for (CartopiaStage s : list) {
+                boolean inProfile = PROFILE_FULL.equals(profile) || s.profiles().contains(profile);
+                if (inProfile && s.cost().ordinal() <= maxCost.ordinal()) wanted.add(s.id());
+            }
+        }
+        for (String id : include) {
+            if (indexOf(list, id) < 0) warnings.add("Unknown stage '" + id + "', ignored.");
+            else wanted.add(id);
+        }
+        wanted.removeAll(exclude);
+
+        // 2) зависимости (транзитивно); исключённая зависимость выбивает зависящий этап
+        Deque<String> queue = new ArrayDeque<>(wanted);
+        Set<String> closure = new LinkedHashSet<>();
+        Set<String> dropped = new LinkedHashSet<>();
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            if (!closure.add(id)) continue;
+            CartopiaStage s = list.get(indexOf(list, id));
+            for (String d : s.dependsOn()) {
+                if (exclude.contains(d) || indexOf(list, d) < 0) { dropped.add(id); continue; }
+                queue.add(d);
+            }
+        }
+        // этапы, зависящие (транзитивно) от выброшенных, тоже выбрасываем
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (String id : closure) {
+                if (dropped.contains(id)) continue;
+                for (String d : list.get(indexOf(list, id)).dependsOn()) {
+                    if (dropped.contains(d)) { dropped.add(id); changed = true; break; }
+                }
+            }
+        }
+        for (String id : dropped) warnings.add("Stage '" + id + "' skipped: a dependency is excluded.");
+        closure.removeAll(dropped);
+
+        List<CartopiaStage> out = new ArrayList<>();
+        for (CartopiaStage s : list) if (closure.contains(s.id())) out.add(s);
+        return new Selection(out, warnings, profile == null ? "custom" : profile);
+    }
+
+    private static void readIds(JsonArray arr, Set<String> into) {
+        for (JsonElement e : arr) {
+            try { into.add(e.getAsString().trim()); } catch (Exception ignore) {}
+        }
+    }
+
+    private static int indexOf(List<CartopiaStage> list, String id) {
+        for (int i = 0; i < list.size(); i++) if (list.get(i).id().equals(id)) return i;
+        return -1;
+    }
+}
@@ -0,0 +1,34 @@
+package com.cartopia.builder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Параллельный проход по сетке полосами (строк или столбцов) на общем ForkJoin-пуле.
+ *
+ * Ядро получает полуинтервал [from, to) и пишет только в свои строки/столбцы; читать можно что угодно
+ * из буфера прошлой итерации (Якоби) — тогда результат не зависит от числа потоков и совпадает
+ * с последовательным. Возврат из {@link #forEach} — барьер: соседние полосы («гало») следующая
+ * итерация видит уже готовыми.
+ */
+final class GridBands {
+
+    private GridBands() {}
+
+    /** Меньше — дешевле сделать в одном потоке. */
+    private static final int MIN_BAND = 16;
+
+    interface Band {
+        void run(int from, int to);
+    }
+
+    static void forEach(int n, Band band) {
+        int bands = Math.min(n / MIN_BAND, ForkJoinPool.getCommonPoolParallelism() * 4);
+        if (bands <= 1) {
+            band.run(0, n);
+            return;
+        }
+        IntStream.range(0, bands).parallel().forEach(b ->
+                band.run((int) ((long) n * b / bands), (int) ((long) n * (b + 1) / bands)));
+    }
+}
@@ -0,0 +1,84 @@
+package com.cartopia.builder;
+
+/**
+ * Поэлементные int-ядра по отрезкам строк сетки высот SurfaceGenerator (без ветвлений по данным).
+ *
+ * Здесь — скалярные версии. VectorGridKernels (source set vector, jdk.incubator.vector) переопределяет
+ * их SIMD-версиями с тем же результатом. {@link #get()} — векторные, если модуль есть в рантайме
+ * (JVM запущена с --add-modules jdk.incubator.vector) и класс собран; иначе эти.
+ */
+class GridKernels {
+
+    static final GridKernels SCALAR = new GridKernels();
+
+    GridKernels() {}
+
+    // выбор — при первом обращении, не в инициализации GridKernels (VectorGridKernels — её наследник)
+    private static final class Holder {
+        static final GridKernels INSTANCE = load();
+    }
+
+    static GridKernels get() { return Holder.INSTANCE; }
+
+    private static GridKernels load() {
+        try {
+            Class<?> c = Class.forName("com.cartopia.builder.VectorGridKernels");
+            GridKernels k = (GridKernels) c.getDeclaredConstructor().newInstance();
+            System.out.println("[Cartopia] Grid kernels: " + k.name());
+            return k;
+        } catch (Throwable t) {
+            // нет класса (сборка без vector) или модуля в рантайме — остаёмся на скалярных
+            System.out.println("[Cartopia] Grid kernels: scalar (" + t.getClass().getSimpleName() + ")");
+            return SCALAR;
+        }
+    }
+
+    String name() { return "scalar"; }
+
+    /** dst[dOff+i] = min(dst[dOff+i], src[sOff+i] + add), i < n. Отрезки не перекрываются. */
+    void minAdd(int[] dst, int dOff, int[] src, int sOff, int n, int add) {
+        for (int i = 0; i < n; i++) dst[dOff + i] = Math.min(dst[dOff + i], src[sOff + i] + add);
+    }
+
+    /** dst[dOff+i] = min (max) из dst[dOff+i] и src[sOff+i], i < n. */
+    void combine(int[] dst, int dOff, int[] src, int sOff, int n, boolean max) {
+        if (max) for (int i = 0; i < n; i++) dst[dOff + i] = Math.max(dst[dOff + i], src[sOff + i]);
+        else     for (int i = 0; i < n; i++) dst[dOff + i] = Math.min(dst[dOff + i], src[sOff + i]);
+    }
+
+    /**
+     * dst[i] = (медиана 8 соседей + src[i]) / 2 для i из [from, to) — только внутренние клетки
+     * (все 8 соседей в сетке шириной width).
+     */
+    void medianHalf(int[] src, int[] dst, int from, int to, int width) {
+        for (int i = from; i < to; i++) {
+            int up = i - width, dn = i + width;
+            int med = median8(src[i + 1], src[i - 1], src[dn], src[up],
+                              src[dn + 1], src[up - 1], src[up + 1], src[dn - 1]);
+            dst[i] = (med + src[i]) / 2;
+        }
+    }
+
+    /** 5-й по возрастанию из 8: сеть Бэтчера на 8 входов без сравнений, не влияющих на v4. */
+    static int median8(int v0, int v1, int v2, int v3, int v4, int v5, int v6, int v7) {
+        int t;
+        if (v0 > v1) { t = v0; v0 = v1; v1 = t; }
+        if (v2 > v3) { t = v2; v2 = v3; v3 = t; }
+        if (v4 > v5) { t = v4; v4 = v5; v5 = t; }
+        if (v6 > v7) { t = v6; v6 = v7; v7 = t; }
+        if (v0 > v2) { t = v0; v0 = v2; v2 = t; }
+        if (v1 > v3) { t = v1; v1 = v3; v3 = t; }
+        if (v4 > v6) { t = v4; v4 = v6; v6 = t; }
+        if (v5 > v7) { t = v5; v5 = v7; v7 = t; }
+        if (v1 > v2) { t = v1; v1 = v2; v2 = t; }
+        if (v5 > v6) { t = v5; v5 = v6; v6 = t; }
+        // половины отсортированы; слияние — только то, от чего зависит v4
+        if (v1 > v5) { t = v1; v1 = v5; v5 = t; }
+        if (v2 > v6) { t = v2; v2 = v6; v6 = t; }
+        if (v3 > v7) v3 = v7;
+        if (v0 > v4) v4 = v0;
+        if (v2 > v4) { t = v2; v2 = v4; v4 = t; }
+        if (v3 > v5) v3 = v5;
+        return Math.max(v3, v4);
+    }
+}
@@ -0,0 +1,163 @@
+package com.cartopia.builder;
+
+import java.util.Arrays;
+
+/**
+ * Фильтры карты высот SurfaceGenerator: поле row-major, i = z * width + x.
+ *
+ * Эрозия/дилатация — раздельно по строкам и столбцам алгоритмом van Herk / Gil-Werman:
+ * O(1) сравнений на клетку при любом радиусе. Окно у края обрезается (клетки вне области
+ * не участвуют), как и в прежней поклеточной версии. Медиана 8 соседей — сеть сравнений
+ * без массивов и сортировки; края обрабатываются отдельно от внутреннего цикла.
+ * Внутренние циклы по отрезкам строк — через {@link GridKernels} (SIMD, если доступен).
+ *
+ * Проходы идут полосами через {@link GridBands}; результат тот же, что в одном потоке.
+ * Поля-буферы живут в экземпляре и переиспользуются между вызовами; сам экземпляр — с одного потока.
+ */
+final class HeightFilters {
+
+    private final int width, depth, cells;
+    private final int[] a, b;          // промежуточные поля
+    private final int[] rowS, rowG;    // скользящие строки для прохода по столбцам
+    private final GridKernels kernels = GridKernels.get();
+
+    HeightFilters(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.cells = width * depth;
+        this.a = new int[cells];
+        this.b = new int[cells];
+        this.rowS = new int[width];
+        this.rowG = new int[width];
+    }
+
+    // ---------- медиана ----------
+
+    /**
+     * iters раз: h = (медиана 8 соседей + h) / 2. Соседи вне области заменяются самой клеткой,
+     * медиана — верхняя из двух средних (5-й по возрастанию).
+     */
+    void medianBlur(int[] h, int iters) {
+        int[] cur = h, next = a;
+        for (int it = 0; it < iters; it++) {
+            final int[] src = cur, dst = next;
+            if (width >= 3 && depth >= 3) {
+                // внутренние строки 1..depth-2 полосами: читаем только src, пишем только свои строки dst
+                GridBands.forEach(depth - 2, (from, to) -> {
+                    for (int z = from + 1; z <= to; z++) {
+                        int row = z * width;
+                        kernels.medianHalf(src, dst, row + 1, row + width - 1, width);
+                    }
+                });
+            }
+            // края: первая/последняя строка и первый/последний столбец
+            for (int x = 0; x < width; x++) {
+                medianBorder(src, dst, x, 0);
+                if (depth > 1) medianBorder(src, dst, x, depth - 1);
+            }
+            for (int z = 1; z < depth - 1; z++) {
+                medianBorder(src, dst, 0, z);
+                if (width > 1) medianBorder(src, dst, width - 1, z);
+            }
+            cur = dst; next = src;
+        }
+        if (cur != h) System.arraycopy(cur, 0, h, 0, cells);
+    }
+
+    private void medianBorder(int[] cur, int[] next, int x, int z) {
+        int y = cur[z * width + x];
+        int med = GridKernels.median8(at(cur, x + 1, z, y), at(cur, x - 1, z, y),
+                                      at(cur, x, z + 1, y), at(cur, x, z - 1, y),
+                                      at(cur, x + 1, z + 1, y), at(cur, x - 1, z - 1, y),
+                                      at(cur, x + 1, z - 1, y), at(cur, x - 1, z + 1, y));
+        next[z * width + x] = (med + y) / 2;
+    }
+
+    private int at(int[] h, int x, int z, int center) {
+        return (x >= 0 && x < width && z >= 0 && z < depth) ? h[z * width + x] : center;
+    }
+
+    // ---------- морфология ----------
+
+    /** Открытие, затем закрытие квадратом (2r+1)², на месте. */
+    void openClose(int[] h, int r) {
+        extremum(h, a, r, false);   // открытие: эрозия
+        extremum(a, b, r, true);    //           дилатация
+        extremum(b, a, r, true);    // закрытие: дилатация
+        extremum(a, h, r, false);   //           эрозия
+    }
+
+    /**
+     * dst = min (max) по окну (2r+1)², обрезанному краями. src и dst могут совпадать.
+     *
+     * vHGW на отрезке, дополненном r «нейтральными» значениями с обеих сторон и разбитом на блоки
+     * длины k = 2r+1: окно [j, j+2r] задевает не больше двух блоков, его экстремум =
+     * op(суффикс блока с j, префикс блока до j+2r).
+     */
+    private void extremum(int[] src, int[] dst, int r, boolean max) {
+        if (r <= 0) { if (src != dst) System.arraycopy(src, 0, dst, 0, cells); return; }
+        final int k = 2 * r + 1;
+        final int none = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+        // по строкам, полосами строк: src -> mid; запись идёт позади чтения, так что mid может совпадать с src
+        final int[] mid = (dst == b) ? a : b;
+        final int n = width, padded = width + 2 * r;
+        GridBands.forEach(depth, (from, to) -> {
+            final int[] lineS = new int[n]; // суффиксные экстремумы строки, свой на полосу
+            for (int z = from; z < to; z++) {
+                final int row = z * width;
+                int s = none;
+                for (int j = padded - 1; j >= 0; j--) {
+                    int p = j - r;
+                    int v = (p >= 0 && p < n) ? src[row + p] : none;
+                    s = ((j + 1) % k == 0 || j == padded - 1) ? v : op(s, v, max);
+                    if (j < n) lineS[j] = s;
+                }
+                int g = none;
+                for (int j = 0; j < padded; j++) {
+                    int p = j - r;
+                    int v = (p >= 0 && p < n) ? src[row + p] : none;
+                    g = (j % k == 0) ? v : op(g, v, max);
+                    int o = j - 2 * r;
+                    if (o >= 0) mid[row + o] = op(lineS[o], g, max);
+                }
+            }
+        });
+
+        // по столбцам, полосами столбцов: строка за строкой (mid -> dst), суффиксы пишутся прямо в dst;
+        // rowS/rowG общие, но каждая полоса трогает только свои x
+        final int paddedZ = depth + 2 * r;
+        GridBands.forEach(width, (x0, x1) -> {
+            final int n0 = x1 - x0;
+            for (int j = paddedZ - 1; j >= 0; j--) {
+                int p = j - r;
+                boolean restart = (j + 1) % k == 0 || j == paddedZ - 1;
+                boolean inside = p >= 0 && p < depth;
+                if (restart) {
+                    if (inside) System.arraycopy(mid, p * width + x0, rowS, x0, n0);
+                    else Arrays.fill(rowS, x0, x1, none);
+                } else if (inside) {
+                    kernels.combine(rowS, x0, mid, p * width + x0, n0, max);
+                }
+                if (j < depth) System.arraycopy(rowS, x0, dst, j * width + x0, n0);
+            }
+            for (int j = 0; j < paddedZ; j++) {
+                int p = j - r;
+                boolean restart = j % k == 0;
+                boolean inside = p >= 0 && p < depth;
+                if (restart) {
+                    if (inside) System.arraycopy(mid, p * width + x0, rowG, x0, n0);
+                    else Arrays.fill(rowG, x0, x1, none);
+                } else if (inside) {
+                    kernels.combine(rowG, x0, mid, p * width + x0, n0, max);
+                }
+                int o = j - 2 * r;
+                if (o >= 0) kernels.combine(dst, o * width + x0, rowG, x0, n0, max);
+            }
+        });
+    }
+
+    private static int op(int x, int y, boolean max) {
+        return max ? Math.max(x, y) : Math.min(x, y);
+    }
+}
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -27,11 +28,13 @@ public class InfoBoardsGenerator {
     private static final Block WALL_SIGN_BLOCK     = Blocks.DARK_OAK_WALL_SIGN;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public InfoBoardsGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -242,26 +245,26 @@ public class InfoBoardsGenerator {
     // ===== Низкоуровневые постановщики БЕЗ затирания рельефа =====
     private void placeBlockIfAir(int x, int y, int z, Block block) {
         BlockPos pos = new BlockPos(x, y, z);
-        if (level.getBlockState(pos).isAir()) {
-            level.setBlock(pos, block.defaultBlockState(), 3);
+        if (world.getBlockState(pos).isAir()) {
+            world.setBlock(pos, block.defaultBlockState(), 3);
         }
     }
 
     private void placeWallSignIfAir(int x, int y, int z, Direction facing) {
         BlockPos pos = new BlockPos(x, y, z);
-        if (!level.getBlockState(pos).isAir()) return; // ничего не затираем
+        if (!world.getBlockState(pos).isAir()) return; // ничего не затираем
         BlockState st = WALL_SIGN_BLOCK.defaultBlockState();
         try {
             if (st.hasProperty(HorizontalDirectionalBlock.FACING)) {
                 st = st.setValue(HorizontalDirectionalBlock.FACING, facing);
             }
         } catch (Throwable ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private void placeStandingSignIfAir(int x, int y, int z, int rotation0to15) {
         BlockPos pos = new BlockPos(x, y, z);
-        if (!level.getBlockState(pos).isAir()) return; // не затираем
+        if (!world.getBlockState(pos).isAir()) return; // не затираем
         BlockState st = STANDING_SIGN_BLOCK.defaultBlockState();
         try {
             if (st.hasProperty(StandingSignBlock.ROTATION)) {
@@ -269,7 +272,7 @@ public class InfoBoardsGenerator {
                 st = st.setValue(StandingSignBlock.ROTATION, rot);
             }
         } catch (Throwable ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     // ===== Рельеф =====
@@ -299,7 +302,7 @@ public class InfoBoardsGenerator {
         } catch (Throwable ignore) {}
 
         // fallback — верхняя ненулевая колонна минус 1 => грунт
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== Утилиты =====
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -69,11 +70,13 @@ public class LeisureRestGenerator {
     private final List<Polyline> roads = new ArrayList<>();
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public LeisureRestGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -600,7 +603,7 @@ public class LeisureRestGenerator {
         if (st.hasProperty(BlockStateProperties.HALF)) {
             st = st.setValue(BlockStateProperties.HALF, Half.BOTTOM);
         }
-        level.setBlock(new BlockPos(x, y + 1, z), st, 3);
+        world.setBlock(new BlockPos(x, y + 1, z), st, 3);
     }
 
     private void placeWallSignOnTerrain(int x, int z, Direction facing) {
@@ -610,7 +613,7 @@ public class LeisureRestGenerator {
         if (st.getBlock() instanceof WallSignBlock && st.hasProperty(BlockStateProperties.HORIZONTAL_FACING)) {
             st = st.setValue(BlockStateProperties.HORIZONTAL_FACING, facing);
         }
-        level.setBlock(new BlockPos(x, y + 1, z), st, 3);
+        world.setBlock(new BlockPos(x, y + 1, z), st, 3);
     }
 
     private void placeBlockSquareFollowTerrain(int cx, int cz, int r, int offsetAboveGround, Block block) {
@@ -619,7 +622,7 @@ public class LeisureRestGenerator {
                 int x = cx + dx, z = cz + dz;
                 int y = groundY(x, z);
                 if (y == Integer.MIN_VALUE) continue;
-                level.setBlock(new BlockPos(x, y + 1 + offsetAboveGround, z), block.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(x, y + 1 + offsetAboveGround, z), block.defaultBlockState(), 3);
             }
         }
     }
@@ -627,11 +630,11 @@ public class LeisureRestGenerator {
     private void placeBlockOnTerrain(int x, int z, Block b) {
         int y = groundY(x, z);
         if (y == Integer.MIN_VALUE) return;
-        level.setBlock(new BlockPos(x, y + 1, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y + 1, z), b.defaultBlockState(), 3);
     }
 
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
     }
 
     // === ориентация по ближайшей дороге ===
@@ -789,7 +792,7 @@ public class LeisureRestGenerator {
                 }
             }
         } catch (Throwable ignore) {}
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     private static boolean inBounds(Pt p, int minX, int maxX, int minZ, int maxZ) {
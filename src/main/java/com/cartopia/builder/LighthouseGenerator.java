@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -32,11 +33,13 @@ public class LighthouseGenerator {
     private static final int STRIPE_HEIGHT = 2; // высота одной цветной полосы
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public LighthouseGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -463,7 +466,7 @@ public class LighthouseGenerator {
         setAir(x, y, z);
         setAir(x, y+1, z);
 
-        if (level.getBlockState(new BlockPos(x, y-1, z)).isAir())
+        if (world.getBlockState(new BlockPos(x, y-1, z)).isAir())
             setBlockSafe(x, y-1, z, Blocks.STONE_BRICKS);
 
         BlockState lower = Blocks.IRON_DOOR.defaultBlockState()
@@ -474,20 +477,20 @@ public class LighthouseGenerator {
                 .setValue(DoorBlock.POWERED, Boolean.FALSE);
         BlockState upper = lower.setValue(DoorBlock.HALF, DoubleBlockHalf.UPPER);
 
-        level.setBlock(new BlockPos(x, y,   z), lower, 3);
-        level.setBlock(new BlockPos(x, y+1, z), upper, 3);
+        world.setBlock(new BlockPos(x, y,   z), lower, 3);
+        world.setBlock(new BlockPos(x, y+1, z), upper, 3);
     }
 
     // ===== низкоуровневые set'ы =====
     private void setBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
     }
     private void setBlockIfAir(int x, int y, int z, Block block) {
         BlockPos p = new BlockPos(x,y,z);
-        if (level.getBlockState(p).isAir()) level.setBlock(p, block.defaultBlockState(), 3);
+        if (world.getBlockState(p).isAir()) world.setBlock(p, block.defaultBlockState(), 3);
     }
     private void setAir(int x, int y, int z) {
-        level.setBlock(new BlockPos(x,y,z), Blocks.AIR.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), Blocks.AIR.defaultBlockState(), 3);
     }
 
     // ===== высота рельефа =====
@@ -516,7 +519,7 @@ public class LighthouseGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== утилиты =====
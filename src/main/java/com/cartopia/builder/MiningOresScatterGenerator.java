@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -22,11 +23,13 @@ public class MiningOresScatterGenerator {
     private static final double CELL_PLACE_PROB = 0.05; // 5% шанс поставить руду на клетке
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public MiningOresScatterGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -331,9 +334,9 @@ public class MiningOresScatterGenerator {
 
         BlockPos target = new BlockPos(x, yBase + 1, z);
         // ставим только если в точке воздух — не трогаем существующие объекты
-        if (!level.isEmptyBlock(target)) return false;
+        if (!world.isEmptyBlock(target)) return false;
 
-        level.setBlock(target, oreBlock.defaultBlockState(), 3);
+        world.setBlock(target, oreBlock.defaultBlockState(), 3);
         return true;
     }
 
@@ -364,7 +367,7 @@ public class MiningOresScatterGenerator {
         } catch (Throwable ignore) {}
 
         // fallback по миру: верх блока рельефа
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // --- утилиты ---
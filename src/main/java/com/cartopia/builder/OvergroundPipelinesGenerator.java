@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -29,6 +30,7 @@ public class OvergroundPipelinesGenerator {
 
     // ===== Инфраструктура =====
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
@@ -37,6 +39,7 @@ public class OvergroundPipelinesGenerator {
 
     public OvergroundPipelinesGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -427,11 +430,11 @@ public class OvergroundPipelinesGenerator {
         if (base == Integer.MIN_VALUE) return false;
         if (yPipe <= base + 1) return false;
 
-        Block groundBlock = level.getBlockState(new BlockPos(x, base, z)).getBlock();
+        Block groundBlock = world.getBlockState(new BlockPos(x, base, z)).getBlock();
         if (groundBlock == Blocks.GRAY_CONCRETE || groundBlock == Blocks.WHITE_CONCRETE || groundBlock == Blocks.YELLOW_CONCRETE) {
             return false;
         }
-        Block atop = level.getBlockState(new BlockPos(x, base + 1, z)).getBlock();
+        Block atop = world.getBlockState(new BlockPos(x, base + 1, z)).getBlock();
         if (isRailBlock(atop)) return false;
 
         for (int y = base + 1; y <= yPipe - 1; y++) {
@@ -443,7 +446,7 @@ public class OvergroundPipelinesGenerator {
 
     // ===== Утилиты мира/рельефа =====
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
     }
 
     private int groundY(int x, int z) {
@@ -471,7 +474,7 @@ public class OvergroundPipelinesGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     private static boolean inWorld(int x, int z, int minX, int maxX, int minZ, int maxZ) {
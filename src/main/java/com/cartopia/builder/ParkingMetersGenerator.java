@@ -1,6 +1,7 @@
 package com.cartopia.builder;
 
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -21,11 +22,13 @@ public class ParkingMetersGenerator {
     private static final Block METER_BLOCK = Blocks.WARPED_FENCE; // два блока столбиком
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject  coords;
     private final GenerationStore store;
 
     public ParkingMetersGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -256,12 +259,12 @@ public class ParkingMetersGenerator {
 
     private void clearAir(int x, int yStart, int z, int height) {
         for (int dy = 0; dy < height; dy++) {
-            level.setBlock(new BlockPos(x, yStart + dy, z), Blocks.AIR.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, yStart + dy, z), Blocks.AIR.defaultBlockState(), 3);
         }
     }
 
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
     }
 
     // --- высота рельефа ---
@@ -290,7 +293,7 @@ public class ParkingMetersGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // --- утилиты ---
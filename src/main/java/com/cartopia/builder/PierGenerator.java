@@ -3,18 +3,18 @@ package com.cartopia.builder;
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
 import com.cartopia.store.TerrainGridStore;
+import com.cartopia.write.BlockAccess;
+import com.cartopia.write.BlockPalette;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraftforge.registries.ForgeRegistries;
 
 import java.util.*;
 
@@ -22,6 +22,7 @@ import java.util.*;
 public class PierGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
     private final TerrainGridStore grid;
@@ -34,6 +35,7 @@ public class PierGenerator {
     }
     public PierGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
         this.grid  = (store != null) ? store.grid : null;
@@ -304,7 +306,7 @@ public class PierGenerator {
         if (y0 < worldMin || y0 > worldMax) return;
 
         BlockPos pos = new BlockPos(x, y0, z);
-        BlockState top = level.getBlockState(pos);
+        BlockState top = world.getBlockState(pos);
 
         // --- Разрешаем ставить, если:
         //  1) там воздух, ИЛИ
@@ -321,7 +323,7 @@ public class PierGenerator {
             return;
         }
 
-        level.setBlock(pos, plank.defaultBlockState(), 3);
+        world.setBlock(pos, plank.defaultBlockState(), 3);
     }
 
     // === Чтение groundY из TerrainGridStore/coords.terrainGrid ===
@@ -365,8 +367,7 @@ public class PierGenerator {
 
     // === Утилиты ===
     private static Block resolveBlock(String id) {
-        Block b = ForgeRegistries.BLOCKS.getValue(ResourceLocation.tryParse(id));
-        return (b != null ? b : Blocks.OAK_PLANKS);
+        return BlockPalette.block(id, Blocks.OAK_PLANKS);
     }
 
     private static String optString(JsonObject o, String k) {
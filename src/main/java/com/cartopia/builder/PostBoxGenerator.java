@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -25,11 +26,13 @@ public class PostBoxGenerator {
     private static final Block CHEST      = Blocks.CHEST;     // «ящик» сверху
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject  coords;
     private final GenerationStore store;
 
     public PostBoxGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -228,16 +231,16 @@ public class PostBoxGenerator {
     // --- расчистка воздуха ---
     private void clearAir(int x, int yStart, int z, int height) {
         for (int dy = 0; dy < height; dy++) {
-            level.setBlock(new BlockPos(x, yStart + dy, z), Blocks.AIR.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, yStart + dy, z), Blocks.AIR.defaultBlockState(), 3);
         }
     }
 
     // --- низкоуровневые set'ы ---
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
     }
     private void setBlockState(int x, int y, int z, BlockState st) {
-        level.setBlock(new BlockPos(x, y, z), st, 3);
+        world.setBlock(new BlockPos(x, y, z), st, 3);
     }
 
     // --- высота рельефа ---
@@ -266,7 +269,7 @@ public class PostBoxGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // --- утилиты ---
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -36,11 +37,13 @@ public class PowerLinesGenerator {
 
     // ===== Инфраструктура =====
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public PowerLinesGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -390,7 +393,7 @@ public class PowerLinesGenerator {
 
     // ===== Низкоуровневые сеттеры и рельеф =====
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
     }
 
     private int groundY(int x, int z) {
@@ -419,7 +422,7 @@ public class PowerLinesGenerator {
         } catch (Throwable ignore) {}
 
         // мир
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== Геометрические утилиты =====
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.*;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
@@ -38,6 +39,7 @@ public class PublicTransportShelterGenerator {
 
     // Сервис
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
@@ -46,6 +48,7 @@ public class PublicTransportShelterGenerator {
 
     public PublicTransportShelterGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -281,7 +284,7 @@ public class PublicTransportShelterGenerator {
         int base = groundY(x, z);
         if (base == Integer.MIN_VALUE) return;
         for (int i = 1; i <= height; i++) {
-            level.setBlock(new BlockPos(x, base + i, z), b.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, base + i, z), b.defaultBlockState(), 3);
         }
     }
 
@@ -290,7 +293,7 @@ public class PublicTransportShelterGenerator {
         int base = groundY(x, z);
         if (base == Integer.MIN_VALUE) return;
         for (int i = 1; i <= height; i++) {
-            level.setBlock(new BlockPos(x, base + i, z), b.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, base + i, z), b.defaultBlockState(), 3);
         }
     }
 
@@ -298,14 +301,14 @@ public class PublicTransportShelterGenerator {
         if (!inBounds(x, z)) return;
         int base = groundY(x, z);
         if (base == Integer.MIN_VALUE) return;
-        level.setBlock(new BlockPos(x, base + 1, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, base + 1, z), b.defaultBlockState(), 3);
     }
 
     private void placeBlockOnTerrainLayer(int x, int z, Block b, int layerOffset) {
         if (!inBounds(x, z)) return;
         int base = groundY(x, z);
         if (base == Integer.MIN_VALUE) return;
-        level.setBlock(new BlockPos(x, base + 1 + layerOffset, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, base + 1 + layerOffset, z), b.defaultBlockState(), 3);
     }
 
     // ==== Скамейка (две ступени вплотную), без табличек ====
@@ -328,7 +331,7 @@ public class PublicTransportShelterGenerator {
         if (st.hasProperty(BlockStateProperties.HORIZONTAL_FACING)) {
             st = st.setValue(BlockStateProperties.HORIZONTAL_FACING, facing);
         }
-        level.setBlock(new BlockPos(x, base + 1, z), st, 3);
+        world.setBlock(new BlockPos(x, base + 1, z), st, 3);
     }
 
     // ==== Геометрия/утилиты ====
@@ -479,7 +482,7 @@ public class PublicTransportShelterGenerator {
                 }
             }
         } catch (Throwable ignore) {}
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     private boolean inBounds(int x, int z) {
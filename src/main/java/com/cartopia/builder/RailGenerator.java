@@ -3,17 +3,17 @@ package com.cartopia.builder;
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
 import com.cartopia.store.TerrainGridStore;
+import com.cartopia.write.BlockAccess;
+import com.cartopia.write.BlockPalette;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
-import net.minecraftforge.registries.ForgeRegistries;
 
 import java.util.*;
 
@@ -25,6 +25,7 @@ import java.util.*;
 public class RailGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;      // может быть null
     private final TerrainGridStore grid;      // может быть null
@@ -32,6 +33,7 @@ public class RailGenerator {
     /** Новый конструктор — с доступом к стору. */
     public RailGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
         this.grid = (store != null) ? store.grid : null;
@@ -298,11 +300,11 @@ public class RailGenerator {
             BlockPos basePos = new BlockPos(x, yBase, z);
             BlockPos railPos = basePos.above();
 
-            if (level.getBlockState(basePos).getBlock() != cobble) {
-                level.setBlock(basePos, cobble.defaultBlockState(), 3);
+            if (world.getBlockState(basePos).getBlock() != cobble) {
+                world.setBlock(basePos, cobble.defaultBlockState(), 3);
             }
-            if (!isRailBlock(level.getBlockState(railPos).getBlock())) {
-                level.setBlock(railPos, railBlock.defaultBlockState(), 3);
+            if (!isRailBlock(world.getBlockState(railPos).getBlock())) {
+                world.setBlock(railPos, railBlock.defaultBlockState(), 3);
             }
 
             yHintTop = yBase;        // ускорение фоллбэка
@@ -338,15 +340,14 @@ public class RailGenerator {
 
         if (yBase < worldMin + 1 || yRail > worldMax) return;
 
-        level.setBlock(new BlockPos(x, yBase, z), cobble.defaultBlockState(), 3);
-        level.setBlock(new BlockPos(x, yRail, z), rail.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, yBase, z), cobble.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, yRail, z), rail.defaultBlockState(), 3);
     }
 
     // ===== прочие утилиты =====
 
     private static Block resolveBlock(String id) {
-        Block b = ForgeRegistries.BLOCKS.getValue(ResourceLocation.tryParse(id));
-        return (b != null ? b : Blocks.STONE);
+        return BlockPalette.block(id, Blocks.STONE);
     }
 
     @SuppressWarnings("unused")
@@ -524,13 +525,13 @@ public class RailGenerator {
             int from = Math.min(worldMax, hintY + 16);
             int to   = Math.max(worldMin, hintY - 16);
             for (int y = from; y >= to; y--) {
-                Block b = level.getBlockState(new BlockPos(x, y, z)).getBlock();
-                if (!level.getBlockState(new BlockPos(x, y, z)).isAir() && !isRailBlock(b)) return y;
+                Block b = world.getBlockState(new BlockPos(x, y, z)).getBlock();
+                if (!world.getBlockState(new BlockPos(x, y, z)).isAir() && !isRailBlock(b)) return y;
             }
         }
         for (int y = worldMax; y >= worldMin; y--) {
-            Block b = level.getBlockState(new BlockPos(x, y, z)).getBlock();
-            if (!level.getBlockState(new BlockPos(x, y, z)).isAir() && !isRailBlock(b)) return y;
+            Block b = world.getBlockState(new BlockPos(x, y, z)).getBlock();
+            if (!world.getBlockState(new BlockPos(x, y, z)).isAir() && !isRailBlock(b)) return y;
         }
         return Integer.MIN_VALUE;
     }
@@ -556,8 +557,8 @@ public class RailGenerator {
         if (yBase + 2 > worldMax) return; // нехватает высоты
 
         // Ставим две стены: на yBase+1 и yBase+2
-        level.setBlock(new BlockPos(x, yBase + 1, z), wallBlock.defaultBlockState(), 3);
-        level.setBlock(new BlockPos(x, yBase + 2, z), wallBlock.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, yBase + 1, z), wallBlock.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, yBase + 2, z), wallBlock.defaultBlockState(), 3);
     }
 
     /** Получить XZ точки (node или первая точка geometry). */
@@ -3,6 +3,7 @@ package com.cartopia.builder;
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
 import com.cartopia.store.TerrainGridStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -27,6 +28,7 @@ import java.util.*;
 public class RailLampGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;      // может быть null (fallback к старому поведению)
     private final TerrainGridStore grid;      // может быть null
@@ -39,6 +41,7 @@ public class RailLampGenerator {
     // НОВЫЙ конструктор: передаём store (из пайплайна). coords оставляем для геопривязки и fallback'ов.
     public RailLampGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
         this.grid = (store != null) ? store.grid : null;
@@ -328,7 +331,7 @@ public class RailLampGenerator {
         if (st.hasProperty(SlabBlock.TYPE)) {
             st = st.setValue(SlabBlock.TYPE, SlabType.BOTTOM);
         }
-        level.setBlock(new BlockPos(x, y, z), st, 3);
+        world.setBlock(new BlockPos(x, y, z), st, 3);
     }
 
     // === УТИЛИТЫ / ФИЛЬТРЫ (как было) ===
@@ -581,16 +584,16 @@ public class RailLampGenerator {
             int to   = Math.max(worldMin, hintY - 16);
             for (int y = from; y >= to; y--) {
                 BlockPos pos = new BlockPos(x, y, z);
-                Block b = level.getBlockState(pos).getBlock();
+                Block b = world.getBlockState(pos).getBlock();
                 if (isRailBlock(b) || isLampComponent(b)) continue; // эти — «как воздух»
-                if (!level.getBlockState(pos).isAir()) return y;
+                if (!world.getBlockState(pos).isAir()) return y;
             }
         }
         for (int y = worldMax; y >= worldMin; y--) {
             BlockPos pos = new BlockPos(x, y, z);
-            Block b = level.getBlockState(pos).getBlock();
+            Block b = world.getBlockState(pos).getBlock();
             if (isRailBlock(b) || isLampComponent(b)) continue;
-            if (!level.getBlockState(pos).isAir()) return y;
+            if (!world.getBlockState(pos).isAir()) return y;
         }
         return Integer.MIN_VALUE;
     }
@@ -610,7 +613,7 @@ public class RailLampGenerator {
         if (isWaterCellByAny(edgeX, edgeZ)) return false;
 
         // запрещённые основания (дорожные бетоны)
-        Block under = level.getBlockState(new BlockPos(edgeX, gridY, edgeZ)).getBlock();
+        Block under = world.getBlockState(new BlockPos(edgeX, gridY, edgeZ)).getBlock();
         if (isGrayConcrete(under)) return false;
 
         int y0 = gridY + 1;
@@ -629,22 +632,22 @@ public class RailLampGenerator {
 
         // --- Сухой прогон на воздух (ничего не перетираем)
         for (int y = y0; y <= yTop; y++) {
-            if (!level.getBlockState(new BlockPos(edgeX, y, edgeZ)).isAir()) return false;
+            if (!world.getBlockState(new BlockPos(edgeX, y, edgeZ)).isAir()) return false;
         }
-        if (!level.getBlockState(new BlockPos(edgeX,      ySlab, edgeZ     )).isAir()) return false;
-        if (!level.getBlockState(new BlockPos(edgeX + sx, ySlab, edgeZ + sz)).isAir()) return false;
+        if (!world.getBlockState(new BlockPos(edgeX,      ySlab, edgeZ     )).isAir()) return false;
+        if (!world.getBlockState(new BlockPos(edgeX + sx, ySlab, edgeZ + sz)).isAir()) return false;
         if (gy >= worldMin && gy <= worldMax && gx >= minX && gx <= maxX && gz >= minZ && gz <= maxZ) {
-            if (!level.getBlockState(new BlockPos(gx, gy, gz)).isAir()) return false;
+            if (!world.getBlockState(new BlockPos(gx, gy, gz)).isAir()) return false;
         }
 
         // --- Постановка
         for (int y = y0; y <= yTop; y++) {
-            level.setBlock(new BlockPos(edgeX, y, edgeZ), Blocks.ANDESITE_WALL.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(edgeX, y, edgeZ), Blocks.ANDESITE_WALL.defaultBlockState(), 3);
         }
         placeBottomSlab(edgeX,      ySlab, edgeZ,      Blocks.SMOOTH_STONE_SLAB);
         placeBottomSlab(edgeX + sx, ySlab, edgeZ + sz, Blocks.SMOOTH_STONE_SLAB);
         if (gy >= worldMin && gy <= worldMax && gx >= minX && gx <= maxX && gz >= minZ && gz <= maxZ) {
-            level.setBlock(new BlockPos(gx, gy, gz), Blocks.GLOWSTONE.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(gx, gy, gz), Blocks.GLOWSTONE.defaultBlockState(), 3);
         }
         return true;
     }
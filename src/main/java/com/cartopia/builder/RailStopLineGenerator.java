@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.*;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
@@ -15,6 +16,7 @@ import java.util.*;
 public class RailStopLineGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
@@ -28,6 +30,7 @@ public class RailStopLineGenerator {
 
     public RailStopLineGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
     }
@@ -186,7 +189,7 @@ public class RailStopLineGenerator {
                 if (by == null) by = scanTopY(bx, bz);
                 if (by == null) continue;
 
-                level.setBlock(new BlockPos(bx, by, bz), Blocks.WHITE_CONCRETE.defaultBlockState(), 3);
+                world.setBlock(new BlockPos(bx, by, bz), Blocks.WHITE_CONCRETE.defaultBlockState(), 3);
             }
         }
     }
@@ -333,7 +336,7 @@ public class RailStopLineGenerator {
         final int max = level.getMaxBuildHeight() - 1;
         final int min = level.getMinBuildHeight();
         for (int y = max; y >= min; y--) {
-            if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
         }
         return null;
     }
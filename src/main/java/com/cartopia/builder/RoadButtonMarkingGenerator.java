@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.*;
 
 import net.minecraft.core.BlockPos;
@@ -21,6 +22,7 @@ import java.util.*;
 public class RoadButtonMarkingGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
@@ -48,6 +50,7 @@ public class RoadButtonMarkingGenerator {
 
     public RoadButtonMarkingGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
     }
@@ -464,13 +467,13 @@ public class RoadButtonMarkingGenerator {
         if (y <= level.getMinBuildHeight() || y >= level.getMaxBuildHeight()) return false;
 
         BlockPos pos = new BlockPos(x, y, z);
-        if (!level.getBlockState(pos).isAir()) return false;
+        if (!world.getBlockState(pos).isAir()) return false;
 
         BlockState state = Blocks.BIRCH_BUTTON.defaultBlockState()
                 .setValue(ButtonBlock.FACE, AttachFace.FLOOR)
                 .setValue(ButtonBlock.FACING, facing);
 
-        level.setBlock(pos, state, 3);
+        world.setBlock(pos, state, 3);
         return true;
     }
 
@@ -683,7 +686,7 @@ public class RoadButtonMarkingGenerator {
         final int max = level.getMaxBuildHeight() - 1;
         final int min = level.getMinBuildHeight();
         for (int y = max; y >= min; y--) {
-            if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
         }
         return null;
     }
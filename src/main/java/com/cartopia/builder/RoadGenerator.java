@@ -3,24 +3,27 @@ package com.cartopia.builder;
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
 import com.cartopia.store.TerrainGridStore;
+import com.cartopia.write.BlockAccess;
+import com.cartopia.write.BlockPalette;
+import com.cartopia.write.BlockWriter;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraftforge.registries.ForgeRegistries;
 
 import java.util.*;
 
 public class RoadGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
+    private final int minBuildY, maxBuildY;    // maxBuildY — исключительно
     private final JsonObject coords;           // как и раньше
     private final GenerationStore store;       // НОВОЕ: стрим фич и грид рельефа (может быть null)
     // === runway centerline lights ===
@@ -36,6 +39,19 @@ public class RoadGenerator {
     // НОВЫЙ конструктор — предпочтительно использовать его (из Pipeline передаём store).
     public RoadGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
+        this.minBuildY = level.getMinBuildHeight();
+        this.maxBuildY = level.getMaxBuildHeight();
+        this.coords = coords;
+        this.store = store;
+    }
+
+    // level == null — offline-режим (AnvilRegionWriter): блоки и высоты мира — через writer, чата нет
+    public RoadGenerator(ServerLevel level, JsonObject coords, GenerationStore store, BlockWriter writer) {
+        this.level = level;
+        this.world = (level != null) ? BlockAccess.of(level) : BlockAccess.of(writer);
+        this.minBuildY = writer.minBuildHeight();
+        this.maxBuildY = writer.maxBuildHeight();
         this.coords = coords;
         this.store = store;
     }
@@ -43,7 +59,7 @@ public class RoadGenerator {
     // --- широковещалка ---
     private static void broadcast(ServerLevel level, String msg) {
         try {
-            if (level.getServer() != null) {
+            if (level != null && level.getServer() != null) {
                 for (ServerPlayer p : level.getServer().getPlayerList().getPlayers()) {
                     p.sendSystemMessage(Component.literal("[Cartopia] " + msg));
                 }
@@ -55,9 +71,11 @@ public class RoadGenerator {
     // === Материалы дорог ===
     private static final class RoadStyle {
         final String blockId;
+        final int code;     // код в BlockPalette
         final int width;
         RoadStyle(String vanillaName, int width) {
             this.blockId = "minecraft:" + vanillaName;
+            this.code = BlockPalette.code(this.blockId);
             this.width = Math.max(1, width);
         }
     }
@@ -189,7 +207,7 @@ public class RoadGenerator {
 
 
                 int widthBlocks = widthFromTagsOrDefault(tags, style.width);
-                Block roadBlock = resolveBlock(style.blockId);
+                Block roadBlock = BlockPalette.block(style.code, Blocks.STONE);
                 roadBlock = pickRoadBlockFromSurface(tags, roadBlock);
 
                 // RUNWAY LAMPS: активируем только для аэродромной ВПП
@@ -267,7 +285,7 @@ public class RoadGenerator {
             RoadStyle style = ROAD_MATERIALS.getOrDefault(styleKey, new RoadStyle("stone", 4));
 
             int widthBlocks = widthFromTagsOrDefault(tags, style.width);
-            Block roadBlock = resolveBlock(style.blockId);
+            Block roadBlock = BlockPalette.block(style.code, Blocks.STONE);
             roadBlock = pickRoadBlockFromSurface(tags, roadBlock);
 
             // RUNWAY LAMPS: активируем только для аэродромной ВПП
@@ -358,18 +376,18 @@ public class RoadGenerator {
                 // if (wY != null && wY >= y) continue;
 
                 @SuppressWarnings("unused")
-                BlockState top = level.getBlockState(new BlockPos(xx, y, zz));
+                BlockState top = world.getBlockState(new BlockPos(xx, y, zz));
                 // if (top.getBlock() == Blocks.WATER) continue;
 
                 // --- runway centerline light каждые RUNWAY_LAMP_EVERY блоков по осевой (w==0) ---
                 if (runwayMode && w == 0) {
                     if (runwayLampStep % RUNWAY_LAMP_EVERY == 0) {
-                        level.setBlock(new BlockPos(xx, y, zz), Blocks.SEA_LANTERN.defaultBlockState(), 3);
+                        world.setBlock(new BlockPos(xx, y, zz), Blocks.SEA_LANTERN.defaultBlockState(), 3);
                     } else {
-                        level.setBlock(new BlockPos(xx, y, zz), roadBlock.defaultBlockState(), 3);
+                        world.setBlock(new BlockPos(xx, y, zz), roadBlock.defaultBlockState(), 3);
                     }
                 } else {
-                    level.setBlock(new BlockPos(xx, y, zz), roadBlock.defaultBlockState(), 3);
+                    world.setBlock(new BlockPos(xx, y, zz), roadBlock.defaultBlockState(), 3);
                 }
 
                 // счёт шага только по осевой точки линии, чтобы «каждые 10 блоков» было по центру
@@ -396,29 +414,24 @@ public class RoadGenerator {
 
     /** быстрый поиск поверхности рядом с предполагаемой высотой; иначе фулл-скан сверху вниз */
     private int findTopNonAirNear(int x, int z, Integer hintY) {
-        final int worldMin = level.getMinBuildHeight();
-        final int worldMax = level.getMaxBuildHeight() - 1;
+        final int worldMin = minBuildY;
+        final int worldMax = maxBuildY - 1;
 
         if (hintY != null) {
             int from = Math.min(worldMax, hintY + 16);
             int to   = Math.max(worldMin, hintY - 16);
             for (int y = from; y >= to; y--) {
-                if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+                if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
             }
         }
         for (int y = worldMax; y >= worldMin; y--) {
-            if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
         }
         return Integer.MIN_VALUE;
     }
 
     // === утилиты ===
 
-    private static Block resolveBlock(String id) {
-        Block b = ForgeRegistries.BLOCKS.getValue(ResourceLocation.tryParse(id));
-        return (b != null ? b : Blocks.STONE);
-    }
-
     private static boolean truthy(String v) {
         if (v == null) return false;
         v = v.trim().toLowerCase(Locale.ROOT);
@@ -3,6 +3,7 @@ package com.cartopia.builder;
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
 import com.cartopia.store.TerrainGridStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -38,6 +39,7 @@ public class RoadLampGenerator {
     private final Set<Long> placedByRoadLamps = new HashSet<>();
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;             // оставляем для геопривязки + фолбэков
     private final GenerationStore store;         // НОВОЕ: источник стримов/гридов (может быть null)
     private final TerrainGridStore grid;         // НОВОЕ: удобная ссылка (может быть null)
@@ -45,6 +47,7 @@ public class RoadLampGenerator {
     // --- конструкторы ---
     public RoadLampGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
         this.grid = (store != null) ? store.grid : null;
@@ -392,7 +395,7 @@ public class RoadLampGenerator {
         if (st.hasProperty(SlabBlock.TYPE)) {
             st = st.setValue(SlabBlock.TYPE, SlabType.BOTTOM);
         }
-        level.setBlock(new BlockPos(x, y, z), st, 3);
+        world.setBlock(new BlockPos(x, y, z), st, 3);
         placedByRoadLamps.add(BlockPos.asLong(x, y, z));
     }
 
@@ -409,9 +412,9 @@ public class RoadLampGenerator {
             for (int y = from; y >= to; y--) {
                 long key = BlockPos.asLong(x, y, z);
                 if (placedByRoadLamps.contains(key)) continue;
-                Block block = level.getBlockState(new BlockPos(x, y, z)).getBlock();
+                Block block = world.getBlockState(new BlockPos(x, y, z)).getBlock();
                 if (isLampComponent(block)) continue;
-                if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+                if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
             }
         }
 
@@ -419,9 +422,9 @@ public class RoadLampGenerator {
         for (int y = worldMax; y >= worldMin; y--) {
             long key = BlockPos.asLong(x, y, z);
             if (placedByRoadLamps.contains(key)) continue;
-            Block block = level.getBlockState(new BlockPos(x, y, z)).getBlock();
+            Block block = world.getBlockState(new BlockPos(x, y, z)).getBlock();
             if (isLampComponent(block)) continue;
-            if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
         }
         return Integer.MIN_VALUE;
     }
@@ -444,12 +447,12 @@ public class RoadLampGenerator {
         if (y0 > worldMax) return;
 
         // запрещённые основания: полотно дороги (кроме камня) и "дорожные" бетоны
-        Block under = level.getBlockState(new BlockPos(edgeX, gridY, edgeZ)).getBlock();
+        Block under = world.getBlockState(new BlockPos(edgeX, gridY, edgeZ)).getBlock();
         if ((isRoadLikeBlock(under) && !isStone(under)) || isForbiddenConcrete(under)) return;
 
         long baseKey = BlockPos.asLong(edgeX, y0, edgeZ);
         if (roadLampBases.contains(baseKey)) return;
-        if (!level.getBlockState(new BlockPos(edgeX, y0, edgeZ)).isAir()) return;
+        if (!world.getBlockState(new BlockPos(edgeX, y0, edgeZ)).isAir()) return;
 
         int yTop  = Math.min(y0 + ROAD_LAMP_COLUMN_WALLS - 1, worldMax);
         int ySlab = yTop + 1;
@@ -464,19 +467,19 @@ public class RoadLampGenerator {
 
         // --- Сухой прогон: все клетки конструкции должны быть воздухом
         for (int y = y0; y <= yTop; y++) {
-            if (!level.getBlockState(new BlockPos(edgeX, y, edgeZ)).isAir()) return;
+            if (!world.getBlockState(new BlockPos(edgeX, y, edgeZ)).isAir()) return;
         }
-        if (!level.getBlockState(new BlockPos(edgeX,              ySlab, edgeZ             )).isAir()) return;
-        if (!level.getBlockState(new BlockPos(edgeX + 1 * sx,     ySlab, edgeZ + 1 * sz    )).isAir()) return;
-        if (!level.getBlockState(new BlockPos(edgeX + 2 * sx,     ySlab, edgeZ + 2 * sz    )).isAir()) return;
+        if (!world.getBlockState(new BlockPos(edgeX,              ySlab, edgeZ             )).isAir()) return;
+        if (!world.getBlockState(new BlockPos(edgeX + 1 * sx,     ySlab, edgeZ + 1 * sz    )).isAir()) return;
+        if (!world.getBlockState(new BlockPos(edgeX + 2 * sx,     ySlab, edgeZ + 2 * sz    )).isAir()) return;
         if (gy >= worldMin && gy <= worldMax && gx >= minX && gx <= maxX && gz >= minZ && gz <= maxZ) {
-            if (!level.getBlockState(new BlockPos(gx, gy, gz)).isAir()) return;
+            if (!world.getBlockState(new BlockPos(gx, gy, gz)).isAir()) return;
         }
 
         // --- Постановка
         for (int y = y0; y <= yTop; y++) {
             BlockPos pos = new BlockPos(edgeX, y, edgeZ);
-            level.setBlock(pos, Blocks.ANDESITE_WALL.defaultBlockState(), 3);
+            world.setBlock(pos, Blocks.ANDESITE_WALL.defaultBlockState(), 3);
             placedByRoadLamps.add(BlockPos.asLong(edgeX, y, edgeZ));
         }
         placeBottomSlab(edgeX,              ySlab, edgeZ,              Blocks.SMOOTH_STONE_SLAB);
@@ -484,7 +487,7 @@ public class RoadLampGenerator {
         placeBottomSlab(edgeX + 2 * sx,     ySlab, edgeZ + 2 * sz,     Blocks.SMOOTH_STONE_SLAB);
 
         if (gy >= worldMin && gy <= worldMax && gx >= minX && gx <= maxX && gz >= minZ && gz <= maxZ) {
-            level.setBlock(new BlockPos(gx, gy, gz), Blocks.GLOWSTONE.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(gx, gy, gz), Blocks.GLOWSTONE.defaultBlockState(), 3);
             placedByRoadLamps.add(BlockPos.asLong(gx, gy, gz));
         }
         roadLampBases.add(baseKey);
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -25,11 +26,13 @@ public class SolarPanelGenerator {
 
     // ===== Инфраструктура =====
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public SolarPanelGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -332,7 +335,7 @@ public class SolarPanelGenerator {
     private void placeBlock(int x, int y, int z, Block block) {
         BlockPos pos = new BlockPos(x,y,z);
         BlockState st = block.defaultBlockState();
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     private int terrainYFromCoordsOrWorld(int x, int z, Integer hintY) {
@@ -361,7 +364,7 @@ public class SolarPanelGenerator {
         } catch (Throwable ignore) {}
 
         // мир
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== Утилиты =====
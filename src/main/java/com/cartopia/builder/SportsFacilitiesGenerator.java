@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -78,11 +79,13 @@ public class SportsFacilitiesGenerator {
     private final List<Pt>   golfPins           = new ArrayList<>();
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public SportsFacilitiesGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -326,7 +329,7 @@ public class SportsFacilitiesGenerator {
     private void buildGolfFlag(int x, int z) {
         int y = groundY(x, z);
         if (y == Integer.MIN_VALUE) return;
-        level.setBlock(new BlockPos(x, y + 1, z), RED_BANNER.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y + 1, z), RED_BANNER.defaultBlockState(), 3);
     }
 
     /** Стрельбище */
@@ -416,14 +419,14 @@ public class SportsFacilitiesGenerator {
     private void placeAtHeightOffset(int x, int z, Block b, int offsetAboveGround) {
         int y = groundY(x, z);
         if (y == Integer.MIN_VALUE) return;
-        level.setBlock(new BlockPos(x, y + 1 + offsetAboveGround, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y + 1 + offsetAboveGround, z), b.defaultBlockState(), 3);
     }
     /** Вертикальная колонна h блоков. */
     private void placeColumn(int x, int z, Block b, int height) {
         int y = groundY(x, z);
         if (y == Integer.MIN_VALUE) return;
         for (int i = 0; i < height; i++) {
-            level.setBlock(new BlockPos(x, y + 1 + i, z), b.defaultBlockState(), 3);
+            world.setBlock(new BlockPos(x, y + 1 + i, z), b.defaultBlockState(), 3);
         }
     }
 
@@ -446,7 +449,7 @@ public class SportsFacilitiesGenerator {
             if (st.getBlock() instanceof LadderBlock && st.hasProperty(BlockStateProperties.HORIZONTAL_FACING)) {
                 st = st.setValue(BlockStateProperties.HORIZONTAL_FACING, facing);
             }
-            level.setBlock(new BlockPos(x, y + 1 + i, z), st, 3);
+            world.setBlock(new BlockPos(x, y + 1 + i, z), st, 3);
         }
     }
 
@@ -463,7 +466,7 @@ public class SportsFacilitiesGenerator {
                 st = st.setValue(BlockStateProperties.HORIZONTAL_FACING, facing);
             }
         }
-        level.setBlock(new BlockPos(x, y + 1, z), st, 3);
+        world.setBlock(new BlockPos(x, y + 1, z), st, 3);
     }
 
     /** Крыша из забора. */
@@ -648,7 +651,7 @@ public class SportsFacilitiesGenerator {
                 }
             }
         } catch (Throwable ignore) {}
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // === JSON/OSM утилиты ===
@@ -0,0 +1,38 @@
+package com.cartopia.builder;
+
+import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockWriter;
+import com.cartopia.write.LevelBlockWriter;
+import com.google.gson.JsonObject;
+import net.minecraft.server.level.ServerLevel;
+
+import java.io.File;
+
+/** Всё, что нужно этапу генерации: мир, coords.json, сайдкары и исходные растры. */
+public final class StageContext {
+    public final ServerLevel level;             // null в offline-режиме (см. CartopiaStage#offline)
+    public final JsonObject coords;
+    public final GenerationStore store;        // может быть null (fallback на coords.json)
+    public final File demFile;
+    public final File landcoverFileOrNull;
+    /**
+     * Общий пакетный писатель блоков. Этапу не обязательно им пользоваться, но если пользуется —
+     * конвейер сам делает flush после этапа, до следующего.
+     */
+    public final BlockWriter writer;
+
+    public StageContext(ServerLevel level, JsonObject coords, GenerationStore store,
+                        File demFile, File landcoverFileOrNull) {
+        this(level, coords, store, demFile, landcoverFileOrNull, new LevelBlockWriter(level));
+    }
+
+    public StageContext(ServerLevel level, JsonObject coords, GenerationStore store,
+                        File demFile, File landcoverFileOrNull, BlockWriter writer) {
+        this.level = level;
+        this.writer = writer;
+        this.coords = coords;
+        this.store = store;
+        this.demFile = demFile;
+        this.landcoverFileOrNull = landcoverFileOrNull;
+    }
+}
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.*;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
@@ -16,6 +17,7 @@ import java.util.*;
 public class StopMarkingGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
@@ -30,6 +32,7 @@ public class StopMarkingGenerator {
 
     public StopMarkingGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
     }
@@ -278,7 +281,7 @@ public class StopMarkingGenerator {
         if (by == null) by = scanTopY(bx, bz);
         if (by == null) return;
 
-        level.setBlock(new BlockPos(bx, by, bz), Blocks.YELLOW_CONCRETE.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(bx, by, bz), Blocks.YELLOW_CONCRETE.defaultBlockState(), 3);
     }
 
     // ==== Приоритеты дорог ====
@@ -519,7 +522,7 @@ public class StopMarkingGenerator {
         final int max = level.getMaxBuildHeight() - 1;
         final int min = level.getMinBuildHeight();
         for (int y = max; y >= min; y--) {
-            if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
         }
         return null;
     }
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -41,11 +42,13 @@ public class SubstationGenerator {
     private static final int IRON_HEIGHT  = 2;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public SubstationGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -398,7 +401,7 @@ public class SubstationGenerator {
                 st = st.setValue(SlabBlock.TYPE, SlabType.BOTTOM); // нижняя половинка — «на землю»
             }
         } catch (Throwable ignore) {}
-        level.setBlock(new BlockPos(x,y,z), st, 3);
+        world.setBlock(new BlockPos(x,y,z), st, 3);
     }
 
     private void placeFenceColumnIfInside(Area area, int x, int z, int height, boolean withLantern) {
@@ -414,11 +417,11 @@ public class SubstationGenerator {
         try {
             st = st.setValue(TripWireHookBlock.FACING, facing);
         } catch (Throwable ignore) {}
-        level.setBlock(new BlockPos(x,y,z), st, 3);
+        world.setBlock(new BlockPos(x,y,z), st, 3);
     }
 
     private void placeBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
     }
 
     // ---- Рельеф ----
@@ -447,7 +450,7 @@ public class SubstationGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ---- Утилиты ----
@@ -3,27 +3,34 @@ package com.cartopia.builder;
 import com.cartopia.spawn.CartopiaSurfaceSpawn;
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockPalette;
+import com.cartopia.write.BlockWriter;
+import com.cartopia.write.LevelBlockWriter;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 
-import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
-import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
-import net.minecraftforge.registries.ForgeRegistries;
+import net.minecraft.world.level.block.state.BlockState;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
 import java.awt.image.Raster;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -50,7 +57,8 @@ public class SurfaceGenerator {
     // --- параметры генерации
     private static final int Y_BASE = -60;          // базовая отметка для нормализации DEM
     private static final int MAX_HEIGHT_DIFF = 3;
-    private static final int HEIGHT_BLUR_ITERS = 20;
+    private static final int HEIGHT_BLUR_ITERS = 20;               // для nearest-выборки DEM
+    private static final int HEIGHT_BLUR_ITERS_INTERPOLATED = 4;   // bilinear/bicubic — ступеней пикселя нет
     private static final int SURFACE_BLUR_ITERS = 8;
     private static final int SURFACE_BLUR_MIN_MAJORITY = 4;
 
@@ -70,8 +78,9 @@ public class SurfaceGenerator {
     // Новое: доступ к NDJSON и совместимой сетке
     private final GenerationStore store; // может быть null
 
-    // уменьшаем аллокации
-    private final BlockPos.MutableBlockPos mpos = new BlockPos.MutableBlockPos();
+    // пишем пачками по секциям; свет/высоты/пакеты — на flush
+    private final BlockWriter writer;
+    private long writtenReported = 0; // сколько блоков уже ушло в GenerationProgress
 
     // размеры рабочей сетки (устанавливаются в generate)
     private int minX, maxX, minZ, maxZ, width, height, totalCells;
@@ -84,7 +93,13 @@ public class SurfaceGenerator {
         this(level, coordsJson, demFile, landcoverFileOrNull, null);
     }
     public SurfaceGenerator(ServerLevel level, JsonObject coordsJson, File demFile, File landcoverFileOrNull, GenerationStore store) {
+        this(level, coordsJson, demFile, landcoverFileOrNull, store, new LevelBlockWriter(level));
+    }
+    // level == null — offline-режим (AnvilRegionWriter): высоты мира берём у writer, чата нет
+    public SurfaceGenerator(ServerLevel level, JsonObject coordsJson, File demFile, File landcoverFileOrNull,
+                            GenerationStore store, BlockWriter writer) {
         this.level = level;
+        this.writer = writer;
         this.coordsJson = coordsJson;
         this.demFile = demFile;
         this.landcoverFileOrNull = landcoverFileOrNull;
@@ -93,13 +108,14 @@ public class SurfaceGenerator {
 
     private static void broadcast(ServerLevel level, String msg) {
         try {
-            if (level.getServer() != null) {
+            if (level != null && level.getServer() != null) {
                 for (ServerPlayer p : level.getServer().getPlayerList().getPlayers()) {
                     p.sendSystemMessage(Component.literal("[Cartopia] " + msg));
                 }
             }
         } catch (Throwable ignore) {}
         System.out.println("[Cartopia] " + msg);
+        GenerationProgress.message(msg);
     }
 
     /** маппинг OSM-тегов -> блок Minecraft */
@@ -196,6 +212,8 @@ public class SurfaceGenerator {
         ZONE_MATERIALS.put("natural=ice_shelf",       "blue_ice");       // шельфовый лёд (если размечен как natural)
         ZONE_MATERIALS.put("landcover=ice",           "blue_ice");       // неофициальный, но применимый
         ZONE_MATERIALS.put("landcover=snow_and_ice",  "blue_ice");
+
+        BlockPalette.compile(ZONE_MATERIALS.values());
     }
 
     /** OLM: класс → блок */
@@ -240,8 +258,16 @@ public class SurfaceGenerator {
         LANDCOVER_CLASS_TO_BLOCK.put(0,   "water");              // no-data → вода
         LANDCOVER_CLASS_TO_BLOCK.put(250, "water");
         LANDCOVER_CLASS_TO_BLOCK.put(255, "water");
+
+        BlockPalette.compile(LANDCOVER_CLASS_TO_BLOCK.values());
     }
 
+    // служебные блоки placeBlocks — коды палитры
+    private static final int CODE_LAPIS = BlockPalette.code("lapis_block");
+    private static final int CODE_WATER = BlockPalette.code("water");
+    private static final int CODE_AIR   = BlockPalette.code("air");
+    private static final int CODE_CLIFF = BlockPalette.code("cracked_stone_bricks");
+
     // ====== Генерация ======
     public void generate() throws Exception {
         final JsonObject center = coordsJson.getAsJsonObject("center");
@@ -289,40 +315,60 @@ public class SurfaceGenerator {
         double[] elevM = new double[totalCells];
         double minElevation = Double.POSITIVE_INFINITY;
 
+        // Интерполяция DEM: nearest даёт террасы размером с пиксель DEM и требует долгого сглаживания
+        DemResample demResample = DemResample.BILINEAR;
+        int heightBlurIters = -1;
+        if (coordsJson.has("tuning") && coordsJson.get("tuning").isJsonObject()) {
+            JsonObject t = coordsJson.getAsJsonObject("tuning");
+            if (t.has("demResample")) demResample = DemResample.parse(t.get("demResample").getAsString());
+            if (t.has("heightBlurIters")) heightBlurIters = Math.max(0, t.get("heightBlurIters").getAsInt());
+        }
+        if (heightBlurIters < 0) {
+            heightBlurIters = demResample == DemResample.NEAREST ? HEIGHT_BLUR_ITERS : HEIGHT_BLUR_ITERS_INTERPOLATED;
+        }
+
+        // долгота столбца и широта строки (проекция раздельная) — сэмплер считает по ним таблицы пикселей
+        double[] colLng = new double[width], rowLat = new double[height];
+        for (int x=minX; x<=maxX; x++) colLng[x - minX] = blockToLatLng(x, centerZ, centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ)[1];
+        for (int z=minZ; z<=maxZ; z++) rowLat[z - minZ] = blockToLatLng(centerX, z, centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ)[0];
+
         try (HeightSampler dem = new HeightSampler(demFile, west, east, south, north)) {
-            for (int x=minX; x<=maxX; x++) {
-                for (int z=minZ; z<=maxZ; z++) {
-                    double[] ll = blockToLatLng(x, z, centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ);
-                    double elev = dem.sampleByLatLon(ll[0], ll[1]);
-                    if (Double.isNaN(elev)) elev = 0.0;
-                    int i = idx(x,z);
-                    elevM[i] = elev;
-                    if (elev < minElevation) minElevation = elev;
-                }
-            }
+            dem.resample(colLng, rowLat, demResample, elevM);
         }
+        System.out.println("[Cartopia] DEM resample: " + demResample.name().toLowerCase(Locale.ROOT) + ", height blur iters " + heightBlurIters);
+
+        // минимум — по строкам, затем общий
+        final double[] rowMin = new double[height];
+        GridBands.forEach(height, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                double m = Double.POSITIVE_INFINITY;
+                for (int i = r * width, end = i + width; i < end; i++) if (elevM[i] < m) m = elevM[i];
+                rowMin[r] = m;
+            }
+        });
+        for (double m : rowMin) if (m < minElevation) minElevation = m;
 
         // бывший fillMissingHeights — версия для массива (с теми же правилами)
         fillMissingHeightsArray(elevM);
 
         int[] terrainY = new int[totalCells];
-        for (int x=minX; x<=maxX; x++) {
-            for (int z=minZ; z<=maxZ; z++) {
-                int i = idx(x,z);
-                int y = Y_BASE + (int)Math.round(elevM[i] - minElevation);
-                terrainY[i] = y;
-            }
-        }
+        final double elevBase = minElevation;
+        GridBands.forEach(totalCells, (from, to) -> {
+            for (int i = from; i < to; i++) terrainY[i] = Y_BASE + (int)Math.round(elevM[i] - elevBase);
+        });
 
         // Ограничение уклонов + лесенка + сглаживание
         limitSlopeArray(terrainY, MAX_HEIGHT_DIFF);
         staircaseArray(terrainY);
-        blurHeightArray(terrainY, HEIGHT_BLUR_ITERS);
-        despeckleHeightsArray(terrainY, 2);
+        HeightFilters heightFilters = new HeightFilters(width, height);
+        heightFilters.medianBlur(terrainY, heightBlurIters);
+        despeckleHeightsArray(terrainY, 2, heightFilters);
 
         // ---------- БАЗОВАЯ ПОВЕРХНОСТЬ ----------
-        String[] surface = new String[totalCells];
-        for (int i=0; i<totalCells; i++) surface[i] = defaultBlock;
+        // материал клетки — byte-код палитры (WATER = 0), а не ссылка на строку
+        final SurfacePalette palette = new SurfacePalette();
+        byte[] surface = new byte[totalCells];
+        Arrays.fill(surface, palette.code(defaultBlock));
 
         // маски как BitSet
         BitSet waterFromOLM = new BitSet(totalCells);
@@ -337,7 +383,7 @@ public class SurfaceGenerator {
                 int i = idx(x,z);
                 double elev = elevM[i];
                 if (elev <= seaLevelMeters) {
-                    surface[i] = "water";
+                    surface[i] = SurfacePalette.WATER;
                     waterProtected.set(i); // морская вода — не сглаживаем
                 }
             }
@@ -363,7 +409,7 @@ public class SurfaceGenerator {
                 lcovW = west; lcovE = east; lcovS = south; lcovN = north;
             }
 
-            try (LandcoverSampler lcov = new LandcoverSampler(lcFile, lcovW, lcovE, lcovS, lcovN)) {
+            try (LandcoverSampler lcov = new LandcoverSampler(lcFile, lcovW, lcovE, lcovS, lcovN, west, east, south, north)) {
                 for (int x=minX; x<=maxX; x++) {
                     for (int z=minZ; z<=maxZ; z++) {
                         double[] ll = blockToLatLng(x, z, centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ);
@@ -372,15 +418,16 @@ public class SurfaceGenerator {
                         int cls = lcov.sampleClassByLatLon(ll[0], ll[1]);
                         String block = (cls == Integer.MIN_VALUE) ? "water" : blockForLandcoverClass(cls);
                         if (block == null) block = "moss_block";
+                        byte code = palette.code(block);
 
-                        if ("water".equals(block)) {
-                            surface[i] = "water";
+                        if (code == SurfacePalette.WATER) {
+                            surface[i] = SurfacePalette.WATER;
                             olmAll.set(i);
                             if (!waterProtected.get(i)) waterFromOLM.set(i);
-                        } else if (!"water".equals(surface[i])) {
-                            surface[i] = block;
+                        } else if (surface[i] != SurfacePalette.WATER) {
+                            surface[i] = code;
                             olmAll.set(i);
-                        }                        
+                        }
                     }
                 }
             } catch (Exception ex) {
@@ -390,14 +437,14 @@ public class SurfaceGenerator {
             System.out.println("[Cartopia] OLM landcover отсутствует (и онлайн не настроен) — пропускаю.");
         }
 
-        // ---------- OSM зоны: читаем из NDJSON если можем, иначе из coords.features ----------
-        List<ZonePoly> zones = new ArrayList<>();
-        if (store != null) zones.addAll(extractZonesFromOSMStream(store));
-        // Фолбэк как в старом коде: дополняем зонами из coordsJson
-        List<ZonePoly> z2 = extractZonesFromOSM(coordsJson);
-        if (!z2.isEmpty()) zones.addAll(z2);
+        // ---------- OSM: зоны, обрывы, дамбы, волноломы — один проход (NDJSON если можем, иначе coords.features) ----------
+        final OsmIntake osm = OsmIntake.read(store, coordsJson, palette, minX, maxX, minZ, maxZ,
+                centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ);
+        final List<ZonePoly> zones = osm.zones;
 
-        System.out.println("[Cartopia] ОSM зон для покраски: " + zones.size());
+        System.out.println("[Cartopia] ОSM зон для покраски: " + zones.size()
+                + ", клеток обрывов: " + osm.cliffCells.cardinality()
+                + ", дамб: " + osm.damCells.size() + ", волноломов: " + osm.breakwaterCells.size());
 
         // --- [ПУНКТ 3] Разделяем полигоны по типам (один раз, вне горячего цикла)
         final List<ZonePoly> waterOuters = new ArrayList<>();
@@ -411,89 +458,66 @@ public class SurfaceGenerator {
             }
         }
         // Сначала — вода (outer минус inner), затем прочее.
-        // --- [ПУНКТ 2.2] Границы клетки в lat/lon без аллокаций + использование раздельных списков зон
-        for (int x = minX; x <= maxX; x++) {
-            for (int z = minZ; z <= maxZ; z++) {
-                final int i = idx(x, z);
-
-                // границы клетки в lat/lon (эквивалент cellRectLatLon, но без объектов/массивов)
-                final double xL = x - 0.5, xR = x + 0.5;
-                final double zT = z - 0.5, zB = z + 0.5;
-
-                final double lonL = centerLng + ((xL - centerX) / (double) sizeMeters) * (east - west);
-                final double lonR = centerLng + ((xR - centerX) / (double) sizeMeters) * (east - west);
-                final double latT = centerLat + ((zT - centerZ) / (double) sizeMeters) * (south - north);
-                final double latB = centerLat + ((zB - centerZ) / (double) sizeMeters) * (south - north);
-
-                final double cellMinLat = (latT < latB ? latT : latB);
-                final double cellMaxLat = (latT > latB ? latT : latB);
-                final double cellMinLon = (lonL < lonR ? lonL : lonR);
-                final double cellMaxLon = (lonL > lonR ? lonL : lonR);
-
-                // ----- Вода: outer - inner -----
-                boolean inWaterOuter = false;
-                for (ZonePoly zp : waterOuters) {
-                    if (!rectsOverlap(cellMinLat, cellMaxLat, cellMinLon, cellMaxLon,
-                                    zp.minLat,   zp.maxLat,   zp.minLon,   zp.maxLon)) continue;
-                    if (rectIntersectsPolygon(cellMinLat, cellMaxLat, cellMinLon, cellMaxLon, zp.lats, zp.lons)) {
-                        inWaterOuter = true; break;
-                    }
-                }
-
-                if (inWaterOuter) {
-                    boolean inWaterHole = false;
-                    for (ZonePoly zp : waterHoles) {
-                        if (!rectsOverlap(cellMinLat, cellMaxLat, cellMinLon, cellMaxLon,
-                                        zp.minLat,   zp.maxLat,   zp.minLon,   zp.maxLon)) continue;
-                        if (rectIntersectsPolygon(cellMinLat, cellMaxLat, cellMinLon, cellMaxLon, zp.lats, zp.lons)) {
-                            inWaterHole = true; break;
-                        }
-                    }
-                    if (!inWaterHole) {
-                        surface[i] = "water";
-                        waterProtected.set(i);
-                        waterFromOLM.clear(i);
-                        continue; // вода имеет приоритет
-                    }
-                }
-
-                // ----- Прочие зоны: берём наименьший bbox (как и было)
-                String bestMat = null;
-                double bestArea = Double.POSITIVE_INFINITY;
-                for (ZonePoly zp : landZones) {
-                    if (!rectsOverlap(cellMinLat, cellMaxLat, cellMinLon, cellMaxLon,
-                                    zp.minLat,   zp.maxLat,   zp.minLon,   zp.maxLon)) continue;
-                    if (rectIntersectsPolygon(cellMinLat, cellMaxLat, cellMinLon, cellMaxLon, zp.lats, zp.lons)) {
-                        double area = (zp.maxLat - zp.minLat) * (zp.maxLon - zp.minLon);
-                        if (area < bestArea) {
-                            bestArea = area;
-                            bestMat = zp.material;
-                        }
-                    }
-                }
-
-                if (bestMat != null) {
-                    String cur = surface[i];
-                    boolean isIceOverlay = "blue_ice".equals(bestMat) || "muddy_mangrove_roots".equals(bestMat);
-
-                    if ("water".equals(cur)) {
-                        // лёд/болото перекрывают любую воду
-                        if (isIceOverlay) {
-                            surface[i] = bestMat;
-                            lockedOSM.set(i);
-                            waterFromOLM.clear(i);
-                            waterProtected.clear(i);
-                        } else if (waterFromOLM.get(i)) {
-                            // суша из OSM может перекрывать только OLM-воду
-                            surface[i] = bestMat;
-                            lockedOSM.set(i);
-                            waterFromOLM.clear(i);
-                        }
-                    } else {
-                        surface[i] = bestMat;
-                        lockedOSM.set(i);
-                    }
-                }
+        // Зоны растеризуются построчно (таблица активных рёбер) в маски/метки клеток: время — по числу
+        // покрытых клеток и вершин, а не клетки × зоны. Покрытие то же, консервативное: клетка помечается,
+        // если её квадрат хоть как-то касается полигона (или незамкнутой цепочки).
+        final ZoneRaster raster = new ZoneRaster(minX, maxX, minZ, maxZ,
+                centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ);
+
+        final int cells = width * (maxZ - minZ + 1);
+        final BitSet inWaterOuter = new BitSet(cells);
+        final BitSet inWaterHole  = new BitSet(cells);
+        for (ZonePoly zp : waterOuters) raster.paint(zp, inWaterOuter::set);
+        for (ZonePoly zp : waterHoles)  raster.paint(zp, inWaterHole::set);
+
+        // Прочие зоны: наименьший bbox побеждает (как и было) — красим от большей к меньшей,
+        // при равной площади побеждает более ранняя в списке.
+        final int[] landLabel = new int[cells];
+        Arrays.fill(landLabel, -1);
+        Integer[] byArea = new Integer[landZones.size()];
+        for (int k = 0; k < byArea.length; k++) byArea[k] = k;
+        Arrays.sort(byArea, (p, q) -> {
+            int c = Double.compare(landZones.get(q).bboxArea(), landZones.get(p).bboxArea());
+            return c != 0 ? c : Integer.compare(q, p);
+        });
+        for (int k : byArea) raster.paint(landZones.get(k), i -> landLabel[i] = k);
+        final byte[] landCode = new byte[landZones.size()];
+        final boolean[] landIce = new boolean[landZones.size()];
+        for (int k = 0; k < landCode.length; k++) {
+            String mat = landZones.get(k).material;
+            landCode[k] = palette.code(mat);
+            landIce[k] = "blue_ice".equals(mat) || "muddy_mangrove_roots".equals(mat);
+        }
+
+        for (int i = 0; i < cells; i++) {
+            // ----- Вода: outer - inner -----
+            if (inWaterOuter.get(i) && !inWaterHole.get(i)) {
+                surface[i] = SurfacePalette.WATER;
+                waterProtected.set(i);
+                waterFromOLM.clear(i);
+                continue; // вода имеет приоритет
+            }
+
+            if (landLabel[i] < 0) continue;
+            byte bestMat = landCode[landLabel[i]];
+            boolean isIceOverlay = landIce[landLabel[i]];
+
+            if (surface[i] == SurfacePalette.WATER) {
+                // лёд/болото перекрывают любую воду
+                if (isIceOverlay) {
+                    surface[i] = bestMat;
+                    lockedOSM.set(i);
+                    waterFromOLM.clear(i);
+                    waterProtected.clear(i);
+                } else if (waterFromOLM.get(i)) {
+                    // суша из OSM может перекрывать только OLM-воду
+                    surface[i] = bestMat;
+                    lockedOSM.set(i);
+                    waterFromOLM.clear(i);
+                }
+            } else {
+                surface[i] = bestMat;
+                lockedOSM.set(i);
             }
         }
 
@@ -521,91 +545,41 @@ public class SurfaceGenerator {
             if (t.has("olmFeatherMinVotes")) olmFeatherMinVotes = Math.max(1, t.get("olmFeatherMinVotes").getAsInt());
         }
 
-        featherOlmZonesArray(surface, olmAll, waterFromOLM, waterProtected, lockedOSM,
+        featherOlmZonesArray(surface, palette.size(), olmAll, waterFromOLM, waterProtected, lockedOSM,
                 olmFeatherRadius, olmFeatherIters, olmFeatherMinVotes);
 
 
-        blurSurfaceArray(surface, surfaceBlurIters, surfaceBlurMinMajority, surfaceBlurIncludeWater,
+        blurSurfaceArray(surface, palette.size(), surfaceBlurIters, surfaceBlurMinMajority, surfaceBlurIncludeWater,
                 waterProtected, waterFromOLM, lockedOSM);
 
 
         // === NEW: waterway=dam — линейные дамбы; могут перекрывать воду любого происхождения
-        Map<Long,String> damCells = (store != null)
-                ? extractDamCellsFromOSMStream(store,
-                    centerLat, centerLng, east, west, north, south,
-                    sizeMeters, centerX, centerZ,
-                    minX, maxX, minZ, maxZ)
-                : extractDamCellsFromOSM(coordsJson,
-                    centerLat, centerLng, east, west, north, south,
-                    sizeMeters, centerX, centerZ,
-                    minX, maxX, minZ, maxZ);
-
-        if (damCells != null && !damCells.isEmpty()) {
-            for (Map.Entry<Long,String> de : damCells.entrySet()) {
-                long k = de.getKey();
-                String damMat = de.getValue();
-                int xk = (int)(k >> 32);
-                int zk = (int)(k);
-                if (!inBounds(xk, zk)) continue;
-                int i = idx(xk, zk);
-                surface[i] = damMat;
-                waterFromOLM.clear(i);
-                waterProtected.clear(i);
-                lockedOSM.set(i);
-            }
+        for (int k = 0; k < osm.damCells.size(); k++) {
+            int i = osm.damCells.cells.getInt(k);
+            surface[i] = osm.damCells.mats.getByte(k);
+            waterFromOLM.clear(i);
+            waterProtected.clear(i);
+            lockedOSM.set(i);
         }
 
-        // breakwater/groyne/coastline — линейные «стенки» толщиной 2×2 и высотой 2
-        Map<Long,String> breakwaterCells = (store != null)
-                ? extractBreakwaterCellsFromOSMStream(store,
-                    centerLat, centerLng, east, west, north, south,
-                    sizeMeters, centerX, centerZ,
-                    minX, maxX, minZ, maxZ)
-                : extractBreakwaterCellsFromOSM(
-                    coordsJson,
-                    centerLat, centerLng, east, west, north, south,
-                    sizeMeters, centerX, centerZ,
-                    minX, maxX, minZ, maxZ);
-
-        if (breakwaterCells != null && !breakwaterCells.isEmpty()) {
-            for (Map.Entry<Long,String> be : breakwaterCells.entrySet()) {
-                long k = be.getKey();
-                String bwMat = be.getValue();
-                int xk = (int)(k >> 32), zk = (int)k;
-                if (!inBounds(xk, zk)) continue;
-                int i = idx(xk, zk);
-                surface[i] = bwMat;
-                waterFromOLM.clear(i);
-                waterProtected.clear(i);
-                lockedOSM.set(i);
-            }
+        // breakwater/groyne/coastline — линейные «стенки» толщиной 2×2 и высотой 2 (материал — в surface)
+        BitSet breakwaterCells = new BitSet(totalCells);
+        for (int k = 0; k < osm.breakwaterCells.size(); k++) {
+            int i = osm.breakwaterCells.cells.getInt(k);
+            surface[i] = osm.breakwaterCells.mats.getByte(k);
+            breakwaterCells.set(i);
+            waterFromOLM.clear(i);
+            waterProtected.clear(i);
+            lockedOSM.set(i);
         }
 
 
         // Маска воды
         BitSet waterMask = new BitSet(totalCells);
-        for (int i=0; i<totalCells; i++) if ("water".equals(surface[i])) waterMask.set(i);
-
-        // === НОВОЕ: клетки обрывов/укреплений из OSM (через стрим, если есть)
-        Set<Long> cliffCapCells = (store != null)
-                ? extractCliffCellsFromOSMStream(store,
-                        centerLat, centerLng, east, west, north, south,
-                        sizeMeters, centerX, centerZ,
-                        minX, maxX, minZ, maxZ)
-                : extractCliffCellsFromOSM(
-                        coordsJson,
-                        centerLat, centerLng, east, west, north, south,
-                        sizeMeters, centerX, centerZ,
-                        minX, maxX, minZ, maxZ
-                );
+        for (int i=0; i<totalCells; i++) if (surface[i] == SurfacePalette.WATER) waterMask.set(i);
 
-        BitSet cliffCaps = new BitSet(totalCells);
-        if (cliffCapCells != null) {
-            for (long k : cliffCapCells) {
-                int xk = (int)(k >> 32), zk = (int)k;
-                if (inBounds(xk, zk)) cliffCaps.set(idx(xk, zk));
-            }
-        }
+        // клетки обрывов/укреплений из OSM
+        BitSet cliffCaps = osm.cliffCells;
 
         broadcast(level, String.format("Placing blocks (%d cells)...", totalCells));
 
@@ -629,12 +603,14 @@ public class SurfaceGenerator {
         }
 
         // ВЫЗОВ placeBlocks с новым параметром
-        placeBlocks(surface, terrainY, waterMask, waterSurfaceY, breakwaterCells, cliffCaps, minX, maxX, minZ, maxZ, totalCells);
+        placeBlocks(surface, palette, terrainY, waterMask, waterSurfaceY, breakwaterCells, cliffCaps, minX, maxX, minZ, maxZ, totalCells);
+        writer.endTile();
+        reportWritten();
         broadcast(level, "Block placement complete.");
 
         // === FINAL JSON (v2) + дублируем groundY как data для обратной совместимости ===
-        final int worldMin = level.getMinBuildHeight();
-        final int worldMax = level.getMaxBuildHeight();
+        final int worldMin = writer.minBuildHeight();
+        final int worldMax = writer.maxBuildHeight();
 
         JsonObject fin = new JsonObject();
         fin.addProperty("version", 2);
@@ -651,6 +627,8 @@ public class SurfaceGenerator {
         JsonArray topYGrid    = new JsonArray();
         JsonArray waterYGrid  = new JsonArray();
         JsonArray topBlockGrid= new JsonArray();
+        String[] topBlockIds = new String[palette.size()];
+        for (int c = 0; c < topBlockIds.length; c++) topBlockIds[c] = "minecraft:" + palette.name(c);
 
         for (int z = minZ; z <= maxZ; z++) {
             for (int x = minX; x <= maxX; x++) {
@@ -660,9 +638,9 @@ public class SurfaceGenerator {
                 if (yTop0 <= worldMin + 2) yTop0 = worldMin + 3;
                 if (yTop0 >= worldMax - 2) yTop0 = worldMax - 3;
 
-                String mat0 = surface[i];
+                int mat0 = surface[i] & 0xFF;
 
-                if ("water".equals(mat0) || waterMask.get(i)) {
+                if (mat0 == SurfacePalette.WATER || waterMask.get(i)) {
                     int yWaterSurface = (waterSurfaceY != null && waterSurfaceY.length>0 && waterSurfaceY[i] != 0)
                             ? waterSurfaceY[i]
                             : (yTop0 - 1);
@@ -675,7 +653,7 @@ public class SurfaceGenerator {
                     groundYGrid.add(yTop0);
                     topYGrid.add(isCliff0 ? (yTop0 + 1) : yTop0);
                     waterYGrid.add(com.google.gson.JsonNull.INSTANCE);
-                    topBlockGrid.add(isCliff0 ? "minecraft:cracked_stone_bricks" : ("minecraft:" + mat0));
+                    topBlockGrid.add(isCliff0 ? "minecraft:cracked_stone_bricks" : topBlockIds[mat0]);
                 }
             }
         }
@@ -765,19 +743,34 @@ public class SurfaceGenerator {
     }
 
     // ===== DEM sampler (устойчив к маленьким TIFF, с fallback) =====
-    private static final class HeightSampler implements AutoCloseable {
-        private final int width, height;
-        private final float[] data; // row-major
-        private final double west, east, south, north;
-
-        HeightSampler(File demTif, double west, double east, double south, double north) throws IOException {
-            this.west = west; this.east = east; this.south = south; this.north = north;
-
-            System.out.println("[Cartopia] DEM: " + demTif.getAbsolutePath() + " (" + demTif.length() + " bytes)");
+    /**
+     * Окно одноканального GeoTIFF: только пиксели, покрывающие bbox генерации (+ WINDOW_MARGIN),
+     * через ImageReadParam.setSourceRegion — TIFF-ридер декодирует лишь задетые полосы/тайлы.
+     * Память и время чтения — по площади области, а не файла (OLM без landcoverBounds — весь мир).
+     */
+    private static final class RasterWindow {
+        private static final int WINDOW_MARGIN = 2; // пикселей вокруг bbox: центры крайних клеток чуть за ним
+
+        final int fileWidth, fileHeight;   // весь файл
+        final int x0, y0, width, height;   // окно в пикселях файла
+        final Raster raster;
+        final String readerName;
+
+        private RasterWindow(int fileWidth, int fileHeight, int x0, int y0, Raster raster, String readerName) {
+            this.fileWidth = fileWidth; this.fileHeight = fileHeight;
+            this.x0 = x0; this.y0 = y0;
+            this.width = raster.getWidth(); this.height = raster.getHeight();
+            this.raster = raster;
+            this.readerName = readerName;
+        }
+
+        /** Файл с границами fW..fE, fS..fN; нужна область w..e, s..n. */
+        static RasterWindow read(File tif, String what,
+                                 double fW, double fE, double fS, double fN,
+                                 double w, double e, double s, double n) throws IOException {
             ImageIO.scanForPlugins();
-
-            try (ImageInputStream iis = ImageIO.createImageInputStream(new FileInputStream(demTif))) {
-                if (iis == null) throw new IOException("Cannot open DEM: " + demTif);
+            try (ImageInputStream iis = ImageIO.createImageInputStream(new FileInputStream(tif))) {
+                if (iis == null) throw new IOException("Cannot open " + what + ": " + tif);
 
                 // Выбираем TIFF-ридер (предпочтительно JAI)
                 ImageReader reader = null;
@@ -792,44 +785,173 @@ public class SurfaceGenerator {
                 }
                 if (reader == null) throw new IOException("No ImageIO reader for TIFF");
 
-                reader.setInput(iis, true, true);
-
-                this.width  = reader.getWidth(0);
-                this.height = reader.getHeight(0);
-                if (width <= 0 || height <= 0) {
-                    throw new IOException("DEM has zero size (" + width + "x" + height + ")");
-                }
-
-                Raster ras;
                 try {
-                    ras = reader.readRaster(0, null);
-                } catch (UnsupportedOperationException uoe) {
-                    System.out.println("[Cartopia] readRaster() unsupported by " + reader.getClass().getName() + ", fallback to read().getRaster()");
-                    ras = reader.read(0).getRaster();
+                    reader.setInput(iis, true, true);
+                    int fw = reader.getWidth(0), fh = reader.getHeight(0);
+                    if (fw <= 0 || fh <= 0) throw new IOException(what + " has zero size (" + fw + "x" + fh + ")");
+
+                    // bbox -> пиксели файла (как в sample: x = floor((lon - fW) / (fE - fW) * fw))
+                    int ax = (int) Math.floor((w - fW) / (fE - fW) * fw);
+                    int bx = (int) Math.floor((e - fW) / (fE - fW) * fw);
+                    int ay = (int) Math.floor((fN - n) / (fN - fS) * fh);
+                    int by = (int) Math.floor((fN - s) / (fN - fS) * fh);
+                    // границы могут прийти перевёрнутыми — min/max до clamp, запас наружу
+                    int px0 = clamp(Math.min(ax, bx) - WINDOW_MARGIN, 0, fw - 1);
+                    int px1 = clamp(Math.max(ax, bx) + WINDOW_MARGIN, 0, fw - 1);
+                    int py0 = clamp(Math.min(ay, by) - WINDOW_MARGIN, 0, fh - 1);
+                    int py1 = clamp(Math.max(ay, by) + WINDOW_MARGIN, 0, fh - 1);
+
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceRegion(new Rectangle(px0, py0, px1 - px0 + 1, py1 - py0 + 1));
+                    Raster ras;
+                    try {
+                        ras = reader.readRaster(0, param);
+                    } catch (UnsupportedOperationException uoe) {
+                        System.out.println("[Cartopia] " + what + " readRaster() unsupported by " + reader.getClass().getName() + ", fallback to read().getRaster()");
+                        ras = reader.read(0, param).getRaster();
+                    }
+                    return new RasterWindow(fw, fh, px0, py0, ras, reader.getClass().getSimpleName());
+                } finally {
+                    reader.dispose();
                 }
+            }
+        }
 
-                float[] vals = new float[width * height];
-                ras.getSamples(0, 0, width, height, 0, vals);
-                this.data = vals;
+        float[] floats() {
+            float[] vals = new float[width * height];
+            raster.getSamples(raster.getMinX(), raster.getMinY(), width, height, 0, vals);
+            return vals;
+        }
 
-                System.out.println("[Cartopia] DEM loaded: " + width + "x" + height +
-                        ", bbox W:" + west + " E:" + east + " S:" + south + " N:" + north +
-                        ", reader=" + reader.getClass().getSimpleName());
-                reader.dispose();
-            }
+        int[] ints() {
+            int[] vals = new int[width * height];
+            raster.getSamples(raster.getMinX(), raster.getMinY(), width, height, 0, vals);
+            return vals;
         }
 
-        float sampleByLatLon(double lat, double lon) {
-            double px = (lon - west)  / (east - west)   * width;
-            double py = (north - lat) / (north - south) * height;
+        /** Пиксель файла (x, y), прижатый к файлу, затем к окну, -> индекс в окне. */
+        int index(int x, int y) {
+            return row(y) * width + col(x);
+        }
+
+        /** Столбец файла -> столбец окна (с тем же прижатием, что index). */
+        int col(int x) {
+            return clamp(clamp(x, 0, fileWidth - 1) - x0, 0, width - 1);
+        }
+
+        /** Строка файла -> строка окна. */
+        int row(int y) {
+            return clamp(clamp(y, 0, fileHeight - 1) - y0, 0, height - 1);
+        }
+
+        String describe() {
+            return width + "x" + height + " window at " + x0 + "," + y0 + " of " + fileWidth + "x" + fileHeight;
+        }
 
-            int x = (int)Math.floor(px);
-            int y = (int)Math.floor(py);
+        private static int clamp(int v, int lo, int hi) { return v < lo ? lo : (v > hi ? hi : v); }
+    }
 
-            if (x < 0) x = 0; else if (x >= width)  x = width  - 1;
-            if (y < 0) y = 0; else if (y >= height) y = height - 1;
+    /** Интерполяция DEM при переходе к блокам; taps — пикселей ядра по каждой оси. */
+    private enum DemResample {
+        NEAREST(1), BILINEAR(2), BICUBIC(4);
 
-            return data[y * width + x];
+        final int taps;
+
+        DemResample(int taps) { this.taps = taps; }
+
+        static DemResample parse(String s) {
+            for (DemResample m : values()) if (m.name().equalsIgnoreCase(s)) return m;
+            System.out.println("[Cartopia] Unknown demResample '" + s + "', using bilinear");
+            return BILINEAR;
+        }
+    }
+
+    private static final class HeightSampler implements AutoCloseable {
+        private final RasterWindow window;
+        private final float[] data; // row-major, только окно
+        private final double west, east, south, north;
+
+        HeightSampler(File demTif, double west, double east, double south, double north) throws IOException {
+            this.west = west; this.east = east; this.south = south; this.north = north;
+
+            System.out.println("[Cartopia] DEM: " + demTif.getAbsolutePath() + " (" + demTif.length() + " bytes)");
+            // DEM скачивается ровно под bbox — окно обычно весь файл
+            this.window = RasterWindow.read(demTif, "DEM", west, east, south, north, west, east, south, north);
+            this.data = window.floats();
+
+            System.out.println("[Cartopia] DEM loaded: " + window.describe() +
+                    ", bbox W:" + west + " E:" + east + " S:" + south + " N:" + north +
+                    ", reader=" + window.readerName);
+        }
+
+        /**
+         * Высоты всей сетки сразу: out[r * lons.length + c] — точка (lats[r], lons[c]).
+         * Проекция раздельная (lon зависит только от x, lat — только от z), поэтому пиксели и веса
+         * считаются один раз на столбец и на строку, а не через blockToLatLng на каждую клетку.
+         * Если в ядро попал NaN (нет данных) — ближайший пиксель, если и он NaN — 0.
+         */
+        void resample(double[] lons, double[] lats, DemResample mode, double[] out) {
+            final int cols = lons.length, rows = lats.length, taps = mode.taps;
+            final int[] cx = new int[cols * taps], ry = new int[rows * taps];
+            final double[] wx = new double[cols * taps], wy = new double[rows * taps];
+            final int[] nx = new int[cols], ny = new int[rows];
+
+            for (int c = 0; c < cols; c++) {
+                double px = (lons[c] - west) / (east - west) * window.fileWidth;
+                nx[c] = window.col((int) Math.floor(px));
+                kernel(mode, px, cx, wx, c * taps);
+                for (int i = c * taps; i < (c + 1) * taps; i++) cx[i] = window.col(cx[i]);
+            }
+            for (int r = 0; r < rows; r++) {
+                double py = (north - lats[r]) / (north - south) * window.fileHeight;
+                ny[r] = window.row((int) Math.floor(py)) * window.width;
+                kernel(mode, py, ry, wy, r * taps);
+                for (int i = r * taps; i < (r + 1) * taps; i++) ry[i] = window.row(ry[i]) * window.width;
+            }
+
+            GridBands.forEach(rows, (from, to) -> {
+                for (int r = from; r < to; r++) {
+                    final int ro = r * taps, o = r * cols;
+                    for (int c = 0; c < cols; c++) {
+                        final int co = c * taps;
+                        double v = 0.0;
+                        for (int j = 0; j < taps; j++) {
+                            final int base = ry[ro + j];
+                            double s = 0.0;
+                            for (int i = 0; i < taps; i++) s += wx[co + i] * data[base + cx[co + i]];
+                            v += wy[ro + j] * s;
+                        }
+                        if (Double.isNaN(v)) v = data[ny[r] + nx[c]];
+                        out[o + c] = Double.isNaN(v) ? 0.0 : v;
+                    }
+                }
+            });
+        }
+
+        /**
+         * Пиксели файла и веса для координаты p (в пикселях от края файла) по одной оси.
+         * nearest — пиксель floor(p), как раньше; bilinear/bicubic — от центров пикселей (i + 0.5),
+         * bicubic — Catmull-Rom (Keys, a = -0.5): без пересглаживания, веса в сумме 1.
+         */
+        private static void kernel(DemResample mode, double p, int[] idx, double[] w, int off) {
+            if (mode == DemResample.NEAREST) {
+                idx[off] = (int) Math.floor(p);
+                w[off] = 1.0;
+                return;
+            }
+            double u = p - 0.5;
+            int i0 = (int) Math.floor(u);
+            double t = u - i0;
+            if (mode == DemResample.BILINEAR) {
+                idx[off]     = i0;     w[off]     = 1.0 - t;
+                idx[off + 1] = i0 + 1; w[off + 1] = t;
+                return;
+            }
+            double t2 = t * t, t3 = t2 * t;
+            idx[off]     = i0 - 1; w[off]     = -0.5 * t3 + t2 - 0.5 * t;
+            idx[off + 1] = i0;     w[off + 1] =  1.5 * t3 - 2.5 * t2 + 1.0;
+            idx[off + 2] = i0 + 1; w[off + 2] = -1.5 * t3 + 2.0 * t2 + 0.5 * t;
+            idx[off + 3] = i0 + 2; w[off + 3] =  0.5 * t3 - 0.5 * t2;
         }
 
         @Override public void close() {}
@@ -961,70 +1083,34 @@ public class SurfaceGenerator {
 
     // ===== OLM sampler (границы файла, не участка!) =====
     private static final class LandcoverSampler implements AutoCloseable {
-        private final int width, height;
-        private final int[] data; // row-major
+        private final RasterWindow window;
+        private final int[] data; // row-major, только окно
         private final double fWest, fEast, fSouth, fNorth;
 
-        LandcoverSampler(File tif, double fileWest, double fileEast, double fileSouth, double fileNorth) throws IOException {
+        /** Границы файла fileWest..fileNorth; читается только окно под bbox генерации west..north. */
+        LandcoverSampler(File tif, double fileWest, double fileEast, double fileSouth, double fileNorth,
+                         double west, double east, double south, double north) throws IOException {
             this.fWest = fileWest; this.fEast = fileEast; this.fSouth = fileSouth; this.fNorth = fileNorth;
 
             System.out.println("[Cartopia] Landcover: " + tif.getAbsolutePath() + " (" + tif.length() + " bytes)");
-            ImageIO.scanForPlugins();
-
-            try (ImageInputStream iis = ImageIO.createImageInputStream(new FileInputStream(tif))) {
-                if (iis == null) throw new IOException("Cannot open Landcover: " + tif);
-
-                ImageReader reader = null;
-                Iterator<ImageReader> it = ImageIO.getImageReaders(iis);
-                while (it.hasNext()) {
-                    ImageReader cand = it.next();
-                    String cn = cand.getClass().getName();
-                    if (cn.contains("jai") || cn.contains("JAI") || cn.contains("com.github.jai-imageio")) { reader = cand; break; }
-                    if (reader == null) reader = cand;
-                }
-                if (reader == null) throw new IOException("No ImageIO reader for TIFF");
-
-                reader.setInput(iis, true, true);
-                this.width  = reader.getWidth(0);
-                this.height = reader.getHeight(0);
-                if (width <= 0 || height <= 0) throw new IOException("Landcover has zero size");
-
-                Raster ras;
-                try { ras = reader.readRaster(0, null); }
-                catch (UnsupportedOperationException uoe) {
-                    System.out.println("[Cartopia] LC readRaster() unsupported by " + reader.getClass().getName() + ", fallback to read().getRaster()");
-                    ras = reader.read(0).getRaster();
-                }
-
-                int numBands = ras.getNumBands();
-                if (numBands != 1) {
-                    reader.dispose();
-                    throw new IOException("Landcover TIFF must be single-band with class codes, got " + numBands + " bands. " +
-                            "Most likely you requested WMS styled raster. Switch to WCS (GetCoverage) as in app.js.");
-                }
-
-                int[] vals = new int[width * height];
-                ras.getSamples(0, 0, width, height, 0, vals);
-                this.data = vals;
+            this.window = RasterWindow.read(tif, "Landcover", fWest, fEast, fSouth, fNorth, west, east, south, north);
 
-                System.out.println("[Cartopia] Landcover loaded: " + width + "x" + height +
-                                   " | file bounds W:" + fWest + " E:" + fEast + " S:" + fSouth + " N:" + fNorth +
-                                   " | reader=" + reader.getClass().getSimpleName());
-                reader.dispose();
+            int numBands = window.raster.getNumBands();
+            if (numBands != 1) {
+                throw new IOException("Landcover TIFF must be single-band with class codes, got " + numBands + " bands. " +
+                        "Most likely you requested WMS styled raster. Switch to WCS (GetCoverage) as in app.js.");
             }
+            this.data = window.ints();
+
+            System.out.println("[Cartopia] Landcover loaded: " + window.describe() +
+                               " | file bounds W:" + fWest + " E:" + fEast + " S:" + fSouth + " N:" + fNorth +
+                               " | reader=" + window.readerName);
         }
 
         int sampleClassByLatLon(double lat, double lon) {
-            double px = (lon - fWest)  / (fEast - fWest)   * width;
-            double py = (fNorth - lat) / (fNorth - fSouth) * height;
-
-            int x = (int)Math.floor(px);
-            int y = (int)Math.floor(py);
-
-            if (x < 0) x = 0; else if (x >= width)  x = width  - 1;
-            if (y < 0) y = 0; else if (y >= height) y = height - 1;
-
-            return data[y * width + x];
+            double px = (lon - fWest)  / (fEast - fWest)   * window.fileWidth;
+            double py = (fNorth - lat) / (fNorth - fSouth) * window.fileHeight;
+            return data[window.index((int)Math.floor(px), (int)Math.floor(py))];
         }
 
         @Override public void close() {}
@@ -1325,95 +1411,176 @@ public class SurfaceGenerator {
         }
     }
 
-    private void placeBlocks(String[] surface, int[] terrain,
+    private void placeBlocks(byte[] surface, SurfacePalette palette, int[] terrain,
                             BitSet waterMask, int[] waterSurfaceY,
-                            Map<Long,String> breakwaterCells, // как раньше
+                            BitSet breakwaterCells,   // материал стенки — в surface
                             BitSet cliffCaps,
                             int minX, int maxX, int minZ, int maxZ, int totalCells) {
-        int done = 0;
-        int nextConsole = 5;
-        int[] chatMilestones = {25, 50, 75, 100};
-        int chatIdx = 0;
-
-        final int worldMin = level.getMinBuildHeight();
-        final int worldMax = level.getMaxBuildHeight();
-
-        for (int x = minX; x <= maxX; x++) {
-            for (int z = minZ; z <= maxZ; z++) {
-                int i = idx(x,z);
-
-                int yTop = terrain[i];
-                if (yTop <= worldMin + 2) yTop = worldMin + 3;
-                if (yTop >= worldMax - 2) yTop = worldMax - 3;
-
-                // --- breakwater/groyne/coastline: стенка 2 блока вверх
-                if (breakwaterCells != null && breakwaterCells.containsKey(key(x, z))) {
-                    String bwMat = breakwaterCells.get(key(x, z));
-                    setBlock(x, yTop,     z, "minecraft:" + bwMat);
-                    setBlock(x, yTop + 1, z, "minecraft:" + bwMat);
-                    clearColumnAbove(x, yTop + 2, z, worldMax);
-                    clearColumnBelow(x, z, worldMin, yTop - 1);
-                    done++;
-                    int pct = (int)((long)done * 100 / totalCells);
-                    if (pct >= nextConsole) { System.out.println("[Cartopia] placing blocks: " + pct + "%"); nextConsole += 5; }
-                    if (chatIdx < chatMilestones.length && pct >= chatMilestones[chatIdx]) {
-                        broadcast(level, "Generation progress: " + chatMilestones[chatIdx] + "%");
-                        CartopiaSurfaceSpawn.adjustAllPlayersAsync(level);
-                        chatIdx++;
+        long done = 0;
+        int milestone = 0;
+        long nextMilestone = (long) totalCells / 4;
+
+        final int worldMin = writer.minBuildHeight();
+        final int worldMax = writer.maxBuildHeight();
+
+        // коды поверхности -> коды BlockPalette: таблица на размер палитры, в цикле только int
+        int[] blockCodes = new int[palette.size()];
+        for (int c = 0; c < blockCodes.length; c++) blockCodes[c] = BlockPalette.code(palette.name(c));
+
+        // Идём чанками: сначала одна очистка всех 256 колонок (пустые секции — целиком),
+        // потом только поверхностные блоки. Стоимость — от числа блоков поверхности, а не высоты мира.
+        int[] keepMin = new int[256];
+        int[] keepMax = new int[256];
+
+        for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+            for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+                int x0 = Math.max(minX, cx << 4), x1 = Math.min(maxX, (cx << 4) + 15);
+                int z0 = Math.max(minZ, cz << 4), z1 = Math.min(maxZ, (cz << 4) + 15);
+
+                // колонки вне области не трогаем
+                Arrays.fill(keepMin, Integer.MIN_VALUE);
+                Arrays.fill(keepMax, Integer.MAX_VALUE);
+
+                // 1) диапазон, который остаётся в каждой колонке
+                for (int z = z0; z <= z1; z++) {
+                    for (int x = x0; x <= x1; x++) {
+                        int i = idx(x,z);
+                        int c = ((z & 15) << 4) | (x & 15);
+                        int yTop = clampTop(terrain[i], worldMin, worldMax);
+
+                        if (breakwaterCells.get(i)) {
+                            keepMin[c] = yTop;      keepMax[c] = yTop + 1;
+                        } else if (blockCodes[surface[i] & 0xFF] == CODE_WATER || waterMask.get(i)) {
+                            int yWaterSurface = waterSurface(waterSurfaceY, i, yTop);
+                            keepMin[c] = yWaterSurface - 1; keepMax[c] = yWaterSurface;
+                        } else {
+                            boolean isCliff = cliffCaps != null && cliffCaps.get(i);
+                            keepMin[c] = yTop;      keepMax[c] = isCliff ? yTop + 1 : yTop;
+                        }
                     }
-                    continue;
                 }
+                writer.clearColumns(cx, cz, keepMin, keepMax);
 
-                String mat = surface[i];
-                if ("water".equals(mat) || waterMask.get(i)) {
-                    int yWaterSurface = (waterSurfaceY != null && waterSurfaceY.length>0 && waterSurfaceY[i] != 0)
-                            ? waterSurfaceY[i]
-                            : (yTop - 1);
-                    int yLapis = yWaterSurface - 1;
-                    int yAirTop = yWaterSurface + 1;
-
-                    clearColumnBelow(x, z, worldMin, yLapis - 1);
-                    setBlock(x, yLapis,         z, "minecraft:lapis_block");
-                    setBlock(x, yWaterSurface,  z, "minecraft:water");
-                    setBlock(x, yAirTop,        z, "minecraft:air");
-                    clearColumnAbove(x, yAirTop + 1, z, worldMax);
-                } else {
-                    setBlock(x, yTop, z, "minecraft:" + mat);
-                    boolean isCliff = cliffCaps != null && cliffCaps.get(i);
-                    if (isCliff) {
-                        setBlock(x, yTop + 1, z, "minecraft:cracked_stone_bricks");
-                        clearColumnAbove(x, yTop + 2, z, worldMax);
-                    } else {
-                        clearColumnAbove(x, yTop + 1, z, worldMax);
+                // 2) сами блоки поверхности
+                for (int z = z0; z <= z1; z++) {
+                    for (int x = x0; x <= x1; x++) {
+                        int i = idx(x,z);
+                        int yTop = clampTop(terrain[i], worldMin, worldMax);
+
+                        // --- breakwater/groyne/coastline: стенка 2 блока вверх
+                        if (breakwaterCells.get(i)) {
+                            int bw = blockCodes[surface[i] & 0xFF];
+                            setBlock(x, yTop,     z, bw);
+                            setBlock(x, yTop + 1, z, bw);
+                            continue;
+                        }
+
+                        int code = blockCodes[surface[i] & 0xFF];
+                        if (code == CODE_WATER || waterMask.get(i)) {
+                            int yWaterSurface = waterSurface(waterSurfaceY, i, yTop);
+                            setBlock(x, yWaterSurface - 1, z, CODE_LAPIS);
+                            setBlock(x, yWaterSurface,     z, CODE_WATER);
+                        } else {
+                            setBlock(x, yTop, z, code);
+                            if (cliffCaps != null && cliffCaps.get(i)) setBlock(x, yTop + 1, z, CODE_CLIFF);
+                        }
                     }
-                    clearColumnBelow(x, z, worldMin, yTop - 1);
                 }
 
-                done++;
-                int pct = (int)((long)done * 100 / totalCells);
-                if (pct >= nextConsole) { System.out.println("[Cartopia] placing blocks: " + pct + "%"); nextConsole += 5; }
-                if (chatIdx < chatMilestones.length && pct >= chatMilestones[chatIdx]) {
-                    broadcast(level, "Generation progress: " + chatMilestones[chatIdx] + "%");
-                    CartopiaSurfaceSpawn.adjustAllPlayersAsync(level);
-                    chatIdx++;
+                // Прогресс — раз на чанк: счётчики для /events, без строк и чата
+                done += (long) (x1 - x0 + 1) * (z1 - z0 + 1);
+                GenerationProgress.progress(done, totalCells);
+                reportWritten();
+                if (milestone < 4 && done >= nextMilestone) {
+                    // на каждой четверти поднимаем игроков на поверхность
+                    if (level != null) CartopiaSurfaceSpawn.adjustAllPlayersAsync(level);
+                    milestone++;
+                    nextMilestone = (long) totalCells * (milestone + 1) / 4;
                 }
             }
+            // конец тайла (TILE_CHUNK_ROWS рядов чанков): пересвет/пакеты по затронутым чанкам
+            if ((cz - (minZ >> 4) + 1) % TILE_CHUNK_ROWS == 0) writer.endTile();
         }
     }
+    private static final int TILE_CHUNK_ROWS = 8;
 
+    private static int clampTop(int yTop, int worldMin, int worldMax) {
+        if (yTop <= worldMin + 2) yTop = worldMin + 3;
+        if (yTop >= worldMax - 2) yTop = worldMax - 3;
+        return yTop;
+    }
 
-    private void setBlock(int x, int y, int z, String id) {
-        Block b = ForgeRegistries.BLOCKS.getValue(ResourceLocation.tryParse(id));
-        if (b == null) b = Blocks.MOSS_BLOCK;
-        level.setBlock(mpos.set(x,y,z), b.defaultBlockState(), 3);
+    private static int waterSurface(int[] waterSurfaceY, int i, int yTop) {
+        return (waterSurfaceY != null && waterSurfaceY.length>0 && waterSurfaceY[i] != 0)
+                ? waterSurfaceY[i]
+                : (yTop - 1);
     }
-    private void clearColumnAbove(int x, int fromY, int z, int toYInclusive) {
-        int maxY = Math.min(level.getMaxBuildHeight(), toYInclusive);
-        for (int y=fromY; y<=maxY; y++) level.setBlock(mpos.set(x,y,z), Blocks.AIR.defaultBlockState(), 3);
+
+
+    private void setBlock(int x, int y, int z, int code) {
+        writer.setBlock(x, y, z, BlockPalette.state(code, MOSS));
     }
-    private void clearColumnBelow(int x, int z, int fromY, int toYInclusive) {
-        int minY = Math.max(level.getMinBuildHeight(), fromY);
-        for (int y=minY; y<=toYInclusive; y++) level.setBlock(mpos.set(x,y,z), Blocks.AIR.defaultBlockState(), 3);
+    private static final BlockState MOSS = Blocks.MOSS_BLOCK.defaultBlockState();
+
+    /**
+     * Материалы поверхности этой генерации -> byte-коды клеток (до 256, в порядке первой встречи).
+     * Код 0 зарезервирован за "water" — единственным классом, который сверяют по всей сетке.
+     * Пополняется только из однопоточных проходов; сглаживания лишь читают готовые коды.
+     */
+    private static final class SurfacePalette {
+        static final byte WATER = 0;
+
+        private final Map<String, Byte> codes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        SurfacePalette() { code("water"); }
+
+        byte code(String material) {
+            Byte c = codes.get(material);
+            if (c != null) return c;
+            if (names.size() == 256) throw new IllegalStateException("Too many surface materials (> 256): " + material);
+            byte nc = (byte) names.size();
+            names.add(material);
+            codes.put(material, nc);
+            return nc;
+        }
+
+        String name(int code) { return names.get(code & 0xFF); }
+
+        int size() { return names.size(); }
+    }
+
+    /**
+     * Голоса соседей за коды палитры: гистограмма на полосу (не на клетку), после клетки
+     * обнуляются только затронутые коды. Ничья с текущим материалом — в его пользу.
+     */
+    private static final class Votes {
+        private final int[] hist;
+        private final int[] touched = new int[8];
+        private int n, best, bestCount;
+
+        Votes(int paletteSize) { hist = new int[paletteSize]; }
+
+        void add(byte code) {
+            int c = code & 0xFF;
+            int k = ++hist[c];
+            if (k == 1) touched[n++] = c;
+            if (k > bestCount) { bestCount = k; best = c; }
+        }
+
+        /** Победитель с не менее чем minVotes голосами, иначе cur; счётчики сбрасываются. */
+        byte winner(byte cur, int minVotes) {
+            byte r = (bestCount >= minVotes && bestCount > hist[cur & 0xFF]) ? (byte) best : cur;
+            for (int k = 0; k < n; k++) hist[touched[k]] = 0;
+            n = 0; bestCount = 0;
+            return r;
+        }
+    }
+    // реально изменённые блоки (записи того же состояния writer не считает)
+    private void reportWritten() {
+        long w = writer.written();
+        GenerationProgress.addBlocks(w - writtenReported);
+        writtenReported = w;
     }
 
     private static long key(int x, int z) { return (((long)x)<<32) ^ (z & 0xffffffffL); }
@@ -1436,6 +1603,8 @@ public class SurfaceGenerator {
             for (double v : lons) { if (v<minLo) minLo=v; if (v>maxLo) maxLo=v; }
             this.minLat=minLa; this.maxLat=maxLa; this.minLon=minLo; this.maxLon=maxLo;
         }
+
+        double bboxArea() { return (maxLat - minLat) * (maxLon - minLon); }
     }
 
     private static boolean isClosed(JsonArray geom) {
@@ -1650,328 +1819,163 @@ public class SurfaceGenerator {
         return null;
     }
 
-    // --- Вариант через NDJSON-стрим ---
-    private static List<ZonePoly> extractZonesFromOSMStream(GenerationStore store) {
-        List<ZonePoly> out = new ArrayList<>();
-        if (store == null) return out;
-
-        try (FeatureStream fs = store.featureStream()) {
-            for (JsonObject e : fs) {
-                String type = optString(e, "type");
-                if (type == null) continue;
-
-                JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
-                MatMatch mm = materialAndKeyForTags(tags);
-                String mat = mm == null ? null : mm.material;
-                String tagKV = mm == null ? null : mm.tagKV;
-                JsonArray geom = e.has("geometry") && e.get("geometry").isJsonArray() ? e.getAsJsonArray("geometry") : null;
-
-                if ("relation".equals(type) && e.has("members") && e.get("members").isJsonArray()) {
-                    boolean treatAsArea = (mat != null) || isAreaByTags(tags);
-                    // NEW: считать мультиполигон реки как площадь, даже если теги только waterway=riverbank на relation
-                    if (!treatAsArea) {
-                        String ww = optString(tags, "waterway");
-                        String w  = optString(tags, "water");
-                        if ("riverbank".equals(ww) || "river".equals(w)) {
-                            treatAsArea = true;
-                            if (mat == null) {
-                                mat = "water";
-                                tagKV = (ww != null ? "waterway=" + ww : "water=" + w);
-                            }
-                        }
-                    }
-
-                    if (!treatAsArea) continue;
-
-                    List<double[][]> outerSegs = new ArrayList<>();
-                    List<double[][]> innerSegs = new ArrayList<>();
-
-                    for (JsonElement memEl : e.getAsJsonArray("members")) {
-                        JsonObject mem = memEl.getAsJsonObject();
-                        if (!"way".equals(optString(mem, "type"))) continue;
-                        String role = optString(mem, "role");
-                        JsonArray mGeom = mem.has("geometry") && mem.get("geometry").isJsonArray()
-                                ? mem.getAsJsonArray("geometry") : null;
-                        if (mGeom == null || mGeom.size() < 2) continue;
-
-                        int n = mGeom.size();
-                        double[] la = new double[n], lo = new double[n];
-                        for (int i=0;i<n;i++){ JsonObject p=mGeom.get(i).getAsJsonObject(); la[i]=p.get("lat").getAsDouble(); lo[i]=p.get("lon").getAsDouble(); }
-                        ("inner".equals(role) ? innerSegs : outerSegs).add(new double[][]{ la, lo });
-                    }
-
-                    List<double[][]> outers = stitchSegmentsToRings(outerSegs);
-                    List<double[][]> inners = stitchSegmentsToRings(innerSegs);
-
-                    String natW = optString(tags, "natural");
-                    String placeW = optString(tags, "place");
-                    String waterW = optString(tags, "water");
-                    boolean isWaterArea = "water".equals(mat)
-                            || "riverbank".equals(optString(tags, "waterway"))
-                            || "river".equals(waterW)
-                            || "bay".equals(natW) || "sea".equals(natW) || "strait".equals(natW)
-                            || "lagoon".equals(natW) || "fjord".equals(natW) || "sound".equals(natW)
-                            || "sea".equals(placeW) || "ocean".equals(placeW)
-                            || "sea".equals(waterW) || "bay".equals(waterW) || "lagoon".equals(waterW) || tagMeansBigWater(tags);
-
-                    for (double[][] r : outers) {
-                        if (isWaterArea) out.add(new ZonePoly(r[0], r[1], "water", false, tagKV));
-                        else if (mat != null) out.add(new ZonePoly(r[0], r[1], mat, false, tagKV));
-                    }
-                    if (isWaterArea) {
-                        for (double[][] h : inners) {
-                            out.add(new ZonePoly(h[0], h[1], "water", true, tagKV));
-                        }
+    /** Зоны-полигоны одного OSM-элемента (площади, мультиполигоны, ленты линейной гидрографии). */
+    private static void classifyZones(JsonObject e, List<ZonePoly> out) {
+        String type = optString(e, "type");
+        if (type == null) return;
+
+        JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
+        MatMatch mm = materialAndKeyForTags(tags);
+        String mat = mm == null ? null : mm.material;
+        String tagKV = mm == null ? null : mm.tagKV;
+        JsonArray geom = e.has("geometry") && e.get("geometry").isJsonArray() ? e.getAsJsonArray("geometry") : null;
+
+        if ("relation".equals(type) && e.has("members") && e.get("members").isJsonArray()) {
+            boolean treatAsArea = (mat != null) || isAreaByTags(tags);
+            // NEW: считать мультиполигон реки как площадь, даже если теги только waterway=riverbank на relation
+            if (!treatAsArea) {
+                String ww = optString(tags, "waterway");
+                String w  = optString(tags, "water");
+                if ("riverbank".equals(ww) || "river".equals(w)) {
+                    treatAsArea = true;
+                    if (mat == null) {
+                        mat = "water";
+                        tagKV = (ww != null ? "waterway=" + ww : "water=" + w);
                     }
-
-                    // Fallback: если замкнутых колец не получилось (стрим не дал всех сегментов),
-                    // рисуем по самим outerSegs как по "открытым" цепочкам — rectIntersectsPolygon теперь их понимает.
-                    if ((outers == null || outers.isEmpty()) && !outerSegs.isEmpty()) {
-                        if (isWaterArea || mat != null) {
-                            for (double[][] seg : outerSegs) {
-                                double[] la = seg[0];
-                                double[] lo = seg[1];
-                                if (la != null && lo != null && la.length >= 2 && la.length == lo.length) {
-                                    out.add(new ZonePoly(la, lo, (isWaterArea ? "water" : mat), false, tagKV));
-                                }
-                            }
-                        }
-                    }
-
-                    continue;
                 }
+            }
 
-                if ("way".equals(type) && geom != null && geom.size() >= 2) {
-                    boolean closed = isClosed(geom);
-                    if (closed && (mat != null || isAreaByTags(tags))) {
-                        int n = geom.size();
-                        double[] la = new double[n], lo = new double[n];
-                        for (int i=0;i<n;i++){ JsonObject p=geom.get(i).getAsJsonObject(); la[i]=p.get("lat").getAsDouble(); lo[i]=p.get("lon").getAsDouble(); }
-                        if (mat != null) out.add(new ZonePoly(la, lo, mat, false, tagKV));
-                        continue;
-                    }
-                    else if (!closed && (mat != null || isAreaByTags(tags))) {
-                        // Fallback для площадных way, которые пришли незамкнутыми: добавим как "открытую" цепочку.
-                        int n = geom.size();
-                        double[] la = new double[n], lo = new double[n];
-                        for (int i=0; i<n; i++) {
-                            JsonObject p = geom.get(i).getAsJsonObject();
-                            la[i] = p.get("lat").getAsDouble();
-                            lo[i] = p.get("lon").getAsDouble();
-                        }
-                        if (mat != null) {
-                            out.add(new ZonePoly(la, lo, mat, false, tagKV));
-                        }
-                        // если mat == null, ничего не добавляем (иначе может «потянуть» нерелевантные зоны)
-                    }
+            if (!treatAsArea) return;
 
-                    // линейная гидрография → расширяем до «ленты»
-                    // ЛИНЕЙНАЯ ГИДРОГРАФИЯ → «лента» нужной ширины (учитываем width=*), замыкаем кольцо!
-                    if (isLinearWater(tags)) {
-                        int n = geom.size();
-                        double[] lats = new double[n], lons = new double[n];
-                        for (int i = 0; i < n; i++) {
-                            JsonObject p = geom.get(i).getAsJsonObject();
-                            lats[i] = p.get("lat").getAsDouble();
-                            lons[i] = p.get("lon").getAsDouble();
-                        }
+            List<double[][]> outerSegs = new ArrayList<>();
+            List<double[][]> innerSegs = new ArrayList<>();
 
-                        // 1) Читаем width в метрах (если есть). Это ПОЛНАЯ ширина в OSM → половинное смещение.
-                        double widthM = parseWidthMeters(tags); // NaN если нет
-                        // 2) Дефолт «как раньше»: ТВОЁ старое значение — это сразу смещение (половина ширины).
-                        String wType = optString(tags, "waterway");
-                        double defaultOffsetMeters = ("river".equals(wType) ? 8.0 : "canal".equals(wType) ? 4.0 : 1.0);
-
-                        // Если width задан — берём половину как оффсет; иначе оставляем прежний дефолт (чтобы визуально ничего не «съехало»).
-                        double offsetM = (Double.isNaN(widthM) || widthM <= 0) ? defaultOffsetMeters : (widthM / 2.0);
-
-                        // Константный сдвиг в градусах (аппроксимация по широте трека)
-                        double midLat = lats[Math.max(0, n / 2)];
-                        double dLat = offsetM / 111320.0;
-                        double dLon = offsetM / (111320.0 * Math.max(0.35, Math.cos(Math.toRadians(midLat))));
-
-                        // 3) Формируем ЗАМКНУТОЕ кольцо: верхняя кромка туда, нижняя обратно + повторяем первую точку.
-                        int m = 2 * n;
-                        double[] la = new double[m + 1];
-                        double[] lo = new double[m + 1];
-                        for (int i = 0; i < n; i++) {
-                            la[i]       = lats[i] + dLat;  lo[i]       = lons[i] + dLon;  // «верх»
-                            la[m - 1 - i] = lats[i] - dLat;  lo[m - 1 - i] = lons[i] - dLon;  // «низ»
-                        }
-                        // замыкаем кольцо — критично, иначе клетки «внутри ленты» могут не попасть!
-                        la[m] = la[0];
-                        lo[m] = lo[0];
+            for (JsonElement memEl : e.getAsJsonArray("members")) {
+                JsonObject mem = memEl.getAsJsonObject();
+                if (!"way".equals(optString(mem, "type"))) continue;
+                String role = optString(mem, "role");
+                JsonArray mGeom = mem.has("geometry") && mem.get("geometry").isJsonArray()
+                        ? mem.getAsJsonArray("geometry") : null;
+                if (mGeom == null || mGeom.size() < 2) continue;
 
-                        out.add(new ZonePoly(la, lo, "water", false, "waterway=" + wType));
+                int n = mGeom.size();
+                double[] la = new double[n], lo = new double[n];
+                for (int i=0;i<n;i++){ JsonObject p=mGeom.get(i).getAsJsonObject(); la[i]=p.get("lat").getAsDouble(); lo[i]=p.get("lon").getAsDouble(); }
+                ("inner".equals(role) ? innerSegs : outerSegs).add(new double[][]{ la, lo });
+            }
+
+            List<double[][]> outers = stitchSegmentsToRings(outerSegs);
+            List<double[][]> inners = stitchSegmentsToRings(innerSegs);
+
+            String natW = optString(tags, "natural");
+            String placeW = optString(tags, "place");
+            String waterW = optString(tags, "water");
+            boolean isWaterArea = "water".equals(mat)
+                    || "riverbank".equals(optString(tags, "waterway"))
+                    || "river".equals(waterW)
+                    || "bay".equals(natW) || "sea".equals(natW) || "strait".equals(natW)
+                    || "lagoon".equals(natW) || "fjord".equals(natW) || "sound".equals(natW)
+                    || "sea".equals(placeW) || "ocean".equals(placeW)
+                    || "sea".equals(waterW) || "bay".equals(waterW) || "lagoon".equals(waterW) || tagMeansBigWater(tags);
+
+            for (double[][] r : outers) {
+                if (isWaterArea) out.add(new ZonePoly(r[0], r[1], "water", false, tagKV));
+                else if (mat != null) out.add(new ZonePoly(r[0], r[1], mat, false, tagKV));
+            }
+            if (isWaterArea) {
+                for (double[][] h : inners) {
+                    out.add(new ZonePoly(h[0], h[1], "water", true, tagKV));
+                }
+            }
+
+            // Fallback: если замкнутых колец не получилось (стрим не дал всех сегментов),
+            // рисуем по самим outerSegs как по "открытым" цепочкам — ZoneRaster красит их только по рёбрам.
+            if ((outers == null || outers.isEmpty()) && !outerSegs.isEmpty()) {
+                if (isWaterArea || mat != null) {
+                    for (double[][] seg : outerSegs) {
+                        double[] la = seg[0];
+                        double[] lo = seg[1];
+                        if (la != null && lo != null && la.length >= 2 && la.length == lo.length) {
+                            out.add(new ZonePoly(la, lo, (isWaterArea ? "water" : mat), false, tagKV));
+                        }
                     }
                 }
-
-                if ("relation".equals(type) && geom != null && geom.size() >= 4 && (mat != null || isAreaByTags(tags))) {
-                    int n = geom.size();
-                    double[] la = new double[n], lo = new double[n];
-                    for (int i=0;i<n;i++){ JsonObject p=geom.get(i).getAsJsonObject(); la[i]=p.get("lat").getAsDouble(); lo[i]=p.get("lon").getAsDouble(); }
-                    if (mat != null) out.add(new ZonePoly(la, lo, mat, false, tagKV));
-                }
             }
-        } catch (Exception ex) {
-            System.err.println("[Cartopia] featureStream for zones failed: " + ex);
-        }
-        return out;
-    }
-
-    // --- Старый вариант через coords.features ---
-    private static List<ZonePoly> extractZonesFromOSM(JsonObject root) {
-        List<ZonePoly> out = new ArrayList<>();
-        if (!root.has("features")) return out;
-        JsonObject features = root.getAsJsonObject("features");
-        if (features == null || !features.has("elements")) return out;
-        JsonArray elements = features.getAsJsonArray("elements");
-        if (elements == null) return out;
-
-        for (JsonElement el : elements) {
-            if (!el.isJsonObject()) continue;
-            JsonObject e = el.getAsJsonObject();
-
-            String type = optString(e, "type");
-            if (type == null) continue;
-
-            JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
-            if (tags == null) continue;
-
-            MatMatch mm = materialAndKeyForTags(tags);
-            String mat = mm == null ? null : mm.material;
-            String tagKV = mm == null ? null : mm.tagKV;
 
-            JsonArray geom = e.has("geometry") && e.get("geometry").isJsonArray() ? e.getAsJsonArray("geometry") : null;
-
-            // --- RELATION (multipolygon) ---
-            if ("relation".equals(type) && e.has("members") && e.get("members").isJsonArray()) {
-                boolean treatAsArea = (mat != null) || isAreaByTags(tags);
-                if (!treatAsArea) continue;
-
-                List<double[][]> outerSegs = new ArrayList<>();
-                List<double[][]> innerSegs = new ArrayList<>();
-
-                for (JsonElement memEl : e.getAsJsonArray("members")) {
-                    JsonObject mem = memEl.getAsJsonObject();
-                    if (!"way".equals(optString(mem, "type"))) continue;
-                    String role = optString(mem, "role");
-                    JsonArray mGeom = mem.has("geometry") && mem.get("geometry").isJsonArray()
-                            ? mem.getAsJsonArray("geometry") : null;
-                    if (mGeom == null || mGeom.size() < 2) continue;
-
-                    int n = mGeom.size();
-                    double[] la = new double[n], lo = new double[n];
-                    for (int i=0;i<n;i++){ JsonObject p=mGeom.get(i).getAsJsonObject(); la[i]=p.get("lat").getAsDouble(); lo[i]=p.get("lon").getAsDouble(); }
-                    ("inner".equals(role) ? innerSegs : outerSegs).add(new double[][]{ la, lo });
-                }
+            return;
+        }
 
-                List<double[][]> outers = stitchSegmentsToRings(outerSegs);
-                List<double[][]> inners = stitchSegmentsToRings(innerSegs);
-
-                String natW = optString(tags, "natural");
-                String placeW = optString(tags, "place");
-                String waterW = optString(tags, "water");
-                boolean isWaterArea = "water".equals(mat)
-                        || "riverbank".equals(optString(tags, "waterway"))
-                        || "river".equals(waterW)
-                        || "bay".equals(natW) || "sea".equals(natW) || "strait".equals(natW)
-                        || "lagoon".equals(natW) || "fjord".equals(natW) || "sound".equals(natW)
-                        || "sea".equals(placeW) || "ocean".equals(placeW)
-                        || "sea".equals(waterW) || "bay".equals(waterW) || "lagoon".equals(waterW) || tagMeansBigWater(tags);
-
-                for (double[][] r : outers) {
-                    if (isWaterArea) {
-                        out.add(new ZonePoly(r[0], r[1], "water", false, tagKV));
-                    } else if (mat != null) {
-                        out.add(new ZonePoly(r[0], r[1], mat, false, tagKV));
-                    }
+        if ("way".equals(type) && geom != null && geom.size() >= 2) {
+            boolean closed = isClosed(geom);
+            if (closed && (mat != null || isAreaByTags(tags))) {
+                int n = geom.size();
+                double[] la = new double[n], lo = new double[n];
+                for (int i=0;i<n;i++){ JsonObject p=geom.get(i).getAsJsonObject(); la[i]=p.get("lat").getAsDouble(); lo[i]=p.get("lon").getAsDouble(); }
+                if (mat != null) out.add(new ZonePoly(la, lo, mat, false, tagKV));
+                return;
+            }
+            else if (!closed && (mat != null || isAreaByTags(tags))) {
+                // Fallback для площадных way, которые пришли незамкнутыми: добавим как "открытую" цепочку.
+                int n = geom.size();
+                double[] la = new double[n], lo = new double[n];
+                for (int i=0; i<n; i++) {
+                    JsonObject p = geom.get(i).getAsJsonObject();
+                    la[i] = p.get("lat").getAsDouble();
+                    lo[i] = p.get("lon").getAsDouble();
                 }
-                if (isWaterArea) {
-                    for (double[][] h : inners) {
-                        out.add(new ZonePoly(h[0], h[1], "water", true, tagKV));
-                    }
+                if (mat != null) {
+                    out.add(new ZonePoly(la, lo, mat, false, tagKV));
                 }
-
-                continue;
+                // если mat == null, ничего не добавляем (иначе может «потянуть» нерелевантные зоны)
             }
 
-            // --- WAY ---
-            if ("way".equals(type) && geom != null && geom.size() >= 2) {
-                boolean closed = isClosed(geom);
-                if (closed && (mat != null || isAreaByTags(tags))) {
-                    int n = geom.size();
-                    double[] la = new double[n], lo = new double[n];
-                    for (int i=0;i<n;i++){ JsonObject p=geom.get(i).getAsJsonObject(); la[i]=p.get("lat").getAsDouble(); lo[i]=p.get("lon").getAsDouble(); }
-                    if (mat != null) {
-                        out.add(new ZonePoly(la, lo, mat, false, tagKV));
-                    }
-                    continue;
+            // линейная гидрография → расширяем до «ленты»
+            // ЛИНЕЙНАЯ ГИДРОГРАФИЯ → «лента» нужной ширины (учитываем width=*), замыкаем кольцо!
+            if (isLinearWater(tags)) {
+                int n = geom.size();
+                double[] lats = new double[n], lons = new double[n];
+                for (int i = 0; i < n; i++) {
+                    JsonObject p = geom.get(i).getAsJsonObject();
+                    lats[i] = p.get("lat").getAsDouble();
+                    lons[i] = p.get("lon").getAsDouble();
                 }
 
-                // линейная гидрография
-                // ЛИНЕЙНАЯ ГИДРОГРАФИЯ → «лента» нужной ширины (учитываем width=*), замыкаем кольцо!
-                if (isLinearWater(tags)) {
-                    int n = geom.size();
-                    double[] lats = new double[n], lons = new double[n];
-                    for (int i = 0; i < n; i++) {
-                        JsonObject p = geom.get(i).getAsJsonObject();
-                        lats[i] = p.get("lat").getAsDouble();
-                        lons[i] = p.get("lon").getAsDouble();
-                    }
+                // 1) Читаем width в метрах (если есть). Это ПОЛНАЯ ширина в OSM → половинное смещение.
+                double widthM = parseWidthMeters(tags); // NaN если нет
+                // 2) Дефолт «как раньше»: ТВОЁ старое значение — это сразу смещение (половина ширины).
+                String wType = optString(tags, "waterway");
+                double defaultOffsetMeters = ("river".equals(wType) ? 8.0 : "canal".equals(wType) ? 4.0 : 1.0);
 
-                    // 1) Читаем width в метрах (если есть). Это ПОЛНАЯ ширина в OSM → половинное смещение.
-                    double widthM = parseWidthMeters(tags); // NaN если нет
-                    // 2) Дефолт «как раньше»: ТВОЁ старое значение — это сразу смещение (половина ширины).
-                    String wType = optString(tags, "waterway");
-                    double defaultOffsetMeters = ("river".equals(wType) ? 8.0 : "canal".equals(wType) ? 4.0 : 1.0);
-
-                    // Если width задан — берём половину как оффсет; иначе оставляем прежний дефолт (чтобы визуально ничего не «съехало»).
-                    double offsetM = (Double.isNaN(widthM) || widthM <= 0) ? defaultOffsetMeters : (widthM / 2.0);
-
-                    // Константный сдвиг в градусах (аппроксимация по широте трека)
-                    double midLat = lats[Math.max(0, n / 2)];
-                    double dLat = offsetM / 111320.0;
-                    double dLon = offsetM / (111320.0 * Math.max(0.35, Math.cos(Math.toRadians(midLat))));
-
-                    // 3) Формируем ЗАМКНУТОЕ кольцо: верхняя кромка туда, нижняя обратно + повторяем первую точку.
-                    int m = 2 * n;
-                    double[] la = new double[m + 1];
-                    double[] lo = new double[m + 1];
-                    for (int i = 0; i < n; i++) {
-                        la[i]       = lats[i] + dLat;  lo[i]       = lons[i] + dLon;  // «верх»
-                        la[m - 1 - i] = lats[i] - dLat;  lo[m - 1 - i] = lons[i] - dLon;  // «низ»
-                    }
-                    // замыкаем кольцо — критично, иначе клетки «внутри ленты» могут не попасть!
-                    la[m] = la[0];
-                    lo[m] = lo[0];
+                // Если width задан — берём половину как оффсет; иначе оставляем прежний дефолт (чтобы визуально ничего не «съехало»).
+                double offsetM = (Double.isNaN(widthM) || widthM <= 0) ? defaultOffsetMeters : (widthM / 2.0);
 
-                    out.add(new ZonePoly(la, lo, "water", false, "waterway=" + wType));
-                }
-            }
+                // Константный сдвиг в градусах (аппроксимация по широте трека)
+                double midLat = lats[Math.max(0, n / 2)];
+                double dLat = offsetM / 111320.0;
+                double dLon = offsetM / (111320.0 * Math.max(0.35, Math.cos(Math.toRadians(midLat))));
 
-            // --- relation с geometry на самом relation ---
-            if ("relation".equals(type) && geom != null && geom.size() >= 4 && (mat != null || isAreaByTags(tags))) {
-                int n = geom.size();
-                double[] la = new double[n], lo = new double[n];
-                for (int i=0;i<n;i++){ JsonObject p=geom.get(i).getAsJsonObject(); la[i]=p.get("lat").getAsDouble(); lo[i]=p.get("lon").getAsDouble(); }
-                if (mat != null) {
-                    out.add(new ZonePoly(la, lo, mat, false, tagKV));
+                // 3) Формируем ЗАМКНУТОЕ кольцо: верхняя кромка туда, нижняя обратно + повторяем первую точку.
+                int m = 2 * n;
+                double[] la = new double[m + 1];
+                double[] lo = new double[m + 1];
+                for (int i = 0; i < n; i++) {
+                    la[i]       = lats[i] + dLat;  lo[i]       = lons[i] + dLon;  // «верх»
+                    la[m - 1 - i] = lats[i] - dLat;  lo[m - 1 - i] = lons[i] - dLon;  // «низ»
                 }
+                // замыкаем кольцо — критично, иначе клетки «внутри ленты» могут не попасть!
+                la[m] = la[0];
+                lo[m] = lo[0];
+
+                out.add(new ZonePoly(la, lo, "water", false, "waterway=" + wType));
             }
         }
-        return out;
-    }
 
-    /** Чётно-нечётный алгоритм, lat/lon в градусах (lon = X, lat = Y) */
-    private static boolean pointInPolygon(double lat, double lon, double[] lats, double[] lons) {
-        boolean inside = false;
-        for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
-            boolean intersect = ((lats[i] > lat) != (lats[j] > lat)) &&
-                    (lon < (lons[j] - lons[i]) * (lat - lats[i]) / (lats[j] - lats[i] + 1e-12) + lons[i]);
-            if (intersect) inside = !inside;
+        if ("relation".equals(type) && geom != null && geom.size() >= 4 && (mat != null || isAreaByTags(tags))) {
+            int n = geom.size();
+            double[] la = new double[n], lo = new double[n];
+            for (int i=0;i<n;i++){ JsonObject p=geom.get(i).getAsJsonObject(); la[i]=p.get("lat").getAsDouble(); lo[i]=p.get("lon").getAsDouble(); }
+            if (mat != null) out.add(new ZonePoly(la, lo, mat, false, tagKV));
         }
-        return inside;
     }
 
     // ====== Пересечение прямоугольника клетки с полигоном ======
@@ -2003,88 +2007,127 @@ public class SurfaceGenerator {
         return new RectLL(minLat, maxLat, minLon, maxLon);
     }
 
-    private static boolean rectsOverlap(double aMinLat, double aMaxLat, double aMinLon, double aMaxLon,
-                                        double bMinLat, double bMaxLat, double bMinLon, double bMaxLon) {
-        return !(aMaxLon < bMinLon || aMinLon > bMaxLon || aMaxLat < bMinLat || aMinLat > bMaxLat);
-    }
-
     // Кольцо считается замкнутым, если первая и последняя точки совпадают
     private static boolean isClosedRing(double[] lats, double[] lons) {
         if (lats == null || lons == null || lats.length < 2 || lats.length != lons.length) return false;
         return Math.abs(lats[0] - lats[lats.length - 1]) < EPS && Math.abs(lons[0] - lons[lons.length - 1]) < EPS;
     }
 
-
-    // Пересечение прямоугольника клетки с полигоном ИЛИ незамкнутой цепочкой (любой ненулевой контакт)
-    // Тот же алгоритм, что и rectIntersectsPolygon(RectLL,...), но без объекта:
-    private static boolean rectIntersectsPolygon(double rMinLat, double rMaxLat,
-                                                double rMinLon, double rMaxLon,
-                                                double[] polyLats, double[] polyLons) {
-        if (polyLats == null || polyLons == null || polyLats.length < 2 || polyLats.length != polyLons.length) return false;
-
-        final boolean closed = isClosedRing(polyLats, polyLons);
-
-        // 1) Любая вершина поли(линии) внутри прямоугольника
-        for (int i = 0; i < polyLats.length; i++) {
-            double lat = polyLats[i], lon = polyLons[i];
-            if (lon >= rMinLon - EPS && lon <= rMaxLon + EPS &&
-                lat >= rMinLat - EPS && lat <= rMaxLat + EPS) {
-                return true;
+    /**
+     * Построчная растеризация зон в клетки области (клетка x,z — квадрат x±0.5, z±0.5 в блоках).
+     *
+     * Клетка покрывается, если её квадрата касается ребро (каждое ребро проходит только по своим
+     * строкам) или — для замкнутых колец — её центр внутри (чётно-нечётно, таблица активных рёбер,
+     * пересечения в центрах строк). Клетка целиком внутри кольца всегда содержит центр, поэтому это
+     * то же «любое касание прямоугольника клетки», что давала поклеточная проверка, включая
+     * незамкнутые цепочки (только рёбра).
+     */
+    private static final class ZoneRaster {
+        private static final double TOUCH = 1e-9; // касание границы клетки, в блоках
+
+        final int minX, maxX, minZ, maxZ, width;
+        final double centerLat, centerLng, lonPerBlock, latPerBlock;
+        final int centerX, centerZ;
+
+        ZoneRaster(int minX, int maxX, int minZ, int maxZ,
+                   double centerLat, double centerLng,
+                   double east, double west, double north, double south,
+                   int sizeMeters, int centerX, int centerZ) {
+            this.minX = minX; this.maxX = maxX; this.minZ = minZ; this.maxZ = maxZ;
+            this.width = maxX - minX + 1;
+            this.centerLat = centerLat; this.centerLng = centerLng;
+            this.lonPerBlock = (east - west) / (double) sizeMeters;
+            this.latPerBlock = (south - north) / (double) sizeMeters;
+            this.centerX = centerX; this.centerZ = centerZ;
+        }
+
+        // обратное к blockToLatLng
+        private double bx(double lon) { return centerX + (lon - centerLng) / lonPerBlock; }
+        private double bz(double lat) { return centerZ + (lat - centerLat) / latPerBlock; }
+
+        private int idx(int x, int z) { return (z - minZ) * width + (x - minX); }
+
+        /** cell получает индекс (как SurfaceGenerator.idx) каждой покрытой клетки; возможны повторы. */
+        void paint(ZonePoly zp, IntConsumer cell) {
+            final int n = zp.lats.length;
+            if (n < 2 || n != zp.lons.length) return;
+            if (bx(zp.minLon) < minX - 1 && bx(zp.maxLon) < minX - 1) return;
+            if (bx(zp.minLon) > maxX + 1 && bx(zp.maxLon) > maxX + 1) return;
+            if (bz(zp.minLat) < minZ - 1 && bz(zp.maxLat) < minZ - 1) return;
+            if (bz(zp.minLat) > maxZ + 1 && bz(zp.maxLat) > maxZ + 1) return;
+
+            final double[] xs = new double[n], zs = new double[n];
+            for (int k = 0; k < n; k++) { xs[k] = bx(zp.lons[k]); zs[k] = bz(zp.lats[k]); }
+            final boolean closed = isClosedRing(zp.lats, zp.lons);
+
+            // 1) рёбра (вершины — их концы)
+            for (int k = 1; k < n; k++) edge(xs[k-1], zs[k-1], xs[k], zs[k], cell);
+            if (!closed) return;
+
+            // 2) внутренность: рёбра k-1 -> k по возрастанию нижнего z; горизонтальные строку не пересекают
+            final double[] lo = new double[n], hi = new double[n];
+            final int[] order = new int[n];
+            int m = 0;
+            double polyLo = Double.POSITIVE_INFINITY, polyHi = Double.NEGATIVE_INFINITY;
+            for (int k = 1; k < n; k++) {
+                if (zs[k-1] == zs[k]) continue;
+                lo[k] = Math.min(zs[k-1], zs[k]);
+                hi[k] = Math.max(zs[k-1], zs[k]);
+                if (lo[k] < polyLo) polyLo = lo[k];
+                if (hi[k] > polyHi) polyHi = hi[k];
+                order[m++] = k;
+            }
+            if (m < 2) return;
+            IntArrays.quickSort(order, 0, m, (p, q) -> Double.compare(lo[p], lo[q]));
+
+            final int r0 = Math.max(minZ, (int) Math.ceil(polyLo));
+            final int r1 = Math.min(maxZ, (int) Math.ceil(polyHi) - 1);
+            final int[] active = new int[m];
+            final double[] cross = new double[m];
+            int na = 0, next = 0;
+            for (int r = r0; r <= r1; r++) {
+                // ребро активно в строке r, если lo <= r < hi
+                while (next < m && lo[order[next]] <= r) active[na++] = order[next++];
+                int nc = 0;
+                for (int a = 0; a < na; ) {
+                    int k = active[a];
+                    if (hi[k] <= r) { active[a] = active[--na]; continue; }
+                    cross[nc++] = xAt(xs[k-1], zs[k-1], xs[k], zs[k], r);
+                    a++;
+                }
+                Arrays.sort(cross, 0, nc);
+                for (int c = 0; c + 1 < nc; c += 2) {
+                    int x0 = Math.max(minX, (int) Math.ceil(cross[c]));
+                    int x1 = Math.min(maxX, (int) Math.floor(cross[c + 1]));
+                    for (int x = x0; x <= x1; x++) cell.accept(idx(x, r));
+                }
+            }
+        }
+
+        // все клетки, которых касается отрезок: по каждой строке — его x-интервал внутри полосы строки
+        private void edge(double x1, double z1, double x2, double z2, IntConsumer cell) {
+            final double zlo = Math.min(z1, z2), zhi = Math.max(z1, z2);
+            final int r0 = Math.max(minZ, (int) Math.floor(zlo + 0.5 - TOUCH));
+            final int r1 = Math.min(maxZ, (int) Math.floor(zhi + 0.5 + TOUCH));
+            final boolean flat = zhi - zlo < TOUCH;
+            for (int r = r0; r <= r1; r++) {
+                double xa, xb;
+                if (flat) {
+                    xa = Math.min(x1, x2); xb = Math.max(x1, x2);
+                } else {
+                    double a = xAt(x1, z1, x2, z2, Math.max(zlo, r - 0.5));
+                    double b = xAt(x1, z1, x2, z2, Math.min(zhi, r + 0.5));
+                    xa = Math.min(a, b); xb = Math.max(a, b);
+                }
+                int c0 = Math.max(minX, (int) Math.floor(xa + 0.5 - TOUCH));
+                int c1 = Math.min(maxX, (int) Math.floor(xb + 0.5 + TOUCH));
+                for (int x = c0; x <= c1; x++) cell.accept(idx(x, r));
             }
         }
 
-        // 2) Уголки прямоугольника внутри полигона — только для замкнутых
-        if (closed) {
-            double[][] rectPts = new double[][]{
-                {rMinLat, rMinLon}, {rMinLat, rMaxLon}, {rMaxLat, rMaxLon}, {rMaxLat, rMinLon}
-            };
-            for (double[] pt : rectPts) if (pointInPolygon(pt[0], pt[1], polyLats, polyLons)) return true;
-        }
-
-        // 3) Пересечение рёбер
-        double[][] E = new double[][]{
-            {rMinLon, rMinLat, rMaxLon, rMinLat},
-            {rMaxLon, rMinLat, rMaxLon, rMaxLat},
-            {rMaxLon, rMaxLat, rMinLon, rMaxLat},
-            {rMinLon, rMaxLat, rMinLon, rMinLat}
-        };
-        for (int i = 1; i < polyLats.length; i++) {
-            double x1 = polyLons[i-1], y1 = polyLats[i-1];
-            double x2 = polyLons[i],   y2 = polyLats[i];
-            for (double[] e : E) if (segmentsIntersect(x1,y1,x2,y2, e[0],e[1],e[2],e[3])) return true;
+        private static double xAt(double x1, double z1, double x2, double z2, double z) {
+            return x1 + (z - z1) * (x2 - x1) / (z2 - z1);
         }
-        if (closed) {
-            double x1 = polyLons[polyLons.length-1], y1 = polyLats[polyLats.length-1];
-            double x2 = polyLons[0],                 y2 = polyLats[0];
-            for (double[] e : E) if (segmentsIntersect(x1,y1,x2,y2, e[0],e[1],e[2],e[3])) return true;
-        }
-        return false;
-    }
-
-    private static boolean segmentsIntersect(double x1, double y1, double x2, double y2,
-                                             double x3, double y3, double x4, double y4) {
-        double o1 = orient(x1,y1,x2,y2,x3,y3);
-        double o2 = orient(x1,y1,x2,y2,x4,y4);
-        double o3 = orient(x3,y3,x4,y4,x1,y1);
-        double o4 = orient(x3,y3,x4,y4,x2,y2);
-
-        if (o1*o2 < 0 && o3*o4 < 0) return true;
-
-        if (Math.abs(o1) < EPS && onSegment(x1,y1,x2,y2,x3,y3)) return true;
-        if (Math.abs(o2) < EPS && onSegment(x1,y1,x2,y2,x4,y4)) return true;
-        if (Math.abs(o3) < EPS && onSegment(x3,y3,x4,y4,x1,y1)) return true;
-        if (Math.abs(o4) < EPS && onSegment(x3,y3,x4,y4,x2,y2)) return true;
-
-        return false;
-    }
-
-    private static double orient(double ax, double ay, double bx, double by, double cx, double cy) {
-        return (bx-ax)*(cy-ay) - (by-ay)*(cx-ax);
-    }
-
-    private static boolean onSegment(double ax, double ay, double bx, double by, double px, double py) {
-        return px >= Math.min(ax,bx)-EPS && px <= Math.max(ax,bx)+EPS &&
-               py >= Math.min(ay,by)-EPS && py <= Math.max(ay,by)+EPS;
     }
 
     /** Формирует желаемую высоту поверхности воды (см. комментарии в исходнике) */
@@ -2092,8 +2135,8 @@ public class SurfaceGenerator {
     private Map<Long, Integer> computeWaterSurfaceY(Map<Long,String> surface,
                                                     Map<Long,Integer> terrainY,
                                                     int minX, int maxX, int minZ, int maxZ) {
-        final int worldMin = level.getMinBuildHeight();
-        final int worldMax = level.getMaxBuildHeight() - 1;
+        final int worldMin = writer.minBuildHeight();
+        final int worldMax = writer.maxBuildHeight() - 1;
 
         HashSet<Long> water = new HashSet<>();
         boolean hasLand = false;
@@ -2277,515 +2320,139 @@ public class SurfaceGenerator {
         return isBreakwaterLike(tags) || isGroyneLike(tags);
     }
 
-    /** Рисуем линию на сетке (Брезенхэм) и собираем клетки в out. */
-    private static void drawLineCells(int x1, int z1, int x2, int z2,
-                                    int minX, int maxX, int minZ, int maxZ,
-                                    Set<Long> out) {
-        int dx = Math.abs(x2 - x1), sx = x1 < x2 ? 1 : -1;
-        int dz = Math.abs(z2 - z1), sz = z1 < z2 ? 1 : -1;
-        int err = (dx > dz ? dx : -dz) / 2;
-        int x = x1, z = z1;
-        while (true) {
-            if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
-                out.add(key(x, z));
-            }
-            if (x == x2 && z == z2) break;
-            int e2 = err;
-            if (e2 > -dx) { err -= dz; x += sx; }
-            if (e2 <  dz) { err += dx; z += sz; }
-        }
-    }
-
-    /** Расширяет набор клеток до «толщины» 2×2 (морфологическая дилатация на 1 клетку по +X/+Z). */
-    private static Set<Long> thickenCells2x2(Set<Long> in, int minX, int maxX, int minZ, int maxZ) {
-        HashSet<Long> out = new HashSet<>(in.size() * 4);
-        for (long k : in) {
-            int x = (int)(k >> 32);
-            int z = (int)k;
-            for (int dx = 0; dx <= 1; dx++) for (int dz = 0; dz <= 1; dz++) {
-                int nx = x + dx, nz = z + dz;
-                if (nx<minX||nx>maxX||nz<minZ||nz>maxZ) continue;
-                out.add((((long)nx)<<32) ^ (nz & 0xffffffffL));
-            }
-        }
-        return out;
-    }
+    /** Клетки (индекс сетки) -> код палитры в порядке поступления: при применении поздние перекрывают ранние. */
+    private static final class CellMaterials {
+        final IntArrayList cells = new IntArrayList();
+        final ByteArrayList mats = new ByteArrayList();
 
-    // NDJSON-стрим для обрывов/укреплений
-    private static Set<Long> extractCliffCellsFromOSMStream(
-            GenerationStore store,
-            double centerLat, double centerLng,
-            double east, double west, double north, double south,
-            int sizeMeters, int centerX, int centerZ,
-            int minX, int maxX, int minZ, int maxZ) {
-
-        Set<Long> out = new HashSet<>();
-        if (store == null) return out;
-
-        try (FeatureStream fs = store.featureStream()) {
-            for (JsonObject e : fs) {
-                String type = optString(e, "type");
-                JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
-                if (!isCliffLike(tags)) continue;
-
-                if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray()) {
-                    JsonArray geom = e.getAsJsonArray("geometry");
-                    if (geom.size() < 2) continue;
-                    JsonObject p0 = geom.get(0).getAsJsonObject();
-                    int[] prev = latlngToBlock(
-                            p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                            centerLat, centerLng, east, west, north, south,
-                            sizeMeters, centerX, centerZ);
-                    for (int i = 1; i < geom.size(); i++) {
-                        JsonObject pi = geom.get(i).getAsJsonObject();
-                        int[] cur = latlngToBlock(
-                                pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                                centerLat, centerLng, east, west, north, south,
-                                sizeMeters, centerX, centerZ);
-                        drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, out);
-                        prev = cur;
-                    }
-                }
+        void add(int cell, byte mat) { cells.add(cell); mats.add(mat); }
 
-                if ("relation".equals(type) && e.has("members") && e.get("members").isJsonArray()) {
-                    for (JsonElement memEl : e.getAsJsonArray("members")) {
-                        JsonObject mem = memEl.getAsJsonObject();
-                        if (!"way".equals(optString(mem, "type"))) continue;
-                        if (!mem.has("geometry") || !mem.get("geometry").isJsonArray()) continue;
-                        JsonArray geom = mem.getAsJsonArray("geometry");
-                        if (geom.size() < 2) continue;
-
-                        JsonObject p0 = geom.get(0).getAsJsonObject();
-                        int[] prev = latlngToBlock(
-                                p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                                centerLat, centerLng, east, west, north, south,
-                                sizeMeters, centerX, centerZ);
-                        for (int i = 1; i < geom.size(); i++) {
-                            JsonObject pi = geom.get(i).getAsJsonObject();
-                            int[] cur = latlngToBlock(
-                                    pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                                    centerLat, centerLng, east, west, north, south,
-                                    sizeMeters, centerX, centerZ);
-                            drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, out);
-                            prev = cur;
-                        }
-                    }
-                }
-            }
-        } catch (Exception ex) {
-            System.err.println("[Cartopia] featureStream for cliffs failed: " + ex);
-        }
-        return thickenCells2x2(out, minX, maxX, minZ, maxZ);
+        int size() { return cells.size(); }
     }
 
-    // NDJSON-стрим для breakwater/groyne/coastline. Возвращает: клетка -> материал (без "minecraft:").
-    // Толщина 2×2 формируется после трассировки.
-    private static Map<Long,String> extractBreakwaterCellsFromOSMStream(
-            GenerationStore store,
-            double centerLat, double centerLng,
-            double east, double west, double north, double south,
-            int sizeMeters, int centerX, int centerZ,
-            int minX, int maxX, int minZ, int maxZ) {
-
-        Map<Long,String> out = new HashMap<>();
-        if (store == null) return out;
-
-        try (FeatureStream fs = store.featureStream()) {
-            for (JsonObject e : fs) {
-                String type = optString(e, "type");
-                JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
-                if (!isBreakwaterLineLike(tags)) continue;
-
-                // Площадные breakwater/groyne уйдут в зоны через materialAndKeyForTags() — тут пропускаем
-                if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray() && isClosed(e.getAsJsonArray("geometry"))) {
-                    continue;
-                }
-                if ("relation".equals(type)) {
-                    // мультиполигоны — как зоны
-                    continue;
-                }
-
-                // Fallback-материал: для breakwater — как у утёса; для groyne/coastline — камень
-                String fallback = isBreakwaterLike(tags) ? "cracked_stone_bricks" : "stone";
-                String mat = pickBreakwaterBlockFromTags(tags, fallback);
-
-                // WAY: собираем клетки линии
-                if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray()) {
-                    JsonArray geom = e.getAsJsonArray("geometry");
-                    if (geom.size() < 2) continue;
-
-                    JsonObject p0 = geom.get(0).getAsJsonObject();
-                    int[] prev = latlngToBlock(
-                            p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                            centerLat, centerLng, east, west, north, south,
-                            sizeMeters, centerX, centerZ);
-
-                    Set<Long> cells = new HashSet<>();
-                    for (int i = 1; i < geom.size(); i++) {
-                        JsonObject pi = geom.get(i).getAsJsonObject();
-                        int[] cur = latlngToBlock(
-                                pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                                centerLat, centerLng, east, west, north, south,
-                                sizeMeters, centerX, centerZ);
-                        drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, cells);
-                        prev = cur;
-                    }
-                    // Толщина 2×2
-                    cells = thickenCells2x2(cells, minX, maxX, minZ, maxZ);
-                    for (long k : cells) out.put(k, mat);
-                }
-
-                // RELATION (редко бывает как коллекция ways без area): пройдёмся по членам как по way-линиям
-                if ("relation".equals(type) && e.has("members") && e.get("members").isJsonArray()) {
-                    for (JsonElement memEl : e.getAsJsonArray("members")) {
-                        JsonObject mem = memEl.getAsJsonObject();
-                        if (!"way".equals(optString(mem, "type"))) continue;
-                        if (!mem.has("geometry") || !mem.get("geometry").isJsonArray()) continue;
-
-                        JsonArray geom = mem.getAsJsonArray("geometry");
-                        if (geom.size() < 2) continue;
-
-                        JsonObject p0 = geom.get(0).getAsJsonObject();
-                        int[] prev = latlngToBlock(
-                                p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                                centerLat, centerLng, east, west, north, south,
-                                sizeMeters, centerX, centerZ);
-
-                        Set<Long> cells = new HashSet<>();
-                        for (int i = 1; i < geom.size(); i++) {
-                            JsonObject pi = geom.get(i).getAsJsonObject();
-                            int[] cur = latlngToBlock(
-                                    pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                                    centerLat, centerLng, east, west, north, south,
-                                    sizeMeters, centerX, centerZ);
-                            drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, cells);
-                            prev = cur;
-                        }
-                        cells = thickenCells2x2(cells, minX, maxX, minZ, maxZ);
-                        for (long k : cells) out.put(k, mat);
-                    }
-                }
-            }
-        } catch (Exception ex) {
-            System.err.println("[Cartopia] featureStream for breakwaters failed: " + ex);
-        }
-        return out;
-    }
-
-    // NDJSON-стрим для дамб (waterway=dam / man_made=dam). Возвращает МАПУ: клетка -> материал (без "minecraft:").
-    private static Map<Long,String> extractDamCellsFromOSMStream(
-            GenerationStore store,
-            double centerLat, double centerLng,
-            double east, double west, double north, double south,
-            int sizeMeters, int centerX, int centerZ,
-            int minX, int maxX, int minZ, int maxZ) {
-
-        Map<Long,String> out = new HashMap<>();
-        if (store == null) return out;
-
-        try (FeatureStream fs = store.featureStream()) {
-            for (JsonObject e : fs) {
-                String type = optString(e, "type");
-                JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
-                if (!isDamLike(tags)) continue;
-
-                // Если это площадная дамба (замкнутый way или area=yes/1), линию не рисуем —
-                // её уже зальём как зону через materialAndKeyForTags().
-                if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray()) {
-                    JsonArray geom = e.getAsJsonArray("geometry");
-                    if (isClosed(geom) || "yes".equalsIgnoreCase(optString(tags,"area")) || "1".equals(optString(tags,"area"))) {
-                        continue;
-                    }
-                }
-                if ("relation".equals(type)) {
-                    // Мультиполигоны с дамбой тоже уйдут в зоны
-                    continue;
-                }
+    /**
+     * Всё, что поверхности нужно из OSM, — за один проход по элементам (NDJSON-стрим, если есть, иначе
+     * coords.features): зоны-полигоны, клетки обрывов (BitSet), дамб и волноломов (CellMaterials).
+     * Клетки — индексы сетки (row-major Z,X), только в её пределах.
+     */
+    private static final class OsmIntake {
+        final List<ZonePoly> zones = new ArrayList<>();
+        final BitSet cliffCells;
+        final CellMaterials damCells = new CellMaterials();
+        final CellMaterials breakwaterCells = new CellMaterials();
+
+        private final SurfacePalette palette;
+        private final int minX, maxX, minZ, maxZ, width;
+        private final double centerLat, centerLng, east, west, north, south;
+        private final int sizeMeters, centerX, centerZ;
+
+        private OsmIntake(SurfacePalette palette, int minX, int maxX, int minZ, int maxZ,
+                          double centerLat, double centerLng, double east, double west, double north, double south,
+                          int sizeMeters, int centerX, int centerZ) {
+            this.palette = palette;
+            this.minX = minX; this.maxX = maxX; this.minZ = minZ; this.maxZ = maxZ;
+            this.width = maxX - minX + 1;
+            this.centerLat = centerLat; this.centerLng = centerLng;
+            this.east = east; this.west = west; this.north = north; this.south = south;
+            this.sizeMeters = sizeMeters; this.centerX = centerX; this.centerZ = centerZ;
+            this.cliffCells = new BitSet(width * (maxZ - minZ + 1));
+        }
+
+        static OsmIntake read(GenerationStore store, JsonObject coordsJson, SurfacePalette palette,
+                              int minX, int maxX, int minZ, int maxZ,
+                              double centerLat, double centerLng, double east, double west, double north, double south,
+                              int sizeMeters, int centerX, int centerZ) {
+            OsmIntake in = new OsmIntake(palette, minX, maxX, minZ, maxZ,
+                    centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ);
+            if (store != null) {
+                try (FeatureStream fs = store.featureStream()) {
+                    for (JsonObject e : fs) in.accept(e);
+                    return in;
+                } catch (Exception ex) {
+                    System.err.println("[Cartopia] featureStream for surface failed, using coords.features: " + ex);
+                    in = new OsmIntake(palette, minX, maxX, minZ, maxZ,
+                            centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ);
+                }
+            }
+            JsonObject features = coordsJson.has("features") && coordsJson.get("features").isJsonObject()
+                    ? coordsJson.getAsJsonObject("features") : null;
+            JsonArray elements = (features != null && features.has("elements") && features.get("elements").isJsonArray())
+                    ? features.getAsJsonArray("elements") : null;
+            if (elements != null) {
+                for (JsonElement el : elements) if (el.isJsonObject()) in.accept(el.getAsJsonObject());
+            }
+            return in;
+        }
+
+        private void accept(JsonObject e) {
+            classifyZones(e, zones);
 
-                String mat = pickDamBlockFromTags(tags, "stone"); // по умолчанию камень
-
-                // WAY
-                if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray()) {
-                    JsonArray geom = e.getAsJsonArray("geometry");
-                    if (geom.size() < 2) continue;
-
-                    JsonObject p0 = geom.get(0).getAsJsonObject();
-                    int[] prev = latlngToBlock(
-                            p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                            centerLat, centerLng, east, west, north, south,
-                            sizeMeters, centerX, centerZ);
-
-                    Set<Long> cells = new HashSet<>();
-                    for (int i = 1; i < geom.size(); i++) {
-                        JsonObject pi = geom.get(i).getAsJsonObject();
-                        int[] cur = latlngToBlock(
-                                pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                                centerLat, centerLng, east, west, north, south,
-                                sizeMeters, centerX, centerZ);
-                        drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, cells);
-                        prev = cur;
-                    }
-                    for (long k : cells) out.put(k, mat);
-                }
+            String type = optString(e, "type");
+            JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
+            JsonArray geom = e.has("geometry") && e.get("geometry").isJsonArray() ? e.getAsJsonArray("geometry") : null;
 
-                // RELATION (берём geometry из членов way)
+            // обрывы/укрепления: линии way и членов-way relation, толщина 2×2
+            if (isCliffLike(tags)) {
+                if ("way".equals(type) && geom != null) traceLine(geom, true, cliffCells::set);
                 if ("relation".equals(type) && e.has("members") && e.get("members").isJsonArray()) {
                     for (JsonElement memEl : e.getAsJsonArray("members")) {
                         JsonObject mem = memEl.getAsJsonObject();
                         if (!"way".equals(optString(mem, "type"))) continue;
                         if (!mem.has("geometry") || !mem.get("geometry").isJsonArray()) continue;
-
-                        JsonArray geom = mem.getAsJsonArray("geometry");
-                        if (geom.size() < 2) continue;
-
-                        JsonObject p0 = geom.get(0).getAsJsonObject();
-                        int[] prev = latlngToBlock(
-                                p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                                centerLat, centerLng, east, west, north, south,
-                                sizeMeters, centerX, centerZ);
-
-                        Set<Long> cells = new HashSet<>();
-                        for (int i = 1; i < geom.size(); i++) {
-                            JsonObject pi = geom.get(i).getAsJsonObject();
-                            int[] cur = latlngToBlock(
-                                    pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                                    centerLat, centerLng, east, west, north, south,
-                                    sizeMeters, centerX, centerZ);
-                            drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, cells);
-                            prev = cur;
-                        }
-                        for (long k : cells) out.put(k, mat);
+                        traceLine(mem.getAsJsonArray("geometry"), true, cliffCells::set);
                     }
                 }
             }
-        } catch (Exception ex) {
-            System.err.println("[Cartopia] featureStream for dams failed: " + ex);
-        }
-        return out;
-    }
 
-    // Старый вариант (coords.features)
-    private static Set<Long> extractCliffCellsFromOSM(
-            JsonObject root,
-            double centerLat, double centerLng,
-            double east, double west, double north, double south,
-            int sizeMeters, int centerX, int centerZ,
-            int minX, int maxX, int minZ, int maxZ) {
-
-        Set<Long> out = new HashSet<>();
-        if (root == null || !root.has("features")) return out;
-        JsonObject features = root.getAsJsonObject("features");
-        if (features == null || !features.has("elements")) return out;
-        JsonArray elements = features.getAsJsonArray("elements");
-        if (elements == null) return out;
-
-        for (JsonElement el : elements) {
-            if (!el.isJsonObject()) continue;
-            JsonObject e = el.getAsJsonObject();
-            String type = optString(e, "type");
-            JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
-            if (!isCliffLike(tags)) continue;
-
-            // WAY
-            if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray()) {
-                JsonArray geom = e.getAsJsonArray("geometry");
-                if (geom.size() < 2) continue;
-                JsonObject p0 = geom.get(0).getAsJsonObject();
-                int[] prev = latlngToBlock(
-                        p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                        centerLat, centerLng, east, west, north, south,
-                        sizeMeters, centerX, centerZ);
-                for (int i = 1; i < geom.size(); i++) {
-                    JsonObject pi = geom.get(i).getAsJsonObject();
-                    int[] cur = latlngToBlock(
-                            pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                            centerLat, centerLng, east, west, north, south,
-                            sizeMeters, centerX, centerZ);
-                    drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, out);
-                    prev = cur;
-                }
+            // дамбы — только линейные way; площадные (замкнутые, area=yes/1) и мультиполигоны уже в зонах
+            if (isDamLike(tags) && "way".equals(type) && geom != null
+                    && !isClosed(geom) && !"yes".equalsIgnoreCase(optString(tags, "area")) && !"1".equals(optString(tags, "area"))) {
+                byte mat = palette.code(pickDamBlockFromTags(tags, "stone")); // по умолчанию камень
+                traceLine(geom, false, i -> damCells.add(i, mat));
             }
 
-            // RELATION
-            if ("relation".equals(type) && e.has("members") && e.get("members").isJsonArray()) {
-                for (JsonElement memEl : e.getAsJsonArray("members")) {
-                    JsonObject mem = memEl.getAsJsonObject();
-                    if (!"way".equals(optString(mem, "type"))) continue;
-                    if (!mem.has("geometry") || !mem.get("geometry").isJsonArray()) continue;
-                    JsonArray geom = mem.getAsJsonArray("geometry");
-                    if (geom.size() < 2) continue;
-
-                    JsonObject p0 = geom.get(0).getAsJsonObject();
-                    int[] prev = latlngToBlock(
-                            p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                            centerLat, centerLng, east, west, north, south,
-                            sizeMeters, centerX, centerZ);
-                    for (int i = 1; i < geom.size(); i++) {
-                        JsonObject pi = geom.get(i).getAsJsonObject();
-                        int[] cur = latlngToBlock(
-                                pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                                centerLat, centerLng, east, west, north, south,
-                                sizeMeters, centerX, centerZ);
-                        drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, out);
-                        prev = cur;
+            // breakwater/groyne — только незамкнутые way, стенка 2×2; fallback: breakwater — как утёс, groyne — камень
+            if (isBreakwaterLineLike(tags) && "way".equals(type) && geom != null && !isClosed(geom)) {
+                String fallback = isBreakwaterLike(tags) ? "cracked_stone_bricks" : "stone";
+                byte mat = palette.code(pickBreakwaterBlockFromTags(tags, fallback));
+                traceLine(geom, true, i -> breakwaterCells.add(i, mat));
+            }
+        }
+
+        /** Клетки ломаной (Брезенхэм по отрезкам) в пределах сетки; thick — плюс соседи по +X/+Z (2×2). */
+        private void traceLine(JsonArray geom, boolean thick, IntConsumer cell) {
+            if (geom.size() < 2) return;
+            int[] prev = toBlock(geom.get(0).getAsJsonObject());
+            for (int i = 1; i < geom.size(); i++) {
+                int[] cur = toBlock(geom.get(i).getAsJsonObject());
+                int x1 = prev[0], z1 = prev[1], x2 = cur[0], z2 = cur[1];
+                int dx = Math.abs(x2 - x1), sx = x1 < x2 ? 1 : -1;
+                int dz = Math.abs(z2 - z1), sz = z1 < z2 ? 1 : -1;
+                int err = (dx > dz ? dx : -dz) / 2;
+                int x = x1, z = z1;
+                while (true) {
+                    if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+                        int idx = (z - minZ) * width + (x - minX);
+                        cell.accept(idx);
+                        if (thick) {
+                            if (x < maxX) cell.accept(idx + 1);
+                            if (z < maxZ) cell.accept(idx + width);
+                            if (x < maxX && z < maxZ) cell.accept(idx + width + 1);
+                        }
                     }
+                    if (x == x2 && z == z2) break;
+                    int e2 = err;
+                    if (e2 > -dx) { err -= dz; x += sx; }
+                    if (e2 <  dz) { err += dx; z += sz; }
                 }
+                prev = cur;
             }
         }
-        return thickenCells2x2(out, minX, maxX, minZ, maxZ);
-    }
-
-    // Старый вариант (coords.features) для breakwater/groyne/coastline.
-    private static Map<Long,String> extractBreakwaterCellsFromOSM(
-            JsonObject root,
-            double centerLat, double centerLng,
-            double east, double west, double north, double south,
-            int sizeMeters, int centerX, int centerZ,
-            int minX, int maxX, int minZ, int maxZ) {
-
-        Map<Long,String> out = new HashMap<>();
-        if (root == null || !root.has("features")) return out;
-        JsonObject features = root.getAsJsonObject("features");
-        if (features == null || !features.has("elements")) return out;
-        JsonArray elements = features.getAsJsonArray("elements");
-        if (elements == null) return out;
-
-        for (JsonElement el : elements) {
-            if (!el.isJsonObject()) continue;
-            JsonObject e = el.getAsJsonObject();
-            String type = optString(e, "type");
-            JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
-            if (!isBreakwaterLineLike(tags)) continue;
-
-            // Площадные breakwater/groyne — зальются как зоны
-            if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray() && isClosed(e.getAsJsonArray("geometry"))) {
-                continue;
-            }
-            if ("relation".equals(type)) {
-                continue;
-            }
-
-            String fallback = isBreakwaterLike(tags) ? "cracked_stone_bricks" : "stone";
-            String mat = pickBreakwaterBlockFromTags(tags, fallback);
-
-            if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray()) {
-                JsonArray geom = e.getAsJsonArray("geometry");
-                if (geom.size() < 2) continue;
-
-                JsonObject p0 = geom.get(0).getAsJsonObject();
-                int[] prev = latlngToBlock(
-                        p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                        centerLat, centerLng, east, west, north, south,
-                        sizeMeters, centerX, centerZ);
-
-                Set<Long> cells = new HashSet<>();
-                for (int i = 1; i < geom.size(); i++) {
-                    JsonObject pi = geom.get(i).getAsJsonObject();
-                    int[] cur = latlngToBlock(
-                            pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                            centerLat, centerLng, east, west, north, south,
-                            sizeMeters, centerX, centerZ);
-                    drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, cells);
-                    prev = cur;
-                }
-                cells = thickenCells2x2(cells, minX, maxX, minZ, maxZ);
-                for (long k : cells) out.put(k, mat);
-            }
-        }
-        return out;
-    }
-
-    // Старый вариант (coords.features) для дамб.
-    private static Map<Long,String> extractDamCellsFromOSM(
-            JsonObject root,
-            double centerLat, double centerLng,
-            double east, double west, double north, double south,
-            int sizeMeters, int centerX, int centerZ,
-            int minX, int maxX, int minZ, int maxZ) {
-
-        Map<Long,String> out = new HashMap<>();
-        if (root == null || !root.has("features")) return out;
-        JsonObject features = root.getAsJsonObject("features");
-        if (features == null || !features.has("elements")) return out;
-        JsonArray elements = features.getAsJsonArray("elements");
-        if (elements == null) return out;
 
-        for (JsonElement el : elements) {
-            if (!el.isJsonObject()) continue;
-            JsonObject e = el.getAsJsonObject();
-
-            String type = optString(e, "type");
-            JsonObject tags = e.has("tags") && e.get("tags").isJsonObject() ? e.getAsJsonObject("tags") : null;
-            if (!isDamLike(tags)) continue;
-
-            // Площадные дамбы не трогаем как линии — они зальются как зона
-            if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray()) {
-                JsonArray geom = e.getAsJsonArray("geometry");
-                if (isClosed(geom) || "yes".equalsIgnoreCase(optString(tags,"area")) || "1".equals(optString(tags,"area"))) {
-                    continue;
-                }
-            }
-            if ("relation".equals(type)) {
-                continue;
-            }
-            
-            String mat = pickDamBlockFromTags(tags, "stone"); // по умолчанию камень
-
-            // WAY
-            if ("way".equals(type) && e.has("geometry") && e.get("geometry").isJsonArray()) {
-                JsonArray geom = e.getAsJsonArray("geometry");
-                if (geom.size() < 2) continue;
-
-                JsonObject p0 = geom.get(0).getAsJsonObject();
-                int[] prev = latlngToBlock(
-                        p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                        centerLat, centerLng, east, west, north, south,
-                        sizeMeters, centerX, centerZ);
-
-                Set<Long> cells = new HashSet<>();
-                for (int i = 1; i < geom.size(); i++) {
-                    JsonObject pi = geom.get(i).getAsJsonObject();
-                    int[] cur = latlngToBlock(
-                            pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                            centerLat, centerLng, east, west, north, south,
-                            sizeMeters, centerX, centerZ);
-                    drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, cells);
-                    prev = cur;
-                }
-                for (long k : cells) out.put(k, mat);
-            }
-
-            // RELATION
-            if ("relation".equals(type) && e.has("members") && e.get("members").isJsonArray()) {
-                for (JsonElement memEl : e.getAsJsonArray("members")) {
-                    JsonObject mem = memEl.getAsJsonObject();
-                    if (!"way".equals(optString(mem, "type"))) continue;
-                    if (!mem.has("geometry") || !mem.get("geometry").isJsonArray()) continue;
-
-                    JsonArray geom = mem.getAsJsonArray("geometry");
-                    if (geom.size() < 2) continue;
-
-                    JsonObject p0 = geom.get(0).getAsJsonObject();
-                    int[] prev = latlngToBlock(
-                            p0.get("lat").getAsDouble(), p0.get("lon").getAsDouble(),
-                            centerLat, centerLng, east, west, north, south,
-                            sizeMeters, centerX, centerZ);
-
-                    Set<Long> cells = new HashSet<>();
-                    for (int i = 1; i < geom.size(); i++) {
-                        JsonObject pi = geom.get(i).getAsJsonObject();
-                        int[] cur = latlngToBlock(
-                                pi.get("lat").getAsDouble(), pi.get("lon").getAsDouble(),
-                                centerLat, centerLng, east, west, north, south,
-                                sizeMeters, centerX, centerZ);
-                        drawLineCells(prev[0], prev[1], cur[0], cur[1], minX, maxX, minZ, maxZ, cells);
-                        prev = cur;
-                    }
-                    for (long k : cells) out.put(k, mat);
-                }
-            }
+        private int[] toBlock(JsonObject p) {
+            return latlngToBlock(p.get("lat").getAsDouble(), p.get("lon").getAsDouble(),
+                    centerLat, centerLng, east, west, north, south, sizeMeters, centerX, centerZ);
         }
-        return out;
     }
 
     @SuppressWarnings("unused")
@@ -3006,119 +2673,59 @@ public class SurfaceGenerator {
     private int getY(int[] h, int x, int z, int center) {
         return inBounds(x,z) ? h[idx(x,z)] : center;
     }
+    // Уклон не больше maxDiff между соседями по стороне: клетки только опускаются, до наибольшей
+    // поверхности ≤ исходной с таким уклоном — тот же результат, что давали проходы «пока меняется».
     private void limitSlopeArray(int[] h, int maxDiff) {
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            for (int x=minX; x<=maxX; x++) for (int z=minZ; z<=maxZ; z++) {
-                int i = idx(x,z);
-                int y = h[i];
-                int[][] n4 = {{1,0},{-1,0},{0,1},{0,-1}};
-                for (int[] d : n4) {
-                    int nx=x+d[0], nz=z+d[1];
-                    if (!inBounds(nx,nz)) continue;
-                    int ni = idx(nx,nz);
-                    int ny = h[ni];
-                    if (Math.abs(y-ny) > maxDiff) {
-                        if (y>ny) { h[i]  = ny+maxDiff; changed=true; }
-                        else      { h[ni] = y +maxDiff; changed=true; }
-                    }
-                }
-            }
-        }
+        minorantSweeps(h, 1, maxDiff);
     }
+    // Лесенка: по оси на расстоянии до 3 блоков перепад не больше 1 (ступень шириной 3).
+    // Как и раньше, завышенные клетки опускаются до соседа + 1.
     private void staircaseArray(int[] h) {
-        ArrayList<int[]> offs = new ArrayList<>();
-        for (int d=1; d<=3; d++) {
-            offs.add(new int[]{-d,0}); offs.add(new int[]{d,0});
-            offs.add(new int[]{0,-d}); offs.add(new int[]{0,d});
-        }
-        boolean changed=true;
-        while (changed) {
-            changed=false;
-            for (int x=minX; x<=maxX; x++) for (int z=maxZ; z>=minZ; z--) {
-                int i = idx(x,z);
-                int y = h[i];
-                for (int[] d : offs) {
-                    int nx=x+d[0], nz=z+d[1];
-                    if (!inBounds(nx,nz)) continue;
-                    int ni = idx(nx,nz);
-                    int ny = h[ni];
-                    int dist = Math.max(Math.abs(d[0]), Math.abs(d[1]));
-                    if (Math.abs(y-ny) > 1) {
-                        for (int k=1;k<dist;k++) {
-                            int mx = x + d[0]/dist * k;
-                            int mz = z + d[1]/dist * k;
-                            int avg = (y*(dist-k) + ny*k) / dist;
-                            int mi = idx(mx,mz);
-                            int cur = h[mi];
-                            if (Math.abs(cur-avg) > 1) { h[mi]=avg; changed=true; }
-                        }
-                        if (y-ny > 1) { h[i]  = ny+1; changed=true; }
-                        else if (ny-y > 1) { h[ni] = y +1; changed=true; }
-                    }
+        minorantSweeps(h, 3, 1);
+    }
+    /**
+     * h[i] = min_j(h[j] + step * (число «прыжков» по оси длиной до reach от j до i)) —
+     * наибольшее поле ≤ h, у которого соседи по оси на расстоянии ≤ reach отличаются не больше чем на step.
+     * Цена пути складывается из цены по z и по x, поэтому минимум раздельный: сначала каждый столбец
+     * (проход вниз и вверх), потом каждая строка (вправо и влево). Столбцы и строки независимы —
+     * считаются полосами параллельно, результат тот же, что у последовательных проходов.
+     */
+    private void minorantSweeps(int[] h, int reach, int step) {
+        final int w = width, depth = height;
+        final GridKernels kernels = GridKernels.get();
+        // столбцы: полосами по x, строка за строкой (отрезок строки — одним ядром)
+        GridBands.forEach(w, (x0, x1) -> {
+            for (int r = 1; r < depth; r++) {
+                for (int k = 1; k <= reach && k <= r; k++) {
+                    kernels.minAdd(h, r * w + x0, h, (r - k) * w + x0, x1 - x0, step);
                 }
             }
-        }
-    }
-    private void blurHeightArray(int[] h, int iters) {
-        int[] cur = h;
-        int[] next = new int[totalCells];
-        for (int it=0; it<iters; it++) {
-            for (int x=minX; x<=maxX; x++) for (int z=minZ; z<=maxZ; z++) {
-                int i = idx(x,z);
-                int y = cur[i];
-                int[] ns = {
-                    getY(cur,x+1,z,y), getY(cur,x-1,z,y),
-                    getY(cur,x,z+1,y), getY(cur,x,z-1,y),
-                    getY(cur,x+1,z+1,y), getY(cur,x-1,z-1,y),
-                    getY(cur,x+1,z-1,y), getY(cur,x-1,z+1,y)
-                };
-                Arrays.sort(ns);
-                int med = ns[ns.length/2];
-                next[i] = (med + y)/2;
+            for (int r = depth - 2; r >= 0; r--) {
+                for (int k = 1; k <= reach && r + k < depth; k++) {
+                    kernels.minAdd(h, r * w + x0, h, (r + k) * w + x0, x1 - x0, step);
+                }
             }
-            int[] tmp = cur; cur = next; next = tmp;
-        }
-        if (cur != h) System.arraycopy(cur,0,h,0,totalCells);
-    }
-    private void despeckleHeightsArray(int[] h, int radius) {
-        int[] t = grayscaleOpenArray(h, radius);
-        t = grayscaleCloseArray(t, radius);
-        System.arraycopy(t,0,h,0,totalCells);
-        fixSingleCellSpikesArray(h);
-    }
-    private int[] grayscaleOpenArray(int[] src, int r) { return grayscaleDilateArray(grayscaleErodeArray(src,r), r); }
-    private int[] grayscaleCloseArray(int[] src, int r){ return grayscaleErodeArray(grayscaleDilateArray(src,r), r); }
-    private int[] grayscaleErodeArray(int[] src, int r) {
-        int[] out = new int[totalCells];
-        for (int x=minX; x<=maxX; x++) for (int z=minZ; z<=maxZ; z++) {
-            @SuppressWarnings("unused")
-            int center = src[idx(x,z)];
-            int m = Integer.MAX_VALUE;
-            for (int dx=-r; dx<=r; dx++) for (int dz=-r; dz<=r; dz++) {
-                int nx=x+dx, nz=z+dz; if (!inBounds(nx,nz)) continue;
-                int v = src[idx(nx,nz)];
-                if (v<m) m=v;
+        });
+        // строки: полосами по z
+        GridBands.forEach(depth, (r0, r1) -> {
+            for (int r = r0; r < r1; r++) {
+                final int row = r * w;
+                for (int c = 1; c < w; c++) {
+                    int y = h[row + c];
+                    for (int k = 1; k <= reach && k <= c; k++) y = Math.min(y, h[row + c - k] + step);
+                    h[row + c] = y;
+                }
+                for (int c = w - 2; c >= 0; c--) {
+                    int y = h[row + c];
+                    for (int k = 1; k <= reach && c + k < w; k++) y = Math.min(y, h[row + c + k] + step);
+                    h[row + c] = y;
+                }
             }
-            out[idx(x,z)] = m;
-        }
-        return out;
+        });
     }
-    private int[] grayscaleDilateArray(int[] src, int r) {
-        int[] out = new int[totalCells];
-        for (int x=minX; x<=maxX; x++) for (int z=minZ; z<=maxZ; z++) {
-            @SuppressWarnings("unused")
-            int center = src[idx(x,z)];
-            int M = Integer.MIN_VALUE;
-            for (int dx=-r; dx<=r; dx++) for (int dz=-r; dz<=r; dz++) {
-                int nx=x+dx, nz=z+dz; if (!inBounds(nx,nz)) continue;
-                int v = src[idx(nx,nz)];
-                if (v>M) M=v;
-            }
-            out[idx(x,z)] = M;
-        }
-        return out;
+    private void despeckleHeightsArray(int[] h, int radius, HeightFilters filters) {
+        filters.openClose(h, radius);
+        fixSingleCellSpikesArray(h);
     }
     private void fixSingleCellSpikesArray(int[] h) {
         for (int x=minX; x<=maxX; x++) for (int z=minZ; z<=maxZ; z++) {
@@ -3136,65 +2743,71 @@ public class SurfaceGenerator {
 
 
 
-    private void blurSurfaceArray(String[] srf, int iters, int minMajority, boolean includeWater,
+    private void blurSurfaceArray(byte[] srf, int paletteSize, int iters, int minMajority, boolean includeWater,
                                 BitSet protectedWater, BitSet olmWater, BitSet lockedOSM) {
-        String[] cur = srf;
-        String[] next = new String[totalCells];
+        byte[] cur = srf;
+        byte[] next = new byte[totalCells];
         for (int it=0; it<iters; it++) {
-            System.arraycopy(cur, 0, next, 0, totalCells);
-            for (int x=minX; x<=maxX; x++) for (int z=minZ; z<=maxZ; z++) {
-                int i = idx(x,z);
-                String curVal = cur[i];
-                if (curVal == null) continue;
-                if (protectedWater.get(i) || lockedOSM.get(i)) continue;
+            final byte[] src = cur, dst = next;
+            // полосами строк: читаем только src, пишем только свои строки dst
+            GridBands.forEach(height, (r0, r1) -> {
+                System.arraycopy(src, r0 * width, dst, r0 * width, (r1 - r0) * width);
+                final Votes votes = new Votes(paletteSize);
+                for (int z=minZ+r0; z<minZ+r1; z++) for (int x=minX; x<=maxX; x++) {
+                    int i = idx(x,z);
+                    byte curVal = src[i];
+                    if (protectedWater.get(i) || lockedOSM.get(i)) continue;
 
-                // голоса соседей (8)
-                HashMap<String,Integer> cnt = new HashMap<>();
-                for (int dx=-1; dx<=1; dx++) for (int dz=-1; dz<=1; dz++) {
-                    if (dx==0 && dz==0) continue;
-                    int nx=x+dx, nz=z+dz; if (!inBounds(nx,nz)) continue;
-                    int ni = idx(nx,nz);
-                    if (protectedWater.get(ni) || lockedOSM.get(ni)) continue;
-                    String t = cur[ni];
-                    if (t == null) continue;
-                    if ("water".equals(t) && !includeWater) continue;
-                    cnt.merge(t, 1, Integer::sum);
-                }
-                if (cnt.isEmpty()) continue;
-                Map.Entry<String,Integer> best = cnt.entrySet().stream().max(Map.Entry.comparingByValue()).get();
-                if (!best.getKey().equals(curVal) && best.getValue() >= minMajority) {
-                    if (!"water".equals(curVal)) next[i] = best.getKey();
+                    // голоса соседей (8)
+                    for (int dx=-1; dx<=1; dx++) for (int dz=-1; dz<=1; dz++) {
+                        if (dx==0 && dz==0) continue;
+                        int nx=x+dx, nz=z+dz; if (!inBounds(nx,nz)) continue;
+                        int ni = idx(nx,nz);
+                        if (protectedWater.get(ni) || lockedOSM.get(ni)) continue;
+                        byte t = src[ni];
+                        if (t == SurfacePalette.WATER && !includeWater) continue;
+                        votes.add(t);
+                    }
+                    byte best = votes.winner(curVal, minMajority);
+                    if (curVal != SurfacePalette.WATER) dst[i] = best;
                 }
-            }
-            String[] tmp = cur; cur = next; next = tmp;
+            });
+            cur = dst; next = src;
         }
         if (cur != srf) System.arraycopy(cur,0,srf,0,totalCells);
     }
 
-    private void featherOlmZonesArray(String[] srf,
+    private void featherOlmZonesArray(byte[] srf, int paletteSize,
                                     BitSet olmAll, BitSet olmWater,
                                     BitSet protectedWater, BitSet lockedOSM,
                                     int radius, int iters, int minVotes) {
         BitSet ring = new BitSet(totalCells);
 
-        // 1) границы OLM↔OLM с разными материалами
-        for (int x=minX; x<=maxX; x++) for (int z=minZ; z<=maxZ; z++) {
-            int i = idx(x,z);
-            if (!olmAll.get(i)) continue;
-            if (lockedOSM.get(i)) continue;
-            if (protectedWater.get(i) && !olmWater.get(i)) continue;
+        // 1) границы OLM↔OLM с разными материалами: поиск — полосами строк (BitSet из потоков
+        //    не пишем, отметки — в свой байт клетки), разметка кольца — потом, в одном потоке
+        final boolean[] edge = new boolean[totalCells];
+        GridBands.forEach(height, (r0, r1) -> {
+            for (int z=minZ+r0; z<minZ+r1; z++) for (int x=minX; x<=maxX; x++) {
+                int i = idx(x,z);
+                if (!olmAll.get(i)) continue;
+                if (lockedOSM.get(i)) continue;
+                if (protectedWater.get(i) && !olmWater.get(i)) continue;
 
-            String m0 = srf[i]; if (m0 == null) continue;
-            boolean isEdge = false;
-            for (int dx=-1; dx<=1 && !isEdge; dx++) for (int dz=-1; dz<=1 && !isEdge; dz++) {
-                if (dx==0&&dz==0) continue;
-                int nx=x+dx, nz=z+dz; if (!inBounds(nx,nz)) continue;
-                int ni = idx(nx,nz);
-                if (!olmAll.get(ni)) continue;
-                String m1 = srf[ni];
-                if (m1 != null && !m1.equals(m0)) isEdge = true;
+                byte m0 = srf[i];
+                boolean isEdge = false;
+                for (int dx=-1; dx<=1 && !isEdge; dx++) for (int dz=-1; dz<=1 && !isEdge; dz++) {
+                    if (dx==0&&dz==0) continue;
+                    int nx=x+dx, nz=z+dz; if (!inBounds(nx,nz)) continue;
+                    int ni = idx(nx,nz);
+                    if (!olmAll.get(ni)) continue;
+                    if (srf[ni] != m0) isEdge = true;
+                }
+                edge[i] = isEdge;
             }
-            if (!isEdge) continue;
+        });
+
+        for (int z=minZ; z<=maxZ; z++) for (int x=minX; x<=maxX; x++) {
+            if (!edge[idx(x,z)]) continue;
 
             for (int dx=-radius; dx<=radius; dx++) for (int dz=-radius; dz<=radius; dz++) {
                 int nx=x+dx, nz=z+dz; if (!inBounds(nx,nz)) continue;
@@ -3207,46 +2820,47 @@ public class SurfaceGenerator {
         }
 
         // 2) итерации majority в кольце
-        String[] cur = srf;
+        byte[] cur = srf;
+        byte[] spare = new byte[totalCells];
         for (int it=0; it<iters; it++) {
-            String[] next = Arrays.copyOf(cur, cur.length);
-            for (int x=minX; x<=maxX; x++) for (int z=minZ; z<=maxZ; z++) {
-                int i = idx(x,z);
-                if (!ring.get(i)) continue;
-                if (lockedOSM.get(i)) continue;
-                if (protectedWater.get(i) && !olmWater.get(i)) continue;
-
-                String curVal = cur[i]; if (curVal == null) continue;
-                HashMap<String,Integer> votes = new HashMap<>();
-                for (int dx=-1; dx<=1; dx++) for (int dz=-1; dz<=1; dz++) {
-                    if (dx==0&&dz==0) continue;
-                    int nx=x+dx, nz=z+dz; if (!inBounds(nx,nz)) continue;
-                    int ni = idx(nx,nz);
-                    if (!olmAll.get(ni)) continue;
-                    if (lockedOSM.get(ni)) continue;
-                    if (protectedWater.get(ni) && !olmWater.get(ni)) continue;
-                    String mv = cur[ni];
-                    if (mv != null) votes.merge(mv, 1, Integer::sum);
+            final byte[] src = cur, next = spare;
+            GridBands.forEach(height, (r0, r1) -> {
+                System.arraycopy(src, r0 * width, next, r0 * width, (r1 - r0) * width);
+                final Votes votes = new Votes(paletteSize);
+                for (int z=minZ+r0; z<minZ+r1; z++) for (int x=minX; x<=maxX; x++) {
+                    int i = idx(x,z);
+                    if (!ring.get(i)) continue;
+                    if (lockedOSM.get(i)) continue;
+                    if (protectedWater.get(i) && !olmWater.get(i)) continue;
+
+                    byte curVal = src[i];
+                    for (int dx=-1; dx<=1; dx++) for (int dz=-1; dz<=1; dz++) {
+                        if (dx==0&&dz==0) continue;
+                        int nx=x+dx, nz=z+dz; if (!inBounds(nx,nz)) continue;
+                        int ni = idx(nx,nz);
+                        if (!olmAll.get(ni)) continue;
+                        if (lockedOSM.get(ni)) continue;
+                        if (protectedWater.get(ni) && !olmWater.get(ni)) continue;
+                        votes.add(src[ni]);
+                    }
+                    next[i] = votes.winner(curVal, minVotes);
                 }
-                if (votes.isEmpty()) continue;
-                Map.Entry<String,Integer> best = votes.entrySet().stream().max(Map.Entry.comparingByValue()).get();
-                if (!best.getKey().equals(curVal) && best.getValue() >= minVotes) next[i] = best.getKey();
-            }
-            cur = next;
+            });
+            spare = src; cur = next;
         }
-        System.arraycopy(cur,0,srf,0,totalCells);
+        if (cur != srf) System.arraycopy(cur,0,srf,0,totalCells);
     }
 
 
 
-    private int[] computeWaterSurfaceYArray(String[] surface, int[] terrainY) {
-        final int worldMin = level.getMinBuildHeight();
-        final int worldMax = level.getMaxBuildHeight() - 1;
+    private int[] computeWaterSurfaceYArray(byte[] surface, int[] terrainY) {
+        final int worldMin = writer.minBuildHeight();
+        final int worldMax = writer.maxBuildHeight() - 1;
 
         BitSet water = new BitSet(totalCells);
         boolean hasLand = false;
         for (int i=0;i<totalCells;i++) {
-            if ("water".equals(surface[i])) water.set(i);
+            if (surface[i] == SurfacePalette.WATER) water.set(i);
             else hasLand = true;
         }
         int[] out = new int[totalCells];
@@ -3260,101 +2874,93 @@ public class SurfaceGenerator {
             return out;
         }
 
+        // 1) компоненты воды (4-связность): BFS в порядке обхода x, затем z, как раньше; order — и очередь,
+        //    и список клеток, компонента k — отрезок [compStart[k], compStart[k+1])
+        final int[] order = new int[totalCells];
+        IntArrayList compStart = new IntArrayList();
         BitSet visited = new BitSet(totalCells);
-        int[][] dirs = new int[][]{{1,0},{-1,0},{0,1},{0,-1}};
-
+        int n = 0;
         for (int x0=minX; x0<=maxX; x0++) for (int z0=minZ; z0<=maxZ; z0++) {
             int sIdx = idx(x0,z0);
             if (!water.get(sIdx) || visited.get(sIdx)) continue;
 
-            ArrayDeque<int[]> q = new ArrayDeque<>();
-            ArrayList<int[]> comp = new ArrayList<>();
-            q.add(new int[]{x0,z0});
+            compStart.add(n);
+            order[n++] = sIdx;
             visited.set(sIdx);
+            for (int h = compStart.getInt(compStart.size() - 1); h < n; h++) {
+                int i = order[h];
+                int x = minX + i % width, z = minZ + i / width;
+                if (x < maxX && water.get(i + 1)     && !visited.get(i + 1))     { visited.set(i + 1);     order[n++] = i + 1; }
+                if (x > minX && water.get(i - 1)     && !visited.get(i - 1))     { visited.set(i - 1);     order[n++] = i - 1; }
+                if (z < maxZ && water.get(i + width) && !visited.get(i + width)) { visited.set(i + width); order[n++] = i + width; }
+                if (z > minZ && water.get(i - width) && !visited.get(i - width)) { visited.set(i - width); order[n++] = i - width; }
+            }
+        }
+        compStart.add(n);
+
+        // 2) компоненты независимы (клетки не пересекаются) — параллельно
+        final int[] dist = new int[totalCells];
+        IntStream.range(0, compStart.size() - 1).parallel().forEach(k ->
+                waterComponentSurface(order, compStart.getInt(k), compStart.getInt(k + 1),
+                        water, terrainY, dist, out, worldMin, worldMax));
+        return out;
+    }
 
-            while(!q.isEmpty()) {
-                int[] c = q.poll();
-                @SuppressWarnings("unused")
-                int x=c[0], z=c[1], i=idx(x,z);
-                comp.add(c);
-                for (int[] d:dirs) {
-                    int nx=x+d[0], nz=z+d[1];
-                    if (!inBounds(nx,nz)) continue;
-                    int ni=idx(nx,nz);
-                    if (!water.get(ni) || visited.get(ni)) continue;
-                    visited.set(ni);
-                    q.add(new int[]{nx,nz});
-                }
-            }
-
-            ArrayDeque<int[]> seeds = new ArrayDeque<>();
-            HashMap<Integer,Integer> seedH = new HashMap<>();
-            int minSeed = Integer.MAX_VALUE;
-            int maxR = 0;
-
-            for (int[] cell : comp) {
-                int x=cell[0], z=cell[1], i=idx(x,z);
-                boolean isShore=false; int shoreH = Integer.MIN_VALUE;
-                for (int[] d:dirs) {
-                    int nx=x+d[0], nz=z+d[1];
-                    if (!inBounds(nx,nz)) continue;
-                    int ni=idx(nx,nz);
-                    if (!water.get(ni)) {
-                        isShore=true;
-                        int hLand = terrainY[ni];
-                        if (hLand>shoreH) shoreH=hLand;
-                    }
-                }
-                if (isShore) {
-                    int hWater = Math.max(worldMin+3, Math.min(worldMax-3, shoreH-1));
-                    seeds.add(new int[]{x,z});
-                    seedH.put(i, hWater);
-                    if (hWater<minSeed) minSeed=hWater;
-                }
-            }
-            if (seeds.isEmpty()) continue;
-
-            HashMap<Integer,Integer> dist = new HashMap<>();
-            HashMap<Integer,Integer> nearestH = new HashMap<>();
-            for (int[] s : seeds) {
-                int i = idx(s[0], s[1]);
-                dist.put(i, 0);
-                nearestH.put(i, seedH.get(i));
-            }
-
-            ArrayDeque<int[]> qq = new ArrayDeque<>(seeds);
-            while(!qq.isEmpty()) {
-                int[] c = qq.poll();
-                int x=c[0], z=c[1], i=idx(x,z);
-                int cd = dist.get(i);
-                int ch = nearestH.get(i);
-                if (cd > maxR) maxR = cd;
-                for (int[] d:dirs) {
-                    int nx=x+d[0], nz=z+d[1];
-                    if (!inBounds(nx,nz)) continue;
-                    int ni=idx(nx,nz);
-                    if (!water.get(ni)) continue;
-                    if (dist.containsKey(ni)) continue;
-                    dist.put(ni, cd+1);
-                    nearestH.put(ni, ch);
-                    qq.add(new int[]{nx,nz});
-                }
-            }
-            if (maxR < 15) continue;
-
-            int R = Math.max(1, maxR);
-            int Wmin = minSeed;
-            for (Map.Entry<Integer,Integer> e : dist.entrySet()) {
-                int i = e.getKey();
-                int d = e.getValue();
-                int hs = nearestH.get(i);
-                double t = 1.0 - (d / (double)R);
-                int ySurf = (int)Math.round(Wmin + (hs - Wmin) * Math.max(0.0, Math.min(1.0, t)));
-                ySurf = Math.max(worldMin+3, Math.min(worldMax-3, ySurf));
-                out[i] = ySurf;
-            }
+    /**
+     * Уровень воды одной компоненты order[from..to). Берег — клетки у суши, высота берега — max суши
+     * рядом − 1; от берега BFS по воде (dist, высота ближайшего берега — временно в out), уровень
+     * спадает от берега к minSeed на самой дальней клетке. Компоненты уже 15 клеток не трогаем (0).
+     * Отрезок order переиспользуется как очередь: берега сжимаются в начало, BFS дописывает следом.
+     */
+    private void waterComponentSurface(int[] order, int from, int to, BitSet water, int[] terrainY,
+                                       int[] dist, int[] out, int worldMin, int worldMax) {
+        int seedEnd = from;
+        int minSeed = Integer.MAX_VALUE;
+        for (int h = from; h < to; h++) {
+            int i = order[h];
+            int x = minX + i % width, z = minZ + i / width;
+            int shoreH = Integer.MIN_VALUE;
+            if (x < maxX && !water.get(i + 1))     shoreH = Math.max(shoreH, terrainY[i + 1]);
+            if (x > minX && !water.get(i - 1))     shoreH = Math.max(shoreH, terrainY[i - 1]);
+            if (z < maxZ && !water.get(i + width)) shoreH = Math.max(shoreH, terrainY[i + width]);
+            if (z > minZ && !water.get(i - width)) shoreH = Math.max(shoreH, terrainY[i - width]);
+            if (shoreH != Integer.MIN_VALUE) {
+                int hWater = Math.max(worldMin+3, Math.min(worldMax-3, shoreH-1));
+                order[seedEnd++] = i;
+                dist[i] = 0;
+                out[i] = hWater;
+                if (hWater < minSeed) minSeed = hWater;
+            } else {
+                dist[i] = -1;
+            }
+        }
+        if (seedEnd == from) return;
+
+        int tail = seedEnd, maxR = 0;
+        for (int h = from; h < tail; h++) {
+            int i = order[h];
+            int cd = dist[i], ch = out[i];
+            if (cd > maxR) maxR = cd;
+            int x = minX + i % width, z = minZ + i / width;
+            if (x < maxX && water.get(i + 1)     && dist[i + 1] < 0)     { dist[i + 1] = cd + 1;     out[i + 1] = ch;     order[tail++] = i + 1; }
+            if (x > minX && water.get(i - 1)     && dist[i - 1] < 0)     { dist[i - 1] = cd + 1;     out[i - 1] = ch;     order[tail++] = i - 1; }
+            if (z < maxZ && water.get(i + width) && dist[i + width] < 0) { dist[i + width] = cd + 1; out[i + width] = ch; order[tail++] = i + width; }
+            if (z > minZ && water.get(i - width) && dist[i - width] < 0) { dist[i - width] = cd + 1; out[i - width] = ch; order[tail++] = i - width; }
+        }
+
+        if (maxR < 15) {
+            for (int h = from; h < to; h++) out[order[h]] = 0;
+            return;
+        }
+        int R = Math.max(1, maxR);
+        int Wmin = minSeed;
+        for (int h = from; h < to; h++) {
+            int i = order[h];
+            int hs = out[i];
+            double t = 1.0 - (dist[i] / (double)R);
+            int ySurf = (int)Math.round(Wmin + (hs - Wmin) * Math.max(0.0, Math.min(1.0, t)));
+            out[i] = Math.max(worldMin+3, Math.min(worldMax-3, ySurf));
         }
-        return out;
     }
 
     private void publishTerrainGridArray(JsonObject coordsJson, int[] terrainY) {
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -38,11 +39,13 @@ public class TowerMastGenerator {
     private static final int TOWER_PLAT      = 4;   // верхняя платформа 4×4
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public TowerMastGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -511,7 +514,7 @@ public class TowerMastGenerator {
             int rot = rotationOutwards(cx, cz, x, z);
             BlockState st = Blocks.WHITE_BANNER.defaultBlockState()
                     .setValue(BlockStateProperties.ROTATION_16, rot);
-            level.setBlock(new BlockPos(x, y, z), st, 3);
+            world.setBlock(new BlockPos(x, y, z), st, 3);
         }
     }
 
@@ -526,7 +529,7 @@ public class TowerMastGenerator {
             BlockPos p = new BlockPos(x, y, zN - 1);
             BlockState st = Blocks.WHITE_WALL_BANNER.defaultBlockState()
                     .setValue(BlockStateProperties.HORIZONTAL_FACING, Direction.NORTH);
-            level.setBlock(p, st, 3);
+            world.setBlock(p, st, 3);
         }
 
         // Южная грань (наружу = SOUTH): баннер в блоке после кромки (z+1)
@@ -536,7 +539,7 @@ public class TowerMastGenerator {
             BlockPos p = new BlockPos(x, y, zS + 1);
             BlockState st = Blocks.WHITE_WALL_BANNER.defaultBlockState()
                     .setValue(BlockStateProperties.HORIZONTAL_FACING, Direction.SOUTH);
-            level.setBlock(p, st, 3);
+            world.setBlock(p, st, 3);
         }
 
         // Западная грань (наружу = WEST): баннер в блоке слева (x-1)
@@ -546,7 +549,7 @@ public class TowerMastGenerator {
             BlockPos p = new BlockPos(xW - 1, y, z);
             BlockState st = Blocks.WHITE_WALL_BANNER.defaultBlockState()
                     .setValue(BlockStateProperties.HORIZONTAL_FACING, Direction.WEST);
-            level.setBlock(p, st, 3);
+            world.setBlock(p, st, 3);
         }
 
         // Восточная грань (наружу = EAST): баннер в блоке справа (x+1)
@@ -556,7 +559,7 @@ public class TowerMastGenerator {
             BlockPos p = new BlockPos(xE + 1, y, z);
             BlockState st = Blocks.WHITE_WALL_BANNER.defaultBlockState()
                     .setValue(BlockStateProperties.HORIZONTAL_FACING, Direction.EAST);
-            level.setBlock(p, st, 3);
+            world.setBlock(p, st, 3);
         }
     }
 
@@ -596,7 +599,7 @@ public class TowerMastGenerator {
 
     // ===== низкоуровневые сеттеры и рельеф =====
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), b.defaultBlockState(), 3);
     }
 
     /** локальный «верх» для (x,z) при высоте H: terrain+1+H */
@@ -631,7 +634,7 @@ public class TowerMastGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== утилиты =====
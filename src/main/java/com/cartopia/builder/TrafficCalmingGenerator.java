@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.*;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
@@ -17,6 +18,7 @@ import java.util.*;
 public class TrafficCalmingGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
@@ -29,6 +31,7 @@ public class TrafficCalmingGenerator {
 
     public TrafficCalmingGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
     }
@@ -268,7 +271,7 @@ public class TrafficCalmingGenerator {
         try {
             st = st.setValue(SlabBlock.TYPE, SlabType.BOTTOM); // нижняя половина, прилегает к верху грунта
         } catch (Throwable ignore) {}
-        level.setBlock(new BlockPos(x, y, z), st, 3);
+        world.setBlock(new BlockPos(x, y, z), st, 3);
     }
 
     // ====== Геометрия / направления ======
@@ -409,7 +412,7 @@ public class TrafficCalmingGenerator {
         final int max = level.getMaxBuildHeight() - 1;
         final int min = level.getMinBuildHeight();
         for (int y = max; y >= min; y--) {
-            if (!level.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(new BlockPos(x, y, z)).isAir()) return y;
         }
         return null;
     }
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -46,6 +47,7 @@ public class TrafficLightGenerator {
 
     // Контекст
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
@@ -54,6 +56,7 @@ public class TrafficLightGenerator {
 
     public TrafficLightGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -305,16 +308,16 @@ public class TrafficLightGenerator {
     private boolean isRoadSurfaceAt(int x, int z) {
         int y = groundY(x, z);
         if (y == Integer.MIN_VALUE) return false;
-        Block b = level.getBlockState(new BlockPos(x, y, z)).getBlock();
+        Block b = world.getBlockState(new BlockPos(x, y, z)).getBlock();
         return ROAD_SURFACE_BLOCKS.contains(b);
     }
 
     // ==== Примитивы ====
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
     }
     private void setBlockState(int x, int y, int z, BlockState st) {
-        level.setBlock(new BlockPos(x, y, z), st, 3);
+        world.setBlock(new BlockPos(x, y, z), st, 3);
     }
 
     // ==== Геометрия/утилиты ====
@@ -448,7 +451,7 @@ public class TrafficLightGenerator {
                 }
             }
         } catch (Throwable ignore) {}
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     private boolean inBounds(int x, int z) {
@@ -3,17 +3,17 @@ package com.cartopia.builder;
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
 import com.cartopia.store.TerrainGridStore;
+import com.cartopia.write.BlockAccess;
+import com.cartopia.write.BlockPalette;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
-import net.minecraftforge.registries.ForgeRegistries;
 
 import java.util.*;
 import java.util.regex.Matcher;
@@ -22,6 +22,7 @@ import java.util.regex.Pattern;
 public class TunnelGenerator {
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;       // может быть null
     private final TerrainGridStore grid;       // может быть null
@@ -34,6 +35,7 @@ public class TunnelGenerator {
 
     public TunnelGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store = store;
         this.grid = (store != null) ? store.grid : null;
@@ -55,9 +57,11 @@ public class TunnelGenerator {
     // === Материалы (те же, что в дорогах/мостах) ===
     private static final class RoadStyle {
         final String blockId;
+        final int code;     // код в BlockPalette
         final int width;
         RoadStyle(String vanillaName, int width) {
             this.blockId = "minecraft:" + vanillaName;
+            this.code = BlockPalette.code(this.blockId);
             this.width = Math.max(1, width);
         }
     }
@@ -162,7 +166,7 @@ public class TunnelGenerator {
                         String aeroway = optString(tags, "aeroway");
                         String styleKey = (highway != null) ? highway : (aeroway != null ? "aeroway:" + aeroway : "");
                         RoadStyle style = ROAD_MATERIALS.getOrDefault(styleKey, new RoadStyle("stone", 4));
-                        Block deckBlock = resolveBlock(style.blockId);
+                        Block deckBlock = BlockPalette.block(style.code, Blocks.STONE);
 
                         List<int[]> pts = new ArrayList<>(geom.size());
                         for (int i = 0; i < geom.size(); i++) {
@@ -248,7 +252,7 @@ public class TunnelGenerator {
             String aeroway = optString(tags, "aeroway");
             String styleKey = (highway != null) ? highway : (aeroway != null ? "aeroway:" + aeroway : "");
             RoadStyle style = ROAD_MATERIALS.getOrDefault(styleKey, new RoadStyle("stone", 4));
-            Block deckBlock = resolveBlock(style.blockId);
+            Block deckBlock = BlockPalette.block(style.code, Blocks.STONE);
 
             List<int[]> pts = new ArrayList<>();
             for (int i=0; i<geom.size(); i++) {
@@ -673,7 +677,7 @@ public class TunnelGenerator {
     private void placeRimBlock(int x, int z, int y,
                                int minX, int maxX, int minZ, int maxZ, Block rimBlock) {
         if (x < minX || x > maxX || z < minZ || z > maxZ) return;
-        level.setBlock(mpos.set(x, y, z), rimBlock.defaultBlockState(), 3);
+        world.setBlock(mpos.set(x, y, z), rimBlock.defaultBlockState(), 3);
         placedByTunnel.add(BlockPos.asLong(x, y, z));
     }
 
@@ -725,20 +729,20 @@ public class TunnelGenerator {
             for (int y = from; y >= to; y--) {
                 long key = BlockPos.asLong(x, y, z);
                 if (placedByTunnel.contains(key)) continue;
-                if (!level.getBlockState(mpos.set(x, y, z)).isAir()) return y;
+                if (!world.getBlockState(mpos.set(x, y, z)).isAir()) return y;
             }
         }
         for (int y = worldMax; y >= worldMin; y--) {
             long key = BlockPos.asLong(x, y, z);
             if (placedByTunnel.contains(key)) continue;
-            if (!level.getBlockState(mpos.set(x, y, z)).isAir()) return y;
+            if (!world.getBlockState(mpos.set(x, y, z)).isAir()) return y;
         }
         return Integer.MIN_VALUE;
     }
 
     /** Ставит блок и запоминает как «наш». */
     private void setTunnelBlock(int x, int y, int z, Block block) {
-        level.setBlock(mpos.set(x, y, z), block.defaultBlockState(), 3);
+        world.setBlock(mpos.set(x, y, z), block.defaultBlockState(), 3);
         placedByTunnel.add(BlockPos.asLong(x, y, z));
     }
 
@@ -749,19 +753,18 @@ public class TunnelGenerator {
         if (ySurf == Integer.MIN_VALUE) return;
 
         for (int y = Math.min(worldMax, ySurf); y > yBottomInclusive; y--) {
-            Block b = level.getBlockState(mpos.set(x, y, z)).getBlock();
+            Block b = world.getBlockState(mpos.set(x, y, z)).getBlock();
             if (b == Blocks.RAIL || b == Blocks.POWERED_RAIL || b == Blocks.DETECTOR_RAIL || b == Blocks.ACTIVATOR_RAIL) {
                 break; // не удаляем рельсы и всё, что ниже них
             }
-            level.setBlock(mpos.set(x, y, z), Blocks.AIR.defaultBlockState(), 3);
+            world.setBlock(mpos.set(x, y, z), Blocks.AIR.defaultBlockState(), 3);
         }
     }
 
     // ====== УТИЛИТЫ ======
 
     private static Block resolveBlock(String id) {
-        Block b = ForgeRegistries.BLOCKS.getValue(ResourceLocation.tryParse(id));
-        return (b != null ? b : Blocks.STONE);
+        return BlockPalette.block(id, Blocks.STONE);
     }
 
     private static String optString(JsonObject o, String k) {
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -34,11 +35,13 @@ public class UtilityBoxGenerator {
     private static final Block DOOR_BLOCK      = Blocks.BIRCH_DOOR; // берёзовые двойные двери
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public UtilityBoxGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level = level;
+        this.world = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -405,20 +408,20 @@ public class UtilityBoxGenerator {
 
         BlockState upper = lower.setValue(DoorBlock.HALF, DoubleBlockHalf.UPPER);
 
-        level.setBlock(new BlockPos(x, y,   z), lower, 3);
-        level.setBlock(new BlockPos(x, y+1, z), upper, 3);
+        world.setBlock(new BlockPos(x, y,   z), lower, 3);
+        world.setBlock(new BlockPos(x, y+1, z), upper, 3);
     }
 
     // ===== низкоуровневые set'ы =====
     private void setBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
     }
     private void setBlockIfAir(int x, int y, int z, Block block) {
         BlockPos p = new BlockPos(x,y,z);
-        if (level.getBlockState(p).isAir()) level.setBlock(p, block.defaultBlockState(), 3);
+        if (world.getBlockState(p).isAir()) world.setBlock(p, block.defaultBlockState(), 3);
     }
     private void setAir(int x, int y, int z) {
-        level.setBlock(new BlockPos(x,y,z), Blocks.AIR.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), Blocks.AIR.defaultBlockState(), 3);
     }
 
     // ===== высота рельефа =====
@@ -447,7 +450,7 @@ public class UtilityBoxGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== утилиты =====
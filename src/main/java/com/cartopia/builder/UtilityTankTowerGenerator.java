@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -30,11 +31,13 @@ public class UtilityTankTowerGenerator {
     // высота нижней точки: локальный groundY + 1 + LEG_HEIGHT
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public UtilityTankTowerGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -335,7 +338,7 @@ public class UtilityTankTowerGenerator {
     private void setBlockSafe(int x, int y, int z, Block block) {
         BlockPos pos = new BlockPos(x,y,z);
         BlockState st = block.defaultBlockState();
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     // Рельеф — сначала пробуем store.grid, потом coords.terrainGrid, потом мир
@@ -364,7 +367,7 @@ public class UtilityTankTowerGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     private static String optString(JsonObject o, String k) {
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.*;
 
 import net.minecraft.core.BlockPos;
@@ -126,11 +127,13 @@ public class VegetationScatterGenerator {
     // --------- ИНФРАСТРУКТУРА -----
     // ===============================
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public VegetationScatterGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -258,7 +261,7 @@ public class VegetationScatterGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     @SuppressWarnings("unused")
@@ -352,7 +355,7 @@ public class VegetationScatterGenerator {
                 // мангрув — только в болотах, одиночные по данным вне болот игнорируем
                 continue;
             }
-            if (placeTreeWithMoss(level, tp.x, tp.z, sap, true, false,
+            if (placeTreeWithMoss(world, tp.x, tp.z, sap, true, false,
                                 worldMinX, worldMaxX, worldMinZ, worldMaxZ)) tpPlaced++;
         }
         broadcast(level, "VegetationScatter: individual trees placed: " + tpPlaced);
@@ -434,7 +437,7 @@ public class VegetationScatterGenerator {
 
                 int y = terrainYFromCoordsOrWorld(x, z);
                 BlockPos ground = new BlockPos(x, y, z);
-                Block groundBlock = level.getBlockState(ground).getBlock();
+                Block groundBlock = world.getBlockState(ground).getBlock();
 
                 // Разрешаем только «мягкие» поверхности
                 if (!isGrasslikeBlock(groundBlock)) continue;
@@ -677,15 +680,15 @@ public class VegetationScatterGenerator {
 
     // --- Мох под точкой ---
     private void placeMoss(BlockPos ground) {
-        level.setBlock(ground, Blocks.MOSS_BLOCK.defaultBlockState(), 3);
+        world.setBlock(ground, Blocks.MOSS_BLOCK.defaultBlockState(), 3);
     }
     private void placeMossAt(int x, int z) {
         int y = terrainYFromCoordsOrWorld(x, z);
-        level.setBlock(new BlockPos(x, y, z), Blocks.MOSS_BLOCK.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), Blocks.MOSS_BLOCK.defaultBlockState(), 3);
     }
 
     // --- Дерево с мхом (для одиночных/рядов и болот) ---
-    private boolean placeTreeWithMoss(LevelAccessor lvl, int x, int z, Block sapling,
+    private boolean placeTreeWithMoss(BlockAccess lvl, int x, int z, Block sapling,
                                     boolean forceReplaceTop, boolean swampPlatform,
                                     int wMinX, int wMaxX, int wMinZ, int wMaxZ) {
 
@@ -704,12 +707,12 @@ public class VegetationScatterGenerator {
                     if (xx < wMinX || xx > wMaxX || zz < wMinZ || zz > wMaxZ) continue;
                     int yy = terrainYFromCoordsOrWorld(xx, zz);
                     BlockPos gg = new BlockPos(xx, yy, zz);
-                    level.setBlock(gg, Blocks.MOSS_BLOCK.defaultBlockState(), 3);
+                    world.setBlock(gg, Blocks.MOSS_BLOCK.defaultBlockState(), 3);
                 }
             }
         } else {
             // один блок мха под деревом
-            level.setBlock(ground, Blocks.MOSS_BLOCK.defaultBlockState(), 3);
+            world.setBlock(ground, Blocks.MOSS_BLOCK.defaultBlockState(), 3);
         }
 
         // если не хотим насильно затирать верхний блок — можно уйти
@@ -723,8 +726,8 @@ public class VegetationScatterGenerator {
     private boolean placeTreeIfAir(int x, int z, Block sapling) {
         int y = terrainYFromCoordsOrWorld(x, z);
         BlockPos above = new BlockPos(x, y+1, z);
-        if (!level.isEmptyBlock(above)) return false;
-        level.setBlock(above, sapling.defaultBlockState(), 3);
+        if (!world.isEmptyBlock(above)) return false;
+        world.setBlock(above, sapling.defaultBlockState(), 3);
         return true;
     }
 
@@ -758,7 +761,7 @@ public class VegetationScatterGenerator {
                 if (x < wMinX || x > wMaxX || z < wMinZ || z > wMaxZ) continue;
 
                 // РЯДЫ — как одиночные: мох + форс-замена верхнего блока
-                if (placeTreeWithMoss(level, x, z, sap, true, false,
+                if (placeTreeWithMoss(world, x, z, sap, true, false,
                                     wMinX, wMaxX, wMinZ, wMaxZ)) placed++;
             }
         }
@@ -803,15 +806,15 @@ public class VegetationScatterGenerator {
         Block state1 = Blocks.AZALEA_LEAVES;
         // делаем листья "персистентными", чтобы не увядали (если есть свойство)
         try {
-            level.setBlock(p1, state1.defaultBlockState().setValue(LeavesBlock.PERSISTENT, true), 3);
+            world.setBlock(p1, state1.defaultBlockState().setValue(LeavesBlock.PERSISTENT, true), 3);
         } catch (Throwable t) {
-            level.setBlock(p1, state1.defaultBlockState(), 3);
+            world.setBlock(p1, state1.defaultBlockState(), 3);
         }
-        if (level.isEmptyBlock(p2)) {
+        if (world.isEmptyBlock(p2)) {
             try {
-                level.setBlock(p2, state1.defaultBlockState().setValue(LeavesBlock.PERSISTENT, true), 3);
+                world.setBlock(p2, state1.defaultBlockState().setValue(LeavesBlock.PERSISTENT, true), 3);
             } catch (Throwable t) {
-                level.setBlock(p2, state1.defaultBlockState(), 3);
+                world.setBlock(p2, state1.defaultBlockState(), 3);
             }
             return 2;
         }
@@ -839,18 +842,18 @@ public class VegetationScatterGenerator {
                 int y = terrainYFromCoordsOrWorld(x, z);
                 BlockPos ground = new BlockPos(x, y, z);
                 BlockPos above  = new BlockPos(x, y+1, z);
-                if (level.getBlockState(ground).getBlock() == Blocks.FARMLAND && level.isEmptyBlock(above)) {
+                if (world.getBlockState(ground).getBlock() == Blocks.FARMLAND && world.isEmptyBlock(above)) {
                     // WHEAT с произвольным возрастом
                     try {
                         IntegerProperty AGE = (IntegerProperty) Blocks.WHEAT.getStateDefinition().getProperty("age");
                         if (AGE != null) {
                             int age = rnd.nextInt(AGE.getPossibleValues().size());
-                            level.setBlock(above, Blocks.WHEAT.defaultBlockState().setValue(AGE, age), 3);
+                            world.setBlock(above, Blocks.WHEAT.defaultBlockState().setValue(AGE, age), 3);
                         } else {
-                            level.setBlock(above, Blocks.WHEAT.defaultBlockState(), 3);
+                            world.setBlock(above, Blocks.WHEAT.defaultBlockState(), 3);
                         }
                     } catch (Throwable t) {
-                        level.setBlock(above, Blocks.WHEAT.defaultBlockState(), 3);
+                        world.setBlock(above, Blocks.WHEAT.defaultBlockState(), 3);
                     }
                     planted++;
                 }
@@ -908,7 +911,7 @@ public class VegetationScatterGenerator {
 
                 int y = terrainYFromCoordsOrWorld(x, z);
                 BlockPos ground = new BlockPos(x, y, z);
-                Block groundBlock = level.getBlockState(ground).getBlock();
+                Block groundBlock = world.getBlockState(ground).getBlock();
 
                 // В RESIDENTIAL/URBAN — сажаем ТОЛЬКО на мох
                 if ((area.type == ZoneType.RESIDENTIAL || area.type == ZoneType.URBAN) && groundBlock != Blocks.MOSS_BLOCK) {
@@ -946,7 +949,7 @@ public class VegetationScatterGenerator {
                     }
 
                     // Под саженец — мох. Для болот — площадка 10×10 и в центр.
-                    if (placeTreeWithMoss(level, x, z, sap, false, swampPlat,
+                    if (placeTreeWithMoss(world, x, z, sap, false, swampPlat,
                                         wMinX, wMaxX, wMinZ, wMaxZ)) placed++;
                 }
 
@@ -979,7 +982,7 @@ public class VegetationScatterGenerator {
 
                 int y = terrainYFromCoordsOrWorld(x, z);
                 BlockPos ground = new BlockPos(x, y, z);
-                Block g = level.getBlockState(ground).getBlock();
+                Block g = world.getBlockState(ground).getBlock();
                 if (!allowGround.test(g)) continue;
 
                 switch (area.type) {
@@ -1190,24 +1193,24 @@ public class VegetationScatterGenerator {
     private long placeSimplePlant(int x, int z, Block plant) {
         int y = terrainYFromCoordsOrWorld(x, z);
         BlockPos above = new BlockPos(x, y+1, z);
-        if (!level.isEmptyBlock(above)) return 0;
-        level.setBlock(above, plant.defaultBlockState(), 3);
+        if (!world.isEmptyBlock(above)) return 0;
+        world.setBlock(above, plant.defaultBlockState(), 3);
         return 1;
         }
 
     private long placeBlockAgeable(int x, int z, Block plant, Random rnd) {
         int y = terrainYFromCoordsOrWorld(x, z);
         BlockPos above = new BlockPos(x, y+1, z);
-        if (!level.isEmptyBlock(above)) return 0;
+        if (!world.isEmptyBlock(above)) return 0;
         try {
             IntegerProperty AGE = (IntegerProperty) plant.getStateDefinition().getProperty("age");
             if (AGE != null) {
                 int age = rnd.nextInt(AGE.getPossibleValues().size());
-                level.setBlock(above, plant.defaultBlockState().setValue(AGE, age), 3);
+                world.setBlock(above, plant.defaultBlockState().setValue(AGE, age), 3);
                 return 1;
             }
         } catch (Throwable ignore){}
-        level.setBlock(above, plant.defaultBlockState(), 3);
+        world.setBlock(above, plant.defaultBlockState(), 3);
         return 1;
     }
 
@@ -1215,16 +1218,16 @@ public class VegetationScatterGenerator {
         int y = terrainYFromCoordsOrWorld(x, z);
         BlockPos p1 = new BlockPos(x, y+1, z);
         BlockPos p2 = new BlockPos(x, y+2, z);
-        if (!level.isEmptyBlock(p1) || !level.isEmptyBlock(p2)) return 0;
+        if (!world.isEmptyBlock(p1) || !world.isEmptyBlock(p2)) return 0;
         try {
             // для double plants просто ставим нижнюю часть — игра сама корректно заполнит верх при setBlock?
             // На всякий случай поставим обе.
-            level.setBlock(p1, tallPlant.defaultBlockState(), 3);
-            level.setBlock(p2, tallPlant.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.UPPER), 3);
+            world.setBlock(p1, tallPlant.defaultBlockState(), 3);
+            world.setBlock(p2, tallPlant.defaultBlockState().setValue(DoublePlantBlock.HALF, DoubleBlockHalf.UPPER), 3);
             return 2;
         } catch (Throwable t) {
             // fallback как обычное растение
-            level.setBlock(p1, tallPlant.defaultBlockState(), 3);
+            world.setBlock(p1, tallPlant.defaultBlockState(), 3);
             return 1;
         }
     }
@@ -1235,12 +1238,12 @@ public class VegetationScatterGenerator {
             int h = 1 + rnd.nextInt(8);
             int y = terrainYFromCoordsOrWorld(x, z);
             BlockPos base = new BlockPos(x, y, z);
-            level.setBlock(base, Blocks.SAND.defaultBlockState(), 3);
+            world.setBlock(base, Blocks.SAND.defaultBlockState(), 3);
             long ok = 0;
             for (int i=1; i<=h; i++) {
                 BlockPos p = new BlockPos(x, y+i, z);
-                if (!level.isEmptyBlock(p)) break;
-                level.setBlock(p, Blocks.CACTUS.defaultBlockState(), 3);
+                if (!world.isEmptyBlock(p)) break;
+                world.setBlock(p, Blocks.CACTUS.defaultBlockState(), 3);
                 ok++;
             }
             return ok;
@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -41,11 +42,13 @@ public class WasteGenerator {
 
     // Контекст
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public WasteGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -265,11 +268,11 @@ public class WasteGenerator {
     private void placeBlockOnTerrain(int x, int z, Block b) {
         int y = groundY(x, z);
         if (y == Integer.MIN_VALUE) return;
-        level.setBlock(new BlockPos(x, y + 1, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y + 1, z), b.defaultBlockState(), 3);
     }
 
     private void setBlock(int x, int y, int z, Block b) {
-        level.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x, y, z), b.defaultBlockState(), 3);
     }
 
     // === Ориентация по ближайшей дороге ===
@@ -427,7 +430,7 @@ public class WasteGenerator {
                 }
             }
         } catch (Throwable ignore) {}
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     private static int[] latlngToBlock(double lat, double lng,
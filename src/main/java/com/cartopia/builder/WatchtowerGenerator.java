@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -36,11 +37,13 @@ public class WatchtowerGenerator {
     // Лестницы — с внешней южной стороны (к ножкам, где нет домика).
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public WatchtowerGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -305,8 +308,8 @@ public class WatchtowerGenerator {
                     .setValue(DoorBlock.POWERED, Boolean.FALSE);
             BlockState upper = lower.setValue(DoorBlock.HALF, DoubleBlockHalf.UPPER);
 
-            level.setBlock(new BlockPos(doorX, yDeck + 1, doorZ), lower, 3);
-            level.setBlock(new BlockPos(doorX, yDeck + 2, doorZ), upper, 3);
+            world.setBlock(new BlockPos(doorX, yDeck + 1, doorZ), lower, 3);
+            world.setBlock(new BlockPos(doorX, yDeck + 2, doorZ), upper, 3);
         }
 
         // 4) Лестницы с внешней южной стороны, «к ножкам» (южные ножки — на z=+2).
@@ -329,10 +332,10 @@ public class WatchtowerGenerator {
 
     // ===== Низкоуровневые сеттеры =====
     private void setBlockSafe(int x, int y, int z, Block block) {
-        level.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), block.defaultBlockState(), 3);
     }
     private void setAir(int x, int y, int z) {
-        level.setBlock(new BlockPos(x,y,z), Blocks.AIR.defaultBlockState(), 3);
+        world.setBlock(new BlockPos(x,y,z), Blocks.AIR.defaultBlockState(), 3);
     }
     private void placeLadder(int x, int y, int z, Direction facing) {
         BlockPos pos = new BlockPos(x,y,z);
@@ -340,7 +343,7 @@ public class WatchtowerGenerator {
         try {
             st = st.setValue(LadderBlock.FACING, facing);
         } catch (Exception ignore) {}
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
     }
 
     // ===== Рельеф =====
@@ -369,7 +372,7 @@ public class WatchtowerGenerator {
             }
         } catch (Throwable ignore) {}
 
-        return level.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
+        return world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, x, z) - 1;
     }
 
     // ===== Утилиты =====
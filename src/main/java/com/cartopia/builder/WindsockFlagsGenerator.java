@@ -2,6 +2,7 @@ package com.cartopia.builder;
 
 import com.cartopia.store.FeatureStream;
 import com.cartopia.store.GenerationStore;
+import com.cartopia.write.BlockAccess;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -24,11 +25,13 @@ public class WindsockFlagsGenerator {
     private static final Block BANNER_BLOCK = Blocks.RED_BANNER;
 
     private final ServerLevel level;
+    private final BlockAccess world;
     private final JsonObject coords;
     private final GenerationStore store;
 
     public WindsockFlagsGenerator(ServerLevel level, JsonObject coords, GenerationStore store) {
         this.level  = level;
+        this.world  = BlockAccess.of(level);
         this.coords = coords;
         this.store  = store;
     }
@@ -230,7 +233,7 @@ public class WindsockFlagsGenerator {
             }
         } catch (Throwable ignore) {}
 
-        level.setBlock(pos, st, 3);
+        world.setBlock(pos, st, 3);
         return true;
     }
 
@@ -240,12 +243,12 @@ public class WindsockFlagsGenerator {
      * отсканируем вниз до первого «стабильного» блока (state.isFaceSturdy(UP)).
      */
     private int findTopSolidY(int x, int z) {
-        int y = level.getHeight(Heightmap.Types.WORLD_SURFACE, x, z) - 1; // действительно самый верхний «видимый» слой
+        int y = world.getHeight(Heightmap.Types.WORLD_SURFACE, x, z) - 1; // действительно самый верхний «видимый» слой
         int minY = level.getMinBuildHeight();
 
         for (int yy = y; yy >= minY; yy--) {
             BlockPos p = new BlockPos(x, yy, z);
-            BlockState s = level.getBlockState(p);
+            BlockState s = world.getBlockState(p);
             try {
                 // нужен блок, на который можно поставить сверху
                 if (!s.isAir() && s.isFaceSturdy(level, p, Direction.UP)) {
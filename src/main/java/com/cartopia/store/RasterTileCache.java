@@ -0,0 +1,260 @@
+package com.cartopia.store;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Локальный кэш растров (DEM, OLM landcover) фиксированными тайлами TILE_DEG° по сетке lon/lat,
+ * общий для всех пакетов областей.
+ *
+ * Тайл лежит в dir/layer/layer_tx_ty_source.tif: tx, ty — номер тайла, source — короткий хэш описания
+ * источника (URL, покрытие), так что смена источника старые тайлы не подхватывает. Под bbox тайлы
+ * склеиваются в один TIFF ровно по bbox (как раньше отдавал сервер), SurfaceGenerator читает его как есть.
+ * Повторная или соседняя область сети уже не требует.
+ *
+ * Объём ограничен maxBytes, лишнее удаляется по давности использования (mtime обновляется при чтении).
+ * Перед сетью смотрим seedDir с той же раскладкой — кэш можно заполнить из локальной папки
+ * (например, копии другого кэша) без источника вовсе.
+ *
+ * Потоки: скачивание тайла держит только замок этого тайла — /build, ждущий ретраев GMRT, не
+ * блокирует /estimate по другим тайлам. Склейки идут параллельно (read-замок); trim берёт write-замок
+ * только если он свободен, иначе пропускается до следующего скачивания.
+ */
+public final class RasterTileCache {
+    /** 1/8° — точно в двоичном виде, границы тайлов без дрожания. */
+    public static final double TILE_DEG = 0.125;
+    /** Больше — склейка неразумна (20°×20° GMRT), вызывающий качает bbox целиком, как раньше. */
+    public static final int MAX_TILES = 64;
+
+    /** Получить растр с границами west..east, south..north в файл out. */
+    public interface TileSource {
+        void fetch(double west, double east, double south, double north, Path out) throws Exception;
+    }
+
+    private final Path dir;
+    private final Path seedDir; // может быть null
+    private final long maxBytes;
+    private final ConcurrentHashMap<Path, Object> tileLocks = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock use = new ReentrantReadWriteLock(); // склейки vs trim
+
+    public RasterTileCache(Path dir, Path seedDir, long maxBytes) {
+        this.dir = dir;
+        this.seedDir = seedDir;
+        this.maxBytes = maxBytes;
+    }
+
+    public static int tileCount(double west, double east, double south, double north) {
+        long nx = (long) lastTile(east) - firstTile(west) + 1;
+        long ny = (long) lastTile(north) - firstTile(south) + 1;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, nx) * Math.max(0, ny));
+    }
+
+    /**
+     * Склеить тайлы слоя layer под bbox в out, недостающие — через source.
+     * Шаг пикселя — как у тайлов, выборка — ближайший пиксель по центру.
+     */
+    public void mosaic(String layer, String sourceId,
+                       double west, double east, double south, double north,
+                       Path out, TileSource source) throws Exception {
+        int tx0 = firstTile(west), tx1 = Math.max(tx0, lastTile(east));
+        int ty0 = firstTile(south), ty1 = Math.max(ty0, lastTile(north));
+        if (tileCount(west, east, south, north) > MAX_TILES) {
+            throw new IOException("bbox needs " + tileCount(west, east, south, north) + " tiles (max " + MAX_TILES + ")");
+        }
+        String src = hash(sourceId);
+
+        int fetched;
+        use.readLock().lock();
+        try {
+            fetched = mosaicLocked(layer, src, west, east, south, north, tx0, tx1, ty0, ty1, out, source);
+        } finally {
+            use.readLock().unlock();
+        }
+        if (fetched > 0) trim();
+    }
+
+    private int mosaicLocked(String layer, String src, double west, double east, double south, double north,
+                             int tx0, int tx1, int ty0, int ty1, Path out, TileSource source) throws Exception {
+        List<Path> tiles = new ArrayList<>();
+        int fetched = 0;
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                Path p = tilePath(layer, tx, ty, src);
+                if (!isUsable(p)) {
+                    // тот же тайл качает другой запрос — ждём его, а не качаем второй раз
+                    synchronized (tileLocks.computeIfAbsent(p, k -> new Object())) {
+                        if (!isUsable(p)) {
+                            fill(layer, p, tx, ty, source);
+                            fetched++;
+                        }
+                    }
+                }
+                Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+                tiles.add(p);
+            }
+        }
+
+        // сетка выхода: шаг — по первому тайлу (у слоя все тайлы одного размера)
+        BufferedImage first = readTile(tiles.get(0));
+        int w = Math.max(1, (int) Math.round((east - west) / (TILE_DEG / first.getWidth())));
+        int h = Math.max(1, (int) Math.round((north - south) / (TILE_DEG / first.getHeight())));
+        ColorModel cm = first.getColorModel();
+        WritableRaster dst = cm.createCompatibleWritableRaster(w, h);
+
+        // центр пикселя выхода -> номер тайла по каждой оси (проекция раздельная)
+        int[] colTile = new int[w], rowTile = new int[h];
+        double[] colLon = new double[w], rowLat = new double[h];
+        for (int c = 0; c < w; c++) {
+            colLon[c] = west + (c + 0.5) * (east - west) / w;
+            colTile[c] = clamp((int) Math.floor(colLon[c] / TILE_DEG), tx0, tx1);
+        }
+        for (int r = 0; r < h; r++) {
+            rowLat[r] = north - (r + 0.5) * (north - south) / h;
+            rowTile[r] = clamp((int) Math.floor(rowLat[r] / TILE_DEG), ty0, ty1);
+        }
+
+        // по одному тайлу в памяти
+        Object px = null;
+        int k = 0;
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++, k++) {
+                BufferedImage img = (k == 0) ? first : readTile(tiles.get(k));
+                Raster ras = img.getRaster();
+                int tw = ras.getWidth(), th = ras.getHeight();
+                for (int r = 0; r < h; r++) {
+                    if (rowTile[r] != ty) continue;
+                    int py = clamp((int) Math.floor(((ty + 1) * TILE_DEG - rowLat[r]) / TILE_DEG * th), 0, th - 1);
+                    for (int c = 0; c < w; c++) {
+                        if (colTile[c] != tx) continue;
+                        int pxl = clamp((int) Math.floor((colLon[c] - tx * TILE_DEG) / TILE_DEG * tw), 0, tw - 1);
+                        px = ras.getDataElements(ras.getMinX() + pxl, ras.getMinY() + py, px);
+                        dst.setDataElements(c, r, px);
+                    }
+                }
+            }
+        }
+
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+        if (!ImageIO.write(new BufferedImage(cm, dst, cm.isAlphaPremultiplied(), null), "tiff", tmp.toFile())) {
+            throw new IOException("No TIFF writer for " + layer + " mosaic");
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("[Cartopia] " + layer + " mosaic " + w + "x" + h + " from " + tiles.size()
+                + " tile(s), " + fetched + " filled -> " + out);
+        return fetched;
+    }
+
+    // ---- тайлы ----
+
+    private Path tilePath(String layer, int tx, int ty, String src) {
+        return dir.resolve(layer).resolve(layer + "_" + tx + "_" + ty + "_" + src + ".tif");
+    }
+
+    private void fill(String layer, Path p, int tx, int ty, TileSource source) throws Exception {
+        Files.createDirectories(p.getParent());
+        Path tmp = p.resolveSibling(p.getFileName() + ".part");
+
+        Path seeded = (seedDir != null) ? seedDir.resolve(layer).resolve(p.getFileName().toString()) : null;
+        if (seeded != null && isUsable(seeded)) {
+            Files.copy(seeded, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            double w = tx * TILE_DEG, s = ty * TILE_DEG;
+            System.out.println(String.format(Locale.ROOT, "[Cartopia] %s tile %d,%d (W:%.3f S:%.3f) not cached, fetching", layer, tx, ty, w, s));
+            source.fetch(w, w + TILE_DEG, s, s + TILE_DEG, tmp);
+        }
+        if (!isUsable(tmp)) {
+            Files.deleteIfExists(tmp);
+            throw new IOException(layer + " tile " + tx + "," + ty + " is empty");
+        }
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static BufferedImage readTile(Path p) throws IOException {
+        BufferedImage img = ImageIO.read(p.toFile());
+        if (img == null) throw new IOException("Unreadable cached tile: " + p);
+        return img;
+    }
+
+    private static boolean isUsable(Path p) {
+        try {
+            return Files.isRegularFile(p) && Files.size(p) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Удалить давно не использованные тайлы сверх maxBytes. Идёт склейка — пропускаем. */
+    private void trim() {
+        if (!Files.isDirectory(dir) || !use.writeLock().tryLock()) return;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            List<Path> files = walk
+                    .filter(p -> Files.isRegularFile(p) && p.getFileName().toString().endsWith(".tif"))
+                    .sorted(Comparator.comparingLong(RasterTileCache::mtime).reversed()) // новые → старые
+                    .collect(Collectors.toList());
+            long total = 0;
+            int removed = 0;
+            for (Path p : files) {
+                long size = Files.size(p);
+                if (total + size <= maxBytes) { total += size; continue; }
+                Files.deleteIfExists(p);
+                removed++;
+            }
+            if (removed > 0) System.out.println("[Cartopia] raster cache: evicted " + removed + " tile(s), kept " + (total >> 20) + " MB");
+        } catch (Exception e) {
+            System.out.println("[Cartopia] raster cache trim failed: " + e.getMessage());
+        } finally {
+            use.writeLock().unlock();
+        }
+    }
+
+    private static long mtime(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    // ---- сетка ----
+
+    private static int firstTile(double west) {
+        return (int) Math.floor(west / TILE_DEG);
+    }
+
+    // восточная/северная граница ровно на стыке тайлов — следующий тайл не нужен
+    private static int lastTile(double east) {
+        return (int) Math.ceil(east / TILE_DEG) - 1;
+    }
+
+    private static int clamp(int v, int lo, int hi) { return v < lo ? lo : (v > hi ? hi : v); }
+
+    private static String hash(String s) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-1").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 5; i++) sb.append(String.format("%02x", d[i]));
+            return sb.toString();
+        } catch (Exception e) {
+            return Integer.toHexString(s.hashCode());
+        }
+    }
+}
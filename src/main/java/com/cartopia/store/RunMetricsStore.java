@@ -0,0 +1,56 @@
+package com.cartopia.store;
+
+import com.google.gson.*;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Метрики прошлых генераций (metrics.json рядом с пакетами областей).
+ * Нужны только для калибровки оценок /estimate, поэтому храним последние MAX_RUNS запусков.
+ */
+public final class RunMetricsStore {
+    private static final int MAX_RUNS = 30;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private RunMetricsStore() {}
+
+    public static List<JsonObject> load(File metricsJson) {
+        List<JsonObject> out = new ArrayList<>();
+        if (metricsJson == null || !metricsJson.isFile()) return out;
+        try {
+            JsonElement root = JsonParser.parseString(Files.readString(metricsJson.toPath(), StandardCharsets.UTF_8));
+            JsonArray runs = root.isJsonObject() && root.getAsJsonObject().has("runs")
+                    ? root.getAsJsonObject().getAsJsonArray("runs") : new JsonArray();
+            for (JsonElement e : runs) if (e.isJsonObject()) out.add(e.getAsJsonObject());
+        } catch (Exception e) {
+            System.out.println("[Cartopia] metrics.json unreadable, ignoring: " + e.getMessage());
+        }
+        return out;
+    }
+
+    public static synchronized void append(File metricsJson, JsonObject run) {
+        try {
+            List<JsonObject> runs = load(metricsJson);
+            runs.add(run);
+            while (runs.size() > MAX_RUNS) runs.remove(0);
+
+            JsonArray arr = new JsonArray();
+            for (JsonObject r : runs) arr.add(r);
+            JsonObject root = new JsonObject();
+            root.addProperty("version", 1);
+            root.add("runs", arr);
+
+            File parent = metricsJson.getParentFile();
+            if (parent != null) parent.mkdirs();
+            File tmp = new File(parent, metricsJson.getName() + ".tmp");
+            Files.writeString(tmp.toPath(), GSON.toJson(root), StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), metricsJson.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            System.out.println("[Cartopia] failed to store run metrics: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.cartopia.write;
+
+import com.mojang.serialization.Codec;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.LongArrayTag;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.util.Mth;
+import net.minecraft.util.SimpleBitStorage;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.EntityBlock;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.ChunkStatus;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.storage.RegionFile;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link BlockWriter} без сервера: пишет чанки прямо в region-файлы (.mca) мира.
+ *
+ * Замена python_realisation/world_generation (Amulet): секции — палитры PalettedContainer
+ * в том же NBT-формате, что пишет сервер; карты высот считаются здесь же.
+ *
+ * Свет не считаем — его досчитывает сервер при первой загрузке (то, что раньше делал relight_world).
+ * Новые и недогенерированные чанки пишутся со статусом features: дальше сервер сам проходит
+ * initialize_light/light/spawn/full, а рельеф и декор уже не трогает. Уже готовые (full) чанки
+ * остаются full с isLightOn=0 — такой чанк сервер пересвечивает целиком при загрузке.
+ * Биомы новых чанков пишем явно (DEFAULT_BIOME): без генератора взять их негде, а сервер
+ * по статусу features их уже не заполнит.
+ *
+ * Существующие чанки дочитываются из региона при первом касании — всё, что мы не трогали
+ * (сущности, структуры, биомы), сохраняется. На flush регионы кодируются и пишутся
+ * параллельно, по потоку на region-файл.
+ *
+ * Мир в этот момент не должен быть открыт сервером.
+ */
+public final class AnvilRegionWriter implements BlockWriter {
+
+    // сколько чанков держим в памяти до автосброса на диск
+    private static final int MAX_CHUNKS_IN_MEMORY = 4096;
+
+    // не раньше этого статуса: остальные шаги (свет, спавн, full) сервер делает сам
+    private static final ChunkStatus MIN_STATUS = ChunkStatus.FEATURES;
+    // то же, что сервер подставляет секции без палитры биомов
+    private static final String DEFAULT_BIOME = "minecraft:plains";
+
+    // тот же кодек палитры, что у ChunkSerializer
+    private static final Codec<PalettedContainer<BlockState>> BLOCK_STATE_CODEC = PalettedContainer.codecRW(
+            Block.BLOCK_STATE_REGISTRY, BlockState.CODEC, PalettedContainer.Strategy.SECTION_STATES, Blocks.AIR.defaultBlockState());
+
+    private final Path regionDir;
+    private final int minY, maxY, minSection, sectionCount;
+    private final Long2ObjectOpenHashMap<OfflineChunk> chunks = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<RegionFile> regions = new Long2ObjectOpenHashMap<>();
+
+    private OfflineChunk last = null;
+    private long lastKey = Long.MIN_VALUE;
+    private long written = 0;
+
+    /**
+     * @param dimensionDir папка измерения (для overworld — корень мира, рядом с level.dat)
+     * @param minY         нижняя граница мира (как Level#getMinBuildHeight)
+     * @param maxY         верхняя граница, исключительно
+     */
+    public AnvilRegionWriter(Path dimensionDir, int minY, int maxY) throws IOException {
+        this.regionDir = dimensionDir.resolve("region");
+        Files.createDirectories(regionDir);
+        this.minY = minY;
+        this.maxY = maxY;
+        this.minSection = minY >> 4;
+        this.sectionCount = (maxY - minY) >> 4;
+    }
+
+    @Override public int minBuildHeight() { return minY; }
+    @Override public int maxBuildHeight() { return maxY; }
+    @Override public long written() { return written; }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockState state) {
+        if (y < minY || y >= maxY) return;
+        OfflineChunk c = chunk(x >> 4, z >> 4);
+        write(c, (y >> 4) - minSection, x, y, z, state);
+        if (chunks.size() > MAX_CHUNKS_IN_MEMORY) flush();
+    }
+
+    private void write(OfflineChunk c, int si, int x, int y, int z, BlockState state) {
+        BlockState old = c.section(si).getAndSetUnchecked(x & 15, y & 15, z & 15, state);
+        if (old == state) return;
+        written++;
+        c.dirty = true;
+        long pos = BlockPos.asLong(x, y, z);
+        if (old.hasBlockEntity() && old.getBlock() != state.getBlock()) c.blockEntities.remove(pos);
+        if (old.getBlock() != state.getBlock()) c.payloads.remove(pos);
+        if (state.hasBlockEntity()) c.newBlockEntities.add(pos);
+    }
+
+    @Override
+    public void setBlockEntity(int x, int y, int z, CompoundTag data) {
+        if (y < minY || y >= maxY) return;
+        OfflineChunk c = chunk(x >> 4, z >> 4);
+        c.payloads.put(BlockPos.asLong(x, y, z), data);
+        c.dirty = true;
+    }
+
+    @Override
+    public BlockState getBlockState(int x, int y, int z) {
+        if (y < minY || y >= maxY) return Blocks.AIR.defaultBlockState();
+        PalettedContainer<BlockState> s = chunk(x >> 4, z >> 4).sections[(y >> 4) - minSection];
+        return s == null ? Blocks.AIR.defaultBlockState() : s.get(x & 15, y & 15, z & 15);
+    }
+
+    /** Как у LevelBlockWriter: целиком очищаемая секция просто выбрасывается. */
+    @Override
+    public void clearColumns(int chunkX, int chunkZ, int[] keepMin, int[] keepMax) {
+        OfflineChunk c = chunk(chunkX, chunkZ);
+        BlockState air = Blocks.AIR.defaultBlockState();
+        for (int si = 0; si < sectionCount; si++) {
+            PalettedContainer<BlockState> sec = c.sections[si];
+            if (sec == null || !sec.maybeHas(s -> !s.isAir())) continue;
+            int y0 = (si + minSection) << 4;
+            int y1 = y0 + 15;
+
+            boolean whole = true;
+            for (int i = 0; i < 256 && whole; i++) {
+                if (keepMin[i] <= y1 && keepMax[i] >= y0) whole = false;
+            }
+            if (whole && !sec.maybeHas(BlockState::hasBlockEntity)) {
+                c.sections[si] = emptySection();
+                c.dirty = true;
+                written += 4096;
+                continue;
+            }
+
+            for (int i = 0; i < 256; i++) {
+                int from = Math.max(y0, keepMin[i] <= keepMax[i] ? keepMin[i] : Integer.MAX_VALUE);
+                int to = Math.min(y1, keepMin[i] <= keepMax[i] ? keepMax[i] : Integer.MIN_VALUE);
+                if (from <= y0 && to >= y1) continue;
+                int x = (chunkX << 4) + (i & 15), z = (chunkZ << 4) + (i >> 4);
+                for (int y = y0; y <= y1; y++) {
+                    if (y >= from && y <= to) continue;
+                    if (!sec.get(x & 15, y & 15, z & 15).isAir()) write(c, si, x, y, z, air);
+                }
+            }
+        }
+    }
+
+    /** Пишет все изменённые чанки на диск (параллельно по регионам) и освобождает память. */
+    @Override
+    public void flush() {
+        if (chunks.isEmpty()) return;
+
+        Map<Long, List<OfflineChunk>> byRegion = new HashMap<>();
+        for (OfflineChunk c : chunks.values()) {
+            if (!c.dirty) continue;
+            long rk = ChunkPos.asLong(c.pos.getRegionX(), c.pos.getRegionZ());
+            byRegion.computeIfAbsent(rk, k -> new ArrayList<>()).add(c);
+        }
+        // region-файлы открываем здесь, в одном потоке; дальше каждый трогает только свой
+        Map<RegionFile, List<OfflineChunk>> jobs = new HashMap<>();
+        for (Map.Entry<Long, List<OfflineChunk>> e : byRegion.entrySet()) {
+            ChunkPos any = e.getValue().get(0).pos;
+            jobs.put(region(any), e.getValue());
+        }
+
+        int dataVersion = SharedConstants.getCurrentVersion().getDataVersion().getVersion();
+        jobs.entrySet().parallelStream().forEach(job -> {
+            for (OfflineChunk c : job.getValue()) {
+                try (DataOutputStream out = job.getKey().getChunkDataOutputStream(c.pos)) {
+                    NbtIo.write(serialize(c, dataVersion), out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to write chunk " + c.pos, e);
+                }
+            }
+        });
+
+        chunks.clear();
+        last = null;
+        lastKey = Long.MIN_VALUE;
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            for (RegionFile r : regions.values()) {
+                try { r.close(); } catch (IOException e) {
+                    System.out.println("[Cartopia] Failed to close region file: " + e.getMessage());
+                }
+            }
+            regions.clear();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+
+    private OfflineChunk chunk(int cx, int cz) {
+        long k = ChunkPos.asLong(cx, cz);
+        if (k == lastKey && last != null) return last;
+        OfflineChunk c = chunks.get(k);
+        if (c == null) {
+            c = load(new ChunkPos(cx, cz));
+            chunks.put(k, c);
+        }
+        last = c;
+        lastKey = k;
+        return c;
+    }
+
+    private RegionFile region(ChunkPos pos) {
+        long rk = ChunkPos.asLong(pos.getRegionX(), pos.getRegionZ());
+        RegionFile r = regions.get(rk);
+        if (r == null) {
+            Path file = regionDir.resolve("r." + pos.getRegionX() + "." + pos.getRegionZ() + ".mca");
+            try {
+                r = new RegionFile(file, regionDir, false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open region " + file, e);
+            }
+            regions.put(rk, r);
+        }
+        return r;
+    }
+
+    /** Существующий чанк из региона (или новый пустой). */
+    private OfflineChunk load(ChunkPos pos) {
+        OfflineChunk c = new OfflineChunk(pos, sectionCount);
+        CompoundTag root = null;
+        try (DataInputStream in = region(pos).getChunkDataInputStream(pos)) {
+            if (in != null) root = NbtIo.read(in);
+        } catch (IOException e) {
+            System.out.println("[Cartopia] Unreadable chunk " + pos + ", rewriting: " + e.getMessage());
+        }
+        if (root == null) return c;
+
+        c.root = root;
+        ListTag sections = root.getList("sections", Tag.TAG_COMPOUND);
+        for (int i = 0; i < sections.size(); i++) {
+            CompoundTag st = sections.getCompound(i);
+            int si = st.getByte("Y") - minSection;
+            if (si < 0 || si >= sectionCount) continue;
+            if (st.contains("biomes", Tag.TAG_COMPOUND)) c.biomes[si] = st.getCompound("biomes");
+            if (st.contains("block_states", Tag.TAG_COMPOUND)) {
+                c.sections[si] = BLOCK_STATE_CODEC
+                        .parse(NbtOps.INSTANCE, st.getCompound("block_states"))
+                        .promotePartial(err -> System.out.println("[Cartopia] Chunk " + pos + " section " + si + ": " + err))
+                        .getOrThrow(false, err -> {});
+            }
+        }
+        ListTag bes = root.getList("block_entities", Tag.TAG_COMPOUND);
+        for (int i = 0; i < bes.size(); i++) {
+            CompoundTag be = bes.getCompound(i);
+            c.blockEntities.put(BlockPos.asLong(be.getInt("x"), be.getInt("y"), be.getInt("z")), be);
+        }
+        return c;
+    }
+
+    private CompoundTag serialize(OfflineChunk c, int dataVersion) {
+        CompoundTag root = (c.root != null) ? c.root : new CompoundTag();
+        root.putInt("DataVersion", dataVersion);
+        root.putInt("xPos", c.pos.x);
+        root.putInt("yPos", minSection);
+        root.putInt("zPos", c.pos.z);
+        ChunkStatus status = ChunkStatus.byName(root.getString("Status"));
+        if (!status.isOrAfter(MIN_STATUS)) status = MIN_STATUS;
+        root.putString("Status", BuiltInRegistries.CHUNK_STATUS.getKey(status).toString());
+        if (!root.contains("LastUpdate")) root.putLong("LastUpdate", 0L);
+        if (!root.contains("InhabitedTime")) root.putLong("InhabitedTime", 0L);
+        // свет досчитает сервер при загрузке
+        root.putBoolean("isLightOn", false);
+
+        ListTag sections = new ListTag();
+        for (int si = 0; si < sectionCount; si++) {
+            PalettedContainer<BlockState> sec = c.sections[si];
+            CompoundTag st = new CompoundTag();
+            st.putByte("Y", (byte) (si + minSection));
+            if (sec != null) {
+                st.put("block_states", BLOCK_STATE_CODEC
+                        .encodeStart(NbtOps.INSTANCE, sec).getOrThrow(false, err -> {}));
+            }
+            st.put("biomes", c.biomes[si] != null ? c.biomes[si] : defaultBiomes());
+            sections.add(st);
+        }
+        root.put("sections", sections);
+
+        // блок-сущности: старые, что остались, + новые для только что поставленных блоков
+        for (int i = 0; i < c.newBlockEntities.size(); i++) {
+            long p = c.newBlockEntities.getLong(i);
+            if (c.blockEntities.containsKey(p)) continue;
+            BlockPos pos = BlockPos.of(p);
+            BlockState st = stateAt(c, pos.getX(), pos.getY(), pos.getZ());
+            if (!(st.getBlock() instanceof EntityBlock eb)) continue;
+            BlockEntity be = eb.newBlockEntity(pos, st);
+            if (be != null) c.blockEntities.put(p, be.saveWithFullMetadata());
+        }
+        // данные из планирования поверх сохранённых (id/x/y/z остаются свои)
+        for (Long2ObjectMap.Entry<CompoundTag> e : c.payloads.long2ObjectEntrySet()) {
+            CompoundTag base = c.blockEntities.get(e.getLongKey());
+            if (base != null) base.merge(e.getValue().copy());
+        }
+        ListTag bes = new ListTag();
+        for (Long2ObjectMap.Entry<CompoundTag> e : c.blockEntities.long2ObjectEntrySet()) {
+            BlockPos pos = BlockPos.of(e.getLongKey());
+            if (stateAt(c, pos.getX(), pos.getY(), pos.getZ()).hasBlockEntity()) bes.add(e.getValue());
+        }
+        root.put("block_entities", bes);
+
+        root.put("Heightmaps", heightmaps(c, status));
+        return root;
+    }
+
+    /** Палитра из одного биома — как у PalettedContainer с единственным значением. */
+    private static CompoundTag defaultBiomes() {
+        ListTag palette = new ListTag();
+        palette.add(StringTag.valueOf(DEFAULT_BIOME));
+        CompoundTag t = new CompoundTag();
+        t.put("palette", palette);
+        return t;
+    }
+
+    /** Карты высот статуса чанка — тот же формат, что Heightmap#getRawData. */
+    private CompoundTag heightmaps(OfflineChunk c, ChunkStatus status) {
+        CompoundTag out = new CompoundTag();
+        int bits = Mth.ceillog2(maxY - minY + 1);
+        for (Heightmap.Types type : status.heightmapsAfter()) {
+            SimpleBitStorage storage = new SimpleBitStorage(bits, 256);
+            for (int lz = 0; lz < 16; lz++) {
+                for (int lx = 0; lx < 16; lx++) {
+                    int h = 0;
+                    outer:
+                    for (int si = sectionCount - 1; si >= 0; si--) {
+                        PalettedContainer<BlockState> sec = c.sections[si];
+                        if (sec == null) continue;
+                        for (int ly = 15; ly >= 0; ly--) {
+                            if (type.isOpaque().test(sec.get(lx, ly, lz))) {
+                                h = (si << 4) + ly + 1; // y + 1 - minY
+                                break outer;
+                            }
+                        }
+                    }
+                    storage.set(lx + lz * 16, h);
+                }
+            }
+            out.put(type.getSerializationKey(), new LongArrayTag(storage.getRaw()));
+        }
+        return out;
+    }
+
+    private BlockState stateAt(OfflineChunk c, int x, int y, int z) {
+        if (y < minY || y >= maxY) return Blocks.AIR.defaultBlockState();
+        PalettedContainer<BlockState> s = c.sections[(y >> 4) - minSection];
+        return s == null ? Blocks.AIR.defaultBlockState() : s.get(x & 15, y & 15, z & 15);
+    }
+
+    private static PalettedContainer<BlockState> emptySection() {
+        return new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, Blocks.AIR.defaultBlockState(),
+                PalettedContainer.Strategy.SECTION_STATES);
+    }
+
+    /** Чанк в памяти: палитры секций + исходный NBT для всего, что мы не трогаем. */
+    private static final class OfflineChunk {
+        final ChunkPos pos;
+        final PalettedContainer<BlockState>[] sections;
+        final CompoundTag[] biomes;
+        final Long2ObjectOpenHashMap<CompoundTag> blockEntities = new Long2ObjectOpenHashMap<>();
+        final LongArrayList newBlockEntities = new LongArrayList();
+        final Long2ObjectOpenHashMap<CompoundTag> payloads = new Long2ObjectOpenHashMap<>();
+        CompoundTag root = null;
+        boolean dirty = false;
+
+        @SuppressWarnings("unchecked")
+        OfflineChunk(ChunkPos pos, int sectionCount) {
+            this.pos = pos;
+            this.sections = (PalettedContainer<BlockState>[]) new PalettedContainer[sectionCount];
+            this.biomes = new CompoundTag[sectionCount];
+        }
+
+        PalettedContainer<BlockState> section(int si) {
+            PalettedContainer<BlockState> s = sections[si];
+            if (s == null) sections[si] = s = emptySection();
+            return s;
+        }
+    }
+}
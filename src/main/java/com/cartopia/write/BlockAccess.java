@@ -0,0 +1,90 @@
+package com.cartopia.write;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+/**
+ * То, чем генераторы читают и пишут блоки вместо прямых level.setBlock/getBlockState/getHeight.
+ *
+ * Во время пайплайна это {@link VoxelOverlay}, привязанный к миру: записи копятся в памяти,
+ * чтения видят их сразу. Вне пайплайна (одиночный запуск генератора) — прямой доступ к миру.
+ */
+public interface BlockAccess {
+
+    /**
+     * flags — как у Level#setBlock; оверлей их игнорирует (всё применяется на flush),
+     * прямой доступ снимает UPDATE_NEIGHBORS и ставит UPDATE_KNOWN_SHAPE.
+     */
+    boolean setBlock(BlockPos pos, BlockState state, int flags);
+
+    /** Данные блок-сущности (см. {@link BlockWriter#setBlockEntity}); блок в pos ставится раньше. */
+    void setBlockEntity(BlockPos pos, CompoundTag data);
+
+    BlockState getBlockState(BlockPos pos);
+
+    int getHeight(Heightmap.Types type, int x, int z);
+
+    default boolean isEmptyBlock(BlockPos pos) {
+        return getBlockState(pos).isAir();
+    }
+
+    /**
+     * Оверлей, привязанный к миру, или прямой доступ, если пайплайн сейчас не идёт либо этап direct.
+     * Прямой доступ во время генерации снимает секцию в журнал отката до записи.
+     */
+    static BlockAccess of(ServerLevel level) {
+        VoxelOverlay overlay = VoxelOverlay.boundTo(level);
+        if (overlay != null) return overlay;
+        SectionJournal journal = SectionJournal.boundTo(level);
+        return new BlockAccess() {
+            @Override public boolean setBlock(BlockPos pos, BlockState state, int flags) {
+                if (journal != null && !level.isOutsideBuildHeight(pos)) {
+                    journal.save(level.getChunkAt(pos), level.getSectionIndex(pos.getY()));
+                }
+                // без обновлений соседей и их форм — ничего не отваливается и не падает предметами
+                return level.setBlock(pos, state, (flags & ~Block.UPDATE_NEIGHBORS) | Block.UPDATE_KNOWN_SHAPE);
+            }
+            @Override public void setBlockEntity(BlockPos pos, CompoundTag data) {
+                BlockEntity be = level.getBlockEntity(pos);
+                if (be == null) return;
+                be.load(data);
+                be.setChanged();
+                BlockState st = level.getBlockState(pos);
+                level.sendBlockUpdated(pos, st, st, 3);
+            }
+            @Override public BlockState getBlockState(BlockPos pos) { return level.getBlockState(pos); }
+            @Override public int getHeight(Heightmap.Types type, int x, int z) { return level.getHeight(type, x, z); }
+            @Override public boolean isEmptyBlock(BlockPos pos) { return level.isEmptyBlock(pos); }
+        };
+    }
+
+    /**
+     * Доступ через BlockWriter без мира (offline, AnvilRegionWriter). Карт высот у писателя нет —
+     * getHeight сканирует колонку сверху, как Heightmap (первый блок, подходящий под тип, + 1).
+     */
+    static BlockAccess of(BlockWriter writer) {
+        return new BlockAccess() {
+            @Override public boolean setBlock(BlockPos pos, BlockState state, int flags) {
+                writer.setBlock(pos, state);
+                return true;
+            }
+            @Override public void setBlockEntity(BlockPos pos, CompoundTag data) {
+                writer.setBlockEntity(pos.getX(), pos.getY(), pos.getZ(), data);
+            }
+            @Override public BlockState getBlockState(BlockPos pos) {
+                return writer.getBlockState(pos.getX(), pos.getY(), pos.getZ());
+            }
+            @Override public int getHeight(Heightmap.Types type, int x, int z) {
+                for (int y = writer.maxBuildHeight() - 1; y >= writer.minBuildHeight(); y--) {
+                    if (type.isOpaque().test(writer.getBlockState(x, y, z))) return y + 1;
+                }
+                return writer.minBuildHeight();
+            }
+        };
+    }
+}
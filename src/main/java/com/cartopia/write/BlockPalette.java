@@ -0,0 +1,113 @@
+package com.cartopia.write;
+
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Общая палитра материалов: id блока -> маленький int-код -> Block/BlockState.
+ *
+ * Таблицы генераторов (ZONE_MATERIALS, ROAD_MATERIALS, FACADE_MATERIAL, …) компилируются сюда
+ * при загрузке классов, так что в горячих циклах — только int или BlockState,
+ * без склейки "minecraft:" + name и без разбора ResourceLocation на каждый блок.
+ *
+ * id без неймспейса считаются ванильными ("stone" == "minecraft:stone").
+ * Неизвестный id тоже получает код, но без состояния — вызывающий сам решает, чем заменить.
+ */
+public final class BlockPalette {
+
+    private BlockPalette() {}
+
+    private static final Map<String, Integer> CODES = new ConcurrentHashMap<>();
+    // читаются без блокировки; при росте подменяются целиком
+    private static volatile String[] ids = new String[64];
+    private static volatile Block[] blocks = new Block[64];
+    private static volatile BlockState[] states = new BlockState[64];
+    private static int size = 0;
+
+    /** Код материала; при первом обращении — поиск в реестре. */
+    public static int code(String id) {
+        String norm = normalize(id);
+        Integer c = CODES.get(norm);
+        if (c != null) return c;
+        return intern(norm);
+    }
+
+    /** Прогреваем таблицу материалов целиком (один раз на класс генератора). */
+    public static void compile(Collection<String> ids) {
+        for (String id : ids) if (id != null) code(id);
+    }
+
+    public static void compile(String... ids) {
+        compile(Arrays.asList(ids));
+    }
+
+    /** null, если такого блока нет в реестре. */
+    public static BlockState state(int code) {
+        BlockState[] s = states;
+        return (code >= 0 && code < s.length) ? s[code] : null;
+    }
+
+    public static BlockState state(int code, BlockState fallback) {
+        BlockState s = state(code);
+        return s != null ? s : fallback;
+    }
+
+    public static Block block(int code, Block fallback) {
+        Block[] b = blocks;
+        Block r = (code >= 0 && code < b.length) ? b[code] : null;
+        return r != null ? r : fallback;
+    }
+
+    public static Block block(String id, Block fallback) {
+        return block(code(id), fallback);
+    }
+
+    public static BlockState state(String id, BlockState fallback) {
+        return state(code(id), fallback);
+    }
+
+    /** Полный id по коду ("minecraft:stone"). */
+    public static String id(int code) {
+        String[] i = ids;
+        return (code >= 0 && code < i.length) ? i[code] : null;
+    }
+
+    public static synchronized int size() { return size; }
+
+    private static synchronized int intern(String norm) {
+        Integer c = CODES.get(norm);
+        if (c != null) return c;
+
+        Block b = null;
+        ResourceLocation rl = ResourceLocation.tryParse(norm);
+        if (rl != null && ForgeRegistries.BLOCKS.containsKey(rl)) b = ForgeRegistries.BLOCKS.getValue(rl);
+        if (b == null) System.out.println("[Cartopia] Unknown block id in palette: " + norm);
+
+        int code = size;
+        if (code >= states.length) {
+            int cap = states.length * 2;
+            ids = Arrays.copyOf(ids, cap);
+            blocks = Arrays.copyOf(blocks, cap);
+            states = Arrays.copyOf(states, cap);
+        }
+        // сначала массивы, потом код в карту — читатель по коду всегда видит заполненный слот
+        ids[code] = norm;
+        blocks[code] = b;
+        states[code] = (b != null) ? b.defaultBlockState() : null;
+        size = code + 1;
+        CODES.put(norm, code);
+        return code;
+    }
+
+    private static String normalize(String id) {
+        String s = id.trim();
+        return s.indexOf(':') >= 0 ? s : "minecraft:" + s;
+    }
+}
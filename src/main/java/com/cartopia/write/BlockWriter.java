@@ -0,0 +1,65 @@
+package com.cartopia.write;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Запись блоков пачками. В отличие от level.setBlock(..., 3) не шлёт пакет, не пересчитывает
+ * свет и карты высот на каждый блок — всё это делается один раз на секцию/чанк в {@link #flush()}.
+ *
+ * Однопоточный: используется с серверного потока внутри одного этапа генерации.
+ */
+public interface BlockWriter extends AutoCloseable {
+
+    /** Ставит блок. Вне высоты мира — молча игнорируется. */
+    void setBlock(int x, int y, int z, BlockState state);
+
+    default void setBlock(BlockPos pos, BlockState state) {
+        setBlock(pos.getX(), pos.getY(), pos.getZ(), state);
+    }
+
+    /**
+     * Всё, что вне [keepMin[i], keepMax[i]], становится воздухом (i = lz*16 + lx, колонки одного чанка).
+     * keepMin > keepMax — очистить колонку целиком; Integer.MIN_VALUE..MAX_VALUE — не трогать.
+     * Реализация по умолчанию — поблочно; LevelBlockWriter работает секциями.
+     */
+    default void clearColumns(int chunkX, int chunkZ, int[] keepMin, int[] keepMax) {
+        BlockState air = Blocks.AIR.defaultBlockState();
+        for (int i = 0; i < 256; i++) {
+            int x = (chunkX << 4) + (i & 15), z = (chunkZ << 4) + (i >> 4);
+            for (int y = minBuildHeight(); y < maxBuildHeight(); y++) {
+                if (y >= keepMin[i] && y <= keepMax[i]) continue;
+                if (!getBlockState(x, y, z).isAir()) setBlock(x, y, z, air);
+            }
+        }
+    }
+
+    /**
+     * NBT блок-сущности (без id/x/y/z) для блока, уже поставленного в (x, y, z).
+     * Сама сущность создаётся и получает данные на flush, вместе со всеми сущностями чанка.
+     * Новая запись блока в ту же позицию данные сбрасывает.
+     */
+    void setBlockEntity(int x, int y, int z, CompoundTag data);
+
+    /** Текущее состояние с учётом ещё не сброшенных записей. */
+    BlockState getBlockState(int x, int y, int z);
+
+    int minBuildHeight();
+
+    /** Исключительно (как Level#getMaxBuildHeight). */
+    int maxBuildHeight();
+
+    /** Сколько блоков реально изменилось (без записей того же состояния). */
+    long written();
+
+    /** Карты высот, свет, блок-сущности и пакеты игрокам — по всем затронутым чанкам. */
+    void flush();
+
+    /** Конец тайла генератора. По умолчанию — flush; буферизующий оверлей копит дальше. */
+    default void endTile() { flush(); }
+
+    @Override
+    default void close() { flush(); }
+}
@@ -0,0 +1,105 @@
+package com.cartopia.write;
+
+import com.cartopia.CartopiaMod;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.minecraft.network.protocol.game.ClientboundLevelChunkWithLightPacket;
+import net.minecraft.network.protocol.game.ClientboundLightUpdatePacketData;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.DataLayer;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Изменённые генерацией чанки -> игрокам, которые их видят: один полный пакет чанка на чанк,
+ * не чаще, чем позволяет бюджет трафика игрока (токен-бакет, BYTES_PER_SECOND с запасом BURST).
+ *
+ * Очередь на игрока без повторов: чанк, изменённый дважды до отправки, уходит один раз —
+ * и в том виде, в каком он есть на момент отправки. Разбирается в конце каждого тика сервера
+ * и в конце каждого flush писателя (пока идёт генерация, тиков нет).
+ *
+ * Только серверный поток.
+ */
+@Mod.EventBusSubscriber(modid = CartopiaMod.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class ChunkPacketQueue {
+
+    private ChunkPacketQueue() {}
+
+    private static final double BYTES_PER_SECOND = 1 << 20; // ~1 МиБ/с на игрока
+    private static final double BURST = 256 << 10;
+    private static final int PACKET_OVERHEAD = 1 << 10; // карты высот, маски света, заголовок
+
+    private static final Map<UUID, PlayerQueue> QUEUES = new ConcurrentHashMap<>();
+
+    private static final class PlayerQueue {
+        ServerLevel level;
+        final LongLinkedOpenHashSet chunks = new LongLinkedOpenHashSet();
+        double budget = BURST;
+        long lastNanos = System.nanoTime();
+    }
+
+    /** Чанк изменился — поставить в очередь всем, кто его сейчас видит. */
+    public static void enqueue(ServerLevel level, ChunkPos pos, List<ServerPlayer> players) {
+        for (ServerPlayer p : players) {
+            PlayerQueue q = QUEUES.computeIfAbsent(p.getUUID(), k -> new PlayerQueue());
+            if (q.level != level) { q.chunks.clear(); q.level = level; } // сменил измерение
+            q.chunks.add(pos.toLong());
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent e) {
+        if (e.phase != TickEvent.Phase.END) return;
+        drain(e.getServer());
+    }
+
+    /** Отправить то, на что хватает бюджета. */
+    public static void drain(MinecraftServer server) {
+        if (server == null || QUEUES.isEmpty()) return;
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<UUID, PlayerQueue>> it = QUEUES.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<UUID, PlayerQueue> e = it.next();
+            PlayerQueue q = e.getValue();
+            ServerPlayer player = server.getPlayerList().getPlayer(e.getKey());
+            if (player == null || q.chunks.isEmpty()) { it.remove(); continue; }
+
+            q.budget = Math.min(BURST, q.budget + (now - q.lastNanos) * 1e-9 * BYTES_PER_SECOND);
+            q.lastNanos = now;
+
+            while (q.budget > 0 && !q.chunks.isEmpty()) {
+                long key = q.chunks.removeFirstLong();
+                ChunkPos pos = new ChunkPos(key);
+                LevelChunk chunk = q.level.getChunkSource().getChunkNow(pos.x, pos.z);
+                if (chunk == null) continue; // выгружен — клиент получит его заново при загрузке
+                if (!q.level.getChunkSource().chunkMap.getPlayers(pos, false).contains(player)) continue;
+
+                ClientboundLevelChunkWithLightPacket pkt =
+                        new ClientboundLevelChunkWithLightPacket(chunk, q.level.getLightEngine(), null, null);
+                q.budget -= sizeOf(pkt);
+                player.connection.send(pkt);
+            }
+            if (q.chunks.isEmpty()) it.remove();
+        }
+    }
+
+    /**
+     * Оценка без повторной сериализации: секции пакет уже держит готовым буфером, свет — массивами
+     * по 2048 байт; карты высот, маски и заголовок — фиксированной добавкой.
+     */
+    private static int sizeOf(ClientboundLevelChunkWithLightPacket pkt) {
+        ClientboundLightUpdatePacketData light = pkt.getLightData();
+        return PACKET_OVERHEAD
+                + pkt.getChunkData().getReadBuffer().readableBytes()
+                + DataLayer.SIZE * (light.getSkyUpdates().size() + light.getBlockUpdates().size());
+    }
+}
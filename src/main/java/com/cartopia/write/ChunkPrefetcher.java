@@ -0,0 +1,96 @@
+package com.cartopia.write;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.ChunkStatus;
+
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Подгрузка чанков впереди писателя: пока серверный поток пишет чанк i, чанки i+1..i+ahead
+ * уже читаются с диска / генерируются на рабочих потоках сервера.
+ *
+ * Порядок обхода задаётся заранее ({@link #plan}), писатель сообщает, где он ({@link #advance}).
+ * На каждый запрошенный чанк — наш тикет (держит чанк загруженным до записи) и
+ * getChunkFuture(FULL); одновременно в полёте не больше maxInFlight. Пройденные чанки
+ * отпускаются: тикет снимается, выгрузит их сервер сам, когда дойдёт до тика.
+ *
+ * Только серверный поток.
+ */
+public final class ChunkPrefetcher implements AutoCloseable {
+
+    public static final TicketType<ChunkPos> TICKET =
+            TicketType.create("cartopia_prefetch", Comparator.comparingLong(ChunkPos::toLong));
+
+    // сколько задач главного потока (досборка чанков до FULL) прокачиваем за шаг
+    private static final int POLL_PER_STEP = 8;
+
+    private final ServerLevel level;
+    private final int ahead, maxInFlight;
+    private final Long2ObjectOpenHashMap<CompletableFuture<?>> inFlight = new Long2ObjectOpenHashMap<>();
+    private final LongOpenHashSet ticketed = new LongOpenHashSet();
+
+    private long[] order = new long[0];
+    private int next = 0;      // следующий индекс к запросу
+    private int passed = 0;    // всё до него уже отпущено
+    private long stalls = 0;   // писатель пришёл к чанку раньше, чем он загрузился
+
+    public ChunkPrefetcher(ServerLevel level, int ahead, int maxInFlight) {
+        this.level = level;
+        this.ahead = ahead;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /** Новый порядок обхода (ChunkPos.asLong); тикеты прошлого плана снимаются. */
+    public void plan(long[] chunkKeys) {
+        close();
+        this.order = chunkKeys;
+        this.next = 0;
+        this.passed = 0;
+    }
+
+    /** Писатель переходит к order[i]. */
+    public void advance(int i) {
+        ServerChunkCache cs = level.getChunkSource();
+        while (passed < i) release(cs, order[passed++]);
+
+        if (i < order.length) {
+            CompletableFuture<?> f = inFlight.get(order[i]);
+            if (f != null && !f.isDone()) stalls++;
+        }
+        inFlight.values().removeIf(CompletableFuture::isDone);
+
+        if (next < i) next = i; // обогнали — догонять уже нечего
+        while (next < order.length && next <= i + ahead && inFlight.size() < maxInFlight) {
+            request(cs, order[next++]);
+        }
+        for (int k = 0; k < POLL_PER_STEP && cs.pollTask(); k++) { /* досборка готовых чанков */ }
+    }
+
+    public long stalls() { return stalls; }
+
+    @Override
+    public void close() {
+        ServerChunkCache cs = level.getChunkSource();
+        for (long k : ticketed.toLongArray()) release(cs, k);
+        inFlight.clear();
+    }
+
+    private void request(ServerChunkCache cs, long key) {
+        ChunkPos pos = new ChunkPos(key);
+        if (ticketed.add(key)) cs.addRegionTicket(TICKET, pos, 0, pos);
+        inFlight.put(key, cs.getChunkFuture(pos.x, pos.z, ChunkStatus.FULL, true));
+    }
+
+    private void release(ServerChunkCache cs, long key) {
+        inFlight.remove(key);
+        if (!ticketed.remove(key)) return;
+        ChunkPos pos = new ChunkPos(key);
+        cs.removeRegionTicket(TICKET, pos, 0, pos);
+    }
+}
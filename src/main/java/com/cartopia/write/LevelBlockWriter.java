@@ -0,0 +1,366 @@
+package com.cartopia.write;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.level.ThreadedLevelLightEngine;
+import net.minecraft.world.entity.ai.village.poi.PoiTypes;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.EntityBlock;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.lighting.LightEngine;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link BlockWriter} поверх живого мира: пишет прямо в палитры LevelChunkSection.
+ *
+ * На каждый блок — только запись в палитру и пометка в битовой маске секции.
+ * На flush, по каждому чанку: карты высот и источники неба — один раз, статус секций
+ * для движка света — один раз на секцию, checkBlock — только там, где поменялись
+ * световые свойства. Клиенты до конца тайла ничего не видят: на flush каждый изменённый чанк
+ * уходит игрокам одним пакетом через {@link ChunkPacketQueue}.
+ *
+ * Режим deferLight: поблочный свет не трогаем вообще — каждый flush (конец тайла) делает
+ * для каждого затронутого чанка один полный пересвет, как при загрузке с диска:
+ * сброс данных света -> initializeLight -> lightChunk. Свет стоит O(чанков), а не O(изменений).
+ * Соседние чанки вне тайла не пересвечиваются: на их границе возможен «лишний» свет
+ * там, где мы что-то застроили у самого края.
+ */
+public final class LevelBlockWriter implements BlockWriter {
+
+    // Сколько чанков держим до автосброса (память масок + игроки не ждут слишком долго)
+    private static final int AUTO_FLUSH_CHUNKS = 1024;
+
+    private final ServerLevel level;
+    private final boolean deferLight;
+    private final SectionJournal journal; // null — без журнала отката
+    private final int minY, maxY;
+    private final Long2ObjectOpenHashMap<ChunkBatch> batches = new Long2ObjectOpenHashMap<>();
+    private final BlockPos.MutableBlockPos mpos = new BlockPos.MutableBlockPos();
+
+    // последний чанк — почти все записи идут подряд в один и тот же
+    private ChunkBatch last = null;
+    private long lastKey = Long.MIN_VALUE;
+    private long written = 0;
+    // последний только читавшийся чанк (getBlockState батч не заводит)
+    private LevelChunk read = null;
+    private long readKey = Long.MIN_VALUE;
+
+    public LevelBlockWriter(ServerLevel level) {
+        this(level, true);
+    }
+
+    public LevelBlockWriter(ServerLevel level, boolean deferLight) {
+        this(level, deferLight, null);
+    }
+
+    /** journal — исходные секции снимаются туда перед первой записью в них. */
+    public LevelBlockWriter(ServerLevel level, boolean deferLight, SectionJournal journal) {
+        this.level = level;
+        this.deferLight = deferLight;
+        this.journal = journal;
+        this.minY = level.getMinBuildHeight();
+        this.maxY = level.getMaxBuildHeight();
+    }
+
+    public ServerLevel level() { return level; }
+
+    @Override public int minBuildHeight() { return minY; }
+    @Override public int maxBuildHeight() { return maxY; }
+    @Override public long written() { return written; }
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockState state) {
+        if (y < minY || y >= maxY) return;
+        ChunkBatch b = batch(x >> 4, z >> 4);
+        int si = b.chunk.getSectionIndex(y);
+        write(b, si, b.chunk.getSection(si), x, y, z, state);
+        if (batches.size() > AUTO_FLUSH_CHUNKS) flush();
+    }
+
+    private void write(ChunkBatch b, int si, LevelChunkSection sec, int x, int y, int z, BlockState state) {
+        journal(b, si);
+        int lx = x & 15, ly = y & 15, lz = z & 15;
+        BlockState old = sec.setBlockState(lx, ly, lz, state, false);
+        if (old == state) return;
+        written++;
+
+        int local = (ly << 8) | (lz << 4) | lx;
+        b.changed(si).set(local);
+
+        mpos.set(x, y, z);
+        if (old.hasBlockEntity() && old.getBlock() != state.getBlock()) {
+            b.chunk.removeBlockEntity(mpos);
+        }
+        long p = BlockPos.asLong(x, y, z);
+        if (b.payloads != null && old.getBlock() != state.getBlock()) b.payloads.remove(p);
+        if (state.hasBlockEntity()) b.blockEntities.add(p);
+        if (!deferLight && LightEngine.hasDifferentLightProperties(b.chunk, mpos, old, state)) b.light(si).set(local);
+        if (PoiTypes.hasPoi(old) || PoiTypes.hasPoi(state)) {
+            level.onBlockStateChange(mpos.immutable(), old, state);
+        }
+    }
+
+    @Override
+    public void setBlockEntity(int x, int y, int z, CompoundTag data) {
+        if (y < minY || y >= maxY) return;
+        ChunkBatch b = batch(x >> 4, z >> 4);
+        long p = BlockPos.asLong(x, y, z);
+        journal(b, b.chunk.getSectionIndex(y));
+        if (b.payloads == null) b.payloads = new Long2ObjectOpenHashMap<>();
+        b.payloads.put(p, data);
+        b.blockEntities.add(p);
+    }
+
+    /**
+     * Секция целиком вне keep-диапазонов всех 256 колонок — заменяем пустой за одну операцию
+     * (свет такого чанка пересчитывается целиком на flush). Уже пустые секции пропускаем,
+     * поблочно трогаем только граничные секции.
+     */
+    @Override
+    public void clearColumns(int chunkX, int chunkZ, int[] keepMin, int[] keepMax) {
+        ChunkBatch b = batch(chunkX, chunkZ);
+        LevelChunk chunk = b.chunk;
+        LevelChunkSection[] sections = chunk.getSections();
+        BlockState air = Blocks.AIR.defaultBlockState();
+
+        for (int si = 0; si < sections.length; si++) {
+            LevelChunkSection sec = sections[si];
+            if (sec.hasOnlyAir()) continue;
+            int y0 = chunk.getSectionYFromSectionIndex(si) << 4;
+            int y1 = y0 + 15;
+
+            boolean whole = true;
+            for (int i = 0; i < 256 && whole; i++) {
+                if (keepMin[i] <= y1 && keepMax[i] >= y0) whole = false;
+            }
+            // блок-сущности, POI и источники света требуют поблочной обработки
+            if (whole && !sec.maybeHas(LevelBlockWriter::needsPerBlockRemoval)) {
+                journal(b, si);
+                sections[si] = new LevelChunkSection(
+                        new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, air, PalettedContainer.Strategy.SECTION_STATES),
+                        sec.getBiomes());
+                b.changed(si).set(0, 4096);
+                b.resend = true;
+                written += 4096;
+                continue;
+            }
+
+            for (int i = 0; i < 256; i++) {
+                int from = Math.max(y0, keepMin[i] <= keepMax[i] ? keepMin[i] : Integer.MAX_VALUE);
+                int to = Math.min(y1, keepMin[i] <= keepMax[i] ? keepMax[i] : Integer.MIN_VALUE);
+                if (from <= y0 && to >= y1) continue; // колонка в этой секции целиком остаётся
+                int x = (chunkX << 4) + (i & 15), z = (chunkZ << 4) + (i >> 4);
+                for (int y = y0; y <= y1; y++) {
+                    if (y >= from && y <= to) continue;
+                    if (!sec.getBlockState(x & 15, y & 15, z & 15).isAir()) write(b, si, sec, x, y, z, air);
+                }
+            }
+        }
+    }
+
+    private void journal(ChunkBatch b, int si) {
+        if (journal == null || b.journaled[si]) return;
+        journal.save(b.chunk, si);
+        b.journaled[si] = true;
+    }
+
+    /**
+     * Откат: секция целиком заменяется сохранённой (см. {@link SectionJournal}), блок-сущности
+     * секции — сохранёнными. Свет, карты высот и пакеты — как у обычных записей, на flush.
+     */
+    public void restoreSection(int cx, int sectionY, int cz, PalettedContainer<BlockState> states, ListTag blockEntities) {
+        ChunkBatch b = batch(cx, cz);
+        LevelChunk chunk = b.chunk;
+        int si = chunk.getSectionIndexFromSectionY(sectionY);
+        if (si < 0 || si >= chunk.getSectionsCount()) return;
+        journal(b, si);
+
+        for (BlockPos p : new ArrayList<>(chunk.getBlockEntities().keySet())) {
+            if (SectionPos.blockToSectionCoord(p.getY()) == sectionY) chunk.removeBlockEntity(p);
+        }
+        LevelChunkSection[] sections = chunk.getSections();
+        sections[si] = new LevelChunkSection(states, sections[si].getBiomes());
+        level.getPoiManager().checkConsistencyWithBlocks(SectionPos.of(cx, sectionY, cz), sections[si]);
+        b.changed(si).set(0, 4096);
+        b.resend = true;
+
+        for (int i = 0; i < blockEntities.size(); i++) {
+            CompoundTag t = blockEntities.getCompound(i);
+            long p = BlockPos.asLong(t.getInt("x"), t.getInt("y"), t.getInt("z"));
+            if (b.payloads == null) b.payloads = new Long2ObjectOpenHashMap<>();
+            b.payloads.put(p, t);
+            b.blockEntities.add(p);
+        }
+    }
+
+    private static boolean needsPerBlockRemoval(BlockState s) {
+        return s.hasBlockEntity() || s.getLightEmission() > 0 || PoiTypes.hasPoi(s);
+    }
+
+    /** Чтение батч не заводит: чанк, который только читали, на flush не пересвечивается. */
+    @Override
+    public BlockState getBlockState(int x, int y, int z) {
+        if (y < minY || y >= maxY) return Blocks.AIR.defaultBlockState();
+        LevelChunk chunk = readChunk(x >> 4, z >> 4);
+        return chunk.getSection(chunk.getSectionIndex(y)).getBlockState(x & 15, y & 15, z & 15);
+    }
+
+    private LevelChunk readChunk(int cx, int cz) {
+        long k = ChunkPos.asLong(cx, cz);
+        if (k == lastKey && last != null) return last.chunk;
+        if (k == readKey && read != null) return read;
+        ChunkBatch b = batches.get(k);
+        read = b != null ? b.chunk : level.getChunk(cx, cz);
+        readKey = k;
+        return read;
+    }
+
+    @Override
+    public void flush() {
+        if (batches.isEmpty()) return;
+        ThreadedLevelLightEngine light = level.getChunkSource().getLightEngine();
+        for (ChunkBatch b : batches.values()) flushChunk(b, light);
+        if (deferLight) {
+            // конец тайла: один пересвет на чанк, потом будим поток света
+            for (ChunkBatch b : batches.values()) if (b.hasChanges()) relight(b.chunk, light);
+            light.tryScheduleUpdate();
+        }
+        batches.clear();
+        last = null;
+        lastKey = Long.MIN_VALUE;
+        read = null;
+        readKey = Long.MIN_VALUE;
+        ChunkPacketQueue.drain(level.getServer());
+    }
+
+    private ChunkBatch batch(int cx, int cz) {
+        long k = ChunkPos.asLong(cx, cz);
+        if (k == lastKey && last != null) return last;
+        ChunkBatch b = batches.get(k);
+        if (b == null) {
+            b = new ChunkBatch(level.getChunk(cx, cz));
+            batches.put(k, b);
+        }
+        last = b;
+        lastKey = k;
+        return b;
+    }
+
+    private void flushChunk(ChunkBatch b, ThreadedLevelLightEngine light) {
+        boolean blocks = b.hasChanges();
+        if (!blocks && b.blockEntities.isEmpty()) return; // ничего не поменялось — ни света, ни пакета
+        LevelChunk chunk = b.chunk;
+        ChunkPos cp = chunk.getPos();
+
+        // 1) блок-сущности для новых блоков (сундуки, таблички, …) и их данные из планирования
+        for (LongIterator it = b.blockEntities.iterator(); it.hasNext(); ) {
+            long p = it.nextLong();
+            BlockPos pos = BlockPos.of(p);
+            BlockState st = chunk.getBlockState(pos);
+            if (!st.hasBlockEntity() || !(st.getBlock() instanceof EntityBlock eb)) continue;
+            BlockEntity be = chunk.getBlockEntity(pos, LevelChunk.EntityCreationType.CHECK);
+            if (be == null) {
+                be = eb.newBlockEntity(pos, st);
+                if (be == null) continue;
+                chunk.addAndRegisterBlockEntity(be);
+            }
+            CompoundTag data = b.payloads != null ? b.payloads.get(p) : null;
+            if (data != null) be.load(data);
+        }
+
+        // 2) карты высот и источники неба — один раз на чанк, если менялись блоки
+        if (blocks) {
+            EnumSet<Heightmap.Types> types = EnumSet.noneOf(Heightmap.Types.class);
+            for (Map.Entry<Heightmap.Types, Heightmap> e : chunk.getHeightmaps()) types.add(e.getKey());
+            if (!types.isEmpty()) Heightmap.primeHeightmaps(chunk, types);
+            chunk.initializeLightSources();
+        }
+
+        // 3) свет: статус секции один раз, точечные проверки — только где поменялись свойства
+        for (int si = 0; si < b.changed.length; si++) {
+            if (b.changed[si] == null) continue;
+            LevelChunkSection sec = chunk.getSection(si);
+            SectionPos sp = SectionPos.of(cp, chunk.getSectionYFromSectionIndex(si));
+            if (!deferLight) light.updateSectionStatus(sp, sec.hasOnlyAir());
+
+            BitSet lit = b.light[si];
+            if (lit != null) {
+                for (int l = lit.nextSetBit(0); l >= 0; l = lit.nextSetBit(l + 1)) {
+                    light.checkBlock(mpos.set(sp.minBlockX() + (l & 15), sp.minBlockY() + (l >> 8), sp.minBlockZ() + ((l >> 4) & 15)));
+                }
+            }
+        }
+        // заменялись целые секции: свет чанка пересчитываем разом
+        if (b.resend && !deferLight) light.lightChunk(chunk, false);
+
+        // 4) игрокам — ничего поблочно: чанк целиком, в очередь с лимитом по трафику
+        List<ServerPlayer> players = level.getChunkSource().chunkMap.getPlayers(cp, false);
+        if (!players.isEmpty()) ChunkPacketQueue.enqueue(level, cp, players);
+
+        chunk.setUnsaved(true);
+    }
+
+    /**
+     * Полный пересвет чанка той же последовательностью, что выгрузка + загрузка без света:
+     * данные света и статусы секций сбрасываются, затем секции и источники ставятся заново.
+     */
+    private static void relight(LevelChunk chunk, ThreadedLevelLightEngine light) {
+        light.updateChunkStatus(chunk.getPos());
+        light.initializeLight(chunk, false);
+        light.lightChunk(chunk, false);
+    }
+
+    /** Изменения в одном чанке: маски по секциям (индекс ly<<8 | lz<<4 | lx). */
+    private static final class ChunkBatch {
+        final LevelChunk chunk;
+        final BitSet[] changed;
+        final BitSet[] light;
+        final LongLinkedOpenHashSet blockEntities = new LongLinkedOpenHashSet();
+        Long2ObjectOpenHashMap<CompoundTag> payloads; // NBT из setBlockEntity, по первому вызову
+        final boolean[] journaled; // секция уже в журнале отката
+        boolean resend = false; // заменялись целые секции — свет чанка целиком
+
+        ChunkBatch(LevelChunk chunk) {
+            this.chunk = chunk;
+            this.changed = new BitSet[chunk.getSectionsCount()];
+            this.light = new BitSet[chunk.getSectionsCount()];
+            this.journaled = new boolean[chunk.getSectionsCount()];
+        }
+
+        BitSet changed(int si) {
+            BitSet s = changed[si];
+            if (s == null) changed[si] = s = new BitSet(4096);
+            return s;
+        }
+
+        boolean hasChanges() {
+            for (BitSet s : changed) if (s != null) return true;
+            return false;
+        }
+
+        BitSet light(int si) {
+            BitSet s = light[si];
+            if (s == null) light[si] = s = new BitSet(4096);
+            return s;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.cartopia.write;
+
+import com.mojang.serialization.Codec;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Журнал отката: исходные секции чанков, снятые перед первой записью в них.
+ *
+ * Файл (rollback.bin в папке пакета области) — gzip-поток: заголовок (магия + измерение), затем
+ * записи по секции: x, y, z секции, палитра блоков (тот же кодек, что в region-файлах) и
+ * блок-сущности этой секции. Секция пишется один раз за генерацию, сколько бы в неё ни писали.
+ *
+ * {@link #restore} возвращает секции целиком через LevelBlockWriter: чтение последовательное,
+ * объём — по числу тронутых секций, без восстановления мира из бэкапа.
+ * Этапы, пишущие в мир напрямую (direct), попадают сюда через {@link #boundTo}: прямой
+ * {@link BlockAccess} снимает секцию перед записью. Сущности (картины, стойки) журнал не покрывает.
+ */
+public final class SectionJournal implements AutoCloseable {
+
+    public static final String FILE_NAME = "rollback.bin";
+
+    private static final int MAGIC = 0x43524231; // "CRB1"
+    private static final Codec<PalettedContainer<BlockState>> STATES = PalettedContainer.codecRW(
+            Block.BLOCK_STATE_REGISTRY, BlockState.CODEC, PalettedContainer.Strategy.SECTION_STATES,
+            Blocks.AIR.defaultBlockState());
+
+    // Журнал текущей генерации на каждый мир — его видит прямой BlockAccess.of(level)
+    private static final Map<ServerLevel, SectionJournal> BOUND = new ConcurrentHashMap<>();
+
+    public static void bind(ServerLevel level, SectionJournal journal) { BOUND.put(level, journal); }
+
+    public static void unbind(ServerLevel level) { BOUND.remove(level); }
+
+    public static SectionJournal boundTo(ServerLevel level) { return level == null ? null : BOUND.get(level); }
+
+    private final File file;
+    private final DataOutputStream out;
+    private final LongOpenHashSet saved = new LongOpenHashSet();
+    private long sections = 0;
+
+    private SectionJournal(File file, DataOutputStream out) {
+        this.file = file;
+        this.out = out;
+    }
+
+    /** Новый журнал (старый файл перезаписывается — откатывается только последняя генерация). */
+    public static SectionJournal create(File file, ServerLevel level) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file), 1 << 16)));
+        out.writeInt(MAGIC);
+        out.writeUTF(level.dimension().location().toString());
+        return new SectionJournal(file, out);
+    }
+
+    /** Снять секцию si чанка, если её ещё нет в журнале. Вызывать до изменения секции. */
+    public void save(LevelChunk chunk, int si) {
+        int sy = chunk.getSectionYFromSectionIndex(si);
+        long key = SectionPos.asLong(chunk.getPos().x, sy, chunk.getPos().z);
+        if (!saved.add(key)) return;
+
+        CompoundTag t = new CompoundTag();
+        t.putInt("x", chunk.getPos().x);
+        t.putInt("y", sy);
+        t.putInt("z", chunk.getPos().z);
+        t.put("block_states", STATES.encodeStart(NbtOps.INSTANCE, chunk.getSection(si).getStates())
+                .getOrThrow(false, err -> {}));
+        ListTag bes = new ListTag();
+        for (BlockEntity be : chunk.getBlockEntities().values()) {
+            if (SectionPos.blockToSectionCoord(be.getBlockPos().getY()) == sy) bes.add(be.saveWithFullMetadata());
+        }
+        t.put("block_entities", bes);
+        try {
+            out.writeBoolean(true);
+            NbtIo.write(t, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write rollback journal " + file, e);
+        }
+        sections++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.writeBoolean(false);
+        out.close();
+        System.out.println("[Cartopia] Rollback journal: " + sections + " sections -> " + file.getAbsolutePath());
+    }
+
+    /** Вернуть все секции из журнала в то измерение, где он снят. Серверный поток. Возвращает число секций. */
+    public static long restore(MinecraftServer server, File file) throws IOException {
+        long n = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file), 1 << 16)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a rollback journal: " + file);
+            String dim = in.readUTF();
+            ServerLevel level = server.getLevel(ResourceKey.create(Registries.DIMENSION, new ResourceLocation(dim)));
+            if (level == null) throw new IllegalStateException("Rollback journal is for unknown dimension " + dim);
+            LevelBlockWriter writer = new LevelBlockWriter(level, true);
+            try {
+                while (in.readBoolean()) {
+                    CompoundTag t = NbtIo.read(in);
+                    PalettedContainer<BlockState> states = STATES.parse(NbtOps.INSTANCE, t.getCompound("block_states"))
+                            .getOrThrow(false, err -> {});
+                    writer.restoreSection(t.getInt("x"), t.getInt("y"), t.getInt("z"), states,
+                            t.getList("block_entities", Tag.TAG_COMPOUND));
+                    n++;
+                }
+            } catch (EOFException truncated) {
+                // генерация упала до close() — возвращаем всё, что успело записаться
+                System.out.println("[Cartopia] Rollback journal is truncated, restoring " + n + " sections");
+            }
+            writer.flush();
+        }
+        return n;
+    }
+}
@@ -0,0 +1,366 @@
+package com.cartopia.write;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ByteOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Разреженный оверлей поверх мира: все этапы пайплайна пишут сюда, а не в мир.
+ *
+ * Чанк -> секции 16³ в PalettedContainer (палитра, как у самих чанков) + маска записанных позиций.
+ * Повторная запись той же позиции просто перетирает значение (последний писатель выигрывает),
+ * поэтому дорога поверх поверхности, а бордюр поверх дороги доходят до мира одним блоком.
+ * Чтения видят оверлей сразу; незаписанное читается из мира (через target).
+ *
+ * clearColumns не трогает мир, а запоминается на колонку (диапазоны пересекаются) и применяется
+ * на flush перед записями. flush идёт по чанкам в порядке тайлов (cz, потом cx), затем
+ * один проход по формам: заборы, панели, стены и т.п. соединяются с соседями через
+ * Block.updateFromNeighbourShapes — то, что раньше делали флаги 3 при каждой записи.
+ * Обновлений соседей нет вовсе: навесные блоки пишутся после опор и ничего не выпадает предметами.
+ * Чанки на flush подгружаются заранее ({@link ChunkPrefetcher}) — запись не ждёт диска.
+ *
+ * Страховка по памяти: больше MAX_CHUNKS чанков — сбрасываемся досрочно.
+ */
+public final class VoxelOverlay implements BlockWriter, BlockAccess {
+
+    private static final int MAX_CHUNKS = 16384;
+    // подгрузка чанков на flush: сколько чанков вперёд по порядку тайлов и сколько одновременно
+    private static final int PREFETCH_AHEAD = 256;
+    private static final int PREFETCH_IN_FLIGHT = 64;
+    private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+    // Оверлей текущего пайплайна на каждый мир — его отдаёт BlockAccess.of(level)
+    private static final Map<ServerLevel, VoxelOverlay> BOUND = new ConcurrentHashMap<>();
+
+    public static void bind(ServerLevel level, VoxelOverlay overlay) { BOUND.put(level, overlay); }
+
+    public static void unbind(ServerLevel level) { BOUND.remove(level); }
+
+    public static VoxelOverlay boundTo(ServerLevel level) { return level == null ? null : BOUND.get(level); }
+
+    private final ServerLevel level;
+    private final BlockWriter target;
+    private final int minY, maxY, sectionCount;
+    private final Long2ObjectOpenHashMap<OverlayChunk> chunks = new Long2ObjectOpenHashMap<>();
+    private final BlockPos.MutableBlockPos mpos = new BlockPos.MutableBlockPos();
+    private final ChunkPrefetcher prefetch;
+    private final Reference2ByteOpenHashMap<BlockState> supportCache = new Reference2ByteOpenHashMap<>(); // 1 — сам, 2 — навесной
+    private final BlockPos probe;
+
+    private OverlayChunk last = null;
+    private long lastKey = Long.MIN_VALUE;
+    private long written = 0;
+
+    public VoxelOverlay(ServerLevel level, BlockWriter target) {
+        this.level = level;
+        this.target = target;
+        this.minY = target.minBuildHeight();
+        this.maxY = target.maxBuildHeight();
+        this.sectionCount = (maxY - minY + 15) >> 4;
+        this.prefetch = new ChunkPrefetcher(level, PREFETCH_AHEAD, PREFETCH_IN_FLIGHT);
+        this.probe = new BlockPos(0, maxY + 64, 0);
+    }
+
+    @Override public int minBuildHeight() { return minY; }
+    @Override public int maxBuildHeight() { return maxY; }
+
+    /** Уникальные позиции, записанные в оверлей (перезаписи не считаются). */
+    @Override public long written() { return written; }
+
+    // ===== запись =====
+
+    @Override
+    public void setBlock(int x, int y, int z, BlockState state) {
+        if (y < minY || y >= maxY) return;
+        OverlayChunk c = chunk(x >> 4, z >> 4);
+        int si = (y - minY) >> 4;
+        int local = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        c.section(si).set(x & 15, y & 15, z & 15, state);
+        BitSet m = c.mask(si);
+        if (!m.get(local)) { m.set(local); written++; }
+        int i = ((z & 15) << 4) | (x & 15);
+        if (!state.isAir() && y > c.top[i]) c.top[i] = y;
+        if (c.blockEntities != null) c.blockEntities.remove(BlockPos.asLong(x, y, z));
+        if (chunks.size() > MAX_CHUNKS) {
+            System.out.println("[Cartopia] Overlay: " + chunks.size() + " chunks in memory, flushing early");
+            flush();
+        }
+    }
+
+    @Override
+    public boolean setBlock(BlockPos pos, BlockState state, int flags) {
+        setBlock(pos.getX(), pos.getY(), pos.getZ(), state);
+        return true;
+    }
+
+    @Override
+    public void setBlockEntity(int x, int y, int z, CompoundTag data) {
+        if (y < minY || y >= maxY) return;
+        OverlayChunk c = chunk(x >> 4, z >> 4);
+        if (c.blockEntities == null) c.blockEntities = new Long2ObjectOpenHashMap<>();
+        c.blockEntities.put(BlockPos.asLong(x, y, z), data);
+    }
+
+    @Override
+    public void setBlockEntity(BlockPos pos, CompoundTag data) {
+        setBlockEntity(pos.getX(), pos.getY(), pos.getZ(), data);
+    }
+
+    /**
+     * Записи оверлея вне keepMin..keepMax этого вызова выкидываются — записанное после прошлого
+     * clearColumns и попадающее в этот диапазон остаётся. Мир на flush чистится по пересечению всех вызовов.
+     */
+    @Override
+    public void clearColumns(int chunkX, int chunkZ, int[] keepMin, int[] keepMax) {
+        OverlayChunk c = chunk(chunkX, chunkZ);
+        if (c.keepMin == null) {
+            c.keepMin = new int[256];
+            c.keepMax = new int[256];
+            Arrays.fill(c.keepMin, Integer.MIN_VALUE);
+            Arrays.fill(c.keepMax, Integer.MAX_VALUE);
+        }
+        for (int i = 0; i < 256; i++) {
+            c.keepMin[i] = Math.max(c.keepMin[i], keepMin[i]);
+            c.keepMax[i] = Math.min(c.keepMax[i], keepMax[i]);
+            int lo = keepMin[i], hi = keepMax[i];
+            for (int si = 0; si < sectionCount; si++) {
+                BitSet m = c.masks[si];
+                if (m == null) continue;
+                int y0 = minY + (si << 4);
+                for (int ly = 0; ly < 16; ly++) {
+                    int y = y0 + ly;
+                    if (y < lo || y > hi) m.clear((ly << 8) | i);
+                }
+            }
+        }
+        if (c.blockEntities != null) {
+            final int[] kMin = keepMin, kMax = keepMax;
+            c.blockEntities.keySet().removeIf((long p) -> {
+                int y = BlockPos.getY(p), i = ((BlockPos.getZ(p) & 15) << 4) | (BlockPos.getX(p) & 15);
+                return y < kMin[i] || y > kMax[i];
+            });
+        }
+    }
+
+    // ===== чтение =====
+
+    @Override
+    public BlockState getBlockState(int x, int y, int z) {
+        if (y < minY || y >= maxY) return AIR;
+        OverlayChunk c = peek(x >> 4, z >> 4);
+        if (c != null) {
+            int si = (y - minY) >> 4;
+            BitSet m = c.masks[si];
+            if (m != null && m.get(((y & 15) << 8) | ((z & 15) << 4) | (x & 15))) {
+                return c.sections[si].get(x & 15, y & 15, z & 15);
+            }
+            if (c.keepMin != null) {
+                int i = ((z & 15) << 4) | (x & 15);
+                if (y < c.keepMin[i] || y > c.keepMax[i]) return AIR;
+            }
+        }
+        return target.getBlockState(x, y, z);
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * Как Level#getHeight, но по миру с учётом оверлея: спуск от верхней из двух высот.
+     * Колонка очищена выше keepMax — мир выше ничего не даёт, его высоту (и чанк) не трогаем.
+     */
+    @Override
+    public int getHeight(Heightmap.Types type, int x, int z) {
+        OverlayChunk c = peek(x >> 4, z >> 4);
+        if (c == null) return level.getHeight(type, x, z);
+        int i = ((z & 15) << 4) | (x & 15);
+        int from = (c.keepMin != null && c.keepMax[i] < maxY) ? c.keepMax[i] : level.getHeight(type, x, z) - 1;
+        int y = Math.min(maxY - 1, Math.max(from, c.top[i]));
+        for (; y >= minY; y--) {
+            if (type.isOpaque().test(getBlockState(x, y, z))) return y + 1;
+        }
+        return minY;
+    }
+
+    // ===== сброс =====
+
+    /** Тайлы внутри этапа не сбрасываем — всё уходит в мир одним flush в конце. */
+    @Override
+    public void endTile() {}
+
+    @Override
+    public void flush() {
+        if (chunks.isEmpty()) { target.flush(); return; }
+        long stallsBefore = prefetch.stalls();
+        List<OverlayChunk> order = new ArrayList<>(chunks.values());
+        order.sort(Comparator.<OverlayChunk>comparingInt(c -> c.cz).thenComparingInt(c -> c.cx));
+
+        // три прохода по тем же чанкам — один план на все: окно тикетов едет через каждый проход,
+        // пройденные чанки до следующего тика не выгружаются и подхватываются снова
+        int count = order.size();
+        long[] keys = new long[count * 3];
+        for (int n = 0; n < count; n++) {
+            keys[n] = keys[count + n] = keys[2 * count + n] = ChunkPos.asLong(order.get(n).cx, order.get(n).cz);
+        }
+        prefetch.plan(keys);
+
+        // 1) опоры: всё, что стоит само; 2) навесное (факелы, растения, рельсы, ковры, таблички…) —
+        // когда опоры уже на месте, в том числе в соседних чанках
+        long positions = 0;
+        for (int n = 0; n < count; n++) {
+            prefetch.advance(n);
+            OverlayChunk c = order.get(n);
+            if (c.keepMin != null) target.clearColumns(c.cx, c.cz, c.keepMin, c.keepMax);
+            positions += writeChunk(c, false);
+        }
+        for (int n = 0; n < count; n++) {
+            prefetch.advance(count + n);
+            OverlayChunk c = order.get(n);
+            positions += writeChunk(c, true);
+            // сущности чанка — все вместе, после его блоков
+            if (c.blockEntities != null) {
+                for (Long2ObjectMap.Entry<CompoundTag> e : c.blockEntities.long2ObjectEntrySet()) {
+                    long p = e.getLongKey();
+                    target.setBlockEntity(BlockPos.getX(p), BlockPos.getY(p), BlockPos.getZ(p), e.getValue());
+                }
+            }
+        }
+
+        // формы по соседям — когда все блоки уже на месте (в том числе через границы чанков)
+        for (int n = 0; n < count; n++) {
+            prefetch.advance(2 * count + n);
+            OverlayChunk c = order.get(n);
+            for (int si = 0; si < sectionCount; si++) {
+                BitSet m = c.masks[si];
+                if (m == null) continue;
+                PalettedContainer<BlockState> sec = c.sections[si];
+                int y0 = minY + (si << 4);
+                for (int l = m.nextSetBit(0); l >= 0; l = m.nextSetBit(l + 1)) {
+                    BlockState s = sec.get(l & 15, l >> 8, (l >> 4) & 15);
+                    if (s.getValues().isEmpty()) continue;
+                    mpos.set((c.cx << 4) + (l & 15), y0 + (l >> 8), (c.cz << 4) + ((l >> 4) & 15));
+                    BlockState shaped = Block.updateFromNeighbourShapes(s, level, mpos);
+                    // «не выживает» — не наш вопрос здесь: блок не удаляем
+                    if (shaped != s && !shaped.isAir()) target.setBlock(mpos, shaped);
+                }
+            }
+        }
+
+        chunks.clear();
+        last = null;
+        lastKey = Long.MIN_VALUE;
+        target.flush();
+        prefetch.close(); // тикеты держим до конца: пересвет и пакеты в target.flush идут по тем же чанкам
+        System.out.println("[Cartopia] Overlay flushed: " + count + " chunks, " + positions
+                + " positions, waited for " + (prefetch.stalls() - stallsBefore) + " chunk loads");
+    }
+
+    private long writeChunk(OverlayChunk c, boolean attached) {
+        long n = 0;
+        for (int si = 0; si < sectionCount; si++) {
+            BitSet m = c.masks[si];
+            if (m == null) continue;
+            PalettedContainer<BlockState> sec = c.sections[si];
+            int y0 = minY + (si << 4);
+            for (int l = m.nextSetBit(0); l >= 0; l = m.nextSetBit(l + 1)) {
+                BlockState s = sec.get(l & 15, l >> 8, (l >> 4) & 15);
+                if (needsSupport(s) != attached) continue;
+                target.setBlock((c.cx << 4) + (l & 15), y0 + (l >> 8), (c.cz << 4) + ((l >> 4) & 15), s);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Блок держится только за соседей. Считается один раз на состояние: canSurvive над потолком
+     * мира, где вокруг один void_air, — всё, чему нужна опора, там «не выживает».
+     */
+    private boolean needsSupport(BlockState s) {
+        if (s.isAir()) return false;
+        byte v = supportCache.getByte(s);
+        if (v == 0) {
+            boolean need;
+            try {
+                need = !s.canSurvive(level, probe);
+            } catch (Throwable t) {
+                need = true;
+            }
+            v = need ? (byte) 2 : (byte) 1;
+            supportCache.put(s, v);
+        }
+        return v == 2;
+    }
+
+    private OverlayChunk chunk(int cx, int cz) {
+        long k = ChunkPos.asLong(cx, cz);
+        if (k == lastKey && last != null) return last;
+        OverlayChunk c = chunks.get(k);
+        if (c == null) {
+            c = new OverlayChunk(cx, cz, sectionCount, minY);
+            chunks.put(k, c);
+        }
+        last = c;
+        lastKey = k;
+        return c;
+    }
+
+    private OverlayChunk peek(int cx, int cz) {
+        long k = ChunkPos.asLong(cx, cz);
+        if (k == lastKey && last != null) return last;
+        return chunks.get(k);
+    }
+
+    /** Один чанк оверлея: секции создаются по первой записи. */
+    private static final class OverlayChunk {
+        final int cx, cz;
+        final PalettedContainer<BlockState>[] sections;
+        final BitSet[] masks;
+        final int[] top = new int[256]; // верхний непустой записанный y по колонке (lz*16+lx)
+        int[] keepMin, keepMax;         // отложенный clearColumns
+        Long2ObjectOpenHashMap<CompoundTag> blockEntities; // NBT по BlockPos.asLong, по первой записи
+
+        @SuppressWarnings("unchecked")
+        OverlayChunk(int cx, int cz, int sectionCount, int minY) {
+            this.cx = cx;
+            this.cz = cz;
+            this.sections = new PalettedContainer[sectionCount];
+            this.masks = new BitSet[sectionCount];
+            Arrays.fill(top, minY - 1);
+        }
+
+        PalettedContainer<BlockState> section(int si) {
+            PalettedContainer<BlockState> s = sections[si];
+            if (s == null) {
+                sections[si] = s = new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, AIR,
+                        PalettedContainer.Strategy.SECTION_STATES);
+            }
+            return s;
+        }
+
+        BitSet mask(int si) {
+            BitSet m = masks[si];
+            if (m == null) masks[si] = m = new BitSet(4096);
+            return m;
+        }
+    }
+}
@@ -157,7 +157,7 @@ if (themeToggleBtn){
   });
 }
 
-function showGlassDialog({ title = 'Saved!', message = '', okText = 'OK' } = {}){
+function showGlassDialog({ title = 'Saved!', message = '', okText = 'OK', cancelText = null } = {}){
   return new Promise(resolve => {
     // backdrop
     const bg = document.createElement('div');
@@ -187,6 +187,14 @@ function showGlassDialog({ title = 'Saved!', message = '', okText = 'OK' } = {})
     ok.className = 'ui-button ui-button--primary';
     ok.textContent = okText;
 
+    let cancel = null;
+    if (cancelText) {
+      cancel = document.createElement('button');
+      cancel.type = 'button';
+      cancel.className = 'ui-button';
+      cancel.textContent = cancelText;
+      actions.appendChild(cancel);
+    }
     actions.appendChild(ok);
     inner.append(h, p, actions);
     dlg.appendChild(inner);
@@ -195,15 +203,18 @@ function showGlassDialog({ title = 'Saved!', message = '', okText = 'OK' } = {})
     // show
     requestAnimationFrame(() => { bg.classList.add('visible'); dlg.classList.add('visible'); });
 
-    const close = () => {
+    // resolve(true) — OK; false — отмена (только если есть кнопка отмены)
+    const close = (result = true) => {
       bg.classList.remove('visible'); dlg.classList.remove('visible');
-      setTimeout(() => { bg.remove(); dlg.remove(); resolve(); }, 200);
+      setTimeout(() => { bg.remove(); dlg.remove(); resolve(result); }, 200);
     };
+    const dismiss = () => close(!cancelText);
 
-    bg.addEventListener('click', close);
-    ok.addEventListener('click', close);
+    bg.addEventListener('click', dismiss);
+    ok.addEventListener('click', () => close(true));
+    if (cancel) cancel.addEventListener('click', () => close(false));
     document.addEventListener('keydown', function onKey(e){
-      if (e.key === 'Escape'){ document.removeEventListener('keydown', onKey); close(); }
+      if (e.key === 'Escape'){ document.removeEventListener('keydown', onKey); dismiss(); }
     });
 
     // фокус на кнопку
@@ -775,6 +786,22 @@ confirmBtn.onclick = async () => {
 };
 
 
+  // Dry-run оценка стоимости до запуска генерации
+  const estimate = await fetchEstimate(payload);
+  if (estimate && estimate.warnings && estimate.warnings.length) {
+    const t = estimate.totals || {};
+    const a = estimate.area || {};
+    const go = await showGlassDialog({
+      title: 'This area is expensive',
+      message: `${estimate.warnings.join('<br>')}<br><br>`
+        + `${a.width}×${a.height} blocks, ${a.chunks} chunks, ${t.features} features.<br>`
+        + `Estimated: ~${fmtDuration(t.durationMs)}, heap peak ~${t.heapPeakMb} MB.`,
+      okText: 'Generate anyway',
+      cancelText: 'Cancel'
+    });
+    if (!go) { setStatus(''); return; }
+  }
+
   try {
     
     const r = await fetch('/save-coords', {
@@ -812,6 +839,71 @@ confirmBtn.onclick = async () => {
 };
 
 
+/* ===================== Оценка стоимости (/estimate) ===================== */
+async function fetchEstimate(payload){
+  setStatus('Estimating generation cost…');
+  try {
+    const r = await fetch('/estimate', {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify(payload)
+    });
+    if (!r.ok) return null;
+    const est = await r.json();
+    const t = est.totals || {};
+    setStatus(`Estimate: ~${fmtDuration(t.durationMs)}, ${fmtRate(t.blocks)} blocks, heap ~${t.heapPeakMb} MB`);
+    return est;
+  } catch (e) {
+    console.warn('Estimate failed:', e);
+    return null;
+  }
+}
+
+/* ===================== Прогресс генерации (SSE /events) ===================== */
+function fmtDuration(ms){
+  if (ms == null || ms < 0) return '—';
+  const s = Math.round(ms / 1000);
+  const m = Math.floor(s / 60), r = s % 60;
+  return m > 0 ? `${m}m ${String(r).padStart(2, '0')}s` : `${r}s`;
+}
+
+function fmtRate(n){
+  if (!n) return '0';
+  if (n >= 1e6) return (n / 1e6).toFixed(1) + 'M';
+  if (n >= 1e3) return (n / 1e3).toFixed(1) + 'k';
+  return String(n);
+}
+
+(function subscribeProgress(){
+  if (!window.EventSource) return;
+  let clearTimer = null;
+  const es = new EventSource('/events');
+  es.onmessage = (ev) => {
+    let p;
+    try { p = JSON.parse(ev.data); } catch { return; }
+    if (p.state === 'idle') {
+      if (p.message) setStatus(p.message);
+      return;
+    }
+    if (clearTimer) { clearTimeout(clearTimer); clearTimer = null; }
+    if (p.state === 'running') {
+      const parts = [
+        `${p.percent.toFixed(1)}%`,
+        `${p.stageIndex}/${p.stageCount} ${p.stage || ''}`.trim(),
+        p.stagePercent > 0 ? `stage ${p.stagePercent.toFixed(0)}%` : null,
+        `ETA ${fmtDuration(p.etaMs)}`,
+        p.blocksPerSec > 0 ? `${fmtRate(p.blocksPerSec)} blocks/s` : null,
+        `heap ${p.heapUsedMb}/${p.heapMaxMb} MB`
+      ].filter(Boolean);
+      setStatus(parts.join(' · '));
+    } else {
+      setStatus(`${p.message || p.state} (${fmtDuration(p.elapsedMs)})`);
+      clearTimer = setTimeout(() => setStatus(''), 15000);
+    }
+  };
+  // EventSource сам переподключается (retry из сервера)
+})();
+
 /* ===================== Go ===================== */
 updateAreaInfo();
 
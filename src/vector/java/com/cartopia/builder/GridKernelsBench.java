@@ -0,0 +1,62 @@
+package com.cartopia.builder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Замер ядер GridKernels: скалярные против векторных на сетке 2048×2048 (как у крупной области).
+ * Сначала сверяет результаты, потом печатает нс на клетку и ускорение по каждому ядру.
+ *
+ *   ./gradlew benchGridKernels
+ */
+final class GridKernelsBench {
+
+    private static final int W = 2048, H = 2048, N = W * H;
+    private static final int WARMUP = 5, RUNS = 15;
+
+    interface Kernel { void run(GridKernels k); }
+
+    public static void main(String[] args) {
+        GridKernels vec = GridKernels.get();
+        System.out.println("Grid kernels: " + vec.name() + ", grid " + W + "x" + H);
+
+        Random rnd = new Random(42);
+        int[] h = new int[N];
+        for (int i = 0; i < N; i++) {
+            double elev = 200 + 80 * Math.sin(i % W * 0.01) + 60 * Math.cos(i / W * 0.013) + rnd.nextGaussian();
+            h[i] = 64 + (int) Math.round(elev - 60);
+        }
+        int[] a = new int[N], b = new int[N];
+
+        check("minAdd", k -> { System.arraycopy(h, 0, a, 0, N); for (int r = 1; r < H; r++) k.minAdd(a, r * W, a, (r - 1) * W, W, 1); }, a, vec);
+        check("combine", k -> { System.arraycopy(h, 0, a, 0, N); for (int r = 1; r < H; r++) k.combine(a, r * W, h, (r - 1) * W, W, true); }, a, vec);
+        check("medianHalf", k -> { for (int r = 1; r < H - 1; r++) k.medianHalf(h, a, r * W + 1, r * W + W - 1, W); }, a, vec);
+
+        bench("minAdd (slope/staircase columns)", k -> { for (int r = 1; r < H; r++) k.minAdd(b, r * W, h, (r - 1) * W, W, 3); }, vec);
+        bench("combine (vHGW min/max columns)", k -> { for (int r = 1; r < H; r++) k.combine(b, r * W, h, (r - 1) * W, W, false); }, vec);
+        bench("medianHalf (height blur)", k -> { for (int r = 1; r < H - 1; r++) k.medianHalf(h, b, r * W + 1, r * W + W - 1, W); }, vec);
+    }
+
+    private static void check(String name, Kernel kernel, int[] out, GridKernels vec) {
+        kernel.run(GridKernels.SCALAR);
+        int[] expect = out.clone();
+        kernel.run(vec);
+        if (!Arrays.equals(expect, out)) throw new AssertionError(name + ": vector result differs from scalar");
+    }
+
+    private static void bench(String name, Kernel kernel, GridKernels vec) {
+        double s = time(kernel, GridKernels.SCALAR), v = time(kernel, vec);
+        System.out.printf("%-36s scalar %6.3f ns/cell   vector %6.3f ns/cell   x%.2f%n", name, s, v, s / v);
+    }
+
+    private static double time(Kernel kernel, GridKernels k) {
+        for (int i = 0; i < WARMUP; i++) kernel.run(k);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long t0 = System.nanoTime();
+            kernel.run(k);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        return best / (double) N;
+    }
+}
@@ -0,0 +1,76 @@
+package com.cartopia.builder;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD-версии {@link GridKernels} на jdk.incubator.vector (предпочтительная ширина CPU).
+ * Хвосты отрезков короче вектора — скалярными версиями родителя. Результат совпадает со скалярным.
+ * Только то, что по GridKernelsBench быстрее скалярного: перевод double->int и маски->биты
+ * (метры -> Y, порог уровня моря) на JDK 17 выходили медленнее и остались обычными циклами.
+ */
+final class VectorGridKernels extends GridKernels {
+
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+
+    VectorGridKernels() {
+        if (I.length() < 4) throw new IllegalStateException("vector too narrow: " + I);
+    }
+
+    @Override String name() { return "vector (" + I.vectorBitSize() + " bit)"; }
+
+    @Override
+    void minAdd(int[] dst, int dOff, int[] src, int sOff, int n, int add) {
+        int i = 0;
+        for (int bound = I.loopBound(n); i < bound; i += I.length()) {
+            IntVector d = IntVector.fromArray(I, dst, dOff + i);
+            IntVector s = IntVector.fromArray(I, src, sOff + i);
+            d.min(s.add(add)).intoArray(dst, dOff + i);
+        }
+        super.minAdd(dst, dOff + i, src, sOff + i, n - i, add);
+    }
+
+    @Override
+    void combine(int[] dst, int dOff, int[] src, int sOff, int n, boolean max) {
+        int i = 0;
+        for (int bound = I.loopBound(n); i < bound; i += I.length()) {
+            IntVector d = IntVector.fromArray(I, dst, dOff + i);
+            IntVector s = IntVector.fromArray(I, src, sOff + i);
+            (max ? d.max(s) : d.min(s)).intoArray(dst, dOff + i);
+        }
+        super.combine(dst, dOff + i, src, sOff + i, n - i, max);
+    }
+
+    @Override
+    void medianHalf(int[] src, int[] dst, int from, int to, int width) {
+        int i = from;
+        for (int bound = from + I.loopBound(to - from); i < bound; i += I.length()) {
+            int up = i - width, dn = i + width;
+            IntVector v0 = IntVector.fromArray(I, src, i + 1),  v1 = IntVector.fromArray(I, src, i - 1);
+            IntVector v2 = IntVector.fromArray(I, src, dn),     v3 = IntVector.fromArray(I, src, up);
+            IntVector v4 = IntVector.fromArray(I, src, dn + 1), v5 = IntVector.fromArray(I, src, up - 1);
+            IntVector v6 = IntVector.fromArray(I, src, up + 1), v7 = IntVector.fromArray(I, src, dn - 1);
+            IntVector t;
+            // та же сеть, что GridKernels.median8: обмен = (min, max) по полосам
+            t = v0.min(v1); v1 = v0.max(v1); v0 = t;
+            t = v2.min(v3); v3 = v2.max(v3); v2 = t;
+            t = v4.min(v5); v5 = v4.max(v5); v4 = t;
+            t = v6.min(v7); v7 = v6.max(v7); v6 = t;
+            t = v0.min(v2); v2 = v0.max(v2); v0 = t;
+            t = v1.min(v3); v3 = v1.max(v3); v1 = t;
+            t = v4.min(v6); v6 = v4.max(v6); v4 = t;
+            t = v5.min(v7); v7 = v5.max(v7); v5 = t;
+            t = v1.min(v2); v2 = v1.max(v2); v1 = t;
+            t = v5.min(v6); v6 = v5.max(v6); v5 = t;
+            v5 = v1.max(v5);
+            v2 = v2.min(v6);
+            v3 = v3.min(v7);
+            v4 = v4.max(v0);
+            v4 = v4.max(v2);
+            v3 = v3.min(v5);
+            IntVector med = v3.max(v4);
+            med.add(IntVector.fromArray(I, src, i)).div(2).intoArray(dst, i);
+        }
+        super.medianHalf(src, dst, i, to, width);
+    }
+}